@@ -14,6 +14,7 @@ import org.apache.jena.query.Dataset;
 import won.owner.protocol.message.OwnerCallback;
 
 import java.net.URI;
+import java.util.Set;
 
 /**
  * A bot that manipulates atoms. Note: Methods may throw runtime exceptions,
@@ -22,6 +23,12 @@ import java.net.URI;
 public interface Bot extends OwnerCallback {
     boolean knowsAtomURI(URI atomURI);
 
+    /**
+     * All atom uris known to the bot, used by the framework to route messages to
+     * the bot without asking each bot for each atom.
+     */
+    Set<URI> getKnownAtomURIs();
+
     boolean knowsNodeURI(URI wonNodeURI);
 
     void onNewAtomCreated(final URI atomUri, final URI wonNodeUri, final Dataset atomModel) throws Exception;
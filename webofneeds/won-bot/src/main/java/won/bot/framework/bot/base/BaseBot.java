@@ -29,6 +29,7 @@ import won.protocol.util.linkeddata.LinkedDataSource;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
+import java.util.Set;
 
 /**
  * Basic Bot implementation intended to be extended. Does nothing. Implements
@@ -74,6 +75,11 @@ public abstract class BaseBot implements Bot {
         return this.botContextWrapper.getBotContext().isAtomKnown(atomURI);
     }
 
+    @Override
+    public Set<URI> getKnownAtomURIs() {
+        return this.botContextWrapper.getBotContext().retrieveAllAtomUris();
+    }
+
     @Override
     public boolean knowsNodeURI(final URI wonNodeURI) {
         return this.botContextWrapper.getBotContext().isNodeKnown(wonNodeURI);
@@ -44,6 +44,7 @@ import won.bot.framework.eventbot.event.impl.wonmessage.WonMessageReceivedOnConn
 import won.bot.framework.eventbot.listener.EventListener;
 import won.bot.framework.eventbot.listener.impl.ActionOnEventListener;
 import won.protocol.agreement.AgreementProtocolState;
+import won.protocol.agreement.AgreementProtocolStateCache;
 import won.protocol.agreement.effect.MessageEffect;
 import won.protocol.message.WonMessage;
 import won.protocol.model.Connection;
@@ -56,6 +57,7 @@ import won.utils.goals.GoalInstantiationResult;
 
 public class AnalyzeBehaviour extends BotBehaviour {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final int MAX_CACHED_CONVERSATIONS = 100;
     private final BotContext botContext;
     private final String preconditionToProposalListMapName;
     private final String proposalToPreconditionListMapName;
@@ -63,6 +65,9 @@ public class AnalyzeBehaviour extends BotBehaviour {
     private final String preconditionMetPending;
     private final String preconditionMetError;
     private final String connectionPreconditionListMapName;
+    // states of the recently analyzed conversations, updated with each new message
+    private final AgreementProtocolStateCache agreementProtocolStateCache = new AgreementProtocolStateCache(
+                    MAX_CACHED_CONVERSATIONS);
 
     public AnalyzeBehaviour(EventListenerContext context) {
         super(context);
@@ -149,10 +154,8 @@ public class AnalyzeBehaviour extends BotBehaviour {
             Dataset atomDataset = linkedDataSource.getDataForResource(atomUri);
             Collection<Resource> goalsInAtom = new AtomModelWrapper(atomDataset).getGoals();
             logger.trace("Preconditions in Atom: " + goalsInAtom.size());
-            AgreementProtocolState agreementProtocolState = AgreementProtocolState.of(connectionUri,
-                            getEventListenerContext().getLinkedDataSource()); // Initialize with null, to ensure some
-                                                                              // form of lazy init
-                                                                              // for the agreementProtocolState
+            AgreementProtocolState agreementProtocolState = agreementProtocolStateCache.getOrUpdate(connectionUri,
+                            getEventListenerContext().getLinkedDataSource());
             Set<MessageEffect> messageEffects = agreementProtocolState.getEffects(wonMessage.getMessageURI());
             logger.trace("MessageEffects in Message: " + messageEffects.size());
             messageEffects.forEach(messageEffect -> {
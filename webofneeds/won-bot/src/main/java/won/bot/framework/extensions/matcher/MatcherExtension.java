@@ -4,6 +4,8 @@ import org.apache.jena.query.Dataset;
 
 import java.net.URI;
 
+import won.protocol.util.RdfUtils;
+
 @FunctionalInterface
 public interface MatcherExtension {
     /**
@@ -20,8 +22,10 @@ public interface MatcherExtension {
     default void onNewAtomCreatedNotificationForMatcher(final URI wonNodeURI, final URI atomURI,
                     final Dataset atomModel) {
         if (getMatcherBehaviour().isActive()) {
-            Dataset dataset = getMatcherBehaviour().getEventListenerContext().getLinkedDataSource()
-                            .getDataForResource(atomURI);
+            // the dataset may be shared by the linked data source, copy it before handing
+            // it to the bot's handlers
+            Dataset dataset = RdfUtils.cloneDataset(getMatcherBehaviour().getEventListenerContext()
+                            .getLinkedDataSource().getDataForResource(atomURI));
             getMatcherBehaviour().getEventBus().publish(new MatcherExtensionAtomCreatedEvent(atomURI, dataset));
         }
     }
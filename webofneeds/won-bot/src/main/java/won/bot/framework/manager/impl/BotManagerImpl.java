@@ -1,5 +1,9 @@
 package won.bot.framework.manager.impl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import won.bot.exception.NoBotResponsibleException;
@@ -9,45 +13,71 @@ import won.bot.framework.manager.BotManager;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * BotManager, simple in-memory implementation.
+ * <p>
+ * The bot responsible for an atom is looked up in a routing index, which is
+ * built from the atom uris known to each bot when the bot is added and extended
+ * whenever a bot is found to know an atom. Only atoms missing in the index are
+ * looked up by asking each bot, atoms no bot knows are remembered for a while
+ * in a bounded cache so that they are not looked up again for each message.
+ * Index hits, lookups and unknown atoms are counted in the simons
+ * {@link #ROUTING_HITS_COUNTER}, {@link #ROUTING_MISSES_COUNTER} and
+ * {@link #UNKNOWN_ATOM_HITS_COUNTER}, the time needed for the lookups in the
+ * stopwatch {@link #ROUTING_LOOKUP_STOPWATCH}.
  */
 public class BotManagerImpl implements BotManager {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    public static final String ROUTING_HITS_COUNTER = "BotManager.routingHits";
+    public static final String ROUTING_MISSES_COUNTER = "BotManager.routingMisses";
+    public static final String UNKNOWN_ATOM_HITS_COUNTER = "BotManager.unknownAtomHits";
+    public static final String ROUTING_LOOKUP_STOPWATCH = "BotManager.routingLookup";
     private List<Bot> bots = new LinkedList<>(); // presumably a list of all bots managed on this server
-    private Map<URI, Bot> botByAtomUri = new HashMap<>(); // map of all bot atoms uris and responsible bots
-    private Map<URI, List<Bot>> botListByNodeUri = new HashMap<>(); // map of all bots registered on that node
+    private Map<URI, Bot> botByAtomUri = new ConcurrentHashMap<>(); // map of all bot atoms uris and responsible bots
+    // map of all bots registered on that node
+    private Map<URI, List<Bot>> botListByNodeUri = new ConcurrentHashMap<>();
+    private Cache<URI, Boolean> unknownAtomUris; // atom uris no bot is responsible for
+    private long unknownAtomCacheSize = 10000;
+    private long unknownAtomCacheTimeToLiveSeconds = 60;
     private Object monitor = new Object(); // ???
 
+    public BotManagerImpl() {
+        this.unknownAtomUris = createUnknownAtomCache();
+    }
+
     @Override
     public Bot getBotResponsibleForAtomUri(URI atomUri) throws NoBotResponsibleException {
         // try the botByUri map
         {
             Bot bot = botByAtomUri.get(atomUri);
             if (bot != null) {
-                if (!bot.getLifecyclePhase().isActive()) {
-                    throw new NoBotResponsibleException("bot responsible for atom " + atomUri
-                                    + " is not active (lifecycle phase is: " + bot.getLifecyclePhase() + ")");
-                }
-                return bot;
+                SimonManager.getCounter(ROUTING_HITS_COUNTER).increase();
+                return checkActive(bot, atomUri);
             }
         }
+        if (unknownAtomUris.getIfPresent(atomUri) != null) {
+            SimonManager.getCounter(UNKNOWN_ATOM_HITS_COUNTER).increase();
+            throw new NoBotResponsibleException("No bot registered for uri " + atomUri);
+        }
         // check each bot, return first that knows the atomUri
+        SimonManager.getCounter(ROUTING_MISSES_COUNTER).increase();
+        List<Bot> bots = getBotsSnapshot();
         logger.trace("bots size:{} ", bots.size());
-        for (Bot mybot : bots) {
-            // logger.debug("bot knows atom: {}", mybot.knowsAtomURI(atomUri));
-            if (mybot.knowsAtomURI(atomUri)) {
-                synchronized (getMonitor()) {
-                    this.botByAtomUri.put(atomUri, mybot);
-                }
-                if (!mybot.getLifecyclePhase().isActive()) {
-                    throw new NoBotResponsibleException("bot responsible for atom " + atomUri
-                                    + " is not active (lifecycle phase is: " + mybot.getLifecyclePhase() + ")");
+        Split split = SimonManager.getStopwatch(ROUTING_LOOKUP_STOPWATCH).start();
+        try {
+            for (Bot mybot : bots) {
+                if (mybot.knowsAtomURI(atomUri)) {
+                    Bot bot = botByAtomUri.putIfAbsent(atomUri, mybot);
+                    return checkActive(bot != null ? bot : mybot, atomUri);
                 }
-                return mybot;
             }
+        } finally {
+            split.stop();
         }
+        unknownAtomUris.put(atomUri, Boolean.TRUE);
         throw new NoBotResponsibleException("No bot registered for uri " + atomUri);
     }
 
@@ -59,11 +89,9 @@ public class BotManagerImpl implements BotManager {
                 return botList;
         }
         List<Bot> botList = new ArrayList<>();
-        for (Bot mybot : bots) {
+        for (Bot mybot : getBotsSnapshot()) {
             if (mybot.knowsNodeURI(wonNodeUri)) {
-                synchronized (getMonitor()) {
-                    botList.add(mybot);
-                }
+                botList.add(mybot);
             }
         }
         this.botListByNodeUri.put(wonNodeUri, botList);
@@ -77,6 +105,7 @@ public class BotManagerImpl implements BotManager {
                 return;
             initializeBotIfNecessary(bot);
             this.bots.add(bot);
+            indexAtomUris(bot);
         }
     }
 
@@ -86,6 +115,10 @@ public class BotManagerImpl implements BotManager {
             this.bots.clear();
             this.bots.addAll(bots);
             this.botByAtomUri.clear();
+            this.botListByNodeUri.clear();
+            for (Bot bot : bots) {
+                indexAtomUris(bot);
+            }
         }
     }
 
@@ -104,6 +137,23 @@ public class BotManagerImpl implements BotManager {
         return true;
     }
 
+    /**
+     * Sets the maximum number of atom uris no bot is responsible for that are
+     * remembered.
+     */
+    public void setUnknownAtomCacheSize(long unknownAtomCacheSize) {
+        this.unknownAtomCacheSize = unknownAtomCacheSize;
+        this.unknownAtomUris = createUnknownAtomCache();
+    }
+
+    /**
+     * Sets the time in seconds an atom uri no bot is responsible for is remembered.
+     */
+    public void setUnknownAtomCacheTimeToLiveSeconds(long unknownAtomCacheTimeToLiveSeconds) {
+        this.unknownAtomCacheTimeToLiveSeconds = unknownAtomCacheTimeToLiveSeconds;
+        this.unknownAtomUris = createUnknownAtomCache();
+    }
+
     protected void initializeBotIfNecessary(Bot bot) {
         if (bot.getLifecyclePhase().isDown()) {
             try {
@@ -115,6 +165,24 @@ public class BotManagerImpl implements BotManager {
         }
     }
 
+    /**
+     * Adds the atoms known to the bot to the routing index. Atoms already known to
+     * a bot added earlier stay with that bot. Atoms that cannot be retrieved here
+     * are looked up when the first message for them arrives.
+     */
+    protected void indexAtomUris(Bot bot) {
+        try {
+            Set<URI> atomUris = bot.getKnownAtomURIs();
+            for (URI atomUri : atomUris) {
+                botByAtomUri.putIfAbsent(atomUri, bot);
+            }
+            unknownAtomUris.invalidateAll(atomUris);
+            logger.info("indexed {} atoms of bot {}", atomUris.size(), bot);
+        } catch (Exception e) {
+            logger.warn("could not index atoms of bot {}", bot, e);
+        }
+    }
+
     protected Object getMonitor() {
         return monitor;
     }
@@ -122,4 +190,23 @@ public class BotManagerImpl implements BotManager {
     protected List<Bot> getBots() {
         return bots;
     }
+
+    private List<Bot> getBotsSnapshot() {
+        synchronized (getMonitor()) {
+            return new ArrayList<>(bots);
+        }
+    }
+
+    private Bot checkActive(Bot bot, URI atomUri) throws NoBotResponsibleException {
+        if (!bot.getLifecyclePhase().isActive()) {
+            throw new NoBotResponsibleException("bot responsible for atom " + atomUri
+                            + " is not active (lifecycle phase is: " + bot.getLifecyclePhase() + ")");
+        }
+        return bot;
+    }
+
+    private Cache<URI, Boolean> createUnknownAtomCache() {
+        return CacheBuilder.newBuilder().maximumSize(unknownAtomCacheSize)
+                        .expireAfterWrite(unknownAtomCacheTimeToLiveSeconds, TimeUnit.SECONDS).build();
+    }
 }
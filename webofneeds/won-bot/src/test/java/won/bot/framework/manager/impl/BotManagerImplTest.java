@@ -0,0 +1,128 @@
+package won.bot.framework.manager.impl;
+
+import java.net.URI;
+import java.util.Optional;
+
+import org.apache.jena.query.Dataset;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import won.bot.exception.NoBotResponsibleException;
+import won.bot.framework.bot.base.BaseBot;
+import won.bot.framework.bot.context.BotContextWrapper;
+import won.bot.framework.bot.context.MemoryBotContext;
+import won.protocol.message.WonMessage;
+import won.protocol.model.Connection;
+
+public class BotManagerImplTest {
+    private static final URI ATOM1 = URI.create("http://test.uri/atom#1");
+    private static final URI ATOM2 = URI.create("http://test.uri/atom#2");
+    private static final URI ATOM3 = URI.create("http://test.uri/atom#3");
+    private BotManagerImpl botManager;
+    private CountingBot bot1;
+    private CountingBot bot2;
+
+    @Before
+    public void setUp() {
+        bot1 = new CountingBot("bot1");
+        bot2 = new CountingBot("bot2");
+        bot1.getBotContextWrapper().getBotContext().appendToNamedAtomUriList(ATOM1, "atoms");
+        bot2.getBotContextWrapper().getBotContext().appendToNamedAtomUriList(ATOM2, "atoms");
+        botManager = new BotManagerImpl();
+        botManager.addBot(bot1);
+        botManager.addBot(bot2);
+    }
+
+    @Test
+    public void testKnownAtomsAreRoutedWithoutAskingBots() throws Exception {
+        Assert.assertSame(bot1, botManager.getBotResponsibleForAtomUri(ATOM1));
+        Assert.assertSame(bot2, botManager.getBotResponsibleForAtomUri(ATOM2));
+        Assert.assertEquals(0, bot1.knowsAtomURICalls);
+        Assert.assertEquals(0, bot2.knowsAtomURICalls);
+    }
+
+    @Test
+    public void testNewAtomIsLookedUpOnce() throws Exception {
+        bot2.getBotContextWrapper().getBotContext().appendToNamedAtomUriList(ATOM3, "atoms");
+        Assert.assertSame(bot2, botManager.getBotResponsibleForAtomUri(ATOM3));
+        Assert.assertSame(bot2, botManager.getBotResponsibleForAtomUri(ATOM3));
+        Assert.assertEquals(1, bot1.knowsAtomURICalls);
+        Assert.assertEquals(1, bot2.knowsAtomURICalls);
+    }
+
+    @Test
+    public void testUnknownAtomIsLookedUpOnce() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                botManager.getBotResponsibleForAtomUri(ATOM3);
+                Assert.fail("expected NoBotResponsibleException");
+            } catch (NoBotResponsibleException e) {
+                // expected
+            }
+        }
+        Assert.assertEquals(1, bot1.knowsAtomURICalls);
+        Assert.assertEquals(1, bot2.knowsAtomURICalls);
+    }
+
+    @Test(expected = NoBotResponsibleException.class)
+    public void testInactiveBotIsNotResponsible() throws Exception {
+        bot1.shutdown();
+        botManager.getBotResponsibleForAtomUri(ATOM1);
+    }
+
+    private static class CountingBot extends BaseBot {
+        private int knowsAtomURICalls = 0;
+
+        public CountingBot(String name) {
+            setBotContextWrapper(new BotContextWrapper(new MemoryBotContext(), name));
+        }
+
+        @Override
+        public BotContextWrapper getBotContextWrapper() {
+            return super.getBotContextWrapper();
+        }
+
+        @Override
+        public boolean knowsAtomURI(URI atomURI) {
+            knowsAtomURICalls++;
+            return super.knowsAtomURI(atomURI);
+        }
+
+        @Override
+        public void onNewAtomCreated(URI atomUri, URI wonNodeUri, Dataset atomModel) {
+        }
+
+        @Override
+        public void act() {
+        }
+
+        @Override
+        public void onConnectFromOtherAtom(Connection con, WonMessage wonMessage) {
+        }
+
+        @Override
+        public void onCloseFromOtherAtom(Connection con, WonMessage wonMessage) {
+        }
+
+        @Override
+        public void onAtomHintFromMatcher(WonMessage wonMessage) {
+        }
+
+        @Override
+        public void onSocketHintFromMatcher(WonMessage wonMessage) {
+        }
+
+        @Override
+        public void onMessageFromOtherAtom(Connection con, WonMessage wonMessage) {
+        }
+
+        @Override
+        public void onFailureResponse(URI failedMessageUri, WonMessage wonMessage, Optional<Connection> con) {
+        }
+
+        @Override
+        public void onSuccessResponse(URI successfulMessageUri, WonMessage wonMessage, Optional<Connection> con) {
+        }
+    }
+}
@@ -169,6 +169,10 @@ public class CryptographyService {
         }
     }
 
+    public void setKeyPairService(KeyPairService keyPairService) {
+        this.keyPairService = keyPairService;
+    }
+
     public void setDefaultAlias(String defaultAlias) {
         this.defaultAlias = defaultAlias;
     }
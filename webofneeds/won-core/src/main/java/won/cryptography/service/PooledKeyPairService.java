@@ -0,0 +1,97 @@
+package won.cryptography.service;
+
+import java.lang.invoke.MethodHandles;
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Key pair service that generates secp384r1 key pairs in advance on a
+ * background thread, so that the key pair for a new atom is usually available
+ * without waiting for the key generation. If no pre-generated key pair is
+ * available, the key pair is generated synchronously, as by
+ * {@link KeyPairService}.
+ * <p>
+ * The number of available key pairs, the key pairs taken from the pool and the
+ * misses are recorded in the simons {@link #POOL_SIZE_COUNTER},
+ * {@link #HITS_COUNTER} and {@link #MISSES_COUNTER}, the time needed to refill
+ * the pool with one key pair in the stopwatch {@link #REFILL_STOPWATCH}.
+ */
+public class PooledKeyPairService extends KeyPairService {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    public static final String POOL_SIZE_COUNTER = "PooledKeyPairService.poolSize";
+    public static final String HITS_COUNTER = "PooledKeyPairService.hits";
+    public static final String MISSES_COUNTER = "PooledKeyPairService.misses";
+    public static final String REFILL_STOPWATCH = "PooledKeyPairService.refill";
+    private final BlockingQueue<KeyPair> pool;
+    // the background thread has its own generator, the key pair generators are not
+    // thread safe
+    private final KeyPairService refillKeyPairService = new KeyPairService();
+    private Thread refillThread;
+    private volatile boolean running = false;
+
+    public PooledKeyPairService(int poolSize) {
+        this.pool = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        refillThread = new Thread(this::refill, "key-pair-pool-refill");
+        refillThread.setDaemon(true);
+        refillThread.setPriority(Thread.MIN_PRIORITY);
+        refillThread.start();
+        logger.info("Started key pair pool with a capacity of {} key pairs", pool.remainingCapacity());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (refillThread != null) {
+            refillThread.interrupt();
+            refillThread = null;
+        }
+    }
+
+    @Override
+    public KeyPair generateNewKeyPairInSecp384r1() {
+        KeyPair keyPair = pool.poll();
+        if (keyPair == null) {
+            SimonManager.getCounter(MISSES_COUNTER).increase();
+            logger.debug("Key pair pool is empty, generating key pair synchronously");
+            synchronized (this) {
+                return super.generateNewKeyPairInSecp384r1();
+            }
+        }
+        SimonManager.getCounter(HITS_COUNTER).increase();
+        SimonManager.getCounter(POOL_SIZE_COUNTER).set(pool.size());
+        return keyPair;
+    }
+
+    public int getPoolSize() {
+        return pool.size();
+    }
+
+    private void refill() {
+        while (running) {
+            try {
+                Split split = SimonManager.getStopwatch(REFILL_STOPWATCH).start();
+                KeyPair keyPair = refillKeyPairService.generateNewKeyPairInSecp384r1();
+                split.stop();
+                pool.put(keyPair);
+                SimonManager.getCounter(POOL_SIZE_COUNTER).set(pool.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("Could not generate key pair for the pool", e);
+            }
+        }
+    }
+}
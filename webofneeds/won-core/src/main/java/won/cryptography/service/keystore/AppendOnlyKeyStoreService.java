@@ -0,0 +1,586 @@
+package won.cryptography.service.keystore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Key store service that appends each added entry to a file instead of
+ * rewriting the whole key store, so adding an entry takes constant time no
+ * matter how many entries there are. Each entry is encrypted on its own with
+ * AES-GCM, using a key derived from the store password. When an alias is
+ * replaced, the new entry is appended and supersedes the old one when the file
+ * is read.
+ * <p>
+ * All entries are held in memory, so reading does not need any locking. Adding
+ * entries from several threads only serializes the (buffered) writes, the
+ * entries written at the same time are forced to disk together.
+ * <p>
+ * If the file does not exist yet and an import file is set, the entries of that
+ * key store file (as used by {@link FileBasedKeyStoreService}) are imported
+ * once at initialization.
+ */
+public class AppendOnlyKeyStoreService extends AbstractKeyStoreService {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final Provider PROVIDER_BC = new BouncyCastleProvider();
+    private static final byte[] MAGIC = "WONKS1".getBytes();
+    private static final byte[] PASSWORD_CHECK = "won key store".getBytes();
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int KEY_DERIVATION_ITERATIONS = 65536;
+    private static final byte TYPE_KEY = 1;
+    private static final byte TYPE_CERTIFICATE = 2;
+    private final File storeFile;
+    private final String storePW;
+    private File importFile;
+    private String importFileType = "UBER";
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private KeyStore store;
+    private SecretKey secretKey;
+    private FileChannel channel;
+    // guards writing to the channel and adding entries
+    private final Object writeLock = new Object();
+    private long writtenPosition;
+    // guards forcing the channel to disk
+    private final Object syncLock = new Object();
+    private volatile long syncedPosition;
+
+    public AppendOnlyKeyStoreService(String filePath, String storePW) {
+        this(new File(filePath), storePW);
+    }
+
+    public AppendOnlyKeyStoreService(File storeFile, String storePW) {
+        this.storeFile = storeFile;
+        this.storePW = storePW;
+        logger.info("Using append-only key store file {}", storeFile);
+    }
+
+    /**
+     * Key store file whose entries are imported if the append-only key store file
+     * does not exist yet. It must be protected by the same password.
+     */
+    public void setImportFile(String importFile) {
+        this.importFile = new File(importFile);
+    }
+
+    public void setImportFileType(String importFileType) {
+        this.importFileType = importFileType;
+    }
+
+    public void init() throws Exception {
+        store = new KeyStore(new AppendOnlyKeyStoreSpi(), PROVIDER_BC, "WON-APPEND-ONLY") {
+        };
+        store.load(null, null);
+        if (!storeFile.exists()) {
+            createStoreFile();
+        }
+        channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            readStoreFile();
+        } catch (Exception e) {
+            channel.close();
+            logger.error("Could not load key store from file " + storeFile.getName(), e);
+            throw e;
+        }
+        logger.info("Loaded {} entries from key store file {}", entries.size(), storeFile);
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String getPassword() {
+        return storePW;
+    }
+
+    @Override
+    public KeyStore getUnderlyingKeyStore() {
+        return store;
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        Entry entry = entries.get(alias);
+        return entry == null ? null : entry.key;
+    }
+
+    @Override
+    public Certificate getCertificate(String alias) {
+        Entry entry = entries.get(alias);
+        return entry == null ? null : entry.getCertificate();
+    }
+
+    @Override
+    public boolean containsEntry(String alias) {
+        return entries.containsKey(alias);
+    }
+
+    @Override
+    public void putKey(String alias, PrivateKey key, Certificate[] certificateChain, boolean replace)
+                    throws IOException {
+        putEntry(alias, key, certificateChain, null, replace);
+    }
+
+    @Override
+    public void putCertificate(String alias, Certificate certificate, boolean replace) throws IOException {
+        putEntry(alias, null, null, certificate, replace);
+    }
+
+    /**
+     * Appends the entry to the key store file and waits until it is written to
+     * disk. Not synchronized on the service, so that the entries added concurrently
+     * are forced to disk together.
+     */
+    @Override
+    protected void putEntry(String alias, PrivateKey key, Certificate[] certificateChain, Certificate certificate,
+                    boolean replace) {
+        if (alias == null) {
+            throw new RuntimeException("Could not add keystore entry: provided alias is null");
+        }
+        Entry entry;
+        if (key != null && certificateChain != null) {
+            entry = new Entry(key, certificateChain);
+        } else if (certificate != null) {
+            entry = new Entry(null, new Certificate[] { certificate });
+        } else {
+            throw new RuntimeException(
+                            "Could not add keystore entry: neither key and cert chain nor certificate is provided");
+        }
+        try {
+            byte[] record = encrypt(encodeEntry(alias, entry));
+            long position;
+            synchronized (writeLock) {
+                if (!replace && entries.containsKey(alias)) {
+                    return;
+                }
+                position = append(record);
+                entries.put(alias, entry);
+            }
+            sync(position);
+        } catch (Exception e) {
+            throw new RuntimeException("Could not add entry for " + alias + " to the key store", e);
+        }
+    }
+
+    @Override
+    protected void persistStore() throws Exception {
+        long position;
+        synchronized (writeLock) {
+            position = writtenPosition;
+        }
+        sync(position);
+    }
+
+    /**
+     * Adds all entries of the specified key store that are not in this key store
+     * yet.
+     *
+     * @return the number of imported entries
+     */
+    public int importKeyStore(KeyStore source, String password) throws Exception {
+        int imported = 0;
+        for (String alias : Collections.list(source.aliases())) {
+            if (entries.containsKey(alias)) {
+                continue;
+            }
+            Entry entry;
+            if (source.isKeyEntry(alias)) {
+                Key key = source.getKey(alias, password.toCharArray());
+                if (!(key instanceof PrivateKey)) {
+                    logger.warn("Skipping key store entry {}, it is not a private key", alias);
+                    continue;
+                }
+                entry = new Entry((PrivateKey) key, source.getCertificateChain(alias));
+            } else {
+                entry = new Entry(null, new Certificate[] { source.getCertificate(alias) });
+            }
+            byte[] record = encrypt(encodeEntry(alias, entry));
+            synchronized (writeLock) {
+                append(record);
+                entries.put(alias, entry);
+            }
+            imported++;
+        }
+        persistStore();
+        return imported;
+    }
+
+    private void createStoreFile() throws Exception {
+        File tmpFile = new File(storeFile.getPath() + ".tmp");
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        secretKey = deriveKey(salt);
+        channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + SALT_LENGTH);
+            header.put(MAGIC).put(salt).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            writtenPosition = channel.position();
+            append(encrypt(PASSWORD_CHECK));
+            if (importFile != null && importFile.isFile()) {
+                // import into the temporary file, so the import is done again if it is
+                // interrupted
+                FileBasedKeyStoreService importedStore = new FileBasedKeyStoreService(importFile, storePW,
+                                BouncyCastleProvider.PROVIDER_NAME, importFileType);
+                importedStore.init();
+                int imported = importKeyStore(importedStore.getUnderlyingKeyStore(), storePW);
+                logger.info("Imported {} entries from key store file {}", imported, importFile);
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+            entries.clear();
+        }
+        Files.move(tmpFile.toPath(), storeFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readStoreFile() throws Exception {
+        try (DataInputStream data = new DataInputStream(
+                        new BufferedInputStream(Files.newInputStream(storeFile.toPath())))) {
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException("Not an append-only key store file: " + storeFile);
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            data.readFully(salt);
+            secretKey = deriveKey(salt);
+            long position = MAGIC.length + SALT_LENGTH;
+            byte[] record = readRecord(data);
+            if (record == null) {
+                throw new IOException("Key store file " + storeFile + " is incomplete");
+            }
+            try {
+                decrypt(record);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Wrong password for key store file " + storeFile, e);
+            }
+            position += 4 + record.length;
+            while ((record = readRecord(data)) != null) {
+                byte[] decrypted;
+                try {
+                    decrypted = decrypt(record);
+                } catch (GeneralSecurityException e) {
+                    if (position + 4 + record.length == channel.size()) {
+                        // the last entry was not completely written, e.g. due to a crash
+                        break;
+                    }
+                    throw new IOException("Key store file " + storeFile + " is corrupt at position " + position, e);
+                }
+                decodeEntry(decrypted);
+                position += 4 + record.length;
+            }
+            if (position < channel.size()) {
+                logger.warn("Discarding incomplete entry at the end of key store file {}", storeFile);
+                channel.truncate(position);
+            }
+            channel.position(position);
+            writtenPosition = position;
+            syncedPosition = position;
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream data) throws IOException {
+        try {
+            int length = data.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            data.readFully(record);
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the record to the end of the file, without forcing it to disk. The
+     * caller has to hold the write lock.
+     *
+     * @return the position after the record
+     */
+    private long append(byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+        buffer.putInt(record.length).put(record).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        writtenPosition += 4 + record.length;
+        return writtenPosition;
+    }
+
+    /**
+     * Forces the file to disk up to at least the specified position. Whoever forces
+     * the file also covers the records appended by other threads in the meantime.
+     */
+    private void sync(long position) throws IOException {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return;
+            }
+            long target;
+            synchronized (writeLock) {
+                target = writtenPosition;
+            }
+            channel.force(false);
+            syncedPosition = target;
+        }
+    }
+
+    private SecretKey deriveKey(byte[] salt) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        PBEKeySpec spec = new PBEKeySpec(storePW.toCharArray(), salt, KEY_DERIVATION_ITERATIONS, 256);
+        try {
+            return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(plain);
+        byte[] record = new byte[IV_LENGTH + encrypted.length];
+        System.arraycopy(iv, 0, record, 0, IV_LENGTH);
+        System.arraycopy(encrypted, 0, record, IV_LENGTH, encrypted.length);
+        return record;
+    }
+
+    private byte[] decrypt(byte[] record) throws GeneralSecurityException {
+        if (record.length <= IV_LENGTH) {
+            throw new GeneralSecurityException("record too short");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(128, record, 0, IV_LENGTH));
+        return cipher.doFinal(record, IV_LENGTH, record.length - IV_LENGTH);
+    }
+
+    private static byte[] encodeEntry(String alias, Entry entry) throws GeneralSecurityException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(entry.key != null ? TYPE_KEY : TYPE_CERTIFICATE);
+            out.writeUTF(alias);
+            if (entry.key != null) {
+                out.writeUTF(entry.key.getAlgorithm());
+                writeBytes(out, entry.key.getEncoded());
+            }
+            out.writeInt(entry.certificateChain.length);
+            for (Certificate certificate : entry.certificateChain) {
+                out.writeUTF(certificate.getType());
+                writeBytes(out, certificate.getEncoded());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void decodeEntry(byte[] decrypted) throws GeneralSecurityException, IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(decrypted))) {
+            byte type = in.readByte();
+            String alias = in.readUTF();
+            PrivateKey key = null;
+            if (type == TYPE_KEY) {
+                String algorithm = in.readUTF();
+                key = KeyFactory.getInstance(algorithm, PROVIDER_BC)
+                                .generatePrivate(new PKCS8EncodedKeySpec(readBytes(in)));
+            }
+            Certificate[] certificateChain = new Certificate[in.readInt()];
+            for (int i = 0; i < certificateChain.length; i++) {
+                String certificateType = in.readUTF();
+                certificateChain[i] = CertificateFactory.getInstance(certificateType, PROVIDER_BC)
+                                .generateCertificate(new ByteArrayInputStream(readBytes(in)));
+            }
+            entries.put(alias, new Entry(key, certificateChain));
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static class Entry {
+        private final PrivateKey key;
+        private final Certificate[] certificateChain;
+        private final Date creationDate = new Date();
+
+        public Entry(PrivateKey key, Certificate[] certificateChain) {
+            this.key = key;
+            this.certificateChain = certificateChain;
+        }
+
+        public Certificate getCertificate() {
+            return certificateChain.length > 0 ? certificateChain[0] : null;
+        }
+    }
+
+    /**
+     * Exposes the entries as {@link KeyStore}, e.g. for key managers. Entries added
+     * through the key store are appended to the file as well.
+     */
+    private class AppendOnlyKeyStoreSpi extends KeyStoreSpi {
+        @Override
+        public Key engineGetKey(String alias, char[] password) {
+            return getPrivateKey(alias);
+        }
+
+        @Override
+        public Certificate[] engineGetCertificateChain(String alias) {
+            Entry entry = entries.get(alias);
+            return entry == null || entry.key == null ? null : entry.certificateChain.clone();
+        }
+
+        @Override
+        public Certificate engineGetCertificate(String alias) {
+            return getCertificate(alias);
+        }
+
+        @Override
+        public Date engineGetCreationDate(String alias) {
+            Entry entry = entries.get(alias);
+            return entry == null ? null : entry.creationDate;
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain)
+                        throws KeyStoreException {
+            if (!(key instanceof PrivateKey)) {
+                throw new KeyStoreException("Only private keys can be stored");
+            }
+            try {
+                putEntry(alias, (PrivateKey) key, chain, null, true);
+            } catch (RuntimeException e) {
+                throw new KeyStoreException(e);
+            }
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+            throw new KeyStoreException("Protected keys are not supported");
+        }
+
+        @Override
+        public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+            try {
+                putEntry(alias, null, null, cert, true);
+            } catch (RuntimeException e) {
+                throw new KeyStoreException(e);
+            }
+        }
+
+        @Override
+        public void engineDeleteEntry(String alias) throws KeyStoreException {
+            throw new KeyStoreException("Deleting entries is not supported");
+        }
+
+        @Override
+        public Enumeration<String> engineAliases() {
+            return Collections.enumeration(entries.keySet());
+        }
+
+        @Override
+        public boolean engineContainsAlias(String alias) {
+            return entries.containsKey(alias);
+        }
+
+        @Override
+        public int engineSize() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean engineIsKeyEntry(String alias) {
+            Entry entry = entries.get(alias);
+            return entry != null && entry.key != null;
+        }
+
+        @Override
+        public boolean engineIsCertificateEntry(String alias) {
+            Entry entry = entries.get(alias);
+            return entry != null && entry.key == null;
+        }
+
+        @Override
+        public String engineGetCertificateAlias(Certificate cert) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (cert.equals(entry.getValue().getCertificate())) {
+                    return entry.getKey();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void engineStore(OutputStream stream, char[] password) throws IOException {
+            throw new IOException("The entries are saved when they are added");
+        }
+
+        @Override
+        public void engineLoad(InputStream stream, char[] password) throws IOException {
+            if (stream != null) {
+                throw new IOException("The entries are loaded from the key store file");
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package won.protocol.jms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+import org.apache.camel.Message;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+
+import won.protocol.exception.WonMessageProcessingException;
+import won.protocol.message.WonMessage;
+import won.protocol.message.WonMessageEncoder;
+
+/**
+ * Encodes WonMessages into and decodes them from the body of JMS messages sent
+ * via camel.
+ * <p>
+ * The binary encoding (RDF Thrift) is written directly into a byte array, which
+ * camel sends as a <code>BytesMessage</code>, and parsed directly from the
+ * received bytes, without an intermediate String. The encoding used is stated
+ * in the {@link #CONTENT_TYPE_HEADER} header. Messages without that header are
+ * decoded as TriG text, which is what senders that do not know about the header
+ * produce. This way, receivers can be upgraded first and senders can switch to
+ * the binary encoding later.
+ */
+public class WonMessageJmsCodec {
+    public static final String CONTENT_TYPE_HEADER = "won.messageContentType";
+    public static final Lang BINARY_LANG = Lang.RDFTHRIFT;
+    public static final Lang TEXT_LANG = Lang.TRIG;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    /**
+     * Encodes the message for a JMS body and adds the content type to the specified
+     * headers.
+     *
+     * @param message the message to encode
+     * @param binary if true, the result is a <code>byte[]</code> containing RDF
+     * Thrift, otherwise a TriG <code>String</code>
+     * @param headers the headers to add the content type to
+     * @return the body
+     */
+    public static Object encode(WonMessage message, boolean binary, Map<String, Object> headers) {
+        headers.put(CONTENT_TYPE_HEADER, contentType(binary));
+        return encode(message, binary);
+    }
+
+    /**
+     * Encodes the message into the body of the specified camel message and sets the
+     * content type header.
+     */
+    public static void encodeIntoBody(Message camelMessage, WonMessage message, boolean binary) {
+        camelMessage.setHeader(CONTENT_TYPE_HEADER, contentType(binary));
+        camelMessage.setBody(encode(message, binary));
+    }
+
+    public static String contentType(boolean binary) {
+        return (binary ? BINARY_LANG : TEXT_LANG).getContentType().getContentType();
+    }
+
+    private static Object encode(WonMessage message, boolean binary) {
+        if (!binary) {
+            return WonMessageEncoder.encode(message, TEXT_LANG);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        RDFDataMgr.write(out, message.getCompleteDataset(), BINARY_LANG);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes the message found in the body of the specified camel message, taking
+     * into account the content type header.
+     *
+     * @return the message or null if the body is empty
+     */
+    public static WonMessage decodeFromBody(Message camelMessage) {
+        return decode(camelMessage.getBody(), camelMessage.getHeader(CONTENT_TYPE_HEADER, String.class));
+    }
+
+    /**
+     * Decodes a message body.
+     *
+     * @param body a <code>byte[]</code>, an <code>InputStream</code>, a
+     * <code>BytesMessage</code> or text
+     * @param contentType the content type of the body, null if the body is TriG
+     * @return the message or null if the body is empty
+     */
+    public static WonMessage decode(Object body, String contentType) {
+        if (body == null) {
+            return null;
+        }
+        Lang lang = getLang(contentType);
+        Dataset dataset = DatasetFactory.createGeneral();
+        if (body instanceof byte[]) {
+            byte[] bytes = (byte[]) body;
+            if (bytes.length == 0) {
+                return null;
+            }
+            RDFDataMgr.read(dataset, new ByteArrayInputStream(bytes), lang);
+        } else if (body instanceof InputStream) {
+            RDFDataMgr.read(dataset, (InputStream) body, lang);
+        } else if (body instanceof BytesMessage) {
+            RDFDataMgr.read(dataset, new BytesMessageInputStream((BytesMessage) body), lang);
+        } else {
+            String text = body.toString();
+            if (text.trim().isEmpty()) {
+                return null;
+            }
+            RDFDataMgr.read(dataset, new StringReader(text), null, lang);
+        }
+        return WonMessage.of(dataset);
+    }
+
+    private static Lang getLang(String contentType) {
+        if (contentType == null) {
+            return TEXT_LANG;
+        }
+        Lang lang = RDFLanguages.contentTypeToLang(contentType);
+        if (lang == null) {
+            throw new WonMessageProcessingException("Cannot decode message with content type " + contentType);
+        }
+        return lang;
+    }
+
+    /**
+     * Reads the body of a <code>BytesMessage</code> without copying it to an array
+     * first.
+     */
+    private static class BytesMessageInputStream extends InputStream {
+        private final BytesMessage message;
+
+        public BytesMessageInputStream(BytesMessage message) {
+            this.message = message;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                if (off == 0) {
+                    return message.readBytes(b, len);
+                }
+                byte[] buffer = new byte[len];
+                int read = message.readBytes(buffer, len);
+                if (read > 0) {
+                    System.arraycopy(buffer, 0, b, off, read);
+                }
+                return read;
+            } catch (JMSException e) {
+                throw new IOException("could not read JMS message body", e);
+            }
+        }
+    }
+}
@@ -17,6 +17,8 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.Query;
@@ -33,6 +35,7 @@ import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.rdf.model.impl.ResourceImpl;
 import org.apache.jena.tdb.TDB;
@@ -52,7 +55,11 @@ import won.protocol.vocabulary.WONMSG;
 /**
  * Wraps an RDF dataset representing a WoN message.
  * <p>
- * Note: this implementation is not thread-safe.
+ * The properties of the message in its envelope are read once into an immutable
+ * header, so the getters for them do not lock and do not query the envelope
+ * graph. The header is re-read after the envelope is changed through one of the
+ * addMessageProperty methods. Changing the underlying dataset in other ways is
+ * not supported.
  */
 public class WonMessage implements Serializable {
     public static final String SIGNATURE_URI_SUFFIX = "#signature";
@@ -64,25 +71,12 @@ public class WonMessage implements Serializable {
     // private URI messageEventURI;
     private List<String> envelopeGraphNames;
     private URI outerEnvelopeGraphURI;
-    private Model envelopeGraph;
-    private URI messageURI;
-    private WonMessageType messageType; // ConnectMessage, CreateMessage, AtomStateMessage
-    private WonMessageDirection envelopeType;
-    private URI connectionURI;
-    private URI atomURI;
-    private URI senderSocketURI;
-    private URI recipientSocketURI;
-    private URI hintTargetAtomURI;
-    private URI hintTargetSocketURI;
-    private Double hintScore;
-    private List<URI> previousMessages = null;
-    private List<URI> injectIntoConnections = null;
-    private URI isResponseToMessageURI;
-    private URI isRemoteResponseToMessageURI;
-    private List<String> contentGraphNames;
-    private WonMessageType respondingToMessageType;
+    private volatile Model envelopeGraph;
+    private volatile URI messageURI;
+    // properties of the message resource in the envelope, read in one pass and
+    // replaced when the envelope is modified through this object
+    private volatile EnvelopeHeader header;
     private URI correspondingRemoteMessageURI;
-    private List<URI> forwardedMessageURIs;
     private List<AttachmentHolder> attachmentHolders;
     private Map<String, Resource> graphSignatures;
     private Optional<WonMessage> deliveryChain = Optional.empty();
@@ -474,7 +468,10 @@ public class WonMessage implements Serializable {
             logger.debug("adding property {}, value {}, to message {} in envelope {}",
                             new Object[] { property, value, getMessageURI(), getEnvelopeURI() });
         }
-        getEnvelopeGraph().getResource(getMessageURI().toString()).addProperty(property, value);
+        synchronized (headMessage) {
+            getEnvelopeGraph().getResource(getMessageURI().toString()).addProperty(property, value);
+            headMessage.header = null;
+        }
     }
 
     public synchronized void addMessagePropertiesRDFNode(Property property, Collection<RDFNode> values) {
@@ -485,8 +482,11 @@ public class WonMessage implements Serializable {
             logger.debug("adding property {}, values {}, to message {} in envelope {}",
                             new Object[] { property, values, getMessageURI(), getEnvelopeURI() });
         }
-        Resource msg = getEnvelopeGraph().getResource(getMessageURI().toString());
-        values.forEach(v -> msg.addProperty(property, v));
+        synchronized (headMessage) {
+            Resource msg = getEnvelopeGraph().getResource(getMessageURI().toString());
+            values.forEach(v -> msg.addProperty(property, v));
+            headMessage.header = null;
+        }
     }
 
     /**
@@ -672,18 +672,36 @@ public class WonMessage implements Serializable {
         return newAttachmentHolders;
     }
 
-    private synchronized Model getEnvelopeGraph() {
-        if (headMessage.envelopeGraph != null) {
-            return headMessage.envelopeGraph;
+    private Model getEnvelopeGraph() {
+        Model envelope = headMessage.envelopeGraph;
+        if (envelope != null) {
+            return envelope;
         }
-        headMessage.envelopeGraph = headMessage.completeDataset
-                        .getNamedModel(headMessage.getEnvelopeURI().toString());
-        if (headMessage.envelopeGraph == null) {
+        envelope = headMessage.completeDataset.getNamedModel(headMessage.getEnvelopeURI().toString());
+        if (envelope == null) {
             throw new WonMessageNotWellFormedException(
                             "Did not find required envelope graph '" + headMessage.getEnvelopeURI().toString()
                                             + "' in message dataset");
         }
-        return headMessage.envelopeGraph;
+        headMessage.envelopeGraph = envelope;
+        return envelope;
+    }
+
+    /**
+     * Returns the header of the head message, reading it from the envelope graph if
+     * this has not happened yet or the envelope was modified since.
+     */
+    private EnvelopeHeader getHeader() {
+        EnvelopeHeader current = headMessage.header;
+        if (current != null) {
+            return current;
+        }
+        synchronized (headMessage) {
+            if (headMessage.header == null) {
+                headMessage.header = new EnvelopeHeader(getEnvelopeGraph(), getMessageURI());
+            }
+            return headMessage.header;
+        }
     }
 
     @Deprecated
@@ -696,24 +714,18 @@ public class WonMessage implements Serializable {
         return model.contains(model.getResource(modelUri), RDF.type, WONMSG.EnvelopeGraph);
     }
 
-    public synchronized List<String> getContentGraphURIs() {
-        if (headMessage.contentGraphNames == null) {
-            Model env = getEnvelopeGraph();
-            headMessage.contentGraphNames = RdfUtils
-                            .getObjectStreamOfProperty(getEnvelopeGraph(), getMessageURIRequired(),
-                                            URI.create(WONMSG.content.getURI()), res -> res.asResource().getURI())
-                            .collect(Collectors.toList());
-        }
-        return Collections.unmodifiableList(headMessage.contentGraphNames);
+    public List<String> getContentGraphURIs() {
+        return getHeader().contentGraphNames;
     }
 
     private synchronized NodeIterator getContentGraphReferences(Model model, Resource envelopeGraphResource) {
         return model.listObjectsOfProperty(envelopeGraphResource, WONMSG.content);
     }
 
-    public synchronized URI getMessageURI() {
-        if (headMessage.messageURI == null) {
-            Dataset ds = headMessage.getCompleteDataset();
+    public URI getMessageURI() {
+        URI uri = headMessage.messageURI;
+        if (uri == null) {
+            Dataset ds = headMessage.completeDataset;
             if (ds == null) {
                 throw new WonMessageNotWellFormedException("No underlying dataset found");
             }
@@ -723,12 +735,13 @@ public class WonMessage implements Serializable {
                                 "Underlying dataset is expected to contain named graphs, but none were found");
             }
             String graphURI = it.next();
-            headMessage.messageURI = WonMessageUtils.stripFragment(URI.create(graphURI));
+            uri = WonMessageUtils.stripFragment(URI.create(graphURI));
+            headMessage.messageURI = uri;
         }
-        return headMessage.messageURI;
+        return uri;
     }
 
-    public synchronized URI getMessageURIRequired() {
+    public URI getMessageURIRequired() {
         URI ret = getMessageURI();
         if (ret == null) {
             throw new IllegalStateException("Could not determine message URI");
@@ -736,15 +749,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized WonMessageType getMessageType() {
-        if (headMessage.messageType == null) {
-            URI type = getEnvelopePropertyURIValue(WONMSG.messageType);
-            headMessage.messageType = WonMessageType.getWonMessageType(type);
-        }
-        return headMessage.messageType;
+    public WonMessageType getMessageType() {
+        return getHeader().messageType;
     }
 
-    public synchronized WonMessageType getMessageTypeRequired() {
+    public WonMessageType getMessageTypeRequired() {
         WonMessageType ret = getMessageType();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.messageType);
@@ -752,17 +761,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized WonMessageDirection getEnvelopeType() {
-        if (headMessage.envelopeType == null) {
-            URI type = getEnvelopePropertyURIValue(RDF.type);
-            if (type != null) {
-                headMessage.envelopeType = WonMessageDirection.getWonMessageDirection(type);
-            }
-        }
-        return headMessage.envelopeType;
+    public WonMessageDirection getEnvelopeType() {
+        return getHeader().direction;
     }
 
-    public synchronized WonMessageDirection getEnvelopeTypeRequired() {
+    public WonMessageDirection getEnvelopeTypeRequired() {
         WonMessageDirection ret = getEnvelopeType();
         if (ret == null) {
             throw new MissingMessagePropertyException(RDF.type);
@@ -770,14 +773,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getConnectionURI() {
-        if (headMessage.connectionURI == null) {
-            headMessage.connectionURI = getEnvelopePropertyURIValue(WONMSG.connection);
-        }
-        return headMessage.connectionURI;
+    public URI getConnectionURI() {
+        return getEnvelopePropertyURIValue(WONMSG.connection);
     }
 
-    public synchronized URI getConnectionURIRequired() {
+    public URI getConnectionURIRequired() {
         URI ret = getConnectionURI();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.connection);
@@ -785,14 +785,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getAtomURI() {
-        if (headMessage.atomURI == null) {
-            headMessage.atomURI = getEnvelopePropertyURIValue(WONMSG.atom);
-        }
-        return headMessage.atomURI;
+    public URI getAtomURI() {
+        return getEnvelopePropertyURIValue(WONMSG.atom);
     }
 
-    public synchronized URI getAtomURIRequired() {
+    public URI getAtomURIRequired() {
         URI ret = getAtomURI();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.atom);
@@ -800,14 +797,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getSenderSocketURI() {
-        if (headMessage.senderSocketURI == null) {
-            headMessage.senderSocketURI = getEnvelopePropertyURIValue(WONMSG.senderSocket);
-        }
-        return headMessage.senderSocketURI;
+    public URI getSenderSocketURI() {
+        return getEnvelopePropertyURIValue(WONMSG.senderSocket);
     }
 
-    public synchronized URI getSenderSocketURIRequired() {
+    public URI getSenderSocketURIRequired() {
         URI senderSocketUri = getSenderSocketURI();
         if (senderSocketUri == null) {
             throw new MissingMessagePropertyException(WONMSG.senderSocket);
@@ -815,7 +809,7 @@ public class WonMessage implements Serializable {
         return senderSocketUri;
     }
 
-    public synchronized URI getSenderAtomURI() {
+    public URI getSenderAtomURI() {
         URI atomURI = headMessage.getAtomURI();
         if (atomURI != null) {
             return atomURI;
@@ -827,7 +821,7 @@ public class WonMessage implements Serializable {
         return null;
     }
 
-    public synchronized URI getSenderAtomURIRequired() {
+    public URI getSenderAtomURIRequired() {
         URI ret = getSenderAtomURI();
         if (ret == null) {
             throw new WonMessageProcessingException("Could not determine sender atom URI");
@@ -835,7 +829,7 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getSenderNodeURI() {
+    public URI getSenderNodeURI() {
         URI atomURI = getSenderAtomURI();
         if (atomURI != null) {
             return WonMessageUtils.stripAtomSuffix(atomURI);
@@ -843,7 +837,7 @@ public class WonMessage implements Serializable {
         return null;
     }
 
-    public synchronized URI getSenderNodeURIRequired() {
+    public URI getSenderNodeURIRequired() {
         URI atomURI = getSenderAtomURIRequired();
         if (atomURI != null) {
             return WonMessageUtils.stripAtomSuffix(atomURI);
@@ -851,14 +845,11 @@ public class WonMessage implements Serializable {
         throw new WonMessageProcessingException("Could not determine sender node URI");
     }
 
-    public synchronized URI getRecipientSocketURI() {
-        if (headMessage.recipientSocketURI == null) {
-            headMessage.recipientSocketURI = getEnvelopePropertyURIValue(WONMSG.recipientSocket);
-        }
-        return headMessage.recipientSocketURI;
+    public URI getRecipientSocketURI() {
+        return getEnvelopePropertyURIValue(WONMSG.recipientSocket);
     }
 
-    public synchronized URI getRecipientSocketURIRequired() {
+    public URI getRecipientSocketURIRequired() {
         URI recipientSocketUri = getRecipientSocketURI();
         if (recipientSocketUri == null) {
             throw new MissingMessagePropertyException(WONMSG.recipientSocket);
@@ -866,7 +857,7 @@ public class WonMessage implements Serializable {
         return recipientSocketUri;
     }
 
-    public synchronized URI getRecipientAtomURI() {
+    public URI getRecipientAtomURI() {
         URI atomURI = headMessage.getAtomURI();
         if (atomURI != null) {
             return atomURI;
@@ -878,7 +869,7 @@ public class WonMessage implements Serializable {
         return null;
     }
 
-    public synchronized URI getRecipientAtomURIRequired() {
+    public URI getRecipientAtomURIRequired() {
         URI ret = getRecipientAtomURI();
         if (ret == null) {
             throw new WonMessageProcessingException("Could not determine recipient atom URI");
@@ -886,7 +877,7 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getRecipientNodeURI() {
+    public URI getRecipientNodeURI() {
         URI atomURI = getRecipientAtomURI();
         if (atomURI != null) {
             return WonMessageUtils.stripAtomSuffix(atomURI);
@@ -894,7 +885,7 @@ public class WonMessage implements Serializable {
         return null;
     }
 
-    public synchronized URI getRecipientNodeURIRequired() {
+    public URI getRecipientNodeURIRequired() {
         URI atomURI = getRecipientAtomURIRequired();
         if (atomURI != null) {
             return WonMessageUtils.stripAtomSuffix(atomURI);
@@ -902,14 +893,11 @@ public class WonMessage implements Serializable {
         throw new WonMessageProcessingException("Could not determine recipient node URI");
     }
 
-    public synchronized URI getHintTargetSocketURI() {
-        if (headMessage.hintTargetSocketURI == null) {
-            headMessage.hintTargetSocketURI = getEnvelopePropertyURIValue(WONMSG.hintTargetSocket);
-        }
-        return headMessage.hintTargetSocketURI;
+    public URI getHintTargetSocketURI() {
+        return getEnvelopePropertyURIValue(WONMSG.hintTargetSocket);
     }
 
-    public synchronized URI getHintTargetSocketURIRequired() {
+    public URI getHintTargetSocketURIRequired() {
         URI ret = getHintTargetSocketURI();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.hintTargetSocket);
@@ -917,14 +905,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getHintTargetAtomURI() {
-        if (headMessage.hintTargetAtomURI == null) {
-            headMessage.hintTargetAtomURI = getEnvelopePropertyURIValue(WONMSG.hintTargetAtom);
-        }
-        return headMessage.hintTargetAtomURI;
+    public URI getHintTargetAtomURI() {
+        return getEnvelopePropertyURIValue(WONMSG.hintTargetAtom);
     }
 
-    public synchronized URI getHintTargetAtomURIRequired() {
+    public URI getHintTargetAtomURIRequired() {
         URI ret = getHintTargetAtomURI();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.hintTargetAtom);
@@ -932,15 +917,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized Double getHintScore() {
-        if (headMessage.hintScore == null) {
-            headMessage.hintScore = getEnvelopePropertyValue(WONMSG.hintScore,
-                            x -> x.isLiteral() ? x.asLiteral().getDouble() : null);
-        }
-        return headMessage.hintScore;
+    public Double getHintScore() {
+        return getEnvelopePropertyValue(WONMSG.hintScore, x -> x.isLiteral() ? x.asLiteral().getDouble() : null);
     }
 
-    public synchronized Double getHintScoreRequired() {
+    public Double getHintScoreRequired() {
         Double ret = getHintScore();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.hintScore);
@@ -948,14 +929,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized List<URI> getInjectIntoConnectionURIs() {
-        if (headMessage.injectIntoConnections == null) {
-            headMessage.injectIntoConnections = getEnvelopePropertyURIValues(WONMSG.injectIntoConnection);
-        }
-        return headMessage.injectIntoConnections;
+    public List<URI> getInjectIntoConnectionURIs() {
+        return getEnvelopePropertyURIValues(WONMSG.injectIntoConnection);
     }
 
-    public synchronized List<URI> getInjectIntoConnectionURIsRequired() {
+    public List<URI> getInjectIntoConnectionURIsRequired() {
         List<URI> ret = getInjectIntoConnectionURIs();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.injectIntoConnection);
@@ -963,14 +941,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized List<URI> getPreviousMessageURIs() {
-        if (headMessage.previousMessages == null) {
-            headMessage.previousMessages = getEnvelopePropertyURIValues(WONMSG.previousMessage);
-        }
-        return headMessage.previousMessages;
+    public List<URI> getPreviousMessageURIs() {
+        return getEnvelopePropertyURIValues(WONMSG.previousMessage);
     }
 
-    public synchronized List<URI> getPreviousMessageURIsRequired() {
+    public List<URI> getPreviousMessageURIsRequired() {
         List<URI> ret = getPreviousMessageURIs();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.previousMessage);
@@ -978,14 +953,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getRespondingToMessageURI() {
-        if (headMessage.isResponseToMessageURI == null) {
-            headMessage.isResponseToMessageURI = getEnvelopePropertyURIValue(WONMSG.respondingTo);
-        }
-        return headMessage.isResponseToMessageURI;
+    public URI getRespondingToMessageURI() {
+        return getEnvelopePropertyURIValue(WONMSG.respondingTo);
     }
 
-    public synchronized URI getRespondingToMessageURIRequired() {
+    public URI getRespondingToMessageURIRequired() {
         URI ret = getRespondingToMessageURI();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.respondingTo);
@@ -993,14 +965,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized List<URI> getForwardedMessageURIs() {
-        if (headMessage.forwardedMessageURIs == null) {
-            headMessage.forwardedMessageURIs = getEnvelopePropertyURIValues(WONMSG.forwardedMessage);
-        }
-        return headMessage.forwardedMessageURIs;
+    public List<URI> getForwardedMessageURIs() {
+        return getEnvelopePropertyURIValues(WONMSG.forwardedMessage);
     }
 
-    public synchronized List<URI> getForwardedMessageURIRequired() {
+    public List<URI> getForwardedMessageURIRequired() {
         List<URI> ret = getForwardedMessageURIs();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.forwardedMessage);
@@ -1008,17 +977,11 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized WonMessageType getRespondingToMessageType() {
-        if (headMessage.respondingToMessageType == null) {
-            URI typeURI = getEnvelopePropertyURIValue(WONMSG.respondingToMessageType);
-            if (typeURI != null) {
-                headMessage.respondingToMessageType = WonMessageType.getWonMessageType(typeURI);
-            }
-        }
-        return headMessage.respondingToMessageType;
+    public WonMessageType getRespondingToMessageType() {
+        return getHeader().respondingToMessageType;
     }
 
-    public synchronized WonMessageType getRespondingToMessageTypeRequired() {
+    public WonMessageType getRespondingToMessageTypeRequired() {
         WonMessageType ret = getRespondingToMessageType();
         if (ret == null) {
             throw new MissingMessagePropertyException(WONMSG.respondingToMessageType);
@@ -1026,64 +989,29 @@ public class WonMessage implements Serializable {
         return ret;
     }
 
-    public synchronized URI getEnvelopePropertyURIValue(URI propertyURI) {
-        Property property = headMessage.completeDataset.getDefaultModel().createProperty(propertyURI.toString());
-        return getEnvelopePropertyURIValue(property);
-    }
-
-    public synchronized URI getEnvelopePropertyURIValue(Property property) {
-        Model currentEnvelope = getEnvelopeGraph();
-        URI currentEnvelopeUri = getEnvelopeURI();
-        // TODO would make sense to order envelope graphs in order from container to
-        // containee in the first place,
-        // if proper done, we should avoid ending up in infinite loop if someone sends
-        // us malformed envelopes that
-        // contain-in-other circular...
-        if (currentEnvelope != null) {
-            URI currentMessageURI = getMessageURI();
-            StmtIterator it = currentEnvelope.listStatements(currentEnvelope.getResource(currentMessageURI.toString()),
-                            property, (RDFNode) null);
-            if (it.hasNext()) {
-                return URI.create(it.nextStatement().getObject().asResource().toString());
-            }
-        }
-        return null;
+    public URI getEnvelopePropertyURIValue(URI propertyURI) {
+        return getEnvelopePropertyURIValue(NodeFactory.createURI(propertyURI.toString()));
     }
 
-    public synchronized <T> T getEnvelopePropertyValue(Property property, Function<RDFNode, T> mapper) {
-        Model currentEnvelope = getEnvelopeGraph();
-        URI currentEnvelopeUri = getEnvelopeURI();
-        // TODO would make sense to order envelope graphs in order from container to
-        // containee in the first place,
-        // if proper done, we should avoid ending up in infinite loop if someone sends
-        // us malformed envelopes that
-        // contain-in-other circular...
-        if (currentEnvelope != null) {
-            URI currentMessageURI = getMessageURI();
-            StmtIterator it = currentEnvelope.listStatements(currentEnvelope.getResource(currentMessageURI.toString()),
-                            property, (RDFNode) null);
-            if (it.hasNext()) {
-                return mapper.apply(it.nextStatement().getObject());
-            }
-        }
-        return null;
+    public URI getEnvelopePropertyURIValue(Property property) {
+        return getEnvelopePropertyURIValue(property.asNode());
     }
 
-    private synchronized List<URI> getEnvelopePropertyURIValues(Property property) {
-        List<URI> values = new ArrayList<>();
-        Model currentEnvelope = getEnvelopeGraph();
-        URI currentEnvelopeUri = getEnvelopeURI();
-        // TODO would make sense to order envelope graphs in order from container to
-        // containee in the first place
-        if (currentEnvelope != null) {
-            URI currentMessageURI = getMessageURI();
-            StmtIterator it = currentEnvelope.listStatements(currentEnvelope.getResource(currentMessageURI.toString()),
-                            property, (RDFNode) null);
-            while (it.hasNext()) {
-                values.add(URI.create(it.nextStatement().getObject().asResource().toString()));
-            }
+    private URI getEnvelopePropertyURIValue(Node property) {
+        List<URI> values = getHeader().getURIValues(property);
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    public <T> T getEnvelopePropertyValue(Property property, Function<RDFNode, T> mapper) {
+        List<RDFNode> values = getHeader().values.get(property.asNode());
+        if (values == null) {
+            return null;
         }
-        return values;
+        return mapper.apply(values.get(0));
+    }
+
+    private List<URI> getEnvelopePropertyURIValues(Property property) {
+        return getHeader().getURIValues(property.asNode());
     }
 
     private void addIfPresent(List<Object> values, List<String> labels, Object value, String label) {
@@ -1152,6 +1080,75 @@ public class WonMessage implements Serializable {
         return sb.toString();
     }
 
+    /**
+     * Immutable snapshot of the properties of the message resource in the envelope
+     * graph, read in one pass over the graph.
+     */
+    private static class EnvelopeHeader {
+        private final Map<Node, List<RDFNode>> values = new HashMap<>();
+        // URI values of the properties whose values are all resources
+        private final Map<Node, List<URI>> uriValues = new HashMap<>();
+        private final WonMessageType messageType;
+        private final WonMessageDirection direction;
+        private final WonMessageType respondingToMessageType;
+        private final List<String> contentGraphNames;
+
+        EnvelopeHeader(Model envelope, URI messageURI) {
+            StmtIterator it = envelope.listStatements(envelope.getResource(messageURI.toString()), null,
+                            (RDFNode) null);
+            while (it.hasNext()) {
+                Statement stmt = it.nextStatement();
+                values.computeIfAbsent(stmt.getPredicate().asNode(), p -> new ArrayList<>()).add(stmt.getObject());
+            }
+            for (Map.Entry<Node, List<RDFNode>> entry : values.entrySet()) {
+                try {
+                    uriValues.put(entry.getKey(), Collections.unmodifiableList(toURIs(entry.getValue())));
+                } catch (RuntimeException e) {
+                    // not convertible, converting again on access will throw
+                }
+            }
+            URI type = getFirstURIValue(WONMSG.messageType.asNode());
+            this.messageType = type == null ? null : WonMessageType.getWonMessageType(type);
+            URI respondingToType = getFirstURIValue(WONMSG.respondingToMessageType.asNode());
+            this.respondingToMessageType = respondingToType == null ? null
+                            : WonMessageType.getWonMessageType(respondingToType);
+            WonMessageDirection foundDirection = null;
+            for (URI rdfType : uriValues.getOrDefault(RDF.type.asNode(), Collections.emptyList())) {
+                foundDirection = WonMessageDirection.getWonMessageDirection(rdfType);
+                if (foundDirection != null) {
+                    break;
+                }
+            }
+            this.direction = foundDirection;
+            this.contentGraphNames = Collections.unmodifiableList(values
+                            .getOrDefault(WONMSG.content.asNode(), Collections.emptyList()).stream()
+                            .filter(RDFNode::isURIResource).map(node -> node.asResource().getURI())
+                            .collect(Collectors.toList()));
+        }
+
+        List<URI> getURIValues(Node property) {
+            List<URI> uris = uriValues.get(property);
+            if (uris != null) {
+                return uris;
+            }
+            List<RDFNode> objects = values.get(property);
+            if (objects == null) {
+                return Collections.emptyList();
+            }
+            return toURIs(objects);
+        }
+
+        private URI getFirstURIValue(Node property) {
+            List<URI> uris = uriValues.get(property);
+            return uris == null || uris.isEmpty() ? null : uris.get(0);
+        }
+
+        private static List<URI> toURIs(List<RDFNode> objects) {
+            return objects.stream().map(node -> URI.create(node.asResource().toString()))
+                            .collect(Collectors.toList());
+        }
+    }
+
     private static class ToStringForDebugUtils {
         private static String indent = "    ";
         private static int INDENT_LENGTH = indent.length();
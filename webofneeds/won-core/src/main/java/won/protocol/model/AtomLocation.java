@@ -0,0 +1,81 @@
+package won.protocol.model;
+
+import java.net.URI;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Spatial index entry of an atom: the coordinates of the atom's location and
+ * job location (schema:location and schema:jobLocation), extracted from the
+ * atom content whenever it is stored. Either or both may be null. Atoms are
+ * looked up by a bounding box on the coordinates, see
+ * {@link won.protocol.repository.AtomLocationRepository}.
+ */
+@Entity
+@Table(name = "atom_location", indexes = {
+                @Index(name = "IDX_AL_UNIQUE_ATOM_URI", columnList = "atomURI", unique = true),
+                @Index(name = "IDX_AL_LOCATION", columnList = "latitude, longitude"),
+                @Index(name = "IDX_AL_JOB_LOCATION", columnList = "job_latitude, job_longitude") })
+public class AtomLocation {
+    @Id
+    @GeneratedValue
+    @Column(name = "id")
+    private Long id;
+    @Column(name = "atomURI", nullable = false)
+    @Convert(converter = URIConverter.class)
+    private URI atomURI;
+    @Column(name = "latitude")
+    private Double latitude;
+    @Column(name = "longitude")
+    private Double longitude;
+    @Column(name = "job_latitude")
+    private Double jobLatitude;
+    @Column(name = "job_longitude")
+    private Double jobLongitude;
+
+    public AtomLocation() {
+    }
+
+    public AtomLocation(URI atomURI) {
+        this.atomURI = atomURI;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public URI getAtomURI() {
+        return atomURI;
+    }
+
+    public Coordinate getLocation() {
+        return toCoordinate(latitude, longitude);
+    }
+
+    public void setLocation(Coordinate location) {
+        this.latitude = location == null ? null : (double) location.getLatitude();
+        this.longitude = location == null ? null : (double) location.getLongitude();
+    }
+
+    public Coordinate getJobLocation() {
+        return toCoordinate(jobLatitude, jobLongitude);
+    }
+
+    public void setJobLocation(Coordinate jobLocation) {
+        this.jobLatitude = jobLocation == null ? null : (double) jobLocation.getLatitude();
+        this.jobLongitude = jobLocation == null ? null : (double) jobLocation.getLongitude();
+    }
+
+    private static Coordinate toCoordinate(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+        return new Coordinate(latitude.floatValue(), longitude.floatValue());
+    }
+}
@@ -0,0 +1,72 @@
+package won.protocol.model;
+
+/**
+ * Latitude/longitude box that contains a search circle, used to narrow down the
+ * candidates of a location search before the actual distance is checked. If the
+ * circle covers a pole or crosses the antimeridian, the box spans all
+ * longitudes.
+ */
+public class BoundingBox {
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    public BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * @param center center of the search circle
+     * @param radius radius of the search circle in meters
+     */
+    public static BoundingBox around(Coordinate center, double radius) {
+        double latitudeDelta = Math.toDegrees(radius / Coordinate.EARTH_RADIUS);
+        double minLatitude = center.getLatitude() - latitudeDelta;
+        double maxLatitude = center.getLatitude() + latitudeDelta;
+        if (minLatitude <= -90 || maxLatitude >= 90) {
+            // the circle covers a pole
+            return new BoundingBox(Math.max(-90, minLatitude), Math.min(90, maxLatitude), -180, 180);
+        }
+        // the circle is widest north of the center on the northern hemisphere, so
+        // the longitude delta is larger than radius / cos(latitude)
+        double longitudeDelta = Math.toDegrees(Math.asin(Math.sin(radius / Coordinate.EARTH_RADIUS)
+                        / Math.cos(Math.toRadians(center.getLatitude()))));
+        double minLongitude = center.getLongitude() - longitudeDelta;
+        double maxLongitude = center.getLongitude() + longitudeDelta;
+        if (minLongitude <= -180 || maxLongitude >= 180) {
+            // the circle crosses the antimeridian
+            return new BoundingBox(minLatitude, maxLatitude, -180, 180);
+        }
+        return new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+    }
+
+    public boolean contains(Coordinate coordinate) {
+        return coordinate.getLatitude() >= minLatitude && coordinate.getLatitude() <= maxLatitude
+                        && coordinate.getLongitude() >= minLongitude && coordinate.getLongitude() <= maxLongitude;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox [" + minLatitude + ".." + maxLatitude + ", " + minLongitude + ".." + maxLongitude + "]";
+    }
+}
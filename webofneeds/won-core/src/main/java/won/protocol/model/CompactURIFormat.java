@@ -0,0 +1,153 @@
+package won.protocol.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Compact binary format for the sets and maps of URIs stored in message
+ * containers. It replaces the Java serialization used before, which is
+ * recognized by its stream header so that old rows can still be read.
+ * <p>
+ * Layout (version 1): the bytes 'W' 'U', the version byte, the prefix shared by
+ * all URIs and then the entries, whose layout is defined by the converter.
+ * Strings are written as a varint length followed by UTF-8 bytes, URIs as the
+ * string following the shared prefix, and numbers as varints.
+ */
+final class CompactURIFormat {
+    private static final byte MAGIC_0 = 'W';
+    private static final byte MAGIC_1 = 'U';
+    static final byte VERSION = 1;
+    // first two bytes of a java serialization stream
+    private static final byte LEGACY_MAGIC_0 = (byte) 0xAC;
+    private static final byte LEGACY_MAGIC_1 = (byte) 0xED;
+
+    private CompactURIFormat() {
+    }
+
+    static boolean isLegacyFormat(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == LEGACY_MAGIC_0 && data[1] == LEGACY_MAGIC_1;
+    }
+
+    static Object readLegacy(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return ois.readObject();
+        }
+    }
+
+    static class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final String prefix;
+
+        /**
+         * @param uris all URIs that will be written, used for determining the shared
+         * prefix
+         */
+        Writer(Iterator<URI> uris) {
+            this.prefix = commonPrefix(uris);
+            out.write(MAGIC_0);
+            out.write(MAGIC_1);
+            out.write(VERSION);
+            writeString(prefix);
+        }
+
+        void writeURI(URI uri) {
+            writeString(uri.toString().substring(prefix.length()));
+        }
+
+        void writeInt(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Cannot write negative value " + value);
+            }
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private static String commonPrefix(Iterator<URI> uris) {
+            if (!uris.hasNext()) {
+                return "";
+            }
+            String prefix = uris.next().toString();
+            while (uris.hasNext() && !prefix.isEmpty()) {
+                String uri = uris.next().toString();
+                int i = 0;
+                int max = Math.min(prefix.length(), uri.length());
+                while (i < max && prefix.charAt(i) == uri.charAt(i)) {
+                    i++;
+                }
+                prefix = prefix.substring(0, i);
+            }
+            // don't split a surrogate pair between prefix and suffix
+            if (!prefix.isEmpty() && Character.isHighSurrogate(prefix.charAt(prefix.length() - 1))) {
+                prefix = prefix.substring(0, prefix.length() - 1);
+            }
+            return prefix;
+        }
+    }
+
+    static class Reader {
+        private final ByteBuffer buffer;
+        private final String prefix;
+
+        Reader(byte[] data) {
+            if (data.length < 3 || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+                throw new IllegalArgumentException("Data is not in the compact URI format");
+            }
+            if (data[2] != VERSION) {
+                throw new IllegalArgumentException("Unsupported compact URI format version " + data[2]);
+            }
+            this.buffer = ByteBuffer.wrap(data, 3, data.length - 3);
+            this.prefix = readString();
+        }
+
+        URI readURI() {
+            return URI.create(prefix + readString());
+        }
+
+        int readInt() {
+            try {
+                int value = 0;
+                for (int shift = 0; shift < 32; shift += 7) {
+                    byte b = buffer.get();
+                    value |= (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) {
+                        return value;
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Unexpected end of data", e);
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private String readString() {
+            int length = readInt();
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Unexpected end of data");
+            }
+            String result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                            StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return result;
+        }
+    }
+}
@@ -4,6 +4,7 @@ package won.protocol.model;
  * Created by hfriedrich on 12.04.2017.
  */
 public class Coordinate {
+    public static final double EARTH_RADIUS = 6371000; // meters
     private float latitude;
     private float longitude;
 
@@ -20,6 +21,21 @@ public class Coordinate {
         return latitude;
     }
 
+    /**
+     * Calculates the great-circle distance to the other coordinate (haversine
+     * formula).
+     *
+     * @return the distance in meters
+     */
+    public double distanceTo(Coordinate other) {
+        double dLat = Math.toRadians(other.latitude - latitude);
+        double dLng = Math.toRadians(other.longitude - longitude);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(latitude))
+                        * Math.cos(Math.toRadians(other.latitude)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS * c;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
@@ -11,10 +11,13 @@
 package won.protocol.model;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.persistence.Column;
@@ -31,21 +34,26 @@ import javax.persistence.UniqueConstraint;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RiotException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import won.protocol.util.BinaryRdfUtils;
+
 /**
- * Encapsulates a jena dataset for storing it in a relational db.
+ * Encapsulates a jena dataset for storing it in a relational db. The dataset is
+ * stored in the format written by {@link BinaryRdfUtils}, which allows for
+ * decoding single graphs. Rows written in N-Quads (or TriG) are still readable
+ * and are converted to the binary format the next time they are written.
  */
 @Entity
 @Table(name = "rdf_datasets", uniqueConstraints = {
                 @UniqueConstraint(name = "IDX_UNIQUE_DATASET_URI", columnNames = { "datasetURI" })
 })
 public class DatasetHolder {
-    private static final int DEFAULT_BYTE_ARRAY_SIZE = 500;
     // the URI of the dataset
     @Id
     @GeneratedValue
@@ -65,6 +73,10 @@ public class DatasetHolder {
     // for multiple accesses to model, cache it.
     @Transient
     private Dataset cachedDataset;
+    // graphs decoded individually from the binary format, keyed by graph name
+    // ("" for the default graph)
+    @Transient
+    private Map<String, Model> cachedModels;
 
     DatasetHolder() {
     }
@@ -79,6 +91,7 @@ public class DatasetHolder {
     @PrePersist
     public void incrementVersion() {
         this.version++;
+        migrateLegacyFormat();
     }
 
     public Long getId() {
@@ -110,23 +123,33 @@ public class DatasetHolder {
     }
 
     void setDatasetBytes(final byte[] datasetBytes) {
-        this.datasetBytes = datasetBytes;
-        this.cachedDataset = null;
+        synchronized (this) {
+            this.datasetBytes = datasetBytes;
+            this.cachedDataset = null;
+            this.cachedModels = null;
+        }
     }
 
     /**
-     * Careful, expensive operation: writes dataset to string.
+     * Indicates whether the dataset is still stored as N-Quads (or TriG), i.e. in
+     * the format used before the binary format was introduced.
+     */
+    public boolean isLegacyFormat() {
+        return this.datasetBytes != null && !BinaryRdfUtils.isBinaryFormat(this.datasetBytes);
+    }
+
+    /**
+     * Careful, expensive operation: writes dataset to binary format.
      *
      * @param dataset
      */
     public void setDataset(Dataset dataset) {
         Objects.requireNonNull(this.uri);
         Objects.requireNonNull(dataset);
-        ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_BYTE_ARRAY_SIZE);
         synchronized (this) {
-            RDFDataMgr.write(out, dataset, Lang.NQUADS);
-            this.datasetBytes = out.toByteArray();
+            this.datasetBytes = BinaryRdfUtils.toBytes(dataset);
             this.cachedDataset = dataset;
+            this.cachedModels = null;
             if (logger.isDebugEnabled()) {
                 logger.debug("wrote dataset {} to byte array of length {}", this.uri, this.datasetBytes.length);
             }
@@ -134,7 +157,8 @@ public class DatasetHolder {
     }
 
     /**
-     * Careful, expensive operation: reads dataset from string.
+     * Careful, expensive operation: reads the whole dataset. If only some graphs
+     * are needed, use {@link #getNamedModel(String)} or {@link #getDefaultModel()}.
      *
      * @return
      */
@@ -146,24 +170,110 @@ public class DatasetHolder {
         synchronized (this) {
             if (this.cachedDataset != null)
                 return cachedDataset;
-            Dataset dataset = DatasetFactory.createGeneral();
-            InputStream is = new ByteArrayInputStream(this.datasetBytes);
-            try {
-                try {
-                    RDFDataMgr.read(dataset, is, this.uri.toString(), Lang.NQUADS);
-                } catch (RiotException ex) {
-                    // assume that the data is stored in TRIG old format, try that.
-                    is = new ByteArrayInputStream(this.datasetBytes);
-                    RDFDataMgr.read(dataset, is, Lang.TRIG);
-                }
-            } catch (Exception e) {
-                logger.warn("could not read dataset {} from byte array. Byte array is null: {}, has length {}",
-                                new Object[] { this.uri, this.datasetBytes == null,
-                                                this.datasetBytes == null ? -1 : this.datasetBytes.length });
-                logger.warn("caught exception while reading dataset", e);
+            Dataset dataset;
+            if (BinaryRdfUtils.isBinaryFormat(this.datasetBytes)) {
+                dataset = BinaryRdfUtils.readDataset(this.datasetBytes);
+            } else {
+                dataset = readLegacyFormat();
             }
             this.cachedDataset = dataset;
+            this.cachedModels = null;
             return dataset;
         }
     }
+
+    /**
+     * Returns the names of the named graphs in the dataset. Does not decode any
+     * graph if the dataset is stored in binary format.
+     */
+    public List<String> getGraphNames() {
+        Objects.requireNonNull(this.datasetBytes);
+        synchronized (this) {
+            if (this.cachedDataset == null && BinaryRdfUtils.isBinaryFormat(this.datasetBytes)) {
+                return BinaryRdfUtils.readGraphNames(this.datasetBytes);
+            }
+        }
+        List<String> names = new ArrayList<>();
+        getDataset().listNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    /**
+     * Returns the named graph with the specified name, decoding only that graph if
+     * possible.
+     *
+     * @return the graph or null if there is no such graph
+     */
+    public Model getNamedModel(String graphName) {
+        Objects.requireNonNull(graphName);
+        return getModel(graphName);
+    }
+
+    /**
+     * Returns the default graph, decoding only that graph if possible.
+     */
+    public Model getDefaultModel() {
+        return getModel(null);
+    }
+
+    private Model getModel(String graphName) {
+        Objects.requireNonNull(this.uri);
+        Objects.requireNonNull(this.datasetBytes);
+        synchronized (this) {
+            if (this.cachedDataset == null && BinaryRdfUtils.isBinaryFormat(this.datasetBytes)) {
+                if (this.cachedModels == null) {
+                    this.cachedModels = new HashMap<>();
+                }
+                String key = graphName == null ? "" : graphName;
+                if (!this.cachedModels.containsKey(key)) {
+                    this.cachedModels.put(key, graphName == null ? BinaryRdfUtils.readDefaultModel(this.datasetBytes)
+                                    : BinaryRdfUtils.readNamedModel(this.datasetBytes, graphName).orElse(null));
+                }
+                return this.cachedModels.get(key);
+            }
+        }
+        Dataset dataset = getDataset();
+        if (graphName == null) {
+            return dataset.getDefaultModel();
+        }
+        return dataset.containsNamedModel(graphName) ? dataset.getNamedModel(graphName) : null;
+    }
+
+    /**
+     * Rewrites datasets still stored in N-Quads/TriG in the binary format. Called
+     * before the holder is written, so old rows are migrated on their next write.
+     */
+    private void migrateLegacyFormat() {
+        if (this.uri == null || !isLegacyFormat()) {
+            return;
+        }
+        Dataset dataset = getDataset();
+        synchronized (this) {
+            this.datasetBytes = BinaryRdfUtils.toBytes(dataset);
+            if (logger.isDebugEnabled()) {
+                logger.debug("migrated dataset {} to binary format, new length: {}", this.uri,
+                                this.datasetBytes.length);
+            }
+        }
+    }
+
+    private Dataset readLegacyFormat() {
+        Dataset dataset = DatasetFactory.createGeneral();
+        InputStream is = new ByteArrayInputStream(this.datasetBytes);
+        try {
+            try {
+                RDFDataMgr.read(dataset, is, this.uri.toString(), Lang.NQUADS);
+            } catch (RiotException ex) {
+                // assume that the data is stored in TRIG old format, try that.
+                is = new ByteArrayInputStream(this.datasetBytes);
+                RDFDataMgr.read(dataset, is, Lang.TRIG);
+            }
+        } catch (Exception e) {
+            logger.warn("could not read dataset {} from byte array. Byte array is null: {}, has length {}",
+                            new Object[] { this.uri, this.datasetBytes == null,
+                                            this.datasetBytes == null ? -1 : this.datasetBytes.length });
+            logger.warn("caught exception while reading dataset", e);
+        }
+        return dataset;
+    }
 }
@@ -18,6 +18,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StopWatch;
 
+import won.protocol.util.BinaryRdfUtils;
+
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
@@ -31,10 +33,13 @@ import java.util.List;
  * the aggregate() function is called, all datasetHolders added so far are read
  * (via their getDatasetBytes() method) and an aggregated dataset is created.
  * All subsequent calls to aggregate just yield the already aggregated dataset.
+ * Datasets stored in the binary format are decoded one by one, those still
+ * stored as text are concatenated and parsed in one go.
  */
 public class DatasetHolderAggregator {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private List<InputStream> inputStreams;
+    private List<byte[]> binaryDatasets = new LinkedList<>();
     private Lang rdfLanguage;
     private static final Lang DEFAULT_RDF_LANGUAGE = Lang.NQUADS;
     private Dataset aggregatedDataset = null;
@@ -59,7 +64,12 @@ public class DatasetHolderAggregator {
     public void appendDataset(DatasetHolder datasetHolder) {
         if (this.aggregatedDataset != null)
             throw new IllegalStateException("Cannot append a dataset after the aggregate" + "() function was called");
-        this.inputStreams.add(new ByteArrayInputStream(datasetHolder.getDatasetBytes()));
+        byte[] datasetBytes = datasetHolder.getDatasetBytes();
+        if (BinaryRdfUtils.isBinaryFormat(datasetBytes)) {
+            this.binaryDatasets.add(datasetBytes);
+        } else {
+            this.inputStreams.add(new ByteArrayInputStream(datasetBytes));
+        }
     }
 
     public Dataset aggregate() {
@@ -76,7 +86,12 @@ public class DatasetHolderAggregator {
             logger.debug("init dataset: " + stopWatch.getLastTaskTimeMillis());
             stopWatch.start();
             this.aggregatedDataset = result;
+            for (byte[] binaryDataset : this.binaryDatasets) {
+                BinaryRdfUtils.readDataset(binaryDataset, result);
+            }
             if (this.inputStreams == null || this.inputStreams.size() == 0) {
+                stopWatch.stop();
+                logger.debug("read dataset: " + stopWatch.getLastTaskTimeMillis());
                 return this.aggregatedDataset;
             }
             RDFDataMgr.read(result,
@@ -0,0 +1,91 @@
+package won.protocol.model;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Map read from a database column that is only decoded when it is accessed. As
+ * long as it has not been accessed, the original bytes can be written back and
+ * compared without decoding.
+ */
+class LazyDecodedMap<K, V> extends AbstractMap<K, V> {
+    private final Function<byte[], Map<K, V>> decoder;
+    private byte[] data;
+    private Map<K, V> decoded;
+
+    LazyDecodedMap(byte[] data, Function<byte[], Map<K, V>> decoder) {
+        this.data = data;
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return the bytes the map was read from, or null if it has been decoded (and
+     * thus may have been modified)
+     */
+    synchronized byte[] getUndecodedData() {
+        return data;
+    }
+
+    private synchronized Map<K, V> get() {
+        if (decoded == null) {
+            decoded = decoder.apply(data);
+            data = null;
+        }
+        return decoded;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return get().entrySet();
+    }
+
+    @Override
+    public int size() {
+        return get().size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get().containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return get().get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return get().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return get().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        get().clear();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LazyDecodedMap) {
+            byte[] otherData = ((LazyDecodedMap<?, ?>) o).getUndecodedData();
+            byte[] ownData = getUndecodedData();
+            if (ownData != null && Arrays.equals(ownData, otherData)) {
+                return true;
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
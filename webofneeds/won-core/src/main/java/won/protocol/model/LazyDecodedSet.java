@@ -0,0 +1,86 @@
+package won.protocol.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Set read from a database column that is only decoded when it is accessed. As
+ * long as it has not been accessed, the original bytes can be written back and
+ * compared without decoding.
+ */
+class LazyDecodedSet<E> extends AbstractSet<E> {
+    private final Function<byte[], Set<E>> decoder;
+    private byte[] data;
+    private Set<E> decoded;
+
+    LazyDecodedSet(byte[] data, Function<byte[], Set<E>> decoder) {
+        this.data = data;
+        this.decoder = decoder;
+    }
+
+    /**
+     * @return the bytes the set was read from, or null if it has been decoded (and
+     * thus may have been modified)
+     */
+    synchronized byte[] getUndecodedData() {
+        return data;
+    }
+
+    private synchronized Set<E> get() {
+        if (decoded == null) {
+            decoded = decoder.apply(data);
+            data = null;
+        }
+        return decoded;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return get().iterator();
+    }
+
+    @Override
+    public int size() {
+        return get().size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return get().contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        return get().add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return get().remove(o);
+    }
+
+    @Override
+    public void clear() {
+        get().clear();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LazyDecodedSet) {
+            byte[] otherData = ((LazyDecodedSet<?>) o).getUndecodedData();
+            byte[] ownData = getUndecodedData();
+            if (ownData != null && Arrays.equals(ownData, otherData)) {
+                return true;
+            }
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -64,6 +64,17 @@ public abstract class MessageContainer implements VersionedEntity {
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "last_update", nullable = false, columnDefinition = "TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
     private Date lastUpdate = new Date();
+    // counters over the contained messages, excluding responses. Maintained by
+    // countMessage(), so unread information can be computed without aggregating
+    // over the messages
+    @Column(name = "message_count", columnDefinition = "bigint DEFAULT 0", nullable = false)
+    private long messageCount = 0;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "oldest_message_date")
+    private Date oldestMessageDate;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "newest_message_date")
+    private Date newestMessageDate;
 
     public MessageContainer() {
     }
@@ -109,6 +120,33 @@ public abstract class MessageContainer implements VersionedEntity {
         this.parentUri = parentUri;
     }
 
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public Date getOldestMessageDate() {
+        return oldestMessageDate;
+    }
+
+    public Date getNewestMessageDate() {
+        return newestMessageDate;
+    }
+
+    /**
+     * Updates the message counters for a new message with the specified creation
+     * date. Response messages must not be counted.
+     */
+    public synchronized void countMessage(Date creationDate) {
+        Objects.requireNonNull(creationDate);
+        this.messageCount++;
+        if (oldestMessageDate == null || creationDate.before(oldestMessageDate)) {
+            this.oldestMessageDate = creationDate;
+        }
+        if (newestMessageDate == null || creationDate.after(newestMessageDate)) {
+            this.newestMessageDate = creationDate;
+        }
+    }
+
     /**
      * Returns the set of unconfirmed message URIs, increments the counter for each
      * URI and removes the entries whose counts are now greater than
@@ -31,7 +31,8 @@ import won.protocol.model.parentaware.ParentAware;
                 @Index(name = "IDX_ME_PARENT_URI", columnList = "parentURI"),
                 @Index(name = "IDX_ME_PARENT_URI_MESSAGE_TYPE", columnList = "parentURI, messageType"),
                 @Index(name = "IDX_ME_PARENT_URI_REFERENCED_BY_OTHER_MESSAGE", columnList = "parentURI, referencedByOtherMessage"),
-                @Index(name = "IDX_ME_RECIPIENT_ATOM_URI", columnList = "messageURI, recipientAtomURI")
+                @Index(name = "IDX_ME_RECIPIENT_ATOM_URI", columnList = "messageURI, recipientAtomURI"),
+                @Index(name = "IDX_ME_PARENT_URI_CREATION_DATE", columnList = "parentURI, creationDate")
 }, uniqueConstraints = {
                 @UniqueConstraint(name = "IDX_ME_UNIQUE_MESSAGE_URI_PER_PARENT", columnNames = { "messageURI",
                                 "parentURI" }),
@@ -1,45 +1,72 @@
 package won.protocol.model;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.HashSet;
 import java.util.Set;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+/**
+ * Stores a set of {@link URICount}s in the {@link CompactURIFormat}: the number
+ * of entries followed by URI and count of each entry. Values written with Java
+ * serialization by earlier versions are still read, and are converted when they
+ * are written again. Decoding is deferred until the set is accessed.
+ */
 @Converter
 public class URICountSetConverter implements AttributeConverter<Set<URICount>, byte[]> {
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
     @Override
     public byte[] convertToDatabaseColumn(Set<URICount> attribute) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            ObjectOutputStream oos = new ObjectOutputStream(out);
-            oos.writeObject(attribute);
-        } catch (IOException e) {
-            logger.error("Cannot convert Set<URICount> to byte array", e);
+        if (attribute instanceof LazyDecodedSet) {
+            byte[] data = ((LazyDecodedSet<URICount>) attribute).getUndecodedData();
+            if (data != null && !CompactURIFormat.isLegacyFormat(data)) {
+                return data;
+            }
         }
-        return out.toByteArray();
+        return encode(attribute);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public Set<URICount> convertToEntityAttribute(byte[] data) {
-        ByteArrayInputStream in = new ByteArrayInputStream(data);
-        ObjectInputStream ois;
-        try {
-            ois = new ObjectInputStream(in);
-            return (Set<URICount>) ois.readObject();
-        } catch (Exception e) {
-            logger.error("Cannot convert byte array to Set<URICount>", e);
+        return new LazyDecodedSet<>(data, URICountSetConverter::decode);
+    }
+
+    /**
+     * Converts data in any supported format into the current format.
+     */
+    public static byte[] toCurrentFormat(byte[] data) {
+        return CompactURIFormat.isLegacyFormat(data) ? encode(decode(data)) : data;
+    }
+
+    public static boolean isLegacyFormat(byte[] data) {
+        return CompactURIFormat.isLegacyFormat(data);
+    }
+
+    static byte[] encode(Set<URICount> attribute) {
+        CompactURIFormat.Writer writer = new CompactURIFormat.Writer(
+                        attribute.stream().map(URICount::getUri).iterator());
+        writer.writeInt(attribute.size());
+        for (URICount uriCount : attribute) {
+            writer.writeURI(uriCount.getUri());
+            writer.writeInt(uriCount.getCount());
+        }
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Set<URICount> decode(byte[] data) {
+        if (CompactURIFormat.isLegacyFormat(data)) {
+            try {
+                return (Set<URICount>) CompactURIFormat.readLegacy(data);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Cannot convert byte array to Set<URICount>", e);
+            }
+        }
+        CompactURIFormat.Reader reader = new CompactURIFormat.Reader(data);
+        int size = reader.readInt();
+        Set<URICount> result = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(new URICount(reader.readURI(), reader.readInt()));
         }
-        return null;
+        return result;
     }
 }
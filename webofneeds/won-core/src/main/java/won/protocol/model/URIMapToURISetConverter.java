@@ -1,47 +1,87 @@
 package won.protocol.model;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+/**
+ * Stores a map from URIs to sets of URIs in the {@link CompactURIFormat}: the
+ * number of entries followed by the key, the size of the value set and its URIs
+ * for each entry. Values written with Java serialization by earlier versions
+ * are still read, and are converted when they are written again. Decoding is
+ * deferred until the map is accessed.
+ */
 @Converter
 public class URIMapToURISetConverter implements AttributeConverter<Map<URI, Set<URI>>, byte[]> {
-    private final Logger logger = LoggerFactory.getLogger(getClass());
-
     @Override
     public byte[] convertToDatabaseColumn(Map<URI, Set<URI>> attribute) {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            ObjectOutputStream oos = new ObjectOutputStream(out);
-            oos.writeObject(attribute);
-        } catch (IOException e) {
-            logger.error("Cannot convert Map<URI,Set<URI>> to byte array", e);
+        if (attribute instanceof LazyDecodedMap) {
+            byte[] data = ((LazyDecodedMap<URI, Set<URI>>) attribute).getUndecodedData();
+            if (data != null && !CompactURIFormat.isLegacyFormat(data)) {
+                return data;
+            }
         }
-        return out.toByteArray();
+        return encode(attribute);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public Map<URI, Set<URI>> convertToEntityAttribute(byte[] data) {
-        ByteArrayInputStream in = new ByteArrayInputStream(data);
-        ObjectInputStream ois;
-        try {
-            ois = new ObjectInputStream(in);
-            return (Map<URI, Set<URI>>) ois.readObject();
-        } catch (Exception e) {
-            logger.error("Cannot convert byte array to Map<URI,Set<URI>>", e);
+        return new LazyDecodedMap<>(data, URIMapToURISetConverter::decode);
+    }
+
+    /**
+     * Converts data in any supported format into the current format.
+     */
+    public static byte[] toCurrentFormat(byte[] data) {
+        return CompactURIFormat.isLegacyFormat(data) ? encode(decode(data)) : data;
+    }
+
+    public static boolean isLegacyFormat(byte[] data) {
+        return CompactURIFormat.isLegacyFormat(data);
+    }
+
+    static byte[] encode(Map<URI, Set<URI>> attribute) {
+        CompactURIFormat.Writer writer = new CompactURIFormat.Writer(attribute.entrySet().stream()
+                        .flatMap(e -> Stream.concat(Stream.of(e.getKey()), e.getValue().stream()))
+                        .iterator());
+        writer.writeInt(attribute.size());
+        for (Map.Entry<URI, Set<URI>> entry : attribute.entrySet()) {
+            writer.writeURI(entry.getKey());
+            writer.writeInt(entry.getValue().size());
+            for (URI uri : entry.getValue()) {
+                writer.writeURI(uri);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<URI, Set<URI>> decode(byte[] data) {
+        if (CompactURIFormat.isLegacyFormat(data)) {
+            try {
+                return (Map<URI, Set<URI>>) CompactURIFormat.readLegacy(data);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Cannot convert byte array to Map<URI,Set<URI>>", e);
+            }
+        }
+        CompactURIFormat.Reader reader = new CompactURIFormat.Reader(data);
+        int size = reader.readInt();
+        Map<URI, Set<URI>> result = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            URI key = reader.readURI();
+            int valueCount = reader.readInt();
+            Set<URI> values = new HashSet<>();
+            for (int j = 0; j < valueCount; j++) {
+                values.add(reader.readURI());
+            }
+            result.put(key, values);
         }
-        return null;
+        return result;
     }
 }
@@ -0,0 +1,46 @@
+package won.protocol.repository;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import won.protocol.model.AtomLocation;
+import won.protocol.model.AtomState;
+
+public interface AtomLocationRepository extends WonRepository<AtomLocation> {
+    Optional<AtomLocation> findOneByAtomURI(URI atomURI);
+
+    /**
+     * Finds the index entries of the atoms whose location or job location lies
+     * within the specified bounding box, newest atoms first.
+     */
+    @Query("select l from AtomLocation l, Atom atom where atom.atomURI = l.atomURI "
+                    + "and (:atomState is null or atom.state = :atomState) and ("
+                    + "(l.latitude between :minLatitude and :maxLatitude "
+                    + "and l.longitude between :minLongitude and :maxLongitude) or "
+                    + "(l.jobLatitude between :minLatitude and :maxLatitude "
+                    + "and l.jobLongitude between :minLongitude and :maxLongitude)) "
+                    + "order by atom.creationDate desc")
+    Slice<AtomLocation> findInBoundingBox(@Param("minLatitude") double minLatitude,
+                    @Param("maxLatitude") double maxLatitude, @Param("minLongitude") double minLongitude,
+                    @Param("maxLongitude") double maxLongitude, @Param("atomState") AtomState atomState,
+                    Pageable pageable);
+
+    /**
+     * Finds the atoms that have not been added to the location index yet, except
+     * for the deleted ones.
+     */
+    @Query("select atom.atomURI from Atom atom where atom.state <> :deleted and not exists "
+                    + "(select l from AtomLocation l where l.atomURI = atom.atomURI)")
+    List<URI> findAtomURIsWithoutLocationEntry(@Param("deleted") AtomState deleted, Pageable pageable);
+
+    @Modifying
+    @Query("delete from AtomLocation l where l.atomURI = :atomUri")
+    void deleteByAtomURI(@Param("atomUri") URI atomURI);
+}
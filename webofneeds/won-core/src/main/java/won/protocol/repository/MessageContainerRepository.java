@@ -1,11 +1,13 @@
 package won.protocol.repository;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 import javax.persistence.LockModeType;
 
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -17,4 +19,50 @@ public interface MessageContainerRepository extends WonRepository<MessageContain
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select c from MessageContainer c where c.parentUri = :parentUri")
     Optional<MessageContainer> findOneByParentUriForUpdate(@Param("parentUri") URI parentUri);
+
+    /**
+     * Recomputes the message counters of all containers from the stored messages.
+     * Used for data that was stored without maintaining the counters.
+     */
+    @Modifying
+    @Query("update MessageContainer c set \n"
+                    + "    c.messageCount = (select count(m) from MessageEvent m where m.parentURI = c.parentUri \n"
+                    + "        and m.messageType not in ('SUCCESS_RESPONSE', 'FAILURE_RESPONSE')), \n"
+                    + "    c.oldestMessageDate = (select min(m.creationDate) from MessageEvent m where m.parentURI = c.parentUri \n"
+                    + "        and m.messageType not in ('SUCCESS_RESPONSE', 'FAILURE_RESPONSE')), \n"
+                    + "    c.newestMessageDate = (select max(m.creationDate) from MessageEvent m where m.parentURI = c.parentUri \n"
+                    + "        and m.messageType not in ('SUCCESS_RESPONSE', 'FAILURE_RESPONSE'))")
+    int rebuildMessageCounters();
+
+    @Modifying
+    @Query("update MessageContainer c set c.messageCount = 0, c.oldestMessageDate = null, c.newestMessageDate = null "
+                    + "where c.parentUri = :parentUri")
+    void resetMessageCounters(@Param("parentUri") URI parentUri);
+
+    /**
+     * Finds containers whose unconfirmed or pendingConfirmations column is still in
+     * the legacy (java serialization) format, ordered by id, starting after the
+     * specified id.
+     *
+     * @return rows consisting of id, unconfirmed and pendingConfirmations
+     */
+    @Query(value = "select id, unconfirmed, pendingconfirmations from message_container "
+                    + "where id > :afterId and (substring(unconfirmed from 1 for 2) = decode('aced', 'hex') "
+                    + "or substring(pendingconfirmations from 1 for 2) = decode('aced', 'hex')) "
+                    + "order by id limit :limit", nativeQuery = true)
+    List<Object[]> findWithLegacyConfirmationFormat(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * Replaces the unconfirmed and pendingConfirmations columns if they have not
+     * been changed since they were read. Either column may be null.
+     *
+     * @return 1 if the row was updated, 0 otherwise
+     */
+    @Modifying
+    @Query(value = "update message_container set unconfirmed = :unconfirmed, pendingconfirmations = :pending "
+                    + "where id = :id and unconfirmed is not distinct from cast(:oldUnconfirmed as bytea) "
+                    + "and pendingconfirmations is not distinct from cast(:oldPending as bytea)", nativeQuery = true)
+    int replaceConfirmationData(@Param("id") Long id, @Param("oldUnconfirmed") byte[] oldUnconfirmed,
+                    @Param("oldPending") byte[] oldPending, @Param("unconfirmed") byte[] unconfirmed,
+                    @Param("pending") byte[] pending);
 }
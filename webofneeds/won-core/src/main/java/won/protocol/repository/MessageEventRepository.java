@@ -16,6 +16,7 @@ import org.springframework.data.repository.query.Param;
 
 import won.protocol.message.WonMessageType;
 import won.protocol.model.MessageEvent;
+import won.protocol.model.unread.UnreadMessageInfo;
 import won.protocol.model.unread.UnreadMessageInfoForConnection;
 
 public interface MessageEventRepository extends WonRepository<MessageEvent> {
@@ -89,6 +90,30 @@ public interface MessageEventRepository extends WonRepository<MessageEvent> {
     List<UnreadMessageInfoForConnection> getUnreadInfoForAtom(@Param("atomUri") URI atomURI,
                     @Param("lastSeenMessageUris") Collection<URI> lastSeenMessageURIs);
 
+    /**
+     * Returns the message counters of all connections of the atom that contain at
+     * least one message other than a response, i.e. the unread information if none
+     * of the messages has been seen.
+     */
+    @Query("select new won.protocol.model.unread.UnreadMessageInfoForConnection(\n"
+                    + "        c.connectionURI, c.state, mc.messageCount, mc.newestMessageDate, mc.oldestMessageDate) \n"
+                    + "    from Connection c join MessageContainer mc on c.connectionURI = mc.parentUri \n"
+                    + "    where c.atomURI = :atomUri and mc.messageCount > 0")
+    List<UnreadMessageInfoForConnection> getMessageCountersForAtom(@Param("atomUri") URI atomURI);
+
+    /**
+     * Returns the parent URI and the creation date of the most recent of the
+     * specified messages per parent.
+     */
+    @Query("select m.parentURI, max(m.creationDate) from MessageEvent m where m.messageURI in :messageUris "
+                    + "group by m.parentURI")
+    List<Object[]> getNewestCreationDatePerParent(@Param("messageUris") Collection<URI> messageURIs);
+
+    @Query("select new won.protocol.model.unread.UnreadMessageInfo(count(m), max(m.creationDate), min(m.creationDate)) \n"
+                    + "    from MessageEvent m where m.parentURI = :parentUri and m.creationDate > :after \n"
+                    + "        and m.messageType not in ('SUCCESS_RESPONSE', 'FAILURE_RESPONSE')")
+    UnreadMessageInfo getUnreadInfoForParentAfter(@Param("parentUri") URI parentURI, @Param("after") Date after);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select n,c from AtomMessageContainer c join MessageEvent msg on msg.parentURI = c.parentUri join Atom n on c.parentUri = n.atomURI where msg.messageURI = :messageUri")
     void lockAtomAndMessageContainerByContainedMessageForUpdate(@Param("messageUri") URI messageUri);
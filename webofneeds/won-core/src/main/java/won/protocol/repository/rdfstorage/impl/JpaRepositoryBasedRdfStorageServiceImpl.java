@@ -51,7 +51,7 @@ public class JpaRepositoryBasedRdfStorageServiceImpl implements RDFStorageServic
     @Override
     public Model loadModel(final URI resourceURI) {
         Optional<DatasetHolder> datasetHolder = datasetHolderRepository.findOneByUri(resourceURI);
-        return datasetHolder.isPresent() ? datasetHolder.get().getDataset().getDefaultModel() : null;
+        return datasetHolder.isPresent() ? datasetHolder.get().getDefaultModel() : null;
     }
 
     @Override
@@ -59,7 +59,7 @@ public class JpaRepositoryBasedRdfStorageServiceImpl implements RDFStorageServic
         Integer version = Integer.valueOf(etag);
         Optional<DatasetHolder> datasetHolder = datasetHolderRepository.findOneByUriAndVersionNot(resourceURI, version);
         return new DataWithEtag<>(
-                        datasetHolder.isPresent() ? datasetHolder.get().getDataset().getDefaultModel() : null,
+                        datasetHolder.isPresent() ? datasetHolder.get().getDefaultModel() : null,
                         datasetHolder.isPresent() ? Integer.toString(datasetHolder.get().getVersion()) : etag, etag);
     }
 
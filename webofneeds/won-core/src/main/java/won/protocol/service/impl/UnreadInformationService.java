@@ -2,24 +2,58 @@ package won.protocol.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import won.protocol.model.unread.UnreadMessageInfo;
 import won.protocol.model.unread.UnreadMessageInfoForAtom;
 import won.protocol.model.unread.UnreadMessageInfoForConnection;
 import won.protocol.repository.MessageEventRepository;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Computes the unread information from the message counters maintained in the
+ * connections' message containers. Only connections for which a last seen
+ * message is specified that is older than the connection's newest message
+ * require counting the messages after the last seen one.
+ */
 @Component
 public class UnreadInformationService {
     @Autowired
     private MessageEventRepository messageEventRepository;
 
     public UnreadMessageInfoForAtom getUnreadInformation(URI atomURI, Collection<URI> lastSeenMessageURIs) {
-        List<UnreadMessageInfoForConnection> unreadInfoForConnections = messageEventRepository
-                        .getUnreadInfoForAtom(atomURI, lastSeenMessageURIs);
+        List<UnreadMessageInfoForConnection> counters = messageEventRepository.getMessageCountersForAtom(atomURI);
+        Map<URI, Date> lastSeenDates = getLastSeenDates(lastSeenMessageURIs);
         UnreadMessageInfoForAtom result = new UnreadMessageInfoForAtom(atomURI);
-        unreadInfoForConnections.forEach(result::addUnreadMessageInfoForConnection);
+        for (UnreadMessageInfoForConnection counter : counters) {
+            Date lastSeen = lastSeenDates.get(counter.getConnectionURI());
+            if (lastSeen == null) {
+                result.addUnreadMessageInfoForConnection(counter);
+            } else if (lastSeen.before(counter.getUnreadInformation().getNewestTimestamp())) {
+                UnreadMessageInfo unread = messageEventRepository
+                                .getUnreadInfoForParentAfter(counter.getConnectionURI(), lastSeen);
+                if (unread.getCount() > 0) {
+                    result.addUnreadMessageInfoForConnection(new UnreadMessageInfoForConnection(
+                                    counter.getConnectionURI(), counter.getConnectionState(), unread));
+                }
+            }
+        }
         return result;
     }
+
+    private Map<URI, Date> getLastSeenDates(Collection<URI> lastSeenMessageURIs) {
+        if (lastSeenMessageURIs == null || lastSeenMessageURIs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<URI, Date> lastSeenDates = new HashMap<>();
+        for (Object[] row : messageEventRepository.getNewestCreationDatePerParent(lastSeenMessageURIs)) {
+            lastSeenDates.put((URI) row[0], (Date) row[1]);
+        }
+        return lastSeenDates;
+    }
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+
+/**
+ * Reads and writes datasets in a compact binary format that allows for decoding
+ * single graphs without parsing the whole dataset.
+ * <p>
+ * Layout (all integers big endian):
+ *
+ * <pre>
+ * magic         4 bytes  'W' 'O' 'N' 'B'
+ * version       1 byte   currently 1
+ * graphCount    int
+ * graphCount x  [nameLength int, name UTF-8 bytes, offset int, length int]
+ * graph data    one RDF Thrift encoded graph per index entry
+ * </pre>
+ *
+ * The default graph is stored under the empty name. Offsets are relative to the
+ * start of the graph data section.
+ */
+public class BinaryRdfUtils {
+    private static final byte[] MAGIC = { 'W', 'O', 'N', 'B' };
+    private static final byte VERSION = 1;
+    private static final String DEFAULT_GRAPH_NAME = "";
+    private static final int DEFAULT_BYTE_ARRAY_SIZE = 500;
+
+    /**
+     * Checks if the specified bytes were written by this class. Anything else is
+     * assumed to be a text serialization (N-Quads or TriG).
+     */
+    public static boolean isBinaryFormat(byte[] bytes) {
+        if (bytes == null || bytes.length < MAGIC.length + 1) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] toBytes(Dataset dataset) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_BYTE_ARRAY_SIZE);
+        write(out, dataset);
+        return out.toByteArray();
+    }
+
+    public static void write(OutputStream out, Dataset dataset) {
+        Map<String, byte[]> graphs = new LinkedHashMap<>();
+        if (!dataset.getDefaultModel().isEmpty()) {
+            graphs.put(DEFAULT_GRAPH_NAME, toThrift(dataset.getDefaultModel()));
+        }
+        Iterator<String> names = dataset.listNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            graphs.put(name, toThrift(dataset.getNamedModel(name)));
+        }
+        try {
+            DataOutputStream dataOut = new DataOutputStream(out);
+            dataOut.write(MAGIC);
+            dataOut.writeByte(VERSION);
+            dataOut.writeInt(graphs.size());
+            int offset = 0;
+            for (Map.Entry<String, byte[]> graph : graphs.entrySet()) {
+                byte[] name = graph.getKey().getBytes(StandardCharsets.UTF_8);
+                dataOut.writeInt(name.length);
+                dataOut.write(name);
+                dataOut.writeInt(offset);
+                dataOut.writeInt(graph.getValue().length);
+                offset += graph.getValue().length;
+            }
+            for (byte[] graph : graphs.values()) {
+                dataOut.write(graph);
+            }
+            dataOut.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not write dataset in binary format", e);
+        }
+    }
+
+    public static Dataset readDataset(byte[] bytes) {
+        Dataset dataset = DatasetFactory.createGeneral();
+        readDataset(bytes, dataset);
+        return dataset;
+    }
+
+    /**
+     * Adds all graphs found in the bytes to the specified dataset.
+     */
+    public static void readDataset(byte[] bytes, Dataset target) {
+        GraphIndex index = readIndex(bytes);
+        for (GraphIndexEntry entry : index.entries) {
+            Model model = DEFAULT_GRAPH_NAME.equals(entry.name) ? target.getDefaultModel()
+                            : ModelFactory.createDefaultModel();
+            readGraph(bytes, index, entry, model);
+            if (!DEFAULT_GRAPH_NAME.equals(entry.name)) {
+                if (target.containsNamedModel(entry.name)) {
+                    target.getNamedModel(entry.name).add(model);
+                } else {
+                    target.addNamedModel(entry.name, model);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the names of all named graphs without decoding any of them.
+     */
+    public static List<String> readGraphNames(byte[] bytes) {
+        GraphIndex index = readIndex(bytes);
+        List<String> names = new ArrayList<>(index.entries.size());
+        for (GraphIndexEntry entry : index.entries) {
+            if (!DEFAULT_GRAPH_NAME.equals(entry.name)) {
+                names.add(entry.name);
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Decodes only the named graph with the specified name.
+     *
+     * @return the graph or an empty Optional if there is no such graph
+     */
+    public static Optional<Model> readNamedModel(byte[] bytes, String graphName) {
+        if (graphName == null || DEFAULT_GRAPH_NAME.equals(graphName)) {
+            throw new IllegalArgumentException("graphName must not be null or empty");
+        }
+        return readModel(bytes, graphName);
+    }
+
+    /**
+     * Decodes only the default graph.
+     */
+    public static Model readDefaultModel(byte[] bytes) {
+        return readModel(bytes, DEFAULT_GRAPH_NAME).orElseGet(ModelFactory::createDefaultModel);
+    }
+
+    private static Optional<Model> readModel(byte[] bytes, String graphName) {
+        GraphIndex index = readIndex(bytes);
+        for (GraphIndexEntry entry : index.entries) {
+            if (entry.name.equals(graphName)) {
+                Model model = ModelFactory.createDefaultModel();
+                readGraph(bytes, index, entry, model);
+                return Optional.of(model);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static byte[] toThrift(Model model) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_BYTE_ARRAY_SIZE);
+        RDFDataMgr.write(out, model, RDFFormat.RDF_THRIFT);
+        return out.toByteArray();
+    }
+
+    private static void readGraph(byte[] bytes, GraphIndex index, GraphIndexEntry entry, Model target) {
+        InputStream in = new ByteArrayInputStream(bytes, index.dataStart + entry.offset, entry.length);
+        RDFDataMgr.read(target, in, Lang.RDFTHRIFT);
+    }
+
+    private static GraphIndex readIndex(byte[] bytes) {
+        if (!isBinaryFormat(bytes)) {
+            throw new IllegalArgumentException("bytes are not in the binary dataset format");
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            in.skipBytes(MAGIC.length);
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("unsupported binary dataset format version " + version);
+            }
+            int graphCount = in.readInt();
+            int headerLength = MAGIC.length + 1 + 4;
+            List<GraphIndexEntry> entries = new ArrayList<>(graphCount);
+            for (int i = 0; i < graphCount; i++) {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                entries.add(new GraphIndexEntry(new String(name, StandardCharsets.UTF_8), in.readInt(),
+                                in.readInt()));
+                headerLength += 4 + name.length + 4 + 4;
+            }
+            return new GraphIndex(headerLength, entries);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("could not read graph index of binary dataset", e);
+        }
+    }
+
+    private static class GraphIndex {
+        private final int dataStart;
+        private final List<GraphIndexEntry> entries;
+
+        GraphIndex(int dataStart, List<GraphIndexEntry> entries) {
+            this.dataStart = dataStart;
+            this.entries = entries;
+        }
+    }
+
+    private static class GraphIndexEntry {
+        private final String name;
+        private final int offset;
+        private final int length;
+
+        GraphIndexEntry(String name, int offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -23,17 +23,30 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.DatasetGraphReadOnly;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.graph.GraphReadOnly;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -44,25 +57,42 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.util.StopWatch;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import ch.qos.logback.core.util.Duration;
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import won.protocol.rest.DatasetResponseWithStatusCodeAndHeaders;
+import won.protocol.util.AuthenticationThreadLocal;
 import won.protocol.util.LogMarkers;
+import won.protocol.util.RdfUtils;
 
 /**
  * LinkedDataSource implementation that uses an ehcache for caching.
+ * <p>
+ * The ehcache holds the serialized datasets. In front of it, a bounded
+ * in-memory tier holds the parsed datasets so that cache hits do not have to
+ * parse the serialized form again. The size of that tier is limited by the
+ * number of triples it contains. Datasets from the parsed tier are shared
+ * between callers and are therefore read-only; callers that need to modify a
+ * dataset have to copy it (e.g. using {@link RdfUtils#cloneDataset(Dataset)}).
  */
 @Qualifier("default")
 public class CachingLinkedDataSource extends LinkedDataSourceBase implements LinkedDataSource, InitializingBean {
     private static final String CACHE_NAME = "linkedDataCache";
     private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss z";
     private static final int DEFAULT_BYTE_ARRAY_SIZE = 500;
+    private static final long DEFAULT_PARSED_DATASET_CACHE_MAX_TRIPLES = 500000;
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     @Autowired(required = true)
     private EhCacheCacheManager cacheManager;
     private Ehcache cache;
+    // parsed datasets, in front of the serialized datasets in 'cache'
+    private Cache<String, ParsedDatasetEntry> parsedDatasetCache;
+    private long parsedDatasetCacheMaxTriples = DEFAULT_PARSED_DATASET_CACHE_MAX_TRIPLES;
+    private final CacheStatistics statistics = new CacheStatistics();
     private CrawlerCallback crawlerCallback = null;
     // are we acting as a shared cache? if so, we MUST not cache
     // resources that have CacheControl: private, even if we've cached them.
@@ -87,6 +117,29 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         return sharedCache;
     }
 
+    /**
+     * Sets the maximum number of triples held in the tier of parsed datasets. Set
+     * to 0 to disable the tier. Takes effect when the bean is initialized.
+     *
+     * @param parsedDatasetCacheMaxTriples
+     */
+    public void setParsedDatasetCacheMaxTriples(long parsedDatasetCacheMaxTriples) {
+        this.parsedDatasetCacheMaxTriples = parsedDatasetCacheMaxTriples;
+    }
+
+    public long getParsedDatasetCacheMaxTriples() {
+        return parsedDatasetCacheMaxTriples;
+    }
+
+    /**
+     * Returns hit/miss counters and parse times of both cache tiers.
+     *
+     * @return
+     */
+    public CacheStatistics getCacheStatistics() {
+        return statistics;
+    }
+
     /**
      * Removes the element associated with the specified URI from the cache
      * 
@@ -99,7 +152,7 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         if (logger.isDebugEnabled()) {
             logger.debug("invalidating cached resource {}", resource);
         }
-        cache.remove(makeCacheKey(resource, null));
+        removeFromCache(makeCacheKey(resource, null));
     }
 
     public void invalidate(URI resource, URI requesterWebID) {
@@ -109,11 +162,14 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         if (logger.isDebugEnabled()) {
             logger.debug("invalidating cached resource {} for webid {}", resource, requesterWebID);
         }
-        cache.remove(makeCacheKey(resource, requesterWebID));
+        removeFromCache(makeCacheKey(resource, requesterWebID));
     }
 
     public void clear() {
         cache.removeAll();
+        if (parsedDatasetCache != null) {
+            parsedDatasetCache.invalidateAll();
+        }
     }
 
     /**
@@ -128,7 +184,10 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
     public void addToCache(Dataset dataset, URI resource, URI requesterWebID) {
         String key = makeCacheKey(resource, requesterWebID);
         LinkedDataCacheEntry entry = new LinkedDataCacheEntry(writeDatasetToByteArray(dataset));
-        this.cache.put(new Element(makeCacheKey(resource, requesterWebID), entry));
+        // the caller keeps a reference to the dataset, so we don't add it to the
+        // parsed tier. It will be parsed from the serialized form when first requested.
+        removeFromCache(key);
+        this.cache.put(new Element(key, entry));
     }
 
     public void addToCache(Dataset dataset, URI resource) {
@@ -139,31 +198,8 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         StopWatch sw = new StopWatch();
         sw.start();
         try {
-            if (resource == null)
-                throw new IllegalArgumentException("resource cannot be null");
-            Element element;
-            try {
-                element = cache.get(makeCacheKey(resource, requesterWebID));
-            } catch (CacheException e) {
-                // logging on warn level as not reporting errors here can make misconfiguration
-                // hard to detect
-                logger.warn(String.format("Couldn't fetch resource %s", resource));
-                logger.debug("Exception is:", e);
-                return DatasetFactory.createGeneral();
-            }
-            LinkedDataCacheEntry linkedDataCacheEntry = null;
-            if (element != null) {
-                // cached element found
-                Object cachedObject = element.getObjectValue();
-                if (!(cachedObject instanceof LinkedDataCacheEntry)) {
-                    // wrong type - how did that happen?
-                    throw new IllegalStateException(new MessageFormat(
-                                    "The underlying linkedDataCache should only contain Datasets, but we got a {0} for URI {1}")
-                                                    .format(new Object[] { cachedObject.getClass(), resource }));
-                }
-                linkedDataCacheEntry = (LinkedDataCacheEntry) cachedObject;
-            }
-            return fetchOrUseCached(resource, requesterWebID, linkedDataCacheEntry).getDataset();
+            // fetching (if necessary) happens in the calling thread
+            return join(getDataForResource(resource, requesterWebID, Runnable::run));
         } finally {
             sw.stop();
             logger.debug(LogMarkers.TIMING, "obtaining (possibly cached) resource {} took {} millis", resource,
@@ -171,6 +207,76 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #getDataForResource(URI, URI)}. Cached results
+     * are returned as completed futures. Otherwise, the resource is fetched using
+     * {@link #getAsyncExecutor()}. Concurrent requests for the same resource (and
+     * requesterWebID) share one fetch and all get its result or exception.
+     *
+     * @param resource
+     * @param requesterWebID may be null
+     * @return
+     */
+    @Override
+    public CompletableFuture<Dataset> getDataForResourceAsync(URI resource, URI requesterWebID) {
+        try {
+            return getDataForResource(resource, requesterWebID, getAsyncExecutor());
+        } catch (RuntimeException e) {
+            CompletableFuture<Dataset> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private CompletableFuture<Dataset> getDataForResource(URI resource, URI requesterWebID, Executor executor) {
+        if (resource == null)
+            throw new IllegalArgumentException("resource cannot be null");
+        Element element;
+        try {
+            element = cache.get(makeCacheKey(resource, requesterWebID));
+        } catch (CacheException e) {
+            // logging on warn level as not reporting errors here can make misconfiguration
+            // hard to detect
+            logger.warn(String.format("Couldn't fetch resource %s", resource));
+            logger.debug("Exception is:", e);
+            return CompletableFuture.completedFuture(DatasetFactory.createGeneral());
+        }
+        LinkedDataCacheEntry linkedDataCacheEntry = null;
+        if (element != null) {
+            // cached element found
+            Object cachedObject = element.getObjectValue();
+            if (!(cachedObject instanceof LinkedDataCacheEntry)) {
+                // wrong type - how did that happen?
+                throw new IllegalStateException(new MessageFormat(
+                                "The underlying linkedDataCache should only contain Datasets, but we got a {0} for URI {1}")
+                                                .format(new Object[] { cachedObject.getClass(), resource }));
+            }
+            linkedDataCacheEntry = (LinkedDataCacheEntry) cachedObject;
+            statistics.byteTierHits.increment();
+        } else {
+            statistics.byteTierMisses.increment();
+        }
+        return fetchOrUseCached(resource, requesterWebID, linkedDataCacheEntry, executor)
+                        .thenApply(DatasetResponseWithStatusCodeAndHeaders::getDataset);
+    }
+
+    /**
+     * Waits for the future, unwrapping the exception it was completed with.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     /**
      * This method respects the headers 'Expires', 'Cache-Control', and 'ETAG': If a
      * cached resource (indicated by a non-null linkedDataCacheEntry) is expired
@@ -185,10 +291,11 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
      * @param resource the URI of the resource to fetch
      * @param requesterWebID optional WebID URI to use for the request
      * @param linkedDataCacheEntry optional cache entry to use
+     * @param executor the executor used for making the request
      * @return
      */
-    private DatasetResponseWithStatusCodeAndHeaders fetchOrUseCached(final URI resource, final URI requesterWebID,
-                    LinkedDataCacheEntry linkedDataCacheEntry) {
+    private CompletableFuture<DatasetResponseWithStatusCodeAndHeaders> fetchOrUseCached(final URI resource,
+                    final URI requesterWebID, LinkedDataCacheEntry linkedDataCacheEntry, final Executor executor) {
         // check
         // * if we have a cached result
         // * if we can use it
@@ -197,7 +304,6 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         // * if ETAG indicates not modified, return cached result but update caching
         // info
         // * return result
-        DatasetResponseWithStatusCodeAndHeaders responseData;
         HttpHeaders headers = new HttpHeaders();
         if (linkedDataCacheEntry != null) {
             Date now = new Date();
@@ -205,11 +311,11 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
             // are allowed to do that:
             if (linkedDataCacheEntry.isExpiredAtDate(now)) {
                 // cache item is expired. Remove from cache and fetch again
-                cache.remove(makeCacheKey(resource, requesterWebID));
+                removeFromCache(makeCacheKey(resource, requesterWebID));
                 if (logger.isDebugEnabled()) {
                     logger.debug("cache item {} expired, fetching again.", resource);
                 }
-                return fetchOnlyOnce(resource, requesterWebID, linkedDataCacheEntry, headers);
+                return fetchOnlyOnce(resource, requesterWebID, linkedDataCacheEntry, headers, executor);
             }
             if (linkedDataCacheEntry.getCacheControlFlags().contains(CacheControlFlag.PRIVATE) && isSharedCache()) {
                 // in this case we assume that the response is not publicly visible, so it
@@ -221,89 +327,101 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
                     logger.debug("cache item {} is Cache-Control:private and we are a shared cache. Will return cached copy only after server checks ETAG (and client cert), "
                                     + "therefore sending request to server.", resource);
                 }
-                return fetchOnlyOnce(resource, requesterWebID, linkedDataCacheEntry, headers);
+                return fetchOnlyOnce(resource, requesterWebID, linkedDataCacheEntry, headers, executor);
             }
             if (logger.isDebugEnabled()) {
                 logger.debug("returning cached version of {}", resource);
             }
             // we can use the cached result directly
-            return linkedDataCacheEntry.recreateResponse();
+            return CompletableFuture
+                            .completedFuture(recreateResponse(makeCacheKey(resource, requesterWebID),
+                                            linkedDataCacheEntry));
         }
         // nothing found in the cache, fetch the resource remotely
         if (logger.isDebugEnabled()) {
             logger.debug("Nothing found in cache for {}, fetching remotely", resource);
         }
-        responseData = fetchOnlyOnce(resource, requesterWebID, null, headers);
-        // inform the crawler callback
-        if (crawlerCallback != null) {
-            try {
-                crawlerCallback.onDatasetCrawled(resource, responseData.getDataset());
-            } catch (Exception e) {
-                logger.info(String.format("error during callback execution for dataset %s", resource.toString()), e);
+        return fetchOnlyOnce(resource, requesterWebID, null, headers, executor).thenApply(responseData -> {
+            // inform the crawler callback
+            if (crawlerCallback != null) {
+                try {
+                    crawlerCallback.onDatasetCrawled(resource, responseData.getDataset());
+                } catch (Exception e) {
+                    logger.info(String.format("error during callback execution for dataset %s", resource.toString()),
+                                    e);
+                }
             }
-        }
-        return responseData;
+            return responseData;
+        });
     }
 
-    // synchronziation for concurrent requests to the same resource
-    private ConcurrentMap<String, CountDownLatch> countDownLatchMap = new ConcurrentHashMap<>(10);
+    // requests currently being made, by cache key
+    private ConcurrentMap<String, CompletableFuture<DatasetResponseWithStatusCodeAndHeaders>> inFlightRequests = new ConcurrentHashMap<>(
+                    10);
 
     /**
      * We may run into fetching the same URI multiple times at once. Make sure we
-     * make only one http request and use the response for every client.
+     * make only one http request and use the response (or the exception) for every
+     * client. Clients that arrive while the request is made get the future of that
+     * request, so no thread is blocked waiting for another one.
      * 
      * @param resource
      * @param requesterWebID
      * @param linkedDataCacheEntry
      * @param headers
+     * @param executor the executor used for making the request if no request for
+     * the resource is in flight
      * @return
      */
-    private DatasetResponseWithStatusCodeAndHeaders fetchOnlyOnce(final URI resource, final URI requesterWebID,
-                    final LinkedDataCacheEntry linkedDataCacheEntry, final HttpHeaders headers) {
+    private CompletableFuture<DatasetResponseWithStatusCodeAndHeaders> fetchOnlyOnce(final URI resource,
+                    final URI requesterWebID, final LinkedDataCacheEntry linkedDataCacheEntry,
+                    final HttpHeaders headers, final Executor executor) {
         String cacheKey = makeCacheKey(resource, requesterWebID);
-        CountDownLatch latch = new CountDownLatch(1);
-        CountDownLatch preExistingLatch = countDownLatchMap.putIfAbsent(cacheKey, latch);
-        try {
-            if (preExistingLatch != null) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("resource {}"
-                                    + " is being fetched in another thread, we wait for its result and use it "
-                                    + "if it turns out to be cacheable", cacheKey);
-                }
-                // in this case, another thread is already fetching the URI. Wait.
-                try {
-                    preExistingLatch.await();
-                } catch (InterruptedException e) {
-                    logger.warn("interrupted while waiting for another thread to fetch '" + resource + "'");
+        CompletableFuture<DatasetResponseWithStatusCodeAndHeaders> future = new CompletableFuture<>();
+        CompletableFuture<DatasetResponseWithStatusCodeAndHeaders> inFlight = inFlightRequests.putIfAbsent(cacheKey,
+                        future);
+        if (inFlight != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("resource {} is already being fetched, using the result of that request", cacheKey);
+            }
+            statistics.coalescedRequests.increment();
+            return inFlight;
+        }
+        // hack: there may be a threadLocal with the authentication data we need further
+        // down the call stack. If there is one, we pass it on to the executing thread
+        final Optional<Object> authenticationOpt = AuthenticationThreadLocal.hasValue()
+                        ? Optional.of(AuthenticationThreadLocal.getAuthentication())
+                        : Optional.empty();
+        final Thread callingThread = Thread.currentThread();
+        Runnable fetchTask = () -> {
+            boolean otherThread = Thread.currentThread() != callingThread;
+            DatasetResponseWithStatusCodeAndHeaders responseData = null;
+            Throwable failure = null;
+            try {
+                if (otherThread && authenticationOpt.isPresent()) {
+                    AuthenticationThreadLocal.setAuthentication(authenticationOpt.get());
                 }
-                // now, the other thread is done fetching the resource. It may not have been
-                // allowed to cache it, in which case
-                // we have to fetch it again. We try:
-                Element element = cache.get(cacheKey);
-                if (element != null) {
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("resource {} turned out to be cacheable, using it", cacheKey);
-                    }
-                    // ok, we'll recreate a response from the cache.
-                    // Caution: this is not a copy, it's the SAME dataset - so manipulating the
-                    // result causes side-effects.
-                    LinkedDataCacheEntry entry = (LinkedDataCacheEntry) element.getObjectValue();
-                    return entry.recreateResponse();
+                responseData = fetchAndCacheIfAppropriate(resource, requesterWebID, linkedDataCacheEntry, headers);
+                // the response is shared between all clients waiting for it
+                responseData = new DatasetResponseWithStatusCodeAndHeaders(toReadOnly(responseData.getDataset()),
+                                responseData.getStatusCode(), responseData.getResponseHeaders());
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                if (otherThread) {
+                    AuthenticationThreadLocal.remove();
                 }
-                if (logger.isDebugEnabled()) {
-                    logger.debug("resource {} did not turn out to be cacheable - fetching it, too", cacheKey);
-                }
-                // so the cache still doesn't have it. We think it's better to let every thread
-                // fetch it for itself.
+                // new clients must not get this request's result once it is done
+                inFlightRequests.remove(cacheKey, future);
             }
-            return fetchAndCacheIfAppropriate(resource,
-                            requesterWebID, linkedDataCacheEntry, headers);
-        } finally {
-            // remove the latch from the map if it is in there
-            countDownLatchMap.remove(cacheKey, latch);
-            // wake up all threads that might now be waiting at our latch
-            latch.countDown();
-        }
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(responseData);
+            }
+        };
+        executor.execute(fetchTask);
+        return future;
     }
 
     private DatasetResponseWithStatusCodeAndHeaders fetchAndCacheIfAppropriate(final URI resource,
@@ -333,7 +451,7 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
                         || cacheControlFlags.contains(CacheControlFlag.NO_CACHE)) {
             // we are not allowed to cache the result
             // make sure it's not in the cache from a previous request
-            cache.remove(makeCacheKey(resource, requesterWebID));
+            removeFromCache(makeCacheKey(resource, requesterWebID));
             if (logger.isDebugEnabled()) {
                 logger.debug("Fetched {}. Will not be cached due to Cache-Control headers sent by server", resource);
             }
@@ -349,7 +467,7 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
                     logger.debug("Fetched {}. Will not be cached due to Expires/Date header combination sent by server",
                                     resource);
                 }
-                cache.remove(makeCacheKey(resource, requesterWebID));
+                removeFromCache(makeCacheKey(resource, requesterWebID));
                 return responseData;
             }
         }
@@ -361,19 +479,89 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
             etag = linkedDataCacheEntry.getEtag();
         }
         // cache the result
+        String cacheKey = makeCacheKey(resource, requesterWebID);
         LinkedDataCacheEntry entry = new LinkedDataCacheEntry(etag, expires,
                         writeDatasetToByteArray(responseData.getDataset()), cacheControlFlags,
                         responseData.getResponseHeaders(), responseData.getStatusCode());
-        this.cache.put(new Element(makeCacheKey(resource, requesterWebID), entry));
+        this.cache.put(new Element(cacheKey, entry));
+        // the dataset is already parsed, keep it so the next hit needn't parse it
+        Dataset readOnlyDataset = putIntoParsedDatasetCache(cacheKey, entry, responseData.getDataset());
+        responseData = new DatasetResponseWithStatusCodeAndHeaders(readOnlyDataset, responseData.getStatusCode(),
+                        responseData.getResponseHeaders());
         if (logger.isDebugEnabled()) {
             logger.debug("Fetched and cached {}, will {}", resource, expires == null ? "never expire"
                             : "expire in " + new Duration(expires.getTime() - new Date().getTime()).toString());
             logger.debug("cache size: {} elements, in-memory size: {} bytes", cache.getSize(),
                             cache.calculateInMemorySize());
+            logger.debug("cache statistics: {}", statistics);
         }
         return responseData;
     }
 
+    /**
+     * Recreates the response for the specified cache entry, using the parsed
+     * dataset if it is in the parsed tier, parsing (and adding it to the tier)
+     * otherwise.
+     */
+    private DatasetResponseWithStatusCodeAndHeaders recreateResponse(String cacheKey,
+                    LinkedDataCacheEntry linkedDataCacheEntry) {
+        return new DatasetResponseWithStatusCodeAndHeaders(getParsedDataset(cacheKey, linkedDataCacheEntry),
+                        linkedDataCacheEntry.statusCode, linkedDataCacheEntry.headers);
+    }
+
+    private Dataset getParsedDataset(String cacheKey, LinkedDataCacheEntry linkedDataCacheEntry) {
+        if (parsedDatasetCache != null) {
+            ParsedDatasetEntry parsed = parsedDatasetCache.getIfPresent(cacheKey);
+            // only use the parsed dataset if it was made from the entry we got
+            if (parsed != null && parsed.source == linkedDataCacheEntry) {
+                statistics.parsedTierHits.increment();
+                return parsed.dataset;
+            }
+            statistics.parsedTierMisses.increment();
+        }
+        long start = System.nanoTime();
+        Dataset dataset = readDatasetFromByteArray(linkedDataCacheEntry.getDataset());
+        statistics.parseCount.increment();
+        statistics.parseTimeNanos.add(System.nanoTime() - start);
+        return putIntoParsedDatasetCache(cacheKey, linkedDataCacheEntry, dataset);
+    }
+
+    /**
+     * Adds a read-only view of the dataset to the parsed tier and returns it.
+     */
+    private Dataset putIntoParsedDatasetCache(String cacheKey, LinkedDataCacheEntry linkedDataCacheEntry,
+                    Dataset dataset) {
+        Dataset readOnlyDataset = toReadOnly(dataset);
+        if (parsedDatasetCache != null) {
+            parsedDatasetCache.put(cacheKey,
+                            new ParsedDatasetEntry(linkedDataCacheEntry, readOnlyDataset,
+                                            estimateTripleCount(dataset)));
+        }
+        return readOnlyDataset;
+    }
+
+    private static Dataset toReadOnly(Dataset dataset) {
+        return dataset.asDatasetGraph() instanceof DatasetGraphReadOnly ? dataset
+                        : DatasetFactory.wrap(new SharedDatasetGraph(dataset.asDatasetGraph()));
+    }
+
+    private void removeFromCache(String cacheKey) {
+        cache.remove(cacheKey);
+        if (parsedDatasetCache != null) {
+            parsedDatasetCache.invalidate(cacheKey);
+        }
+    }
+
+    private static int estimateTripleCount(Dataset dataset) {
+        long count = dataset.getDefaultModel().size();
+        Iterator<String> names = dataset.listNames();
+        while (names.hasNext()) {
+            count += dataset.getNamedModel(names.next()).size();
+        }
+        // weight 0 entries would never be evicted
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, count));
+    }
+
     private static Dataset readDatasetFromByteArray(byte[] datasetbytes) {
         Dataset dataset = DatasetFactory.create();
         RDFDataMgr.read(dataset, new ByteArrayInputStream(datasetbytes), Lang.NQUADS);
@@ -420,7 +608,7 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
                 logger.debug("server said our ETAG is still valid, using cached dataset for URI {} ", resource);
             }
             datasetResponse = new DatasetResponseWithStatusCodeAndHeaders(
-                            readDatasetFromByteArray(linkedDataCacheEntry.getDataset()),
+                            getParsedDataset(makeCacheKey(resource, requesterWebID), linkedDataCacheEntry),
                             datasetResponse.getStatusCode(), datasetResponse.getResponseHeaders());
         } else {
             if (logger.isDebugEnabled()) {
@@ -563,6 +751,10 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         // this.cache = new SelfPopulatingCache(baseCache, new
         // LinkedDataCacheEntryFactory());
         this.cache = baseCache;
+        if (parsedDatasetCacheMaxTriples > 0) {
+            this.parsedDatasetCache = CacheBuilder.newBuilder().maximumWeight(parsedDatasetCacheMaxTriples)
+                            .weigher((String key, ParsedDatasetEntry entry) -> entry.tripleCount).build();
+        }
     }
 
     public void setCacheManager(final EhCacheCacheManager cacheManager) {
@@ -604,6 +796,95 @@ public class CachingLinkedDataSource extends LinkedDataSourceBase implements Lin
         }
     }
 
+    /**
+     * Read-only view of a dataset that is shared between threads. Asking the
+     * underlying in-memory dataset for a graph it does not contain would create
+     * and add that graph, so an empty graph is returned instead.
+     */
+    private static class SharedDatasetGraph extends DatasetGraphReadOnly {
+        SharedDatasetGraph(DatasetGraph dsg) {
+            super(dsg);
+        }
+
+        @Override
+        public Graph getGraph(Node graphNode) {
+            if (!Quad.isDefaultGraph(graphNode) && !Quad.isUnionGraph(graphNode) && !containsGraph(graphNode)) {
+                return new GraphReadOnly(GraphFactory.createDefaultGraph());
+            }
+            return super.getGraph(graphNode);
+        }
+    }
+
+    /**
+     * Entry of the parsed tier. Remembers the serialized entry it was created from
+     * so it is not used after that entry was replaced.
+     */
+    private static class ParsedDatasetEntry {
+        private final LinkedDataCacheEntry source;
+        private final Dataset dataset;
+        private final int tripleCount;
+
+        ParsedDatasetEntry(LinkedDataCacheEntry source, Dataset dataset, int tripleCount) {
+            this.source = source;
+            this.dataset = dataset;
+            this.tripleCount = tripleCount;
+        }
+    }
+
+    /**
+     * Hit/miss counters for the serialized (byte) tier and the parsed tier, and the
+     * time spent parsing serialized datasets.
+     */
+    public static class CacheStatistics {
+        private final LongAdder byteTierHits = new LongAdder();
+        private final LongAdder byteTierMisses = new LongAdder();
+        private final LongAdder parsedTierHits = new LongAdder();
+        private final LongAdder parsedTierMisses = new LongAdder();
+        private final LongAdder parseCount = new LongAdder();
+        private final LongAdder parseTimeNanos = new LongAdder();
+        private final LongAdder coalescedRequests = new LongAdder();
+
+        public long getByteTierHits() {
+            return byteTierHits.sum();
+        }
+
+        public long getByteTierMisses() {
+            return byteTierMisses.sum();
+        }
+
+        public long getParsedTierHits() {
+            return parsedTierHits.sum();
+        }
+
+        public long getParsedTierMisses() {
+            return parsedTierMisses.sum();
+        }
+
+        public long getParseCount() {
+            return parseCount.sum();
+        }
+
+        public long getParseTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(parseTimeNanos.sum());
+        }
+
+        /**
+         * Number of requests that used the result of a request for the same resource
+         * that was already in flight.
+         */
+        public long getCoalescedRequests() {
+            return coalescedRequests.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CacheStatistics [byteTierHits=" + getByteTierHits() + ", byteTierMisses=" + getByteTierMisses()
+                            + ", parsedTierHits=" + getParsedTierHits() + ", parsedTierMisses="
+                            + getParsedTierMisses() + ", parseCount=" + getParseCount() + ", parseTimeMillis="
+                            + getParseTimeMillis() + ", coalescedRequests=" + getCoalescedRequests() + "]";
+        }
+    }
+
     public static class LinkedDataCacheEntry {
         private String etag;
         private Date expires = null;
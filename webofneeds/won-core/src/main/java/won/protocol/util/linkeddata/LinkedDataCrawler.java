@@ -0,0 +1,312 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.path.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import won.protocol.rest.LinkedDataFetchingException;
+import won.protocol.util.AuthenticationThreadLocal;
+import won.protocol.util.RdfUtils;
+
+/**
+ * Crawls linked data starting at one resource. Instead of fetching the crawl
+ * frontier level by level, the next requests are dispatched as soon as the
+ * response that reveals them arrives. Each response is only matched against the
+ * crawl state reached so far (see {@link UriDiscoverer}).
+ * <p>
+ * The crawl honours the maximum number of requests and the maximum depth (the
+ * start resource has depth 0, resources found in the response for a resource of
+ * depth d have depth d+1) and limits the number of concurrent requests per
+ * host. A crawler instance can only be used once.
+ */
+class LinkedDataCrawler {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private final LinkedDataSource linkedDataSource;
+    private final Optional<URI> requesterWebID;
+    private final int maxRequests;
+    private final int maxDepth;
+    private final int maxConcurrentRequestsPerHost;
+    private final UriDiscoverer uriDiscoverer;
+    private final Dataset dataset = LinkedDataSourceBase.makeDataset();
+    private final CompletableFuture<Dataset> result = new CompletableFuture<>();
+    // all fields below are guarded by 'this'
+    private final Set<URI> requestedURIs = new HashSet<>();
+    private final Map<String, Integer> activeRequestsPerHost = new HashMap<>();
+    private final Map<String, Deque<CrawlRequest>> waitingRequestsPerHost = new HashMap<>();
+    private final Deque<CrawlRequest> readyRequests = new ArrayDeque<>();
+    private boolean dispatching = false;
+    private int requests = 0;
+    private int unfinishedRequests = 0;
+    private Optional<Object> authentication = Optional.empty();
+
+    LinkedDataCrawler(LinkedDataSource linkedDataSource, Optional<URI> requesterWebID, int maxRequests, int maxDepth,
+                    int maxConcurrentRequestsPerHost, UriDiscoverer uriDiscoverer) {
+        this.linkedDataSource = linkedDataSource;
+        this.requesterWebID = requesterWebID;
+        this.maxRequests = maxRequests;
+        this.maxDepth = maxDepth;
+        this.maxConcurrentRequestsPerHost = Math.max(1, maxConcurrentRequestsPerHost);
+        this.uriDiscoverer = uriDiscoverer;
+    }
+
+    /**
+     * Crawls, starting at the specified resource, and blocks until the crawl is
+     * finished.
+     *
+     * @return the union of all fetched datasets
+     */
+    public Dataset crawl(URI resourceURI) {
+        synchronized (this) {
+            // hack: there may be a threadLocal with the authentication data we need
+            // further down the call stack. The requests are dispatched from the threads
+            // that process the responses, so we have to pass it on to them.
+            if (AuthenticationThreadLocal.hasValue()) {
+                authentication = Optional.of(AuthenticationThreadLocal.getAuthentication());
+            }
+            if (maxRequests <= 0 || maxDepth <= 0) {
+                return dataset;
+            }
+            addRequest(resourceURI, 0);
+        }
+        dispatchReadyRequests();
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LinkedDataFetchingException) {
+                throw (LinkedDataFetchingException) cause;
+            }
+            throw new RuntimeException("Could not retrieve data for multiple URIs", cause);
+        }
+    }
+
+    /**
+     * Schedules a request for the uri unless it has already been requested or the
+     * request budget is used up. Must be called while holding the lock.
+     */
+    private void addRequest(URI uri, int depth) {
+        if (requests >= maxRequests || depth >= maxDepth || requestedURIs.contains(uri)) {
+            return;
+        }
+        requestedURIs.add(uri);
+        requests++;
+        unfinishedRequests++;
+        CrawlRequest request = new CrawlRequest(uri, depth);
+        int activeRequests = activeRequestsPerHost.getOrDefault(request.host, 0);
+        if (activeRequests < maxConcurrentRequestsPerHost) {
+            activeRequestsPerHost.put(request.host, activeRequests + 1);
+            readyRequests.add(request);
+        } else {
+            waitingRequestsPerHost.computeIfAbsent(request.host, h -> new ArrayDeque<>()).add(request);
+        }
+    }
+
+    /**
+     * Starts the ready requests. Only one thread dispatches at a time; responses
+     * that are available immediately (e.g. cached ones) are processed in the loop
+     * instead of recursively.
+     */
+    private void dispatchReadyRequests() {
+        synchronized (this) {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        }
+        while (true) {
+            CrawlRequest request;
+            synchronized (this) {
+                if (readyRequests.isEmpty() || result.isDone()) {
+                    dispatching = false;
+                    return;
+                }
+                request = readyRequests.poll();
+            }
+            fetch(request).whenComplete((fetchedData, throwable) -> {
+                onRequestFinished(request, fetchedData, throwable);
+                dispatchReadyRequests();
+            });
+        }
+    }
+
+    private CompletableFuture<Dataset> fetch(CrawlRequest request) {
+        boolean setAuthentication = authentication.isPresent() && !AuthenticationThreadLocal.hasValue();
+        try {
+            if (setAuthentication) {
+                AuthenticationThreadLocal.setAuthentication(authentication.get());
+            }
+            logger.debug("crawling {} (depth {})", request.uri, request.depth);
+            return linkedDataSource.getDataForResourceAsync(request.uri, requesterWebID.orElse(null));
+        } catch (RuntimeException e) {
+            CompletableFuture<Dataset> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        } finally {
+            if (setAuthentication) {
+                AuthenticationThreadLocal.remove();
+            }
+        }
+    }
+
+    private synchronized void onRequestFinished(CrawlRequest request, Dataset fetchedData, Throwable throwable) {
+        if (result.isDone()) {
+            return;
+        }
+        unfinishedRequests--;
+        releaseHostSlot(request.host);
+        if (throwable != null) {
+            result.completeExceptionally(
+                            throwable instanceof CompletionException ? throwable.getCause() : throwable);
+            return;
+        }
+        try {
+            // Add fetchedData to dataset, replacing any named models contained in both.
+            // We do this because
+            // 1. merging does not work properly in the presence of blank nodes - they end
+            // up duplicated
+            // 2. we do not expect to find the same named model with different content, so
+            // merging should have no visible effect at all
+            // the fetched data may be shared by the linkedDataSource (e.g. cached), while
+            // the crawl result belongs to the caller, who may modify it: add a copy
+            RdfUtils.addDatasetToDataset(dataset, RdfUtils.cloneDataset(fetchedData), true);
+            for (URI discoveredURI : uriDiscoverer.discover(fetchedData, dataset)) {
+                addRequest(discoveredURI, request.depth + 1);
+            }
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        if (unfinishedRequests == 0) {
+            logger.debug("crawl finished after {} requests", requests);
+            result.complete(dataset);
+        }
+    }
+
+    private void releaseHostSlot(String host) {
+        Deque<CrawlRequest> waiting = waitingRequestsPerHost.get(host);
+        if (waiting != null && !waiting.isEmpty()) {
+            // hand the slot over to the next request for the host
+            readyRequests.add(waiting.poll());
+            return;
+        }
+        int activeRequests = activeRequestsPerHost.getOrDefault(host, 1) - 1;
+        if (activeRequests > 0) {
+            activeRequestsPerHost.put(host, activeRequests);
+        } else {
+            activeRequestsPerHost.remove(host);
+            waitingRequestsPerHost.remove(host);
+        }
+    }
+
+    private static class CrawlRequest {
+        private final URI uri;
+        private final int depth;
+        private final String host;
+
+        CrawlRequest(URI uri, int depth) {
+            this.uri = uri;
+            this.depth = depth;
+            this.host = uri.getHost() == null ? "" : uri.getHost() + ":" + uri.getPort();
+        }
+    }
+
+    /**
+     * Finds the URIs to crawl next. Called once for every fetched dataset, always
+     * by one thread at a time.
+     */
+    interface UriDiscoverer {
+        /**
+         * @param fetchedData the dataset that has just been fetched
+         * @param crawledData all data crawled so far, including fetchedData
+         * @return URIs to crawl. URIs that have already been requested are ignored by
+         * the crawler.
+         */
+        Collection<URI> discover(Dataset fetchedData, Dataset crawledData);
+    }
+
+    /**
+     * Follows the specified properties, wherever they occur in the fetched data.
+     */
+    static UriDiscoverer followingProperties(List<URI> properties) {
+        final Set<Node> predicates = properties.stream().map(p -> NodeFactory.createURI(p.toString()))
+                        .collect(Collectors.toSet());
+        return (fetchedData, crawledData) -> {
+            Set<URI> discovered = new LinkedHashSet<>();
+            Iterator<Quad> quads = fetchedData.asDatasetGraph().find();
+            while (quads.hasNext()) {
+                Quad quad = quads.next();
+                if (predicates.contains(quad.getPredicate()) && quad.getObject().isURI()) {
+                    discovered.add(URI.create(quad.getObject().getURI()));
+                }
+            }
+            return discovered;
+        };
+    }
+
+    /**
+     * Follows the specified property paths, starting at the specified resource. The
+     * paths are evaluated incrementally using {@link PropertyPathAutomaton}; paths
+     * it cannot handle are re-evaluated on all crawled data after each response.
+     */
+    static UriDiscoverer followingPropertyPaths(URI resourceURI, List<Path> paths) {
+        final Node start = NodeFactory.createURI(resourceURI.toString());
+        final List<PropertyPathAutomaton.Evaluation> evaluations = new ArrayList<>();
+        final List<Path> unsupportedPaths = new ArrayList<>();
+        for (Path path : paths) {
+            Optional<PropertyPathAutomaton> automaton = PropertyPathAutomaton.compile(path);
+            if (automaton.isPresent()) {
+                evaluations.add(automaton.get().startAt(start));
+            } else {
+                logger.debug("cannot evaluate property path {} incrementally", path);
+                unsupportedPaths.add(path);
+            }
+        }
+        return (fetchedData, crawledData) -> {
+            Set<URI> discovered = new LinkedHashSet<>();
+            for (PropertyPathAutomaton.Evaluation evaluation : evaluations) {
+                for (Node node : evaluation.addData(fetchedData.asDatasetGraph(), crawledData.asDatasetGraph())) {
+                    if (node.isURI()) {
+                        discovered.add(URI.create(node.getURI()));
+                    }
+                }
+            }
+            for (Path path : unsupportedPaths) {
+                RdfUtils.getURIsForPropertyPathByQuery(crawledData, resourceURI, path)
+                                .forEachRemaining(discovered::add);
+            }
+            return discovered;
+        };
+    }
+}
@@ -13,6 +13,7 @@ package won.protocol.util.linkeddata;
 import java.net.URI;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.sparql.path.Path;
@@ -22,6 +23,12 @@ import won.protocol.rest.DatasetResponseWithStatusCodeAndHeaders;
 
 /**
  * Interface for fetching linked data as a jena Model.
+ * <p>
+ * The datasets returned for a single resource may be shared with other callers
+ * (e.g. cached datasets) and must not be modified. Callers that need to modify
+ * such a dataset have to copy it first (e.g. using
+ * {@link won.protocol.util.RdfUtils#cloneDataset(Dataset)}). Datasets combined
+ * from several resources by the crawling methods belong to the caller.
  */
 public interface LinkedDataSource {
     /**
@@ -45,6 +52,18 @@ public interface LinkedDataSource {
      */
     Dataset getDataForResource(URI resourceURI, URI requesterWebID);
 
+    /**
+     * Asynchronously obtains the resource description of the resource identified by
+     * the given URI, optionally on behalf of the requester identified by the given
+     * WebID.
+     *
+     * @param resourceURI URI of the resource
+     * @param requesterWebID WebID of the entity requesting the resource (may be
+     * null)
+     * @return future of the resource description as Dataset
+     */
+    CompletableFuture<Dataset> getDataForResourceAsync(URI resourceURI, URI requesterWebID);
+
     Dataset getDataForResource(final URI resourceURI, List<URI> properties, int maxRequest, int maxDepth);
 
     Dataset getDataForResource(final URI resourceURI, URI requesterWebID, List<URI> properties, int maxRequest,
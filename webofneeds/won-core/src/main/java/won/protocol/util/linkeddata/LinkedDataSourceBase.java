@@ -12,25 +12,18 @@ package won.protocol.util.linkeddata;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.NodeIterator;
-import org.apache.jena.rdf.model.Property;
-import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.sparql.core.DatasetGraph;
@@ -44,7 +37,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 
 import won.protocol.rest.DatasetResponseWithStatusCodeAndHeaders;
-import won.protocol.rest.LinkedDataFetchingException;
 import won.protocol.rest.LinkedDataRestClient;
 import won.protocol.util.AuthenticationThreadLocal;
 import won.protocol.util.RdfUtils;
@@ -61,6 +53,7 @@ public class LinkedDataSourceBase implements LinkedDataSource {
     private ThreadPoolExecutor parallelRequestsThreadpool;
     @Autowired
     protected WonMessageUriResolver wonMessageUriResolver;
+    private int maxConcurrentRequestsPerHost = 5;
 
     /**
      * extract the previous link (in case won node had more data than could be sent
@@ -142,6 +135,32 @@ public class LinkedDataSourceBase implements LinkedDataSource {
         return dataset;
     }
 
+    @Override
+    public CompletableFuture<Dataset> getDataForResourceAsync(final URI resourceURI, final URI requesterWebID) {
+        final Optional<Object> authenticationOpt = AuthenticationThreadLocal.hasValue()
+                        ? Optional.of(AuthenticationThreadLocal.getAuthentication())
+                        : Optional.empty();
+        final Thread callingThread = Thread.currentThread();
+        return CompletableFuture.supplyAsync(() -> {
+            // the executor runs the task in the calling thread if the pool is saturated,
+            // the caller's authentication must not be touched then
+            boolean otherThread = Thread.currentThread() != callingThread;
+            try {
+                if (otherThread && authenticationOpt.isPresent()) {
+                    // theadlocal hack: there may be a threadLocal with the authentication data
+                    // we need further down the call stack
+                    AuthenticationThreadLocal.setAuthentication(authenticationOpt.get());
+                }
+                return requesterWebID == null ? getDataForResource(resourceURI)
+                                : getDataForResource(resourceURI, requesterWebID);
+            } finally {
+                if (otherThread) {
+                    AuthenticationThreadLocal.remove();
+                }
+            }
+        }, getAsyncExecutor());
+    }
+
     @Override
     public Dataset getDataForResource(final URI resourceURI, List<URI> properties, int maxRequest, int maxDepth) {
         return getDataForResource(resourceURI, null, properties, maxRequest, maxDepth);
@@ -150,17 +169,8 @@ public class LinkedDataSourceBase implements LinkedDataSource {
     @Override
     public Dataset getDataForResource(final URI resourceURI, final URI requesterWebID, final List<URI> properties,
                     final int maxRequest, final int maxDepth) {
-        return getDataForResource(resourceURI, Optional.ofNullable(requesterWebID), maxRequest, maxDepth,
-                        (Dataset crawledData,
-                                        Set<URI> crawledUris) -> getURIsToCrawl(crawledData, crawledUris, properties));
-    }
-
-    private Set<URI> retainOnlyAllowedAmount(Set<URI> newlyDiscoveredURIs, final int maxRequest, int requests) {
-        if (newlyDiscoveredURIs.size() + requests > maxRequest) {
-            // only crawl as many as we are allowed to
-            return new HashSet<>(new ArrayList<>(newlyDiscoveredURIs).subList(0, maxRequest - requests));
-        }
-        return newlyDiscoveredURIs;
+        return crawl(resourceURI, Optional.ofNullable(requesterWebID), maxRequest, maxDepth,
+                        LinkedDataCrawler.followingProperties(properties));
     }
 
     @Override
@@ -178,165 +188,59 @@ public class LinkedDataSourceBase implements LinkedDataSource {
     @Override
     public Dataset getDataForResourceWithPropertyPath(final URI resourceURI, final Optional<URI> requesterWebID,
                     final List<Path> properties, final int maxRequest, final int maxDepth) {
-        return getDataForResource(resourceURI, requesterWebID, maxRequest, maxDepth,
-                        (Dataset crawledData, Set<URI> crawledUris) -> getURIsToCrawlWithPropertyPath(crawledData,
-                                        resourceURI, crawledUris, properties));
+        return crawl(resourceURI, requesterWebID, maxRequest, maxDepth,
+                        LinkedDataCrawler.followingPropertyPaths(resourceURI, properties));
     }
 
     @Override
     public Dataset getDataForResourceWithPropertyPath(final URI resourceURI, final URI requesterWebID,
                     final List<Path> properties, final int maxRequest, final int maxDepth) {
-        return getDataForResource(resourceURI, Optional.ofNullable(requesterWebID), maxRequest, maxDepth,
-                        (Dataset crawledData, Set<URI> crawledUris) -> getURIsToCrawlWithPropertyPath(crawledData,
-                                        resourceURI, crawledUris, properties));
-    }
-
-    private Dataset getDataForResource(final URI resourceURI, final Optional<URI> requesterWebID, final int maxRequest,
-                    final int maxDepth, BiFunction<Dataset, Set<URI>, Set<URI>> findNextUrisFunction) {
-        Set<URI> crawledURIs = new HashSet<>();
-        Set<URI> newlyDiscoveredURIs = new HashSet<>();
-        newlyDiscoveredURIs.add(resourceURI);
-        int depth = 0;
-        int requests = 0;
-        final Dataset dataset = makeDataset();
-        while (newlyDiscoveredURIs.size() > 0 && depth < maxDepth && requests < maxRequest) {
-            final Set<URI> urisToCrawl = retainOnlyAllowedAmount(newlyDiscoveredURIs, maxRequest, requests);
-            // hack: there may be a threadLocal with the authentication data we need further
-            // down the call stack
-            // if there is one, we need to add that to the threads we use in the following
-            // parallel construct
-            final Optional<Object> authenticationOpt = AuthenticationThreadLocal.hasValue()
-                            ? Optional.of(AuthenticationThreadLocal.getAuthentication())
-                            : Optional.empty();
-            Future<Optional<Dataset>> crawledData = parallelRequestsThreadpool
-                            .submit(() -> urisToCrawl.parallelStream().map(uri -> {
-                                try {
-                                    if (authenticationOpt.isPresent()) {
-                                        // theadlocal hack mentioned above
-                                        AuthenticationThreadLocal.setAuthentication(authenticationOpt.get());
-                                    }
-                                    return requesterWebID.isPresent() ? getDataForResource(uri, requesterWebID.get())
-                                                    : getDataForResource(uri);
-                                } finally {
-                                    // be sure to remove the principal from the threadlocal after the call
-                                    AuthenticationThreadLocal.remove();
-                                }
-                            }).reduce(RdfUtils::addDatasetToDataset));
-            Optional<Dataset> crawledDataset;
-            try {
-                crawledDataset = crawledData.get();
-            } catch (ExecutionException e) {
-                Throwable cause = e.getCause();
-                if (cause instanceof LinkedDataFetchingException) {
-                    throw (LinkedDataFetchingException) cause;
-                }
-                throw new RuntimeException("Could not retrieve data for multiple URIs", e);
-            } catch (Exception e) {
-                throw new RuntimeException("Could not retrieve data for multiple URIs", e);
-            }
-            if (crawledDataset.isPresent()) {
-                // Add crawledDataset to dataset, replacing any named models contained in both.
-                // We do this because
-                // 1. merging does not work properly in the presence of blank nodes - they end
-                // up duplicated
-                // 2. we do not expect to find the same named model with different content, so
-                // merging should have no visible effect at all
-                RdfUtils.addDatasetToDataset(dataset, crawledDataset.get(), true);
-            }
-            crawledURIs.addAll(urisToCrawl);
-            requests += urisToCrawl.size();
-            newlyDiscoveredURIs = new HashSet<>(findNextUrisFunction.apply(dataset, crawledURIs));
-            depth++;
-            logger.debug("current Depth: " + depth);
-        }
-        return dataset;
+        return getDataForResourceWithPropertyPath(resourceURI, Optional.ofNullable(requesterWebID), properties,
+                        maxRequest, maxDepth);
     }
 
     /**
-     * For the specified resourceURI, evaluates the specified property paths and
-     * adds the identified resources to the returned set if they are not contained
-     * in the specified exclude set.
-     * 
-     * @param dataset
-     * @param resourceURI
-     * @param excludedUris
-     * @param properties
-     * @return
+     * Crawls the linked data starting at resourceURI. Requests are sent via
+     * {@link #getDataForResourceAsync(URI, URI)} as soon as the response that
+     * reveals them arrives, with at most maxConcurrentRequestsPerHost requests per
+     * host at a time.
      */
-    private Set<URI> getURIsToCrawlWithPropertyPath(Dataset dataset, URI resourceURI, Set<URI> excludedUris,
-                    List<Path> properties) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("evaluating property paths on data crawled so far");
-            RDFDataMgr.write(System.out, dataset, Lang.TRIG);
-        }
-        Set<URI> toCrawl = new HashSet<>();
-        properties.stream().forEach(path -> {
-            Iterator<URI> newURIs = RdfUtils.getURIsForPropertyPathByQuery(dataset, resourceURI, path);
-            if (!newURIs.hasNext()) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("found no uris starting at {}, using path {}", new Object[] { resourceURI, path });
-                }
-                return;
-            }
-            Set<URI> newUrisThisIteration = new HashSet<>();
-            int skipped = 0;
-            while (newURIs.hasNext()) {
-                URI newUri = newURIs.next();
-                boolean skip = excludedUris.contains(newUri);
-                if (skip) {
-                    skipped++;
-                } else {
-                    newUrisThisIteration.add(newUri);
-                }
-                if (logger.isDebugEnabled()) {
-                    logger.debug("found uri {} starting at {}, using path {}, will {} ",
-                                    new Object[] { newUri, resourceURI, path, skip ? "skip" : "fetch" });
-                }
-            }
-            toCrawl.addAll(newUrisThisIteration);
-        });
-        return toCrawl;
+    private Dataset crawl(final URI resourceURI, final Optional<URI> requesterWebID, final int maxRequest,
+                    final int maxDepth, LinkedDataCrawler.UriDiscoverer uriDiscoverer) {
+        return new LinkedDataCrawler(this, requesterWebID, maxRequest, maxDepth, maxConcurrentRequestsPerHost,
+                        uriDiscoverer).crawl(resourceURI);
+    }
+
+    public void setLinkedDataRestClient(final LinkedDataRestClient linkedDataRestClient) {
+        this.linkedDataRestClient = linkedDataRestClient;
     }
 
     /**
-     * For the specified properties, finds their objects and adds the identified
-     * resources to the returned set if they are not contained in the specified
-     * exclude set.
-     * 
-     * @param dataset
-     * @param excludedUris
-     * @param properties
-     * @return
+     * Executor for asynchronous requests: uses the parallelRequestsThreadpool, but
+     * runs the task in the calling thread if the pool rejects it.
      */
-    private Set<URI> getURIsToCrawl(Dataset dataset, Set<URI> excludedUris, final List<URI> properties) {
-        Set<URI> toCrawl = new HashSet<>();
-        for (final URI property : properties) {
-            NodeIterator objectIterator = RdfUtils.visitFlattenedToNodeIterator(dataset,
-                            model -> {
-                                final Property p = model.createProperty(property.toString());
-                                return model.listObjectsOfProperty(p);
-                            });
-            for (; objectIterator.hasNext();) {
-                RDFNode objectNode = objectIterator.next();
-                if (objectNode.isURIResource()) {
-                    URI discoveredUri = URI.create(objectNode.asResource().getURI());
-                    if (!excludedUris.contains(discoveredUri)) {
-                        toCrawl.add(discoveredUri);
-                    }
-                }
+    protected Executor getAsyncExecutor() {
+        return task -> {
+            try {
+                parallelRequestsThreadpool.execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.debug("parallelRequestsThreadpool is saturated, executing request in calling thread");
+                task.run();
             }
-        }
-        return toCrawl;
-    }
-
-    public void setLinkedDataRestClient(final LinkedDataRestClient linkedDataRestClient) {
-        this.linkedDataRestClient = linkedDataRestClient;
+        };
     }
 
     public void setParallelRequestsThreadpool(ThreadPoolExecutor parallelRequestsThreadpool) {
         this.parallelRequestsThreadpool = parallelRequestsThreadpool;
     }
 
+    /**
+     * Limits the number of concurrent requests per host (default 5) when crawling.
+     */
+    public void setMaxConcurrentRequestsPerHost(int maxConcurrentRequestsPerHost) {
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    }
+
     public static Dataset makeDataset() {
         DatasetGraph dsg = TDBFactory.createDatasetGraph();
         dsg.getContext().set(TDB.symUnionDefaultGraph, new NodeValueBoolean(true));
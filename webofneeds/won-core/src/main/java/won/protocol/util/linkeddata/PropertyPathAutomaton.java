@@ -0,0 +1,324 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.path.P_Alt;
+import org.apache.jena.sparql.path.P_FixedLength;
+import org.apache.jena.sparql.path.P_Inverse;
+import org.apache.jena.sparql.path.P_Link;
+import org.apache.jena.sparql.path.P_Mod;
+import org.apache.jena.sparql.path.P_OneOrMore1;
+import org.apache.jena.sparql.path.P_OneOrMoreN;
+import org.apache.jena.sparql.path.P_Path1;
+import org.apache.jena.sparql.path.P_ReverseLink;
+import org.apache.jena.sparql.path.P_Seq;
+import org.apache.jena.sparql.path.P_ZeroOrMore1;
+import org.apache.jena.sparql.path.P_ZeroOrMoreN;
+import org.apache.jena.sparql.path.P_ZeroOrOne;
+import org.apache.jena.sparql.path.Path;
+
+/**
+ * Nondeterministic automaton built from a SPARQL property path. It allows for
+ * evaluating the path incrementally while a crawl proceeds: each newly fetched
+ * dataset is only matched against the path states reached so far, instead of
+ * re-evaluating the whole path on all data crawled so far.
+ * <p>
+ * Supports links, inverse links, sequences, alternatives and the modifiers ?,
+ * *, +, {n} and {n,m}. Other paths (e.g. negated property sets) are rejected by
+ * {@link #compile(Path)}.
+ */
+class PropertyPathAutomaton {
+    // bound expansion of {n,m} to avoid state explosion
+    private static final int MAX_REPETITIONS = 20;
+    private final List<List<Transition>> transitions = new ArrayList<>();
+    private final List<List<Integer>> epsilonTransitions = new ArrayList<>();
+    private final Map<Node, List<Transition>> transitionsByPredicate = new HashMap<>();
+    private BitSet[] epsilonClosures;
+    private int startState;
+    private int acceptState;
+
+    private PropertyPathAutomaton() {
+    }
+
+    /**
+     * Builds the automaton for the specified path.
+     *
+     * @return the automaton or an empty Optional if the path contains constructs
+     * that are not supported
+     */
+    public static Optional<PropertyPathAutomaton> compile(Path path) {
+        PropertyPathAutomaton automaton = new PropertyPathAutomaton();
+        automaton.startState = automaton.newState();
+        automaton.acceptState = automaton.newState();
+        if (!automaton.build(path, false, automaton.startState, automaton.acceptState)) {
+            return Optional.empty();
+        }
+        automaton.computeEpsilonClosures();
+        return Optional.of(automaton);
+    }
+
+    /**
+     * Starts an evaluation of the path at the specified node.
+     */
+    public Evaluation startAt(Node start) {
+        return new Evaluation(start);
+    }
+
+    private int newState() {
+        transitions.add(new ArrayList<>());
+        epsilonTransitions.add(new ArrayList<>());
+        return transitions.size() - 1;
+    }
+
+    private void addTransition(int from, int to, Node predicate, boolean forward) {
+        Transition transition = new Transition(from, to, predicate, forward);
+        transitions.get(from).add(transition);
+        transitionsByPredicate.computeIfAbsent(predicate, p -> new ArrayList<>()).add(transition);
+    }
+
+    private void addEpsilonTransition(int from, int to) {
+        epsilonTransitions.get(from).add(to);
+    }
+
+    private boolean build(Path path, boolean inverse, int from, int to) {
+        if (path instanceof P_Link) {
+            addTransition(from, to, ((P_Link) path).getNode(), !inverse);
+            return true;
+        }
+        if (path instanceof P_ReverseLink) {
+            addTransition(from, to, ((P_ReverseLink) path).getNode(), inverse);
+            return true;
+        }
+        if (path instanceof P_Inverse) {
+            return build(((P_Inverse) path).getSubPath(), !inverse, from, to);
+        }
+        if (path instanceof P_Seq) {
+            P_Seq seq = (P_Seq) path;
+            int middle = newState();
+            Path first = inverse ? seq.getRight() : seq.getLeft();
+            Path second = inverse ? seq.getLeft() : seq.getRight();
+            return build(first, inverse, from, middle) && build(second, inverse, middle, to);
+        }
+        if (path instanceof P_Alt) {
+            P_Alt alt = (P_Alt) path;
+            return build(alt.getLeft(), inverse, from, to) && build(alt.getRight(), inverse, from, to);
+        }
+        if (path instanceof P_ZeroOrOne) {
+            addEpsilonTransition(from, to);
+            return build(((P_ZeroOrOne) path).getSubPath(), inverse, from, to);
+        }
+        if (path instanceof P_ZeroOrMore1 || path instanceof P_ZeroOrMoreN) {
+            return buildZeroOrMore(((P_Path1) path).getSubPath(), inverse, from, to);
+        }
+        if (path instanceof P_OneOrMore1 || path instanceof P_OneOrMoreN) {
+            return buildOneOrMore(((P_Path1) path).getSubPath(), inverse, from, to);
+        }
+        if (path instanceof P_FixedLength) {
+            P_FixedLength fixed = (P_FixedLength) path;
+            return buildRepetition(fixed.getSubPath(), inverse, from, to, fixed.getCount(), fixed.getCount());
+        }
+        if (path instanceof P_Mod) {
+            P_Mod mod = (P_Mod) path;
+            long min = mod.getMin() == P_Mod.UNSET ? 0 : mod.getMin();
+            long max = mod.getMax() == P_Mod.INF ? -1 : mod.getMax();
+            if (mod.getMax() == P_Mod.UNSET) {
+                return false;
+            }
+            return buildRepetition(mod.getSubPath(), inverse, from, to, min, max);
+        }
+        return false;
+    }
+
+    private boolean buildZeroOrMore(Path subPath, boolean inverse, int from, int to) {
+        int loop = newState();
+        addEpsilonTransition(from, loop);
+        addEpsilonTransition(loop, to);
+        return build(subPath, inverse, loop, loop);
+    }
+
+    private boolean buildOneOrMore(Path subPath, boolean inverse, int from, int to) {
+        int loopStart = newState();
+        int loopEnd = newState();
+        addEpsilonTransition(from, loopStart);
+        addEpsilonTransition(loopEnd, loopStart);
+        addEpsilonTransition(loopEnd, to);
+        return build(subPath, inverse, loopStart, loopEnd);
+    }
+
+    /**
+     * Builds min mandatory repetitions followed by (max - min) optional ones, or a
+     * loop if max is negative (unbounded).
+     */
+    private boolean buildRepetition(Path subPath, boolean inverse, int from, int to, long min, long max) {
+        if (min < 0 || min > MAX_REPETITIONS || max > MAX_REPETITIONS || (max >= 0 && max < min)) {
+            return false;
+        }
+        int current = from;
+        for (long i = 0; i < min; i++) {
+            int next = newState();
+            if (!build(subPath, inverse, current, next)) {
+                return false;
+            }
+            current = next;
+        }
+        if (max < 0) {
+            return buildZeroOrMore(subPath, inverse, current, to);
+        }
+        addEpsilonTransition(current, to);
+        for (long i = min; i < max; i++) {
+            int next = newState();
+            if (!build(subPath, inverse, current, next)) {
+                return false;
+            }
+            addEpsilonTransition(next, to);
+            current = next;
+        }
+        return true;
+    }
+
+    private void computeEpsilonClosures() {
+        int stateCount = transitions.size();
+        epsilonClosures = new BitSet[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            BitSet closure = new BitSet(stateCount);
+            Deque<Integer> toVisit = new ArrayDeque<>();
+            toVisit.push(state);
+            closure.set(state);
+            while (!toVisit.isEmpty()) {
+                for (int next : epsilonTransitions.get(toVisit.pop())) {
+                    if (!closure.get(next)) {
+                        closure.set(next);
+                        toVisit.push(next);
+                    }
+                }
+            }
+            epsilonClosures[state] = closure;
+        }
+    }
+
+    private static class Transition {
+        private final int from;
+        private final int to;
+        private final Node predicate;
+        private final boolean forward;
+
+        Transition(int from, int to, Node predicate, boolean forward) {
+            this.from = from;
+            this.to = to;
+            this.predicate = predicate;
+            this.forward = forward;
+        }
+    }
+
+    /**
+     * State of one evaluation of the automaton: the automaton states reached at
+     * each node. Not thread safe.
+     */
+    public class Evaluation {
+        private final Map<Node, BitSet> reachedStates = new HashMap<>();
+        private final Set<Node> results = new LinkedHashSet<>();
+        private final Deque<Node> nodesToExpand = new ArrayDeque<>();
+        private final Deque<Integer> statesToExpand = new ArrayDeque<>();
+        private final Node start;
+
+        private Evaluation(Node start) {
+            this.start = start;
+        }
+
+        /**
+         * Processes newly fetched data.
+         *
+         * @param newData the data fetched in the last request
+         * @param allData all data crawled so far, including newData
+         * @return nodes that were newly found to be reachable via the path
+         */
+        public Set<Node> addData(DatasetGraph newData, DatasetGraph allData) {
+            results.clear();
+            if (reachedStates.isEmpty()) {
+                reach(start, startState);
+            } else {
+                Iterator<Quad> quads = newData.find();
+                while (quads.hasNext()) {
+                    Quad quad = quads.next();
+                    List<Transition> candidates = transitionsByPredicate.get(quad.getPredicate());
+                    if (candidates == null) {
+                        continue;
+                    }
+                    for (Transition transition : candidates) {
+                        Node source = transition.forward ? quad.getSubject() : quad.getObject();
+                        if (hasReached(source, transition.from)) {
+                            reach(transition.forward ? quad.getObject() : quad.getSubject(), transition.to);
+                        }
+                    }
+                }
+            }
+            expand(allData);
+            return new LinkedHashSet<>(results);
+        }
+
+        private boolean hasReached(Node node, int state) {
+            BitSet states = reachedStates.get(node);
+            return states != null && states.get(state);
+        }
+
+        private void reach(Node node, int state) {
+            BitSet states = reachedStates.computeIfAbsent(node, n -> new BitSet());
+            BitSet closure = epsilonClosures[state];
+            for (int s = closure.nextSetBit(0); s >= 0; s = closure.nextSetBit(s + 1)) {
+                if (!states.get(s)) {
+                    states.set(s);
+                    if (s == acceptState) {
+                        results.add(node);
+                    }
+                    nodesToExpand.push(node);
+                    statesToExpand.push(s);
+                }
+            }
+        }
+
+        /**
+         * Follows the transitions of newly reached states in all data crawled so far.
+         */
+        private void expand(DatasetGraph allData) {
+            while (!nodesToExpand.isEmpty()) {
+                Node node = nodesToExpand.pop();
+                int state = statesToExpand.pop();
+                if (node.isLiteral()) {
+                    continue;
+                }
+                for (Transition transition : transitions.get(state)) {
+                    Iterator<Quad> quads = transition.forward
+                                    ? allData.find(Node.ANY, node, transition.predicate, Node.ANY)
+                                    : allData.find(Node.ANY, Node.ANY, transition.predicate, node);
+                    while (quads.hasNext()) {
+                        Quad quad = quads.next();
+                        reach(transition.forward ? quad.getObject() : quad.getSubject(), transition.to);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,7 @@ import net.sf.ehcache.Element;
 import won.protocol.message.WonMessage;
 import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
+import won.protocol.model.Coordinate;
 import won.protocol.model.SocketDefinition;
 import won.protocol.model.SocketDefinitionImpl;
 import won.protocol.rest.DatasetResponseWithStatusCodeAndHeaders;
@@ -279,6 +280,54 @@ public class WonLinkedDataUtils {
         return new LDPContainerPage<List<URI>>(uris, result.getResponseHeaders());
     }
 
+    /**
+     * Fetch the atoms whose location or job location is within
+     * <code>maxDistance</code> meters of the specified location. The node looks
+     * them up in its spatial index, so only the matching atom URIs are transferred,
+     * newest first. The node may return fewer than <code>maxResults</code> atoms.
+     *
+     * @param nodeURI
+     * @param location
+     * @param maxDistance max distance in meters
+     * @param atomState
+     * @param filterBySocketTypeUri
+     * @param filterByAtomTypeUri
+     * @param maxResults max number of atoms to fetch
+     * @param linkedDataSource
+     * @return
+     */
+    public static List<URI> getNodeAtomUrisNear(URI nodeURI, Coordinate location, double maxDistance,
+                    AtomState atomState, URI filterBySocketTypeUri, URI filterByAtomTypeUri, int maxResults,
+                    LinkedDataSource linkedDataSource) {
+        Dataset nodeDataset = getDataForResource(nodeURI, linkedDataSource);
+        WonNodeInfo wonNodeInfo = WonRdfUtils.WonNodeUtils.getWonNodeInfo(nodeURI, nodeDataset);
+        URI atomListUri = URI.create(wonNodeInfo.getAtomListURI());
+        Map<String, String> params = extractQueryParams(atomListUri.getQuery());
+        addOptionalQueryParam(params, "near", location.getLatitude() + "," + location.getLongitude());
+        addOptionalQueryParam(params, "maxDistance", maxDistance);
+        addOptionalQueryParam(params, "state", atomState);
+        addOptionalQueryParam(params, "filterByAtomTypeUri", filterByAtomTypeUri);
+        addOptionalQueryParam(params, "filterBySocketTypeUri", filterBySocketTypeUri);
+        try {
+            atomListUri = new URI(atomListUri.getScheme(), atomListUri.getAuthority(), atomListUri.getPath(),
+                            toQueryString(params),
+                            atomListUri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Could not append parameters to atom list URI " + atomListUri, e);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Prefer", String.format("return=representation; max-member-count=\"%d\"", maxResults));
+        Dataset result = getDataForResourceWithHeaders(atomListUri, headers, linkedDataSource).getDataset();
+        return RdfUtils.visitFlattenedToList(result, model -> {
+            StmtIterator it = model.listStatements(null, RDFS.member, (RDFNode) null);
+            List<URI> ret = new ArrayList<>();
+            while (it.hasNext()) {
+                ret.add(URI.create(it.next().getObject().toString()));
+            }
+            return ret;
+        });
+    }
+
     /**
      * Fetch <code>pageSize</code> atoms with specified restrictions, starting after
      * the specified atom <code>resumeAfter</code>.
@@ -635,14 +684,16 @@ public class WonLinkedDataUtils {
     }
 
     public static Dataset loadDataForAtomWithSocketDefinitions(LinkedDataSource linkedDataSource, URI atomURI) {
-        Dataset dataset = linkedDataSource.getDataForResource(atomURI);
+        // copy: the linkedDataSource may return a shared, read-only dataset
+        Dataset dataset = RdfUtils.cloneDataset(linkedDataSource.getDataForResource(atomURI));
         Set<URI> sockets = WonRdfUtils.SocketUtils.getSocketsOfAtom(dataset, atomURI);
         sockets.forEach(socket -> RdfUtils.addDatasetToDataset(dataset, loadDataForSocket(linkedDataSource, socket)));
         return dataset;
     }
 
     public static Dataset loadDataForSocket(LinkedDataSource linkedDataSource, URI socket) {
-        Dataset dataset = linkedDataSource.getDataForResource(socket);
+        // copy: the linkedDataSource may return a shared, read-only dataset
+        Dataset dataset = RdfUtils.cloneDataset(linkedDataSource.getDataForResource(socket));
         // load all data for configurations
         List<URI> configURIs = RdfUtils.getObjectsOfProperty(dataset, socket,
                         URI.create(WON.socketDefinition.getURI()),
@@ -662,7 +713,8 @@ public class WonLinkedDataUtils {
 
     public static Optional<SocketDefinition> getSocketDefinitionOfSocket(LinkedDataSource linkedDataSource,
                     URI socket) {
-        Dataset dataset = linkedDataSource.getDataForResource(socket);
+        // copy: the linkedDataSource may return a shared, read-only dataset
+        Dataset dataset = RdfUtils.cloneDataset(linkedDataSource.getDataForResource(socket));
         // load all data for configurations
         List<URI> configURIs = RdfUtils.getObjectsOfProperty(dataset, socket,
                         URI.create(WON.socketDefinition.getURI()),
@@ -0,0 +1,98 @@
+package won.cryptography.service;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.interfaces.ECPublicKey;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.javasimon.SimonManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PooledKeyPairServiceTest {
+    private static final long TIMEOUT_MILLIS = 30000;
+    private PooledKeyPairService keyPairService;
+    private long hits;
+    private long misses;
+
+    @BeforeClass
+    public static void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @After
+    public void tearDown() {
+        if (keyPairService != null) {
+            keyPairService.stop();
+        }
+    }
+
+    @Test
+    public void testPoolIsRefilled() throws Exception {
+        keyPairService = new PooledKeyPairService(2);
+        keyPairService.start();
+        waitForPoolSize(2);
+        keyPairService.generateNewKeyPairInSecp384r1();
+        keyPairService.generateNewKeyPairInSecp384r1();
+        waitForPoolSize(2);
+    }
+
+    @Test
+    public void testKeyPairIsTakenFromPool() throws Exception {
+        keyPairService = new PooledKeyPairService(2);
+        keyPairService.start();
+        waitForPoolSize(2);
+        // the pool is full, so no more key pairs are added after stopping
+        keyPairService.stop();
+        recordCounters();
+        KeyPair keyPair = keyPairService.generateNewKeyPairInSecp384r1();
+        assertSecp384r1(keyPair);
+        Assert.assertEquals(1, keyPairService.getPoolSize());
+        assertCountersIncreasedBy(1, 0);
+        Assert.assertNotEquals(keyPair.getPublic(), keyPairService.generateNewKeyPairInSecp384r1().getPublic());
+        Assert.assertEquals(0, keyPairService.getPoolSize());
+        assertCountersIncreasedBy(2, 0);
+    }
+
+    @Test
+    public void testKeyPairIsGeneratedIfPoolIsEmpty() {
+        // not started, so the pool stays empty
+        keyPairService = new PooledKeyPairService(2);
+        recordCounters();
+        assertSecp384r1(keyPairService.generateNewKeyPairInSecp384r1());
+        assertSecp384r1(keyPairService.generateNewKeyPairInSecp384r1());
+        Assert.assertEquals(0, keyPairService.getPoolSize());
+        assertCountersIncreasedBy(0, 2);
+    }
+
+    private void waitForPoolSize(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (keyPairService.getPoolSize() < size) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("pool was not refilled to " + size + " key pairs in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void recordCounters() {
+        // the counters are shared by all instances, compare with the values before
+        hits = SimonManager.getCounter(PooledKeyPairService.HITS_COUNTER).getCounter();
+        misses = SimonManager.getCounter(PooledKeyPairService.MISSES_COUNTER).getCounter();
+    }
+
+    private void assertCountersIncreasedBy(long expectedHits, long expectedMisses) {
+        Assert.assertEquals(expectedHits,
+                        SimonManager.getCounter(PooledKeyPairService.HITS_COUNTER).getCounter() - hits);
+        Assert.assertEquals(expectedMisses,
+                        SimonManager.getCounter(PooledKeyPairService.MISSES_COUNTER).getCounter() - misses);
+    }
+
+    private void assertSecp384r1(KeyPair keyPair) {
+        Assert.assertNotNull(keyPair);
+        Assert.assertTrue(keyPair.getPublic() instanceof ECPublicKey);
+        Assert.assertEquals(384, ((ECPublicKey) keyPair.getPublic()).getParams().getCurve().getField().getFieldSize());
+    }
+}
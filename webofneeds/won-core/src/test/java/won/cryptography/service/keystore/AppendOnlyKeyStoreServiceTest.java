@@ -0,0 +1,123 @@
+package won.cryptography.service.keystore;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.cert.Certificate;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import won.cryptography.service.CertificateService;
+import won.cryptography.service.KeyPairService;
+
+public class AppendOnlyKeyStoreServiceTest {
+    private static final String PASSWORD = "temp";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final KeyPairService keyPairService = new KeyPairService();
+    private final CertificateService certificateService = new CertificateService();
+
+    @BeforeClass
+    public static void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @Test
+    public void testEntriesSurviveReopening() throws Exception {
+        File file = new File(folder.getRoot(), "keys.won");
+        AppendOnlyKeyStoreService storeService = open(file);
+        KeyPair keyPair = putNewKey(storeService, "atom1");
+        Certificate certificate = certificateService.createSelfSignedCertificate(BigInteger.TEN,
+                        keyPairService.generateNewKeyPairInSecp384r1(), "other", null);
+        storeService.putCertificate("other", certificate, false);
+        storeService.close();
+        storeService = open(file);
+        Assert.assertEquals(keyPair.getPrivate(), storeService.getPrivateKey("atom1"));
+        Assert.assertEquals(keyPair.getPublic(), storeService.getPublicKey("atom1"));
+        Assert.assertEquals(certificate, storeService.getCertificate("other"));
+        Assert.assertEquals(2, storeService.getUnderlyingKeyStore().size());
+        Assert.assertTrue(storeService.getUnderlyingKeyStore().isKeyEntry("atom1"));
+        Assert.assertTrue(storeService.getUnderlyingKeyStore().isCertificateEntry("other"));
+        storeService.close();
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        File file = new File(folder.getRoot(), "keys.won");
+        AppendOnlyKeyStoreService storeService = open(file);
+        KeyPair first = putNewKey(storeService, "atom1");
+        KeyPair second = keyPairService.generateNewKeyPairInSecp384r1();
+        storeService.putKey("atom1", second.getPrivate(), new Certificate[] { certificateService
+                        .createSelfSignedCertificate(BigInteger.ONE, second, "atom1", null) }, false);
+        Assert.assertEquals(first.getPrivate(), storeService.getPrivateKey("atom1"));
+        storeService.putKey("atom1", second.getPrivate(), new Certificate[] { certificateService
+                        .createSelfSignedCertificate(BigInteger.ONE, second, "atom1", null) }, true);
+        Assert.assertEquals(second.getPrivate(), storeService.getPrivateKey("atom1"));
+        storeService.close();
+        storeService = open(file);
+        Assert.assertEquals(second.getPrivate(), storeService.getPrivateKey("atom1"));
+        storeService.close();
+    }
+
+    @Test
+    public void testIncompleteLastEntryIsDiscarded() throws Exception {
+        File file = new File(folder.getRoot(), "keys.won");
+        AppendOnlyKeyStoreService storeService = open(file);
+        KeyPair keyPair = putNewKey(storeService, "atom1");
+        putNewKey(storeService, "atom2");
+        storeService.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        storeService = open(file);
+        Assert.assertEquals(keyPair.getPrivate(), storeService.getPrivateKey("atom1"));
+        Assert.assertNull(storeService.getPrivateKey("atom2"));
+        KeyPair newKeyPair = putNewKey(storeService, "atom2");
+        storeService.close();
+        storeService = open(file);
+        Assert.assertEquals(newKeyPair.getPrivate(), storeService.getPrivateKey("atom2"));
+        storeService.close();
+    }
+
+    @Test(expected = Exception.class)
+    public void testWrongPassword() throws Exception {
+        File file = new File(folder.getRoot(), "keys.won");
+        open(file).close();
+        new AppendOnlyKeyStoreService(file, "wrong").init();
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        File legacyFile = new File(folder.getRoot(), "keys.jks");
+        FileBasedKeyStoreService legacyStoreService = new FileBasedKeyStoreService(legacyFile, PASSWORD);
+        legacyStoreService.init();
+        KeyPair keyPair = putNewKey(legacyStoreService, "atom1");
+        File file = new File(folder.getRoot(), "keys.won");
+        AppendOnlyKeyStoreService storeService = new AppendOnlyKeyStoreService(file, PASSWORD);
+        storeService.setImportFile(legacyFile.getPath());
+        storeService.init();
+        Assert.assertEquals(keyPair.getPublic(), storeService.getPublicKey("atom1"));
+        Assert.assertArrayEquals(keyPair.getPrivate().getEncoded(), storeService.getPrivateKey("atom1").getEncoded());
+        storeService.close();
+    }
+
+    private AppendOnlyKeyStoreService open(File file) throws Exception {
+        AppendOnlyKeyStoreService storeService = new AppendOnlyKeyStoreService(file, PASSWORD);
+        storeService.init();
+        return storeService;
+    }
+
+    private KeyPair putNewKey(KeyStoreService storeService, String alias) throws Exception {
+        KeyPair keyPair = keyPairService.generateNewKeyPairInSecp384r1();
+        Certificate certificate = certificateService.createSelfSignedCertificate(BigInteger.ONE, keyPair, alias, null);
+        storeService.putKey(alias, keyPair.getPrivate(), new Certificate[] { certificate }, false);
+        return keyPair;
+    }
+}
@@ -0,0 +1,68 @@
+package won.protocol.jms;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import won.protocol.exception.WonMessageProcessingException;
+import won.protocol.message.WonMessage;
+import won.protocol.message.WonMessageEncoder;
+import won.protocol.message.builder.WonMessageBuilder;
+
+public class WonMessageJmsCodecTest {
+    @Test
+    public void testBinaryRoundTrip() {
+        WonMessage msg = createMessage();
+        Map<String, Object> headers = new HashMap<>();
+        Object body = WonMessageJmsCodec.encode(msg, true, headers);
+        Assert.assertTrue(body instanceof byte[]);
+        Assert.assertEquals("application/rdf+thrift", headers.get(WonMessageJmsCodec.CONTENT_TYPE_HEADER));
+        WonMessage decoded = WonMessageJmsCodec.decode(body,
+                        (String) headers.get(WonMessageJmsCodec.CONTENT_TYPE_HEADER));
+        assertSameMessage(msg, decoded);
+    }
+
+    @Test
+    public void testTextRoundTrip() {
+        WonMessage msg = createMessage();
+        Map<String, Object> headers = new HashMap<>();
+        Object body = WonMessageJmsCodec.encode(msg, false, headers);
+        Assert.assertTrue(body instanceof String);
+        assertSameMessage(msg, WonMessageJmsCodec.decode(body,
+                        (String) headers.get(WonMessageJmsCodec.CONTENT_TYPE_HEADER)));
+    }
+
+    @Test
+    public void testDecodeWithoutContentType() {
+        // as sent by nodes and owners that do not set the content type header
+        WonMessage msg = createMessage();
+        assertSameMessage(msg, WonMessageJmsCodec.decode(WonMessageEncoder.encode(msg, WonMessageJmsCodec.TEXT_LANG),
+                        null));
+        Assert.assertNull(WonMessageJmsCodec.decode("", null));
+        Assert.assertNull(WonMessageJmsCodec.decode(null, null));
+    }
+
+    @Test(expected = WonMessageProcessingException.class)
+    public void testDecodeUnknownContentType() {
+        WonMessageJmsCodec.decode(new byte[] { 1, 2, 3 }, "application/x-unknown");
+    }
+
+    private WonMessage createMessage() {
+        return WonMessageBuilder.connectionMessage()
+                        .sockets()
+                        .sender(URI.create("uri:/localAtom#socket"))
+                        .recipient(URI.create("uri:/targetAtom#socket"))
+                        .content().text("hello")
+                        .build();
+    }
+
+    private void assertSameMessage(WonMessage expected, WonMessage actual) {
+        Assert.assertEquals(expected.getMessageURI(), actual.getMessageURI());
+        Assert.assertTrue(IsoMatcher.isomorphic(expected.getCompleteDataset().asDatasetGraph(),
+                        actual.getCompleteDataset().asDatasetGraph()));
+    }
+}
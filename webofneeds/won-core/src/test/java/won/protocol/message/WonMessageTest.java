@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -121,4 +122,25 @@ public class WonMessageTest {
                         WonMessageUriHelper.getSelfUri(),
                         msgAndResponse.getMessageURI());
     }
+
+    @Test
+    public void test_envelope_properties_reflect_added_properties() {
+        WonMessage msg = WonMessageBuilder.connectionMessage()
+                        .sockets()
+                        .sender(URI.create("uri:/localAtom#socket"))
+                        .recipient(URI.create("uri:/targetAtom#socket"))
+                        .content().text("hello").build();
+        Assert.assertEquals(WonMessageType.CONNECTION_MESSAGE, msg.getMessageType());
+        Assert.assertEquals(WonMessageDirection.FROM_OWNER, msg.getEnvelopeType());
+        Assert.assertEquals(URI.create("uri:/localAtom"), msg.getSenderAtomURI());
+        Assert.assertEquals(1, msg.getContentGraphURIs().size());
+        Assert.assertTrue(msg.getPreviousMessageURIs().isEmpty());
+        Assert.assertNull(msg.getConnectionURI());
+        msg.addMessageProperty(WONMSG.connection, URI.create("uri:/conn1"));
+        msg.addMessagePropertiesURI(WONMSG.previousMessage,
+                        Arrays.asList(URI.create("uri:/msg1"), URI.create("uri:/msg2")));
+        Assert.assertEquals(URI.create("uri:/conn1"), msg.getConnectionURI());
+        Assert.assertEquals(2, msg.getPreviousMessageURIs().size());
+        Assert.assertEquals(URI.create("uri:/conn1"), msg.getEnvelopePropertyURIValue(WONMSG.connection));
+    }
 }
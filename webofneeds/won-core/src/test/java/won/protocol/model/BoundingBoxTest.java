@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundingBoxTest {
+    /**
+     * Point at the specified distance and bearing from the start, with the
+     * longitude normalized to -180..180.
+     */
+    private static Coordinate destination(Coordinate start, double bearingDegrees, double distance) {
+        double angularDistance = distance / Coordinate.EARTH_RADIUS;
+        double bearing = Math.toRadians(bearingDegrees);
+        double lat1 = Math.toRadians(start.getLatitude());
+        double lon1 = Math.toRadians(start.getLongitude());
+        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angularDistance)
+                        + Math.cos(lat1) * Math.sin(angularDistance) * Math.cos(bearing));
+        double lon2 = lon1 + Math.atan2(Math.sin(bearing) * Math.sin(angularDistance) * Math.cos(lat1),
+                        Math.cos(angularDistance) - Math.sin(lat1) * Math.sin(lat2));
+        double longitude = (Math.toDegrees(lon2) + 540) % 360 - 180;
+        return new Coordinate((float) Math.toDegrees(lat2), (float) longitude);
+    }
+
+    private static void assertContainsCircle(Coordinate center, double radius) {
+        BoundingBox boundingBox = BoundingBox.around(center, radius);
+        // stay a little inside the circle to allow for float rounding
+        for (int bearing = 0; bearing < 360; bearing += 5) {
+            Coordinate point = destination(center, bearing, radius * 0.999);
+            Assert.assertTrue(point + " at bearing " + bearing + " not in " + boundingBox,
+                            boundingBox.contains(point));
+        }
+    }
+
+    @Test
+    public void containsCircle() {
+        assertContainsCircle(new Coordinate(48.2082f, 16.3738f), 5000);
+        assertContainsCircle(new Coordinate(-33.8688f, 151.2093f), 50000);
+        assertContainsCircle(new Coordinate(0, 0), 1000000);
+        // far north, where the circle is much wider than radius / cos(latitude)
+        assertContainsCircle(new Coordinate(80, 0), 500000);
+        assertContainsCircle(new Coordinate(-80, 0), 500000);
+    }
+
+    @Test
+    public void isSmallAwayFromPolesAndAntimeridian() {
+        BoundingBox boundingBox = BoundingBox.around(new Coordinate(48.2082f, 16.3738f), 5000);
+        Assert.assertEquals(48.2082 - 0.045, boundingBox.getMinLatitude(), 0.001);
+        Assert.assertEquals(48.2082 + 0.045, boundingBox.getMaxLatitude(), 0.001);
+        Assert.assertTrue(boundingBox.getMinLongitude() > 16.2);
+        Assert.assertTrue(boundingBox.getMaxLongitude() < 16.5);
+        Assert.assertFalse(boundingBox.contains(new Coordinate(48.3f, 16.3738f)));
+        Assert.assertFalse(boundingBox.contains(new Coordinate(48.2082f, 16.5f)));
+    }
+
+    @Test
+    public void spansAllLongitudesAcrossAntimeridian() {
+        Coordinate center = new Coordinate(0, 179.99f);
+        BoundingBox boundingBox = BoundingBox.around(center, 5000);
+        Assert.assertEquals(-180, boundingBox.getMinLongitude(), 0);
+        Assert.assertEquals(180, boundingBox.getMaxLongitude(), 0);
+        Assert.assertTrue(boundingBox.contains(new Coordinate(0, -179.99f)));
+        Assert.assertFalse(boundingBox.contains(new Coordinate(1, -179.99f)));
+        assertContainsCircle(center, 5000);
+        assertContainsCircle(new Coordinate(0, -179.99f), 5000);
+    }
+
+    @Test
+    public void spansAllLongitudesAroundPole() {
+        Coordinate center = new Coordinate(89.99f, 0);
+        BoundingBox boundingBox = BoundingBox.around(center, 5000);
+        Assert.assertEquals(90, boundingBox.getMaxLatitude(), 0);
+        Assert.assertEquals(-180, boundingBox.getMinLongitude(), 0);
+        Assert.assertEquals(180, boundingBox.getMaxLongitude(), 0);
+        Assert.assertTrue(boundingBox.contains(new Coordinate(89.99f, 180)));
+        Assert.assertFalse(boundingBox.contains(new Coordinate(89, 180)));
+        assertContainsCircle(center, 5000);
+        boundingBox = BoundingBox.around(new Coordinate(-89.99f, 0), 5000);
+        Assert.assertEquals(-90, boundingBox.getMinLatitude(), 0);
+        Assert.assertTrue(boundingBox.contains(new Coordinate(-89.99f, -90)));
+    }
+}
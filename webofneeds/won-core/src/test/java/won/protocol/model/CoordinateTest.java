@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoordinateTest {
+    // length of one degree on a great circle
+    private static final double ONE_DEGREE = Coordinate.EARTH_RADIUS * Math.PI / 180;
+
+    @Test
+    public void distanceToSelfIsZero() {
+        Coordinate vienna = new Coordinate(48.2082f, 16.3738f);
+        Assert.assertEquals(0, vienna.distanceTo(vienna), 0.001);
+    }
+
+    @Test
+    public void distanceAlongMeridianAndEquator() {
+        Assert.assertEquals(ONE_DEGREE, new Coordinate(0, 0).distanceTo(new Coordinate(1, 0)), 1);
+        Assert.assertEquals(ONE_DEGREE, new Coordinate(0, 0).distanceTo(new Coordinate(0, 1)), 1);
+        // a degree of longitude gets shorter towards the poles
+        Assert.assertEquals(ONE_DEGREE / 2, new Coordinate(60, 0).distanceTo(new Coordinate(60, 1)), 10);
+    }
+
+    @Test
+    public void distanceIsSymmetric() {
+        Coordinate vienna = new Coordinate(48.2082f, 16.3738f);
+        Coordinate graz = new Coordinate(47.0707f, 15.4395f);
+        Assert.assertEquals(vienna.distanceTo(graz), graz.distanceTo(vienna), 0.001);
+        Assert.assertEquals(145000, vienna.distanceTo(graz), 2000);
+    }
+
+    @Test
+    public void distanceAcrossAntimeridian() {
+        Assert.assertEquals(ONE_DEGREE, new Coordinate(0, 179.5f).distanceTo(new Coordinate(0, -179.5f)), 1);
+    }
+
+    @Test
+    public void distanceAcrossPole() {
+        Assert.assertEquals(2 * ONE_DEGREE, new Coordinate(89, 0).distanceTo(new Coordinate(89, 180)), 1);
+    }
+}
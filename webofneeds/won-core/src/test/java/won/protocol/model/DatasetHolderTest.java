@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Assert;
+import org.junit.Test;
+
+import won.protocol.util.RdfUtils;
+
+public class DatasetHolderTest {
+    private static final URI ATOM_URI = URI.create("https://localhost:8443/won/resource/atom/1");
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        Dataset dataset = loadDataset("/wonrdfutils/atom1.trig");
+        DatasetHolder holder = new DatasetHolder(ATOM_URI, dataset);
+        Assert.assertFalse(holder.isLegacyFormat());
+        DatasetHolder reloaded = new DatasetHolder();
+        reloaded.setUri(ATOM_URI);
+        reloaded.setDatasetBytes(holder.getDatasetBytes());
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(dataset, reloaded.getDataset()));
+    }
+
+    @Test
+    public void testSingleGraphDecoding() throws IOException {
+        Dataset dataset = loadDataset("/wonrdfutils/atom1.trig");
+        DatasetHolder reloaded = new DatasetHolder();
+        reloaded.setUri(ATOM_URI);
+        reloaded.setDatasetBytes(new DatasetHolder(ATOM_URI, dataset).getDatasetBytes());
+        List<String> expectedNames = new ArrayList<>();
+        dataset.listNames().forEachRemaining(expectedNames::add);
+        Assert.assertEquals(expectedNames, reloaded.getGraphNames());
+        for (String graphName : expectedNames) {
+            Assert.assertTrue(dataset.getNamedModel(graphName).isIsomorphicWith(reloaded.getNamedModel(graphName)));
+        }
+        Assert.assertNull(reloaded.getNamedModel("urn:no-such-graph"));
+    }
+
+    @Test
+    public void testLegacyFormatIsReadAndMigrated() throws IOException {
+        Dataset dataset = loadDataset("/wonrdfutils/atom1.trig");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFDataMgr.write(out, dataset, Lang.NQUADS);
+        DatasetHolder holder = new DatasetHolder();
+        holder.setUri(ATOM_URI);
+        holder.setDatasetBytes(out.toByteArray());
+        Assert.assertTrue(holder.isLegacyFormat());
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(dataset, holder.getDataset()));
+        holder.incrementVersion();
+        Assert.assertFalse(holder.isLegacyFormat());
+        DatasetHolder reloaded = new DatasetHolder();
+        reloaded.setUri(ATOM_URI);
+        reloaded.setDatasetBytes(holder.getDatasetBytes());
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(dataset, reloaded.getDataset()));
+    }
+
+    private Dataset loadDataset(String path) throws IOException {
+        Dataset dataset = DatasetFactory.createGeneral();
+        try (InputStream is = getClass().getResourceAsStream(path)) {
+            RDFDataMgr.read(dataset, is, Lang.TRIG);
+        }
+        return dataset;
+    }
+}
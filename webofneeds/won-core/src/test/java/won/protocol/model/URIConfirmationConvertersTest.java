@@ -0,0 +1,108 @@
+package won.protocol.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class URIConfirmationConvertersTest {
+    private final URICountSetConverter setConverter = new URICountSetConverter();
+    private final URIMapToURISetConverter mapConverter = new URIMapToURISetConverter();
+
+    @Test
+    public void testSetRoundTrip() {
+        Set<URICount> set = createSet();
+        byte[] data = setConverter.convertToDatabaseColumn(set);
+        Assert.assertFalse(URICountSetConverter.isLegacyFormat(data));
+        Assert.assertTrue(data.length < serialize(set).length);
+        Assert.assertEquals(set, setConverter.convertToEntityAttribute(data));
+        Assert.assertEquals(new HashSet<>(),
+                        setConverter.convertToEntityAttribute(setConverter.convertToDatabaseColumn(new HashSet<>())));
+    }
+
+    @Test
+    public void testMapRoundTrip() {
+        Map<URI, Set<URI>> map = createMap();
+        byte[] data = mapConverter.convertToDatabaseColumn(map);
+        Assert.assertFalse(URIMapToURISetConverter.isLegacyFormat(data));
+        Assert.assertTrue(data.length < serialize(map).length);
+        Assert.assertEquals(map, mapConverter.convertToEntityAttribute(data));
+    }
+
+    @Test
+    public void testReadLegacyFormat() {
+        Set<URICount> set = createSet();
+        byte[] legacySet = serialize(set);
+        Assert.assertTrue(URICountSetConverter.isLegacyFormat(legacySet));
+        Assert.assertEquals(set, setConverter.convertToEntityAttribute(legacySet));
+        // legacy data is converted when written
+        byte[] converted = setConverter.convertToDatabaseColumn(setConverter.convertToEntityAttribute(legacySet));
+        Assert.assertFalse(URICountSetConverter.isLegacyFormat(converted));
+        Assert.assertArrayEquals(converted, URICountSetConverter.toCurrentFormat(legacySet));
+        Map<URI, Set<URI>> map = createMap();
+        byte[] legacyMap = serialize(map);
+        Assert.assertEquals(map, mapConverter.convertToEntityAttribute(legacyMap));
+        Assert.assertFalse(URIMapToURISetConverter.isLegacyFormat(URIMapToURISetConverter.toCurrentFormat(legacyMap)));
+    }
+
+    @Test
+    public void testUnmodifiedValueIsWrittenWithoutDecoding() {
+        byte[] data = setConverter.convertToDatabaseColumn(createSet());
+        Set<URICount> loaded = setConverter.convertToEntityAttribute(data);
+        Assert.assertSame(data, setConverter.convertToDatabaseColumn(loaded));
+        Assert.assertEquals(loaded, setConverter.convertToEntityAttribute(data));
+        Assert.assertSame(data, ((LazyDecodedSet<URICount>) loaded).getUndecodedData());
+        // once modified, the value is encoded again
+        loaded.add(new URICount(URI.create("https://node.example.com/won/msg/new"), 0));
+        Assert.assertNull(((LazyDecodedSet<URICount>) loaded).getUndecodedData());
+        Assert.assertNotEquals(loaded, setConverter.convertToEntityAttribute(data));
+        Assert.assertEquals(loaded,
+                        setConverter.convertToEntityAttribute(setConverter.convertToDatabaseColumn(loaded)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVersion() {
+        byte[] data = setConverter.convertToDatabaseColumn(createSet());
+        data[2] = 99;
+        setConverter.convertToEntityAttribute(data).size();
+    }
+
+    private Set<URICount> createSet() {
+        Set<URICount> set = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            set.add(new URICount(URI.create("https://node.example.com/won/msg/" + i + "ä"), i % 3));
+        }
+        return set;
+    }
+
+    private Map<URI, Set<URI>> createMap() {
+        Map<URI, Set<URI>> map = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            map.put(URI.create("https://node.example.com/won/msg/key" + i),
+                            new HashSet<>(Arrays.asList(URI.create("https://node.example.com/won/msg/a" + i),
+                                            URI.create("https://node.example.com/won/msg/b" + i))));
+        }
+        map.put(URI.create("wm:/other"), new HashSet<>());
+        return map;
+    }
+
+    private static byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(value);
+            oos.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
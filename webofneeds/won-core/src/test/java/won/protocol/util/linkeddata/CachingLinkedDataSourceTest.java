@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.JenaException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.ehcache.EhCacheCacheManager;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import won.protocol.util.RdfUtils;
+import won.protocol.util.linkeddata.uriresolver.WonMessageUriResolver;
+
+public class CachingLinkedDataSourceTest {
+    private static final AtomicInteger cacheManagerCounter = new AtomicInteger();
+    private static final URI RESOURCE = URI.create("http://example.org/resource/1");
+    private ThreadPoolExecutor threadpool;
+    private CacheManager cacheManager;
+    private TestingLinkedDataRestClient restClient;
+    private CachingLinkedDataSource linkedDataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        threadpool = new ThreadPoolExecutor(4, 4, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+        cacheManager = CacheManager.newInstance(
+                        new Configuration().name("cachingLinkedDataSourceTest" + cacheManagerCounter.incrementAndGet()));
+        cacheManager.addCache(new Cache(new CacheConfiguration("linkedDataCache", 1000)));
+        restClient = new TestingLinkedDataRestClient();
+        restClient.setResponse(RESOURCE, TestingLinkedDataRestClient.createDataset(RESOURCE, 3));
+        linkedDataSource = createLinkedDataSource();
+    }
+
+    @After
+    public void tearDown() {
+        threadpool.shutdownNow();
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneFetch() throws Exception {
+        restClient.block();
+        CompletableFuture<Dataset> first = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        Assert.assertTrue(restClient.requestStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Dataset> second = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        CompletableFuture<Dataset> third = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        Assert.assertFalse(second.isDone());
+        restClient.release();
+        Dataset expected = TestingLinkedDataRestClient.createDataset(RESOURCE, 3);
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(expected, first.get(10, TimeUnit.SECONDS)));
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(expected, second.get(10, TimeUnit.SECONDS)));
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(expected, third.get(10, TimeUnit.SECONDS)));
+        Assert.assertEquals(1, restClient.requests.get());
+        Assert.assertEquals(2, linkedDataSource.getCacheStatistics().getCoalescedRequests());
+        // the result is cached, later requests need no fetch
+        linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertEquals(1, restClient.requests.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneFailure() throws Exception {
+        IllegalStateException failure = new IllegalStateException("server not available");
+        restClient.setFailure(failure);
+        restClient.block();
+        CompletableFuture<Dataset> first = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        Assert.assertTrue(restClient.requestStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Dataset> second = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        restClient.release();
+        Assert.assertSame(failure, getFailure(first));
+        Assert.assertSame(failure, getFailure(second));
+        Assert.assertEquals(1, restClient.requests.get());
+        // a failed request is neither cached nor shared with later requests
+        restClient.setFailure(null);
+        Dataset dataset = linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(TestingLinkedDataRestClient.createDataset(RESOURCE, 3), dataset));
+        Assert.assertEquals(2, restClient.requests.get());
+    }
+
+    @Test
+    public void testRequestsWithDifferentWebIdsAreNotShared() throws Exception {
+        restClient.block();
+        CompletableFuture<Dataset> first = linkedDataSource.getDataForResourceAsync(RESOURCE, null);
+        Assert.assertTrue(restClient.requestStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Dataset> second = linkedDataSource.getDataForResourceAsync(RESOURCE,
+                        URI.create("http://example.org/webid"));
+        restClient.release();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, restClient.requests.get());
+        Assert.assertEquals(0, linkedDataSource.getCacheStatistics().getCoalescedRequests());
+    }
+
+    @Test
+    public void testCacheHitUsesParsedDataset() {
+        Dataset first = linkedDataSource.getDataForResource(RESOURCE);
+        Dataset second = linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, restClient.requests.get());
+        CachingLinkedDataSource.CacheStatistics statistics = linkedDataSource.getCacheStatistics();
+        Assert.assertEquals(1, statistics.getByteTierMisses());
+        Assert.assertEquals(1, statistics.getByteTierHits());
+        Assert.assertEquals(1, statistics.getParsedTierHits());
+        Assert.assertEquals(0, statistics.getParsedTierMisses());
+        Assert.assertEquals(0, statistics.getParseCount());
+    }
+
+    @Test
+    public void testInvalidateRemovesParsedDataset() {
+        linkedDataSource.getDataForResource(RESOURCE);
+        restClient.setResponse(RESOURCE, TestingLinkedDataRestClient.createDataset(RESOURCE, 5));
+        linkedDataSource.invalidate(RESOURCE);
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(TestingLinkedDataRestClient.createDataset(RESOURCE, 5),
+                        linkedDataSource.getDataForResource(RESOURCE)));
+        Assert.assertEquals(2, restClient.requests.get());
+        restClient.setResponse(RESOURCE, TestingLinkedDataRestClient.createDataset(RESOURCE, 7));
+        linkedDataSource.clear();
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(TestingLinkedDataRestClient.createDataset(RESOURCE, 7),
+                        linkedDataSource.getDataForResource(RESOURCE)));
+        Assert.assertEquals(3, restClient.requests.get());
+        Assert.assertEquals(0, linkedDataSource.getCacheStatistics().getParsedTierHits());
+    }
+
+    @Test
+    public void testParsedDatasetOfReplacedEntryIsNotUsed() {
+        Dataset fetched = linkedDataSource.getDataForResource(RESOURCE);
+        Dataset replacement = TestingLinkedDataRestClient.createDataset(RESOURCE, 2);
+        linkedDataSource.addToCache(replacement, RESOURCE);
+        Dataset cached = linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertNotSame(fetched, cached);
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(replacement, cached));
+        Assert.assertEquals(1, restClient.requests.get());
+        Assert.assertEquals(1, linkedDataSource.getCacheStatistics().getParseCount());
+        // the dataset parsed from the new entry is kept
+        Assert.assertSame(cached, linkedDataSource.getDataForResource(RESOURCE));
+    }
+
+    @Test
+    public void testParsedDatasetsAreEvictedByTripleCount() throws Exception {
+        URI other = URI.create("http://example.org/resource/2");
+        restClient.setResponse(RESOURCE, TestingLinkedDataRestClient.createDataset(RESOURCE, 6));
+        restClient.setResponse(other, TestingLinkedDataRestClient.createDataset(other, 6));
+        linkedDataSource = createLinkedDataSource(10);
+        linkedDataSource.getDataForResource(RESOURCE);
+        // both datasets exceed the limit of 10 triples, the least recently used one is
+        // evicted
+        linkedDataSource.getDataForResource(other);
+        linkedDataSource.getDataForResource(other);
+        Assert.assertEquals(1, linkedDataSource.getCacheStatistics().getParsedTierHits());
+        Assert.assertEquals(0, linkedDataSource.getCacheStatistics().getParseCount());
+        linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertEquals(1, linkedDataSource.getCacheStatistics().getParsedTierMisses());
+        Assert.assertEquals(1, linkedDataSource.getCacheStatistics().getParseCount());
+        // the serialized datasets are still cached
+        Assert.assertEquals(2, restClient.requests.get());
+    }
+
+    @Test
+    public void testParsedTierCanBeDisabled() throws Exception {
+        linkedDataSource = createLinkedDataSource(0);
+        Dataset first = linkedDataSource.getDataForResource(RESOURCE);
+        Dataset second = linkedDataSource.getDataForResource(RESOURCE);
+        Assert.assertNotSame(first, second);
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(first, second));
+        CachingLinkedDataSource.CacheStatistics statistics = linkedDataSource.getCacheStatistics();
+        Assert.assertEquals(1, statistics.getByteTierHits());
+        Assert.assertEquals(0, statistics.getParsedTierHits());
+        Assert.assertEquals(0, statistics.getParsedTierMisses());
+        Assert.assertEquals(1, statistics.getParseCount());
+        Assert.assertEquals(1, restClient.requests.get());
+    }
+
+    @Test
+    public void testMissingGraphIsNotAddedToSharedDataset() {
+        Dataset dataset = linkedDataSource.getDataForResource(RESOURCE);
+        String missing = "http://example.org/missing";
+        Assert.assertTrue(dataset.getNamedModel(missing).isEmpty());
+        Assert.assertFalse(dataset.containsNamedModel(missing));
+        Assert.assertFalse(linkedDataSource.getDataForResource(RESOURCE).containsNamedModel(missing));
+    }
+
+    @Test(expected = JenaException.class)
+    public void testSharedDatasetCannotBeModified() {
+        Model model = linkedDataSource.getDataForResource(RESOURCE).getNamedModel(RESOURCE + "#data");
+        model.add(model.createResource(RESOURCE.toString()), model.createProperty("http://example.org/property"),
+                        "modified");
+    }
+
+    private Throwable getFailure(CompletableFuture<Dataset> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        Assert.fail("request did not fail");
+        return null;
+    }
+
+    private CachingLinkedDataSource createLinkedDataSource() throws Exception {
+        return createLinkedDataSource(new CachingLinkedDataSource().getParsedDatasetCacheMaxTriples());
+    }
+
+    private CachingLinkedDataSource createLinkedDataSource(long parsedDatasetCacheMaxTriples) throws Exception {
+        CachingLinkedDataSource source = new CachingLinkedDataSource();
+        source.setParsedDatasetCacheMaxTriples(parsedDatasetCacheMaxTriples);
+        source.setCacheManager(new EhCacheCacheManager(cacheManager));
+        source.setLinkedDataRestClient(restClient);
+        source.setParallelRequestsThreadpool(threadpool);
+        source.wonMessageUriResolver = new WonMessageUriResolver();
+        source.afterPropertiesSet();
+        return source;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.sparql.core.DatasetGraphReadOnly;
+import org.apache.jena.sparql.path.Path;
+import org.apache.jena.sparql.path.PathParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import won.protocol.util.RdfUtils;
+
+public class LinkedDataCrawlerTest {
+    private static final String NS = "http://example.org/";
+    private static final PrefixMapping PREFIXES = new PrefixMappingImpl().setNsPrefix("ex", NS);
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIncrementalPathsFindSameResourcesAsQuery() {
+        Map<URI, Dataset> web = createConversationWeb("http://host1/", 6);
+        List<Path> paths = Arrays.asList(path("ex:container"), path("ex:container/ex:member"),
+                        path("ex:container/ex:member/ex:previous*"), path("^ex:connection"),
+                        path("ex:container/(ex:other|ex:member)/^ex:previous"));
+        URI start = URI.create("http://host1/connection");
+        Dataset crawled = new LinkedDataCrawler(new MapLinkedDataSource(web), Optional.empty(), 1000, 10, 5,
+                        LinkedDataCrawler.followingPropertyPaths(start, paths)).crawl(start);
+        Set<URI> expected = new HashSet<>();
+        expected.add(start);
+        for (Path path : paths) {
+            RdfUtils.getURIsForPropertyPathByQuery(merge(web), start, path).forEachRemaining(expected::add);
+        }
+        expected.retainAll(web.keySet());
+        Assert.assertEquals(expected, fetchedResources(crawled, web));
+    }
+
+    @Test
+    public void testBudgetsAreHonoured() {
+        Map<URI, Dataset> web = createConversationWeb("http://host1/", 20);
+        List<Path> paths = Arrays.asList(path("ex:container"), path("ex:container/ex:member"),
+                        path("ex:container/ex:member/ex:previous*"));
+        URI start = URI.create("http://host1/connection");
+        MapLinkedDataSource source = new MapLinkedDataSource(web);
+        new LinkedDataCrawler(source, Optional.empty(), 5, 10, 5,
+                        LinkedDataCrawler.followingPropertyPaths(start, paths))
+                                        .crawl(start);
+        Assert.assertEquals(5, source.requests.get());
+        source = new MapLinkedDataSource(web);
+        new LinkedDataCrawler(source, Optional.empty(), 1000, 2, 5,
+                        LinkedDataCrawler.followingPropertyPaths(start, paths)).crawl(start);
+        // depth 0: connection, depth 1: container
+        Assert.assertEquals(2, source.requests.get());
+    }
+
+    @Test
+    public void testConcurrentRequestsPerHostAreLimited() {
+        Map<URI, Dataset> web = createConversationWeb("http://host1/", 30);
+        URI start = URI.create("http://host1/connection");
+        MapLinkedDataSource source = new MapLinkedDataSource(web);
+        source.delayMillis = 5;
+        Dataset crawled = new LinkedDataCrawler(source, Optional.empty(), 1000, 10, 2,
+                        LinkedDataCrawler.followingProperties(
+                                        Arrays.asList(URI.create(NS + "container"), URI.create(NS + "member"))))
+                                                        .crawl(start);
+        Set<URI> expected = new HashSet<>(web.keySet());
+        expected.remove(URI.create("http://host1/atom"));
+        Assert.assertEquals(expected, fetchedResources(crawled, web));
+        Assert.assertTrue(source.maxConcurrentRequests.get() <= 2);
+    }
+
+    @Test
+    public void testCrawlResultCanBeModified() {
+        Map<URI, Dataset> web = createConversationWeb("http://host1/", 3);
+        URI start = URI.create("http://host1/connection");
+        MapLinkedDataSource source = new MapLinkedDataSource(web);
+        // like cached datasets, the fetched datasets are shared and read-only
+        source.readOnly = true;
+        Dataset crawled = new LinkedDataCrawler(source, Optional.empty(), 1000, 10, 5,
+                        LinkedDataCrawler.followingProperties(Arrays.asList(URI.create(NS + "container"))))
+                                        .crawl(start);
+        Model connection = crawled.getNamedModel(start + "#data");
+        connection.add(connection.createResource(start.toString()), connection.createProperty(NS + "text"),
+                        "modified");
+        Assert.assertFalse(web.get(start).getNamedModel(start + "#data").contains(null, null, "modified"));
+    }
+
+    private Path path(String path) {
+        return PathParser.parse(path, PREFIXES);
+    }
+
+    /**
+     * A connection with a message container listing all messages, each message
+     * pointing to the previous one. Every resource is served in its own named
+     * graph.
+     */
+    private Map<URI, Dataset> createConversationWeb(String base, int messages) {
+        Map<URI, Dataset> web = new HashMap<>();
+        Model connection = ModelFactory.createDefaultModel();
+        connection.add(connection.createResource(base + "connection"), connection.createProperty(NS + "container"),
+                        connection.createResource(base + "container"));
+        connection.add(connection.createResource(base + "atom"), connection.createProperty(NS + "connection"),
+                        connection.createResource(base + "connection"));
+        web.put(URI.create(base + "connection"), toDataset(base + "connection", connection));
+        Model container = ModelFactory.createDefaultModel();
+        for (int i = 0; i < messages; i++) {
+            String message = base + "msg" + i;
+            container.add(container.createResource(base + "container"), container.createProperty(NS + "member"),
+                            container.createResource(message));
+            Model messageModel = ModelFactory.createDefaultModel();
+            messageModel.add(messageModel.createResource(message), messageModel.createProperty(NS + "text"),
+                            "message " + i);
+            if (i > 0) {
+                messageModel.add(messageModel.createResource(message), messageModel.createProperty(NS + "previous"),
+                                messageModel.createResource(base + "msg" + (i - 1)));
+            }
+            web.put(URI.create(message), toDataset(message, messageModel));
+        }
+        web.put(URI.create(base + "container"), toDataset(base + "container", container));
+        Model atom = ModelFactory.createDefaultModel();
+        atom.add(atom.createResource(base + "atom"), atom.createProperty(NS + "text"), "atom");
+        web.put(URI.create(base + "atom"), toDataset(base + "atom", atom));
+        return web;
+    }
+
+    private Dataset toDataset(String graphName, Model model) {
+        Dataset dataset = DatasetFactory.createGeneral();
+        dataset.addNamedModel(graphName + "#data", model);
+        return dataset;
+    }
+
+    private Dataset merge(Map<URI, Dataset> web) {
+        Dataset merged = DatasetFactory.createGeneral();
+        web.values().forEach(dataset -> RdfUtils.addDatasetToDataset(merged, dataset, true));
+        return merged;
+    }
+
+    private Set<URI> fetchedResources(Dataset crawled, Map<URI, Dataset> web) {
+        Set<URI> fetched = new HashSet<>();
+        crawled.listNames().forEachRemaining(name -> fetched.add(URI.create(name.replace("#data", ""))));
+        fetched.retainAll(web.keySet());
+        return fetched;
+    }
+
+    private class MapLinkedDataSource extends LinkedDataSourceBase {
+        private final Map<URI, Dataset> web;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        private long delayMillis = 0;
+        private boolean readOnly = false;
+
+        MapLinkedDataSource(Map<URI, Dataset> web) {
+            this.web = Collections.unmodifiableMap(web);
+        }
+
+        @Override
+        public CompletableFuture<Dataset> getDataForResourceAsync(URI resourceURI, URI requesterWebID) {
+            requests.incrementAndGet();
+            if (delayMillis == 0) {
+                return CompletableFuture.completedFuture(getDataset(resourceURI));
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                int concurrent = concurrentRequests.incrementAndGet();
+                maxConcurrentRequests.accumulateAndGet(concurrent, Math::max);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                concurrentRequests.decrementAndGet();
+                return getDataset(resourceURI);
+            }, executor);
+        }
+
+        private Dataset getDataset(URI resourceURI) {
+            Dataset dataset = web.get(resourceURI);
+            if (dataset == null) {
+                return DatasetFactory.createGeneral();
+            }
+            return readOnly ? DatasetFactory.wrap(new DatasetGraphReadOnly(dataset.asDatasetGraph())) : dataset;
+        }
+    }
+}
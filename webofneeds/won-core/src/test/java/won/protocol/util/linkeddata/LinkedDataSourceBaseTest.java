@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.Dataset;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import won.protocol.util.AuthenticationThreadLocal;
+import won.protocol.util.RdfUtils;
+import won.protocol.util.linkeddata.uriresolver.WonMessageUriResolver;
+
+public class LinkedDataSourceBaseTest {
+    private static final URI RESOURCE = URI.create("http://example.org/resource/1");
+    private static final Object AUTHENTICATION = "authentication";
+    private ThreadPoolExecutor threadpool;
+    private TestingLinkedDataRestClient restClient;
+    private LinkedDataSourceBase linkedDataSource;
+
+    @Before
+    public void setUp() {
+        // a single thread and no queue: the pool rejects tasks while it is busy
+        threadpool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new SynchronousQueue<>());
+        restClient = new TestingLinkedDataRestClient();
+        restClient.setResponse(RESOURCE, TestingLinkedDataRestClient.createDataset(RESOURCE, 3));
+        linkedDataSource = new LinkedDataSourceBase();
+        linkedDataSource.setLinkedDataRestClient(restClient);
+        linkedDataSource.setParallelRequestsThreadpool(threadpool);
+        linkedDataSource.wonMessageUriResolver = new WonMessageUriResolver();
+        AuthenticationThreadLocal.setAuthentication(AUTHENTICATION);
+    }
+
+    @After
+    public void tearDown() {
+        AuthenticationThreadLocal.remove();
+        threadpool.shutdownNow();
+    }
+
+    @Test
+    public void testAuthenticationIsPassedToPoolThread() {
+        Dataset dataset = linkedDataSource.getDataForResourceAsync(RESOURCE, null).join();
+        Assert.assertTrue(RdfUtils.isIsomorphicWith(TestingLinkedDataRestClient.createDataset(RESOURCE, 3),
+                        dataset));
+        Assert.assertEquals(AUTHENTICATION, restClient.authentications.get(0));
+        Assert.assertEquals(AUTHENTICATION, AuthenticationThreadLocal.getAuthentication());
+    }
+
+    @Test
+    public void testCallerKeepsAuthenticationWhenPoolIsSaturated() throws InterruptedException {
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        threadpool.execute(() -> {
+            busy.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        busy.await();
+        try {
+            // the request is rejected by the pool and runs in the calling thread
+            Assert.assertTrue(linkedDataSource.getDataForResourceAsync(RESOURCE, null).isDone());
+        } finally {
+            release.countDown();
+        }
+        Assert.assertEquals(AUTHENTICATION, restClient.authentications.get(0));
+        Assert.assertTrue(AuthenticationThreadLocal.hasValue());
+        Assert.assertEquals(AUTHENTICATION, AuthenticationThreadLocal.getAuthentication());
+    }
+}
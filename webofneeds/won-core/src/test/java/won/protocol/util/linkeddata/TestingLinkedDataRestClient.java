@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.protocol.util.linkeddata;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.springframework.http.HttpHeaders;
+
+import won.protocol.rest.DatasetResponseWithStatusCodeAndHeaders;
+import won.protocol.rest.LinkedDataRestClient;
+import won.protocol.util.AuthenticationThreadLocal;
+
+/**
+ * Serves datasets from memory instead of making http requests. Can be blocked
+ * to keep requests in flight, and records the requests it received.
+ */
+class TestingLinkedDataRestClient extends LinkedDataRestClient {
+    final AtomicInteger requests = new AtomicInteger();
+    // authentication found in the AuthenticationThreadLocal during each request
+    final List<Object> authentications = new CopyOnWriteArrayList<>();
+    final CountDownLatch requestStarted = new CountDownLatch(1);
+    private final Map<URI, DatasetResponseWithStatusCodeAndHeaders> responses = new ConcurrentHashMap<>();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile RuntimeException failure;
+
+    static Dataset createDataset(URI resource, int triples) {
+        Dataset dataset = DatasetFactory.createGeneral();
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < triples; i++) {
+            model.add(model.createResource(resource.toString()),
+                            model.createProperty("http://example.org/property" + i),
+                            model.createResource("http://example.org/object" + i));
+        }
+        dataset.addNamedModel(resource.toString() + "#data", model);
+        return dataset;
+    }
+
+    void setResponse(URI resource, Dataset dataset, HttpHeaders headers, int statusCode) {
+        responses.put(resource, new DatasetResponseWithStatusCodeAndHeaders(dataset, statusCode, headers));
+    }
+
+    void setResponse(URI resource, Dataset dataset) {
+        setResponse(resource, dataset, new HttpHeaders(), 200);
+    }
+
+    /**
+     * Makes all following requests fail with the specified exception.
+     */
+    void setFailure(RuntimeException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Makes all following requests wait until {@link #release()} is called.
+     */
+    void block() {
+        release = new CountDownLatch(1);
+    }
+
+    void release() {
+        release.countDown();
+    }
+
+    @Override
+    public DatasetResponseWithStatusCodeAndHeaders readResourceDataWithHeaders(URI resourceURI,
+                    HttpHeaders httpHeaders) {
+        return respond(resourceURI, httpHeaders);
+    }
+
+    @Override
+    public DatasetResponseWithStatusCodeAndHeaders readResourceDataWithHeaders(URI resourceURI) {
+        return respond(resourceURI, null);
+    }
+
+    @Override
+    public DatasetResponseWithStatusCodeAndHeaders readResourceDataWithHeaders(URI resourceURI,
+                    URI requesterWebID) {
+        return respond(resourceURI, null);
+    }
+
+    @Override
+    public DatasetResponseWithStatusCodeAndHeaders readResourceDataWithHeaders(URI resourceURI, URI requesterWebID,
+                    HttpHeaders requestHeaders) {
+        return respond(resourceURI, requestHeaders);
+    }
+
+    private DatasetResponseWithStatusCodeAndHeaders respond(URI resourceURI, HttpHeaders requestHeaders) {
+        requests.incrementAndGet();
+        authentications.add(AuthenticationThreadLocal.hasValue() ? AuthenticationThreadLocal.getAuthentication()
+                        : "<none>");
+        requestStarted.countDown();
+        try {
+            if (!release.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("request was not released");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        DatasetResponseWithStatusCodeAndHeaders response = responses.get(resourceURI);
+        if (response == null) {
+            throw new IllegalStateException("no response for " + resourceURI);
+        }
+        return response;
+    }
+}
@@ -7,14 +7,16 @@ import java.io.OutputStreamWriter;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.Statement;
-import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.util.iterator.ExtendedIterator;
 
 import de.uni_koblenz.aggrimm.icp.crypto.sign.graph.GraphCollection;
 import de.uni_koblenz.aggrimm.icp.crypto.sign.graph.NamedGraph;
@@ -26,6 +28,9 @@ import de.uni_koblenz.aggrimm.icp.crypto.sign.trigplus.TriGPlusWriter;
  * Created by ypanchenko on 09.07.2014.
  */
 public class ModelConverter {
+    // reused for building the string form of each node
+    private static final ThreadLocal<StringBuilder> termBuffer = ThreadLocal.withInitial(StringBuilder::new);
+
     /**
      * Converts Signingframework's NamedGraph into Jena's Model. It is required,
      * that GraphCollection stores the prefixes (if present), but that they are not
@@ -65,13 +70,14 @@ public class ModelConverter {
 
     public static GraphCollection modelsToGraphCollection(Dataset dataset, String... modelURIs) {
         GraphCollection graphc = new GraphCollection();
+        DatasetGraph datasetGraph = dataset.asDatasetGraph();
         for (int i = 0; i < modelURIs.length; i++) {
             String name = modelURIs[i];
-            Model model = dataset.getNamedModel(name);
-            if (model == null) {
+            Graph graph = datasetGraph.getGraph(NodeFactory.createURI(name));
+            if (graph == null) {
                 throw new IllegalArgumentException("No model named '" + name + "' found in dataset");
             }
-            graphc.addGraph(fromModel(name, model));
+            graphc.addGraph(fromGraph(name, graph));
         }
         return graphc;
     }
@@ -117,11 +123,11 @@ public class ModelConverter {
 
     public static GraphCollection fromDataset(Dataset dataset) {
         GraphCollection graphc = new GraphCollection();
-        String name = null;
-        Iterator<String> namesIt = dataset.listNames();
-        while (namesIt.hasNext()) {
-            name = namesIt.next();
-            graphc.addGraph(fromModel(name, dataset.getNamedModel(name)));
+        DatasetGraph datasetGraph = dataset.asDatasetGraph();
+        Iterator<Node> graphNodes = datasetGraph.listGraphNodes();
+        while (graphNodes.hasNext()) {
+            Node graphNode = graphNodes.next();
+            graphc.addGraph(fromGraph(graphNode.getURI(), datasetGraph.getGraph(graphNode)));
         }
         return graphc;
     }
@@ -146,40 +152,56 @@ public class ModelConverter {
     }
 
     public static NamedGraph fromModel(String name, Model model) {
+        return fromGraph(name, model.getGraph());
+    }
+
+    /**
+     * Converts the triples of a Jena Graph into a NamedGraph, reading the nodes
+     * directly from the graph's iterator.
+     */
+    public static NamedGraph fromGraph(String name, Graph graph) {
         NamedGraph namedGraph = new NamedGraph(enclose(name, "<", ">"), 0, null);
-        StmtIterator iterator = model.listStatements();
-        while (iterator.hasNext()) {
-            Statement stmt = iterator.nextStatement();
-            String subjString = rdfNodeAsString(stmt.getSubject());
-            String objString = rdfNodeAsString(stmt.getObject());
-            String predString = enclose(stmt.getPredicate().asResource().getURI(), "<", ">");
-            Triple gcTriple = new Triple(subjString, predString, objString);
-            namedGraph.addTriple(gcTriple);
+        StringBuilder buffer = termBuffer.get();
+        ExtendedIterator<org.apache.jena.graph.Triple> iterator = graph.find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while (iterator.hasNext()) {
+                org.apache.jena.graph.Triple triple = iterator.next();
+                String subjString = nodeAsString(triple.getSubject(), buffer);
+                String predString = nodeAsString(triple.getPredicate(), buffer);
+                String objString = nodeAsString(triple.getObject(), buffer);
+                namedGraph.addTriple(new Triple(subjString, predString, objString));
+            }
+        } finally {
+            iterator.close();
         }
         return namedGraph;
     }
 
-    private static String rdfNodeAsString(final RDFNode rdfNode) {
-        String result;
-        if (rdfNode.isURIResource()) {
-            String uri = rdfNode.asResource().getURI();
-            result = enclose(uri, "<", ">");
-        } else if (rdfNode.isLiteral()) {
-            result = enclose(rdfNode.asLiteral().getLexicalForm(), "\"", "\"");
-            if (rdfNode.asLiteral().getDatatypeURI() != null) {
-                result = enclose(result, "", "^^" + "<" + rdfNode.asLiteral().getDatatypeURI() + ">");
-            } else if (rdfNode.asLiteral().getLanguage() != null && !rdfNode.asLiteral().getLanguage().isEmpty()) {
-                result = enclose(result, "", "@" + rdfNode.asLiteral().getLanguage());
+    /**
+     * Writes the node in the syntax expected by the Signingframework.
+     */
+    private static String nodeAsString(final Node node, final StringBuilder buffer) {
+        buffer.setLength(0);
+        if (node.isURI()) {
+            buffer.append('<').append(node.getURI()).append('>');
+        } else if (node.isLiteral()) {
+            buffer.append('"').append(node.getLiteralLexicalForm()).append('"');
+            String datatypeURI = node.getLiteralDatatypeURI();
+            String language = node.getLiteralLanguage();
+            if (datatypeURI != null) {
+                buffer.append("^^<").append(datatypeURI).append('>');
+            } else if (language != null && !language.isEmpty()) {
+                buffer.append('@').append(language);
             }
-        } else if (rdfNode.isAnon()) {
-            result = enclose(rdfNode.asResource().getId().getLabelString(), "_:", "");
+        } else if (node.isBlank()) {
+            buffer.append("_:").append(node.getBlankNodeLabel());
         } else {
             // TODO It might need to be improved as some syntax cases might not be covered
             // so far
             // a collection??
-            throw new UnsupportedOperationException("support missing for converting: " + rdfNode.toString());
+            throw new UnsupportedOperationException("support missing for converting: " + node.toString());
         }
-        return result;
+        return buffer.toString();
     }
 
     private static String enclose(String string, String start, String end) {
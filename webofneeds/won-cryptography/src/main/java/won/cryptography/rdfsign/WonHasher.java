@@ -5,10 +5,6 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.util.Arrays;
 
-import org.apache.commons.pool2.BasePooledObjectFactory;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.jena.query.Dataset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,11 +24,7 @@ public class WonHasher {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     public static final String ENV_HASH_ALGORITHM = "sha-256";
     public static final Type MULTIHASH_TYPE = Type.sha3_256;
-    private static GenericObjectPool<SignatureAlgorithmInterface> signatureAlgorithmPool = new GenericObjectPool<SignatureAlgorithmInterface>(
-                    new SignatureAlgorithmFactory());
-    static {
-        signatureAlgorithmPool.setMaxTotal(20);
-    }
+    private static final ThreadLocal<MessageDigest> messageDigest = new ThreadLocal<>();
 
     public WonHasher() {
     }
@@ -49,37 +41,23 @@ public class WonHasher {
                     final GraphCollection inputWithOneNamedGraph)
                     throws Exception {
         SignatureAlgorithmInterface algorithm = new SignatureAlgorithmFisteus2010();
-        // signatureAlgorithmPool.borrowObject();
-        try {
-            algorithm.canonicalize(inputWithOneNamedGraph);
-            algorithm.postCanonicalize(inputWithOneNamedGraph);
-            algorithm.hash(inputWithOneNamedGraph, ENV_HASH_ALGORITHM);
-            algorithm.postHash(inputWithOneNamedGraph);
-            inputWithOneNamedGraph.getSignature().getDigestGen().reset();
-            return inputWithOneNamedGraph.getSignature();
-        } finally {
-            if (algorithm != null) {
-                // signatureAlgorithmPool.returnObject(algorithm);
-            }
-        }
+        algorithm.canonicalize(inputWithOneNamedGraph);
+        algorithm.postCanonicalize(inputWithOneNamedGraph);
+        algorithm.hash(inputWithOneNamedGraph, ENV_HASH_ALGORITHM);
+        algorithm.postHash(inputWithOneNamedGraph);
+        inputWithOneNamedGraph.getSignature().getDigestGen().reset();
+        return inputWithOneNamedGraph.getSignature();
     }
 
     public String calculateHashIdForDataset(Dataset dataset) throws Exception {
         SignatureAlgorithmInterface algorithm = new SignatureAlgorithmFisteus2010();
-        // signatureAlgorithmPool.borrowObject();
-        try {
-            GraphCollection graphCollection = ModelConverter.fromDataset(dataset);
-            algorithm.canonicalize(graphCollection);
-            algorithm.postCanonicalize(graphCollection);
-            algorithm.hash(graphCollection, ENV_HASH_ALGORITHM);
-            algorithm.postHash(graphCollection);
-            graphCollection.getSignature().getDigestGen().reset();
-            return hashToString(graphCollection.getSignature().getHash());
-        } finally {
-            if (algorithm != null) {
-                // signatureAlgorithmPool.returnObject(algorithm);
-            }
-        }
+        GraphCollection graphCollection = ModelConverter.fromDataset(dataset);
+        algorithm.canonicalize(graphCollection);
+        algorithm.postCanonicalize(graphCollection);
+        algorithm.hash(graphCollection, ENV_HASH_ALGORITHM);
+        algorithm.postHash(graphCollection);
+        graphCollection.getSignature().getDigestGen().reset();
+        return hashToString(graphCollection.getSignature().getHash());
     }
 
     /**
@@ -96,12 +74,7 @@ public class WonHasher {
 
     static String hashToString(byte[] data) {
         // Prepare Digest
-        MessageDigest md;
-        try {
-            md = MessageDigest.getInstance(ENV_HASH_ALGORITHM, WonSigner.SIGNING_ALGORITHM_PROVIDER);
-        } catch (Exception e) {
-            throw new WonMessageHashingException("Error computing hash", e);
-        }
+        MessageDigest md = getMessageDigest("Error computing hash");
         byte[] hashed = md.digest(data);
         Multihash multiHash = new Multihash(MULTIHASH_TYPE, hashed);
         return multiHash.toBase58();
@@ -120,29 +93,26 @@ public class WonHasher {
     }
 
     static boolean verify(String expected, byte[] valueToHash) {
-        MessageDigest md;
-        try {
-            md = MessageDigest.getInstance(ENV_HASH_ALGORITHM, WonSigner.SIGNING_ALGORITHM_PROVIDER);
-        } catch (Exception e) {
-            throw new WonMessageHashingException("Error verifying hash", e);
-        }
+        MessageDigest md = getMessageDigest("Error verifying hash");
         byte[] hashed = md.digest(valueToHash);
         Multihash multihash = Multihash.fromBase58(expected);
         return Arrays.equals(hashed, multihash.getHash());
     }
 
-    public static class SignatureAlgorithmFactory extends BasePooledObjectFactory<SignatureAlgorithmInterface> {
-        public SignatureAlgorithmFactory() {
-        }
-
-        @Override
-        public SignatureAlgorithmInterface create() throws Exception {
-            return new SignatureAlgorithmFisteus2010();
-        }
-
-        @Override
-        public PooledObject<SignatureAlgorithmInterface> wrap(SignatureAlgorithmInterface obj) {
-            return new DefaultPooledObject<SignatureAlgorithmInterface>(obj);
+    /**
+     * Returns the calling thread's MessageDigest, which is reset after each
+     * digest() call.
+     */
+    private static MessageDigest getMessageDigest(String errorMessage) {
+        MessageDigest md = messageDigest.get();
+        if (md == null) {
+            try {
+                md = MessageDigest.getInstance(ENV_HASH_ALGORITHM, WonSigner.SIGNING_ALGORITHM_PROVIDER);
+            } catch (Exception e) {
+                throw new WonMessageHashingException(errorMessage, e);
+            }
+            messageDigest.set(md);
         }
+        return md;
     }
 }
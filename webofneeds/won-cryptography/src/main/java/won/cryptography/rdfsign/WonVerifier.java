@@ -6,12 +6,17 @@ import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
 import java.math.BigInteger;
 import java.net.URI;
+import java.security.GeneralSecurityException;
 import java.security.PublicKey;
 import java.security.Signature;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
@@ -39,6 +44,17 @@ public class WonVerifier {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     private final Dataset dataset;
     private final SignatureVerificationState verificationState = new SignatureVerificationState();
+    // signatures that passed verification, keyed by hash, public key fingerprint
+    // and signature value
+    private static final int MAX_VERIFIED_SIGNATURES = 10000;
+    private static final Map<String, Boolean> verifiedSignatures = Collections
+                    .synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                            return size() > MAX_VERIFIED_SIGNATURES;
+                        }
+                    });
+    private static final ThreadLocal<Signature> verifyingSignature = new ThreadLocal<>();
     private final WonHasher hasher = new WonHasher();
     private URI messageURI;
 
@@ -95,95 +111,178 @@ public class WonVerifier {
         if (!checkMessageURI()) {
             return verificationState.isVerificationPassed();
         }
-        // verify each signature's graph
+        // check each signature in order, but compute the expensive hashes and
+        // signature checks independently of each other
+        List<SignatureCheck> checks = new ArrayList<>();
         for (WonSignatureData wonSignatureData : verificationState.getSignatures()) {
-            // extract signature graph, signature data and corresponding signed graph
-            if (logger.isDebugEnabled()) {
-                String loaded = publicKeys.containsKey(wonSignatureData.getVerificationCertificateUri()) ? "loaded"
-                                : "NOT LOADED";
-                logger.debug("checking signature {} by certificate {}, which is {}",
-                                new Object[] { wonSignatureData.getSignatureUri(),
-                                                wonSignatureData.getVerificationCertificateUri(), loaded });
-            }
-            // make sure the signed graph specified in signature exists in the message
-            List<String> signedGraphs = wonSignatureData.getSignedGraphUris();
-            for (String signedGraph : signedGraphs) {
-                if (!dataset.containsNamedModel(signedGraph)) {
-                    verificationState.verificationFailed(
-                                    "Found signature of graph " + signedGraph + " that is not part of this message");
-                }
+            checks.add(prepareCheck(wonSignatureData, publicKeys));
+        }
+        Stream<SignatureCheck> toRun = checks.size() > 1 ? checks.parallelStream() : checks.stream();
+        toRun.filter(SignatureCheck::isPrepared).forEach(SignatureCheck::run);
+        // report the first problem, as if the signatures had been checked one by one
+        for (SignatureCheck check : checks) {
+            WonSignatureData wonSignatureData = check.signatureData;
+            for (String missingGraph : check.missingGraphs) {
+                verificationState.verificationFailed(
+                                "Found signature of graph " + missingGraph + " that is not part of this message");
             }
-            // is the signature there?
-            String sigString = wonSignatureData.getSignatureValue();
-            if (sigString == null) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "Failed to compute a signature value " + wonSignatureData.getSignatureUri());
-                return verificationState.isVerificationPassed();
+            if (check.error != null) {
+                throw check.error;
             }
-            if (sigString.length() == 0) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "Computed an empty signature value " + wonSignatureData.getSignatureUri());
-                return verificationState.isVerificationPassed();
+            if (check.failure == null) {
+                continue;
             }
-            // do we have the public key?
-            PublicKey publicKey = publicKeys.get(wonSignatureData.getVerificationCertificateUri());
-            if (publicKey == null) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "No public key found for " + wonSignatureData.getSignatureUri());
-                if (logger.isDebugEnabled()) {
-                    logger.debug("offending message:\n" + RdfUtils.toString(Prefixer.setPrefixes(dataset)));
+            verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(), check.failure);
+            if (check.hashMismatch && logger.isDebugEnabled()) {
+                StringWriter sw = new StringWriter();
+                for (String signedGraphUri : wonSignatureData.getSignedGraphUris()) {
+                    RDFDataMgr.write(sw, dataset.getNamedModel(signedGraphUri), Lang.TRIG);
                 }
-                return verificationState.isVerificationPassed();
+                logger.debug("wrong signature hash for graphs {} with content: {}",
+                                wonSignatureData.getSignedGraphUris(), sw.toString());
             }
-            // check if its fingerprint matches the fingerprint in the signature
-            String fingerprint = WonHasher.hashToString(publicKey.getEncoded());
-            if (!wonSignatureData.getPublicKeyFingerprint().equals(fingerprint)) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "Fingerprint computed for the " + "specified public key "
-                                                + wonSignatureData.getVerificationCertificateUri() + " is "
-                                                + fingerprint + ", "
-                                                + "which differs from the value found in signature "
-                                                + wonSignatureData.getSignatureUri());
-                return verificationState.isVerificationPassed();
+            if (check.missingPublicKey && logger.isDebugEnabled()) {
+                logger.debug("offending message:\n" + RdfUtils.toString(Prefixer.setPrefixes(dataset)));
             }
-            // normalize, hash and post-hash signed graph data
-            GraphCollection inputGraph = ModelConverter.modelsToGraphCollection(dataset,
-                            wonSignatureData.getSignedGraphUris()
-                                            .toArray(new String[wonSignatureData.getSignedGraphUris().size()]));
-            SignatureData sigData = hasher.hashNamedGraphForSigning(inputGraph);
-            // check the hash of the data. It must be identical to the hash in the signature
-            BigInteger hashValue = sigData.getHash();
-            String hashString = WonHasher.hashToString(hashValue);
-            if (!wonSignatureData.getHash().equals(hashString)) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "Computed hash value " + hashString + " differs from value "
-                                                + wonSignatureData.getHash() + " found in signature "
-                                                + wonSignatureData.getSignatureUri());
-                if (logger.isDebugEnabled()) {
-                    StringWriter sw = new StringWriter();
-                    for (String signedGraphUri : wonSignatureData.getSignedGraphUris()) {
-                        RDFDataMgr.write(sw, dataset.getNamedModel(signedGraphUri), Lang.TRIG);
-                    }
-                    logger.debug("wrong signature hash for graphs {} with content: {}",
-                                    wonSignatureData.getSignedGraphUris(), sw.toString());
-                }
-                return verificationState.isVerificationPassed();
+            // interrupt verification process if one of the graph's verification fails
+            return verificationState.isVerificationPassed();
+        }
+        return verificationState.isVerificationPassed();
+    }
+
+    /**
+     * Performs the cheap checks of the signature and extracts the signed graphs, so
+     * that the hash can be computed without accessing the dataset.
+     */
+    private SignatureCheck prepareCheck(WonSignatureData wonSignatureData, Map<String, PublicKey> publicKeys) {
+        SignatureCheck check = new SignatureCheck(wonSignatureData);
+        // extract signature graph, signature data and corresponding signed graph
+        if (logger.isDebugEnabled()) {
+            String loaded = publicKeys.containsKey(wonSignatureData.getVerificationCertificateUri()) ? "loaded"
+                            : "NOT LOADED";
+            logger.debug("checking signature {} by certificate {}, which is {}",
+                            new Object[] { wonSignatureData.getSignatureUri(),
+                                            wonSignatureData.getVerificationCertificateUri(), loaded });
+        }
+        // make sure the signed graph specified in signature exists in the message
+        List<String> signedGraphs = wonSignatureData.getSignedGraphUris();
+        for (String signedGraph : signedGraphs) {
+            if (!dataset.containsNamedModel(signedGraph)) {
+                check.missingGraphs.add(signedGraph);
+            }
+        }
+        // is the signature there?
+        String sigString = wonSignatureData.getSignatureValue();
+        if (sigString == null) {
+            check.failure = "Failed to compute a signature value " + wonSignatureData.getSignatureUri();
+            return check;
+        }
+        if (sigString.length() == 0) {
+            check.failure = "Computed an empty signature value " + wonSignatureData.getSignatureUri();
+            return check;
+        }
+        // do we have the public key?
+        PublicKey publicKey = publicKeys.get(wonSignatureData.getVerificationCertificateUri());
+        if (publicKey == null) {
+            check.failure = "No public key found for " + wonSignatureData.getSignatureUri();
+            check.missingPublicKey = true;
+            return check;
+        }
+        // check if its fingerprint matches the fingerprint in the signature
+        String fingerprint = WonHasher.hashToString(publicKey.getEncoded());
+        if (!wonSignatureData.getPublicKeyFingerprint().equals(fingerprint)) {
+            check.failure = "Fingerprint computed for the " + "specified public key "
+                            + wonSignatureData.getVerificationCertificateUri() + " is " + fingerprint + ", "
+                            + "which differs from the value found in signature "
+                            + wonSignatureData.getSignatureUri();
+            return check;
+        }
+        check.publicKey = publicKey;
+        check.fingerprint = fingerprint;
+        check.inputGraph = ModelConverter.modelsToGraphCollection(dataset,
+                        signedGraphs.toArray(new String[signedGraphs.size()]));
+        return check;
+    }
+
+    /**
+     * Forgets all signatures verified so far.
+     */
+    public static void clearVerifiedSignatureCache() {
+        verifiedSignatures.clear();
+    }
+
+    private static Signature getVerifyingSignature() {
+        try {
+            Signature sig = verifyingSignature.get();
+            if (sig == null) {
+                sig = Signature.getInstance(WonSigner.SIGNING_ALGORITHM_NAME, SIGNING_ALGORITHM_PROVIDER);
+                verifyingSignature.set(sig);
             }
-            // verify the signature
-            Signature sig = Signature.getInstance(WonSigner.SIGNING_ALGORITHM_NAME, SIGNING_ALGORITHM_PROVIDER);
-            sig.initVerify(publicKey);
-            sig.update(hashValue.toByteArray());
-            // Verify
-            byte[] sigBytes = Base64.getDecoder().decode(sigString);
-            if (!sig.verify(sigBytes)) {
-                verificationState.setVerificationFailed(wonSignatureData.getSignatureUri(),
-                                "Failed to verify " + wonSignatureData.getSignatureUri() + " with public key "
-                                                + wonSignatureData.getVerificationCertificateUri());
-                // interrupt verification process if one of the graph's verification fails
-                return verificationState.isVerificationPassed();
+            return sig;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot create signature for verification", e);
+        }
+    }
+
+    /**
+     * Check of one signature. The expensive part, {@link #run()}, only works on
+     * data extracted beforehand and can be executed in parallel to the checks of
+     * the other signatures.
+     */
+    private class SignatureCheck {
+        private final WonSignatureData signatureData;
+        private final List<String> missingGraphs = new ArrayList<>();
+        private PublicKey publicKey;
+        private String fingerprint;
+        private GraphCollection inputGraph;
+        private String failure;
+        private boolean hashMismatch = false;
+        private boolean missingPublicKey = false;
+        private Exception error;
+
+        SignatureCheck(WonSignatureData signatureData) {
+            this.signatureData = signatureData;
+        }
+
+        boolean isPrepared() {
+            return failure == null && inputGraph != null;
+        }
+
+        void run() {
+            try {
+                // normalize, hash and post-hash signed graph data
+                SignatureData sigData = hasher.hashNamedGraphForSigning(inputGraph);
+                // check the hash of the data. It must be identical to the hash in the signature
+                BigInteger hashValue = sigData.getHash();
+                String hashString = WonHasher.hashToString(hashValue);
+                if (!signatureData.getHash().equals(hashString)) {
+                    failure = "Computed hash value " + hashString + " differs from value " + signatureData.getHash()
+                                    + " found in signature " + signatureData.getSignatureUri();
+                    hashMismatch = true;
+                    return;
+                }
+                // the same hash signed with the same key has been verified before
+                String sigString = signatureData.getSignatureValue();
+                String cacheKey = hashString + " " + fingerprint + " " + sigString;
+                if (verifiedSignatures.containsKey(cacheKey)) {
+                    return;
+                }
+                // verify the signature
+                Signature sig = getVerifyingSignature();
+                sig.initVerify(publicKey);
+                sig.update(hashValue.toByteArray());
+                // Verify
+                byte[] sigBytes = Base64.getDecoder().decode(sigString);
+                if (!sig.verify(sigBytes)) {
+                    failure = "Failed to verify " + signatureData.getSignatureUri() + " with public key "
+                                    + signatureData.getVerificationCertificateUri();
+                    return;
+                }
+                verifiedSignatures.put(cacheKey, Boolean.TRUE);
+            } catch (Exception e) {
+                error = e;
             }
         }
-        return verificationState.isVerificationPassed();
     }
 
     private void addSignatureToResult(final String graphUri, final Model model) {
@@ -0,0 +1,165 @@
+package won.cryptography.rdfsign;
+
+import java.security.Security;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.XSD;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.uni_koblenz.aggrimm.icp.crypto.sign.algorithm.SignatureAlgorithmInterface;
+import de.uni_koblenz.aggrimm.icp.crypto.sign.algorithm.algorithm.SignatureAlgorithmFisteus2010;
+import de.uni_koblenz.aggrimm.icp.crypto.sign.graph.GraphCollection;
+import de.uni_koblenz.aggrimm.icp.crypto.sign.graph.NamedGraph;
+import de.uni_koblenz.aggrimm.icp.crypto.sign.graph.Triple;
+
+/**
+ * Compares computing the hash id of a dataset via {@link WonHasher} with the
+ * previous approach (converting through Jena's Model API and creating a new
+ * algorithm object per call). The datasets resemble a message (envelope and a
+ * small content graph) and atoms of increasing size, with some blank nodes. Run
+ * the main method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WonHasherBenchmark {
+    private static final String NS = "https://example.com/won/";
+    @Param({ "message", "atom", "largeAtom" })
+    public String size;
+    private Dataset dataset;
+    private WonHasher hasher;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WonHasherBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        hasher = new WonHasher();
+        switch (size) {
+            case "message":
+                dataset = createDataset(2, 8, 0);
+                break;
+            case "atom":
+                dataset = createDataset(3, 40, 5);
+                break;
+            default:
+                dataset = createDataset(4, 400, 50);
+        }
+        String legacy = legacyCalculateHashId();
+        String current = calculateHashId();
+        if (!legacy.equals(current)) {
+            throw new IllegalStateException("hashes differ: " + legacy + " vs. " + current);
+        }
+    }
+
+    @Benchmark
+    public String calculateHashId() throws Exception {
+        return hasher.calculateHashIdForDataset(dataset);
+    }
+
+    @Benchmark
+    public String legacyCalculateHashId() throws Exception {
+        SignatureAlgorithmInterface algorithm = new SignatureAlgorithmFisteus2010();
+        GraphCollection graphCollection = new GraphCollection();
+        Iterator<String> names = dataset.listNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            graphCollection.addGraph(legacyFromModel(name, dataset.getNamedModel(name)));
+        }
+        algorithm.canonicalize(graphCollection);
+        algorithm.postCanonicalize(graphCollection);
+        algorithm.hash(graphCollection, WonHasher.ENV_HASH_ALGORITHM);
+        algorithm.postHash(graphCollection);
+        graphCollection.getSignature().getDigestGen().reset();
+        return WonHasher.hashToString(graphCollection.getSignature().getHash());
+    }
+
+    /**
+     * Each graph has one subject with the specified number of literal properties
+     * and links to blank nodes, each of which has two properties.
+     */
+    private Dataset createDataset(int graphs, int literalsPerGraph, int blankNodesPerGraph) {
+        Dataset dataset = DatasetFactory.createGeneral();
+        for (int g = 0; g < graphs; g++) {
+            Model model = ModelFactory.createDefaultModel();
+            Resource subject = model.createResource(NS + "atom/" + g);
+            for (int i = 0; i < literalsPerGraph; i++) {
+                Property property = model.createProperty(NS + "property" + (i % 10));
+                if (i % 3 == 0) {
+                    subject.addProperty(property, model.createTypedLiteral(String.valueOf(i), XSD.xlong.getURI()));
+                } else if (i % 3 == 1) {
+                    subject.addProperty(property, model.createLiteral("text number " + i, "en"));
+                } else {
+                    subject.addProperty(property, model.createResource(NS + "resource/" + i));
+                }
+            }
+            for (int i = 0; i < blankNodesPerGraph; i++) {
+                Resource blank = model.createResource();
+                subject.addProperty(model.createProperty(NS + "location"), blank);
+                blank.addProperty(model.createProperty(NS + "latitude"), model.createTypedLiteral(48.2 + i));
+                blank.addProperty(model.createProperty(NS + "longitude"), model.createTypedLiteral(16.3 + i));
+            }
+            dataset.addNamedModel(NS + "atom#graph" + g, model);
+        }
+        return dataset;
+    }
+
+    private static NamedGraph legacyFromModel(String name, Model model) {
+        NamedGraph namedGraph = new NamedGraph("<" + name + ">", 0, null);
+        StmtIterator iterator = model.listStatements();
+        while (iterator.hasNext()) {
+            Statement stmt = iterator.nextStatement();
+            namedGraph.addTriple(new Triple(legacyNodeAsString(stmt.getSubject()),
+                            "<" + stmt.getPredicate().getURI() + ">", legacyNodeAsString(stmt.getObject())));
+        }
+        return namedGraph;
+    }
+
+    private static String legacyNodeAsString(RDFNode node) {
+        if (node.isURIResource()) {
+            return "<" + node.asResource().getURI() + ">";
+        }
+        if (node.isLiteral()) {
+            Literal literal = node.asLiteral();
+            String result = "\"" + literal.getLexicalForm() + "\"";
+            if (literal.getDatatypeURI() != null) {
+                return result + "^^<" + literal.getDatatypeURI() + ">";
+            }
+            if (literal.getLanguage() != null && !literal.getLanguage().isEmpty()) {
+                return result + "@" + literal.getLanguage();
+            }
+            return result;
+        }
+        return "_:" + node.asResource().getId().getLabelString();
+    }
+}
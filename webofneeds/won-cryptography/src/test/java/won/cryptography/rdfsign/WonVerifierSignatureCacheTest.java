@@ -0,0 +1,89 @@
+package won.cryptography.rdfsign;
+
+import java.net.URI;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import won.protocol.message.WonMessage;
+import won.protocol.message.builder.WonMessageBuilder;
+import won.protocol.message.processor.impl.WonMessageSignerVerifier;
+import won.protocol.util.RdfUtils;
+import won.protocol.vocabulary.WONCON;
+
+public class WonVerifierSignatureCacheTest {
+    private static final String KEY_URI = "uri:/localAtom#key";
+    private KeyPair keyPair;
+
+    @Before
+    public void init() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDSA", "BC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        keyPair = generator.generateKeyPair();
+        WonVerifier.clearVerifiedSignatureCache();
+    }
+
+    @Test
+    public void testCachedSignatureDoesNotVerifyModifiedContent() throws Exception {
+        String signed = sign("hello");
+        Map<String, PublicKey> keys = Collections.singletonMap(KEY_URI, keyPair.getPublic());
+        Assert.assertTrue(verify(signed, keys).isVerificationPassed());
+        // second time, the signature is known to be valid
+        Assert.assertTrue(verify(signed, keys).isVerificationPassed());
+        // changing the content must still be detected
+        Dataset tampered = RdfUtils.readDatasetFromString(signed, Lang.TRIG);
+        changeText(tampered, "hello", "bye");
+        SignatureVerificationState result = WonMessageSignerVerifier.verify(keys, WonMessage.of(tampered));
+        Assert.assertFalse(result.isVerificationPassed());
+    }
+
+    @Test
+    public void testCachedSignatureRequiresMatchingKey() throws Exception {
+        String signed = sign("hello");
+        Assert.assertTrue(verify(signed, Collections.singletonMap(KEY_URI, keyPair.getPublic()))
+                        .isVerificationPassed());
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDSA", "BC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        PublicKey otherKey = generator.generateKeyPair().getPublic();
+        Assert.assertFalse(verify(signed, Collections.singletonMap(KEY_URI, otherKey)).isVerificationPassed());
+    }
+
+    private String sign(String text) throws Exception {
+        WonMessage msg = WonMessageBuilder.connectionMessage()
+                        .sockets()
+                        .sender(URI.create("uri:/localAtom#socket"))
+                        .recipient(URI.create("uri:/targetAtom#socket"))
+                        .content().text(text).build();
+        msg = WonMessageSignerVerifier.signAndSeal(keyPair.getPrivate(), keyPair.getPublic(), KEY_URI, msg);
+        return RdfUtils.writeDatasetToString(msg.getCompleteDataset(), Lang.TRIG);
+    }
+
+    private SignatureVerificationState verify(String signed, Map<String, PublicKey> keys) throws Exception {
+        Dataset dataset = RdfUtils.readDatasetFromString(signed, Lang.TRIG);
+        return WonMessageSignerVerifier.verify(keys, WonMessage.of(dataset));
+    }
+
+    private void changeText(Dataset dataset, String from, String to) {
+        for (String graphName : RdfUtils.getModelNames(dataset)) {
+            Model model = dataset.getNamedModel(graphName);
+            for (Statement stmt : model.listStatements(null, WONCON.text, from).toList()) {
+                model.remove(stmt);
+                model.add(stmt.getSubject(), stmt.getPredicate(), to);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
@@ -64,6 +65,11 @@ public class TestingDataSource implements LinkedDataSource {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public CompletableFuture<Dataset> getDataForResourceAsync(final URI resourceURI, final URI requesterWebID) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public Dataset getDataForResource(final URI resourceURI, final List<URI> properties, final int maxRequest,
                     final int maxDepth) {
@@ -0,0 +1,30 @@
+package won.matcher.service.common.event;
+
+import java.io.Serializable;
+
+/**
+ * Sent by a matcher worker to the actor that dispatched a {@link BulkAtomEvent}
+ * to it, after all atom events of the bulk have been processed.
+ */
+public class AtomEventsProcessedEvent implements Serializable {
+    private long chunkId;
+    private int count;
+
+    public AtomEventsProcessedEvent(long chunkId, int count) {
+        this.chunkId = chunkId;
+        this.count = count;
+    }
+
+    public long getChunkId() {
+        return chunkId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + count + " atom events of chunk " + chunkId + " processed]";
+    }
+}
@@ -10,11 +10,19 @@ import java.util.LinkedList;
  */
 public class BulkAtomEvent implements Serializable {
     private Collection<AtomEvent> atomEvents;
+    // id of the chunk if this event was taken from an AtomEventBacklog, 0
+    // otherwise
+    private long chunkId;
 
     public BulkAtomEvent() {
         atomEvents = new LinkedList<>();
     }
 
+    public BulkAtomEvent(long chunkId) {
+        this();
+        this.chunkId = chunkId;
+    }
+
     public void addAtomEvent(AtomEvent atomEvent) {
         atomEvents.add(atomEvent);
     }
@@ -22,4 +30,8 @@ public class BulkAtomEvent implements Serializable {
     public Collection<AtomEvent> getAtomEvents() {
         return Collections.unmodifiableCollection(atomEvents);
     }
-}
\ No newline at end of file
+
+    public long getChunkId() {
+        return chunkId;
+    }
+}
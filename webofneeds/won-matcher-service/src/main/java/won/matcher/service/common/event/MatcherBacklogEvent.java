@@ -0,0 +1,32 @@
+package won.matcher.service.common.event;
+
+import java.io.Serializable;
+
+/**
+ * Published by a matcher to report how many atom events it has not processed
+ * yet and how many it has processed since it started. Actors that generate
+ * large numbers of atom events (re-matching, crawling) wait until the backlog
+ * of the matchers is small enough.
+ */
+public class MatcherBacklogEvent implements Serializable {
+    private int pendingAtomEvents;
+    private long processedAtomEvents;
+
+    public MatcherBacklogEvent(int pendingAtomEvents, long processedAtomEvents) {
+        this.pendingAtomEvents = pendingAtomEvents;
+        this.processedAtomEvents = processedAtomEvents;
+    }
+
+    public int getPendingAtomEvents() {
+        return pendingAtomEvents;
+    }
+
+    public long getProcessedAtomEvents() {
+        return processedAtomEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "[pending: " + pendingAtomEvents + ", processed: " + processedAtomEvents + "]";
+    }
+}
@@ -0,0 +1,173 @@
+package won.matcher.service.common.mailbox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import won.matcher.service.common.event.AtomEvent;
+import won.matcher.service.common.event.BulkAtomEvent;
+import won.matcher.service.common.event.Cause;
+
+/**
+ * Queue of the atom events a matcher has received in bulk (e.g. from crawling
+ * or re-matching) but not yet passed to its workers. The events are passed on
+ * in chunks, ordered by the priority of their {@link Cause}, and at most
+ * <code>maxChunksInProcess</code> chunks are processed at the same time. This
+ * way, a large bulk never occupies all workers, and atom events that are sent
+ * to the workers directly (e.g. those pushed by a won node) do not have to wait
+ * until the bulk is done. A chunk that is not reported as processed within
+ * <code>chunkTimeoutMillis</code> is put back into the queue by
+ * {@link #expireChunks()}, so that a lost acknowledgement does not block a slot
+ * forever. Not thread safe, meant to be used by one actor.
+ */
+public class AtomEventBacklog {
+    private final int chunkSize;
+    private final int maxChunksInProcess;
+    private final long chunkTimeoutMillis;
+    private final LongSupplier clock;
+    // queued atom events by priority of their cause
+    private final Map<Integer, Deque<AtomEvent>> queuedAtomEvents = new TreeMap<>();
+    // chunks being processed by id, in the order they were dispatched
+    private final Map<Long, ChunkInProcess> chunksInProcess = new LinkedHashMap<>();
+    private int queuedCount = 0;
+    private int atomEventsInProcess = 0;
+    private long processedCount = 0;
+    private long lastChunkId = 0;
+
+    public AtomEventBacklog(int chunkSize, int maxChunksInProcess, long chunkTimeoutMillis) {
+        this(chunkSize, maxChunksInProcess, chunkTimeoutMillis, System::currentTimeMillis);
+    }
+
+    AtomEventBacklog(int chunkSize, int maxChunksInProcess, long chunkTimeoutMillis, LongSupplier clock) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunksInProcess = Math.max(1, maxChunksInProcess);
+        this.chunkTimeoutMillis = chunkTimeoutMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Indicates if the atom event should be queued in the backlog rather than being
+     * sent to the workers directly.
+     */
+    public static boolean isBackfill(AtomEvent atomEvent) {
+        return atomEvent.getCause() == Cause.CRAWLED || atomEvent.getCause() == Cause.SCHEDULED_FOR_REMATCH;
+    }
+
+    public void add(AtomEvent atomEvent) {
+        queueOf(atomEvent).addLast(atomEvent);
+        queuedCount++;
+    }
+
+    public void addAll(BulkAtomEvent bulkAtomEvent) {
+        bulkAtomEvent.getAtomEvents().forEach(this::add);
+    }
+
+    private Deque<AtomEvent> queueOf(AtomEvent atomEvent) {
+        return queuedAtomEvents.computeIfAbsent(atomEvent.getCause().getPriority(), p -> new ArrayDeque<>());
+    }
+
+    /**
+     * Takes the chunks that can be processed now from the backlog and marks them as
+     * being processed.
+     *
+     * @return the chunks, possibly empty
+     */
+    public List<BulkAtomEvent> nextChunks() {
+        List<BulkAtomEvent> chunks = new LinkedList<>();
+        while (queuedCount > 0 && chunksInProcess.size() < maxChunksInProcess) {
+            BulkAtomEvent chunk = new BulkAtomEvent(++lastChunkId);
+            for (Deque<AtomEvent> queue : queuedAtomEvents.values()) {
+                while (!queue.isEmpty() && chunk.getAtomEvents().size() < chunkSize) {
+                    chunk.addAtomEvent(queue.pollFirst());
+                }
+            }
+            int size = chunk.getAtomEvents().size();
+            queuedCount -= size;
+            atomEventsInProcess += size;
+            chunksInProcess.put(chunk.getChunkId(),
+                            new ChunkInProcess(chunk, clock.getAsLong() + chunkTimeoutMillis));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Records that a chunk obtained from {@link #nextChunks()} has been processed.
+     *
+     * @return false if the chunk is not in process (any more), e.g. because it
+     * has been put back into the queue after its timeout
+     */
+    public boolean chunkProcessed(long chunkId) {
+        ChunkInProcess chunkInProcess = chunksInProcess.remove(chunkId);
+        if (chunkInProcess == null) {
+            return false;
+        }
+        int size = chunkInProcess.chunk.getAtomEvents().size();
+        atomEventsInProcess -= size;
+        processedCount += size;
+        return true;
+    }
+
+    /**
+     * Puts the atom events of the chunks that have been in process for longer than
+     * the timeout back to the front of the queue and frees their slots.
+     *
+     * @return the number of chunks that timed out
+     */
+    public int expireChunks() {
+        long now = clock.getAsLong();
+        int expired = 0;
+        Iterator<ChunkInProcess> it = chunksInProcess.values().iterator();
+        while (it.hasNext()) {
+            ChunkInProcess chunkInProcess = it.next();
+            if (chunkInProcess.deadline > now) {
+                continue;
+            }
+            it.remove();
+            List<AtomEvent> atomEvents = new ArrayList<>(chunkInProcess.chunk.getAtomEvents());
+            for (int i = atomEvents.size() - 1; i >= 0; i--) {
+                queueOf(atomEvents.get(i)).addFirst(atomEvents.get(i));
+            }
+            atomEventsInProcess -= atomEvents.size();
+            queuedCount += atomEvents.size();
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * @return the number of atom events that are queued or being processed
+     */
+    public int getPendingCount() {
+        return queuedCount + atomEventsInProcess;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public int getChunksInProcess() {
+        return chunksInProcess.size();
+    }
+
+    public boolean isEmpty() {
+        return getPendingCount() == 0;
+    }
+
+    private static class ChunkInProcess {
+        private final BulkAtomEvent chunk;
+        private final long deadline;
+
+        private ChunkInProcess(BulkAtomEvent chunk, long deadline) {
+            this.chunk = chunk;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package won.matcher.service.common.mailbox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import akka.actor.ActorRef;
+import won.matcher.service.common.event.MatcherBacklogEvent;
+
+/**
+ * Keeps the latest {@link MatcherBacklogEvent} of each matcher. Reports older
+ * than the maximum age are ignored, so a matcher that has stopped does not
+ * block other actors forever. Not thread safe, meant to be used by one actor.
+ */
+public class MatcherBacklogMonitor {
+    // matchers report their backlog every minute
+    private static final long DEFAULT_MAX_REPORT_AGE_MILLIS = 5 * 60 * 1000;
+    private final long maxReportAgeMillis;
+    private final Map<ActorRef, Report> reports = new HashMap<>();
+
+    public MatcherBacklogMonitor() {
+        this(DEFAULT_MAX_REPORT_AGE_MILLIS);
+    }
+
+    public MatcherBacklogMonitor(long maxReportAgeMillis) {
+        this.maxReportAgeMillis = maxReportAgeMillis;
+    }
+
+    public void update(ActorRef matcher, MatcherBacklogEvent event) {
+        reports.put(matcher, new Report(event, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return the highest number of pending atom events reported by any matcher
+     */
+    public int getMaxPendingAtomEvents() {
+        long minReportTime = System.currentTimeMillis() - maxReportAgeMillis;
+        reports.values().removeIf(report -> report.time < minReportTime);
+        return reports.values().stream().mapToInt(report -> report.event.getPendingAtomEvents()).max().orElse(0);
+    }
+
+    private static class Report {
+        private final MatcherBacklogEvent event;
+        private final long time;
+
+        public Report(MatcherBacklogEvent event, long time) {
+            this.event = event;
+            this.time = time;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.shared.Lock;
 import org.apache.jena.sparql.core.DatasetGraph;
 import org.apache.jena.sparql.expr.nodevalue.NodeValueBoolean;
 import org.apache.jena.sparql.modify.UpdateProcessRemote;
@@ -26,6 +27,7 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Iterator;
 
 /**
@@ -79,21 +81,49 @@ public class SparqlService {
      * @param ds
      */
     public void updateNamedGraphsOfDataset(Dataset ds) {
-        String query = "";
-        Iterator<String> graphNames = ds.listNames();
-        while (graphNames.hasNext()) {
-            logger.debug("Save dataset");
-            String graphName = graphNames.next();
-            Model model = ds.getNamedModel(graphName);
-            query += createUpdateNamedGraphQuery(graphName, model);
-            // Update can also be done with accessor - use put/add?
-            // accessor.add(graphName, model);
-        }
+        String query = createUpdateNamedGraphsOfDatasetQuery(ds);
         if (query != "") {
             executeUpdateQuery(query);
         }
     }
 
+    /**
+     * Bulk update of the named graphs of several datasets in a single update
+     * request, first deleting them and afterwards inserting the triples of the new
+     * models.
+     *
+     * @param datasets
+     */
+    public void bulkUpdateNamedGraphsOfDatasets(Collection<Dataset> datasets) {
+        StringBuilder builder = new StringBuilder();
+        for (Dataset ds : datasets) {
+            builder.append(createUpdateNamedGraphsOfDatasetQuery(ds));
+        }
+        if (builder.length() > 0) {
+            executeUpdateQuery(builder.toString());
+        }
+    }
+
+    private String createUpdateNamedGraphsOfDatasetQuery(Dataset ds) {
+        String query = "";
+        Lock lock = ds.getLock();
+        lock.enterCriticalSection(Lock.READ);
+        try {
+            Iterator<String> graphNames = ds.listNames();
+            while (graphNames.hasNext()) {
+                logger.debug("Save dataset");
+                String graphName = graphNames.next();
+                Model model = ds.getNamedModel(graphName);
+                query += createUpdateNamedGraphQuery(graphName, model);
+                // Update can also be done with accessor - use put/add?
+                // accessor.add(graphName, model);
+            }
+        } finally {
+            lock.leaveCriticalSection();
+        }
+        return query;
+    }
+
     public Model retrieveModel(String graphName) {
         String queryTemplate = "CONSTRUCT { ?s ?p ?o } WHERE { GRAPH ?g { ?s ?p ?o } . }";
         ParameterizedSparqlString pps = new ParameterizedSparqlString();
@@ -1,5 +1,7 @@
 package won.matcher.service.crawler.actor;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
@@ -12,11 +14,15 @@ import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import won.matcher.service.common.event.BulkAtomEvent;
 import won.matcher.service.common.event.LoadAtomEvent;
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.matcher.service.crawler.service.CrawlFrontierService;
 import won.matcher.service.crawler.service.CrawlSparqlService;
 
 /**
  * Created by hfriedrich on 17.10.2016. Actor that loads crawled and saved atom
- * events from the rdf store the and sends them back to the actor requesting it
+ * events from the rdf store the and sends them back to the actor requesting it.
+ * The atoms to load are selected by their crawl date in the
+ * {@link CrawlFrontierService}.
  */
 @Component
 @Scope("prototype")
@@ -26,6 +32,8 @@ public class AtomEventLoaderActor extends UntypedActor {
     private ActorRef pubSubMediator;
     @Autowired
     private CrawlSparqlService sparqlService;
+    @Autowired
+    private CrawlFrontierService frontier;
 
     @Override
     public void preStart() {
@@ -40,24 +48,25 @@ public class AtomEventLoaderActor extends UntypedActor {
         if (o instanceof LoadAtomEvent) {
             LoadAtomEvent msg = (LoadAtomEvent) o;
             log.debug("received request to load atoms events: {}", msg);
-            BulkAtomEvent bulkAtomEvent;
+            List<CrawlUriMessage> atoms;
             int offset = 0;
             do {
                 // check if atom event should be returned in time interval or last X atom events
                 if (msg.getLastXAtomEvents() == -1) {
-                    bulkAtomEvent = sparqlService.retrieveActiveAtomEvents(msg.getFromDate(), msg.getToDate(), offset,
-                                    MAX_BULK_SIZE, true);
+                    atoms = frontier.retrieveActiveAtoms(msg.getFromDate(), msg.getToDate(), offset, MAX_BULK_SIZE,
+                                    true);
                 } else {
-                    bulkAtomEvent = sparqlService.retrieveActiveAtomEvents(0, Long.MAX_VALUE, offset,
+                    atoms = frontier.retrieveActiveAtoms(0, Long.MAX_VALUE, offset,
                                     Math.min(MAX_BULK_SIZE, msg.getLastXAtomEvents() - offset), false);
                 }
+                offset += atoms.size();
+                BulkAtomEvent bulkAtomEvent = sparqlService.retrieveAtomEvents(atoms);
                 if (bulkAtomEvent.getAtomEvents().size() > 0) {
                     log.debug("send bulk event of size {} back to requesting actor",
                                     bulkAtomEvent.getAtomEvents().size());
                     getSender().tell(bulkAtomEvent, getSelf());
-                    offset += bulkAtomEvent.getAtomEvents().size();
                 }
-            } while (bulkAtomEvent.getAtomEvents().size() == MAX_BULK_SIZE);
+            } while (atoms.size() == MAX_BULK_SIZE);
         }
     }
 }
@@ -21,12 +21,15 @@ import akka.event.LoggingAdapter;
 import akka.japi.Function;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
+import won.matcher.service.common.event.MatcherBacklogEvent;
 import won.matcher.service.common.event.WonNodeEvent;
+import won.matcher.service.common.mailbox.MatcherBacklogMonitor;
 import won.matcher.service.common.spring.SpringExtension;
 import won.matcher.service.crawler.config.CrawlConfig;
 import won.matcher.service.crawler.exception.CrawlWrapperException;
 import won.matcher.service.crawler.msg.CrawlUriMessage;
 import won.matcher.service.crawler.msg.ResourceCrawlUriMessage;
+import won.matcher.service.crawler.service.CrawlFrontierService;
 import won.matcher.service.crawler.service.CrawlSparqlService;
 import won.protocol.model.Atom;
 import won.protocol.model.AtomState;
@@ -37,13 +40,15 @@ import won.protocol.service.WonNodeInfo;
  * {@link CrawlUriMessage} to workers {@link WorkerCrawlerActor} and one single
  * worker of type {@link UpdateMetadataActor}. The process can be stopped at any
  * time and continued by passing the messages that should be crawled again since
- * meta data about the crawling process is saved in the SPARQL endpoint. This is
- * done by a single actor of type {@link UpdateMetadataActor} which keeps
- * message order to guarantee consistency in case of failure. Unfinished
- * messages can be resend for restarting crawling. Newly discovered won node
- * events are published on the event stream during crawling. When an event is
- * received that indicates that we connected to that won node, crawling this won
- * node can continue and will be triggered regularly by
+ * meta data about the crawling process is saved in the
+ * {@link CrawlFrontierService}. This is done by a single actor of type
+ * {@link UpdateMetadataActor} which keeps message order to guarantee
+ * consistency in case of failure. The crawled resources are saved in bulk by a
+ * single actor of type {@link SaveDatasetActor}. Unfinished messages can be
+ * resend for restarting crawling. Newly discovered won node events are
+ * published on the event stream during crawling. When an event is received that
+ * indicates that we connected to that won node, crawling this won node can
+ * continue and will be triggered regularly by
  * {@link won.matcher.service.nodemanager.actor.WonNodeControllerActor}.
  * <p>
  * User: hfriedrich Date: 30.03.2015
@@ -53,6 +58,9 @@ import won.protocol.service.WonNodeInfo;
 public class MasterCrawlerActor extends UntypedActor {
     private LoggingAdapter log = Logging.getLogger(getContext().system(), this);
     private static final FiniteDuration RESCHEDULE_MESSAGE_DURATION = Duration.create(500, TimeUnit.MILLISECONDS);
+    // number of last modified resources checked for the modification date to start
+    // crawling from
+    private static final int MODIFICATION_DATE_CANDIDATES = 100;
     private Map<String, CrawlUriMessage> pendingMessages = new HashMap<>();
     private Map<String, CrawlUriMessage> doneMessages = new HashMap<>();
     private Map<String, CrawlUriMessage> failedMessages = new HashMap<>();
@@ -63,19 +71,27 @@ public class MasterCrawlerActor extends UntypedActor {
     private ActorRef pubSubMediator;
     private static final String RECRAWL_TICK = "recrawl_tick";
     private static final int MIN_PENDING_MESSAGES_TO_SKIP_RECRAWLING = 10;
+    private MatcherBacklogMonitor matcherBacklogMonitor = new MatcherBacklogMonitor();
     @Autowired
     private CrawlConfig config;
     @Autowired
     private CrawlSparqlService sparqlService;
+    @Autowired
+    private CrawlFrontierService frontier;
 
     @Override
     public void preStart() {
         // Create a scheduler to execute the life check for each won node regularly
         getContext().system().scheduler().schedule(config.getRecrawlIntervalDuration(),
                         config.getRecrawlIntervalDuration(), getSelf(), RECRAWL_TICK, getContext().dispatcher(), null);
+        // create a single actor that saves the crawled datasets for all worker actors
+        ActorRef saveDatasetWorker = getContext().actorOf(
+                        SpringExtension.SpringExtProvider.get(getContext().system()).props(SaveDatasetActor.class),
+                        "SaveDatasetWorker");
+        getContext().watch(saveDatasetWorker);
         // Create the router/pool with worker actors that do the actual crawling
         crawlingWorker = getContext().actorOf(SpringExtension.SpringExtProvider.get(getContext().system())
-                        .fromConfigProps(WorkerCrawlerActor.class), "CrawlingRouter");
+                        .fromConfigProps(WorkerCrawlerActor.class, saveDatasetWorker), "CrawlingRouter");
         // create a single meta data update actor for all worker actors
         updateMetaDataWorker = getContext().actorOf(
                         SpringExtension.SpringExtProvider.get(getContext().system()).props(UpdateMetadataActor.class),
@@ -94,9 +110,12 @@ public class MasterCrawlerActor extends UntypedActor {
                         getSelf());
         pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(ResourceCrawlUriMessage.class.getName(), getSelf()),
                         getSelf());
+        // subscribe to the backlog reports of the matchers
+        pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(MatcherBacklogEvent.class.getName(), getSelf()),
+                        getSelf());
         try {
             // load the unfinished uris and start crawling
-            for (CrawlUriMessage msg : sparqlService.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.PROCESS)) {
+            for (CrawlUriMessage msg : frontier.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.PROCESS)) {
                 pendingMessages.put(msg.getUri(), msg);
                 crawlingWorker.tell(msg, getSelf());
             }
@@ -104,7 +123,7 @@ public class MasterCrawlerActor extends UntypedActor {
             log.info("caught exception while obtaining unfinished crawl URIs, we may be missing some atoms", e);
         }
         try {
-            for (CrawlUriMessage msg : sparqlService.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.FAILED)) {
+            for (CrawlUriMessage msg : frontier.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.FAILED)) {
                 getSelf().tell(msg, getSelf());
             }
         } catch (Exception e) {
@@ -151,6 +170,9 @@ public class MasterCrawlerActor extends UntypedActor {
                 askWonNodeInfoForCrawling();
             } else if (message instanceof WonNodeEvent) {
                 processWonNodeEvent((WonNodeEvent) message);
+            } else if (message instanceof MatcherBacklogEvent) {
+                log.debug("Matcher {} reported backlog {}", getSender(), message);
+                matcherBacklogMonitor.update(getSender(), (MatcherBacklogEvent) message);
             } else if (message instanceof CrawlUriMessage) {
                 CrawlUriMessage uriMsg = (CrawlUriMessage) message;
                 processCrawlUriMessage(uriMsg);
@@ -275,6 +297,13 @@ public class MasterCrawlerActor extends UntypedActor {
                             config.getRecrawlIntervalDuration().toMinutes());
             return;
         }
+        int matcherBacklog = matcherBacklogMonitor.getMaxPendingAtomEvents();
+        if (matcherBacklog > config.getMaxMatcherBacklog()) {
+            log.warning("Skip crawling cycle since a matcher still has {} atom events to process. Try to restart "
+                            + "crawling again in {} minutes", matcherBacklog,
+                            config.getRecrawlIntervalDuration().toMinutes());
+            return;
+        }
         log.info("Start crawling process again. Clear the cached uris and crawling statistics");
         doneMessages.clear();
         failedMessages.clear();
@@ -295,8 +324,9 @@ public class MasterCrawlerActor extends UntypedActor {
         // get the last known atom modification date and start crawling from this point
         // again
         log.info("start crawling won node: {} ...", wonNodeInfo.getWonNodeURI());
-        String lastAtomModificationDate = sparqlService
-                        .retrieveAtomModificationDateForCrawling(wonNodeInfo.getWonNodeURI());
+        String lastAtomModificationDate = findCrawledModificationDate(
+                        sparqlService.retrieveAtomModificationDates(wonNodeInfo.getWonNodeURI(),
+                                        MODIFICATION_DATE_CANDIDATES));
         String atomListUri = removeEndingSlash(wonNodeInfo.getAtomListURI());
         String modifiedUri = atomListUri + "?state=" + AtomState.ACTIVE;
         if (lastAtomModificationDate != null) {
@@ -306,8 +336,9 @@ public class MasterCrawlerActor extends UntypedActor {
                         CrawlUriMessage.STATUS.PROCESS, System.currentTimeMillis(), null), getSelf());
         // get the last known connection modification date and start crawling from this
         // point again
-        String lastConnectionModificationDate = sparqlService
-                        .retrieveConnectionModificationDateForCrawling(wonNodeInfo.getWonNodeURI());
+        String lastConnectionModificationDate = findCrawledModificationDate(
+                        sparqlService.retrieveConnectionModificationDates(wonNodeInfo.getWonNodeURI(),
+                                        MODIFICATION_DATE_CANDIDATES));
         if (lastConnectionModificationDate != null) {
             String connectionPrefixUri = removeEndingSlash(wonNodeInfo.getConnectionURIPrefix());
             String modifiedConnectionPrefixUri = connectionPrefixUri + "?modifiedafter="
@@ -318,6 +349,23 @@ public class MasterCrawlerActor extends UntypedActor {
         }
     }
 
+    /**
+     * Take the last modification date of a resource that is in status 'DONE' which
+     * means it has been crawled.
+     *
+     * @param modificationDates modification dates by uri, latest first
+     * @return modification date to start crawling from or null if none of the
+     * resources has been crawled
+     */
+    private String findCrawledModificationDate(Map<String, String> modificationDates) {
+        for (Map.Entry<String, String> modificationDate : modificationDates.entrySet()) {
+            if (CrawlUriMessage.STATUS.DONE.equals(frontier.retrieveStatus(modificationDate.getKey()))) {
+                return modificationDate.getValue();
+            }
+        }
+        return null;
+    }
+
     private String removeEndingSlash(String uri) {
         if (uri != null && uri.endsWith("/")) {
             return uri.substring(0, uri.length() - 1);
@@ -0,0 +1,129 @@
+package won.matcher.service.crawler.actor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.query.Dataset;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import akka.actor.UntypedActor;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import won.matcher.service.crawler.config.CrawlConfig;
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.matcher.service.crawler.msg.SaveDatasetMessage;
+import won.matcher.service.crawler.service.CrawlFrontierService;
+import won.matcher.service.crawler.service.CrawlSparqlService;
+import won.protocol.model.AtomState;
+import won.protocol.util.AtomModelWrapper;
+
+/**
+ * Actor that saves the datasets of the crawled resources in the triple store,
+ * so that the crawling workers do not have to wait for the triple store. The
+ * actor collects a certain number of datasets before it saves them in a single
+ * bulk update. The state of the saved atoms is kept in the
+ * {@link CrawlFrontierService}. After the bulk update the crawled URIs are
+ * reported as done to the parent {@link MasterCrawlerActor}. If the bulk update
+ * fails, they are reported as failed instead, so that they are crawled again.
+ */
+@Component
+@Scope("prototype")
+public class SaveDatasetActor extends UntypedActor {
+    private LoggingAdapter log = Logging.getLogger(getContext().system(), this);
+    private List<SaveDatasetMessage> bulkMessages = new ArrayList<>();
+    private static final String TICK = "tick";
+    @Autowired
+    private CrawlConfig config;
+    @Autowired
+    private CrawlSparqlService endpoint;
+    @Autowired
+    private CrawlFrontierService frontier;
+
+    @Override
+    public void preStart() {
+        // Execute the bulk update at least once a while even if not enough datasets
+        // are there
+        getContext().system().scheduler().schedule(config.getDatasetUpdateMaxDuration(),
+                        config.getDatasetUpdateMaxDuration(), getSelf(), TICK, getContext().dispatcher(), null);
+    }
+
+    @Override
+    public void postStop() {
+        // save the remaining datasets before stop
+        update();
+    }
+
+    /**
+     * Collects datasets until the maximum bulk update size is reached or a timer is
+     * elapsed to execute the bulk update.
+     *
+     * @param message
+     */
+    @Override
+    public void onReceive(final Object message) {
+        if (message instanceof SaveDatasetMessage) {
+            SaveDatasetMessage saveMsg = (SaveDatasetMessage) message;
+            log.debug("Add dataset to bulk update list: {}", saveMsg.getCrawlUriMessage());
+            bulkMessages.add(saveMsg);
+            if (bulkMessages.size() >= config.getDatasetUpdateMaxBulkSize()) {
+                update();
+            }
+        } else if (message instanceof String) {
+            update();
+        } else {
+            unhandled(message);
+        }
+    }
+
+    /**
+     * save the datasets available
+     */
+    private void update() {
+        if (bulkMessages.isEmpty()) {
+            return;
+        }
+        List<SaveDatasetMessage> messages = bulkMessages;
+        bulkMessages = new ArrayList<>();
+        log.debug("Save {} crawled datasets", messages.size());
+        try {
+            List<Dataset> datasets = new ArrayList<>(messages.size());
+            for (SaveDatasetMessage msg : messages) {
+                datasets.add(msg.getDataset());
+            }
+            endpoint.bulkUpdateNamedGraphsOfDatasets(datasets);
+            Map<String, AtomState> atomStates = new HashMap<>();
+            for (SaveDatasetMessage msg : messages) {
+                if (AtomModelWrapper.isAAtom(msg.getDataset())) {
+                    AtomState state = new AtomModelWrapper(msg.getDataset(), false).getAtomState();
+                    if (state != null) {
+                        atomStates.put(msg.getCrawlUriMessage().getUri(), state);
+                    }
+                }
+            }
+            if (!atomStates.isEmpty()) {
+                frontier.updateAtomStates(atomStates);
+            }
+        } catch (Exception e) {
+            log.warning("Could not save {} crawled datasets: {}", messages.size(), e);
+            for (SaveDatasetMessage msg : messages) {
+                CrawlUriMessage uriMsg = msg.getCrawlUriMessage();
+                CrawlUriMessage failedMsg = new CrawlUriMessage(uriMsg.getUri(), uriMsg.getBaseUri(),
+                                uriMsg.getWonNodeUri(), CrawlUriMessage.STATUS.FAILED, System.currentTimeMillis(),
+                                null);
+                getContext().parent().tell(failedMsg, getSelf());
+            }
+            return;
+        }
+        // the uris are marked as done only now, since their ETags prevent saving the
+        // resources when they are crawled again
+        for (SaveDatasetMessage msg : messages) {
+            if (msg.getDoneMessage() != null) {
+                getContext().parent().tell(msg.getDoneMessage(), getSelf());
+            }
+        }
+    }
+}
@@ -16,15 +16,15 @@ import akka.japi.Function;
 import scala.concurrent.duration.Duration;
 import won.matcher.service.crawler.config.CrawlConfig;
 import won.matcher.service.crawler.msg.CrawlUriMessage;
-import won.matcher.service.crawler.service.CrawlSparqlService;
+import won.matcher.service.crawler.service.CrawlFrontierService;
 
 /**
  * Actor that updates the meta data of the crawling of URIs (baseUri, date,
- * status) in a Sparql endpoint. This is used to know which URIs have already
- * been crawled and for which URIs the crawling is still running or failed. Also
- * the actor collects a certain number of messages before it updates the meta
- * data in a single query bulk update for all of them. User: hfriedrich Date:
- * 17.04.2015
+ * status) in the {@link CrawlFrontierService}. This is used to know which URIs
+ * have already been crawled and for which URIs the crawling is still running or
+ * failed. Also the actor collects a certain number of messages before it
+ * updates the meta data in a single bulk update for all of them. User:
+ * hfriedrich Date: 17.04.2015
  */
 @Component
 @Scope("prototype")
@@ -35,7 +35,7 @@ public class UpdateMetadataActor extends UntypedActor {
     @Autowired
     private CrawlConfig config;
     @Autowired
-    private CrawlSparqlService endpoint;
+    private CrawlFrontierService frontier;
 
     @Override
     public void preStart() {
@@ -79,7 +79,7 @@ public class UpdateMetadataActor extends UntypedActor {
     private void update() {
         if (bulkMessages.size() > 0) {
             log.debug("Update crawling meta data of {} messages", bulkMessages.size());
-            endpoint.bulkUpdateCrawlingMetadata(bulkMessages);
+            frontier.bulkUpdateCrawlingMetadata(bulkMessages);
             bulkMessages.clear();
         }
     }
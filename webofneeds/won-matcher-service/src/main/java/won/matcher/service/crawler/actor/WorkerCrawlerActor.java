@@ -30,6 +30,8 @@ import won.matcher.service.crawler.config.CrawlConfig;
 import won.matcher.service.crawler.exception.CrawlWrapperException;
 import won.matcher.service.crawler.msg.CrawlUriMessage;
 import won.matcher.service.crawler.msg.ResourceCrawlUriMessage;
+import won.matcher.service.crawler.msg.SaveDatasetMessage;
+import won.matcher.service.crawler.service.CrawlFrontierService;
 import won.matcher.service.crawler.service.CrawlSparqlService;
 import won.protocol.exception.IncorrectPropertyCountException;
 import won.protocol.model.AtomState;
@@ -41,15 +43,18 @@ import won.protocol.util.linkeddata.LinkedDataSourceBase;
 import won.protocol.vocabulary.WON;
 
 /**
- * Actor requests linked data URI using HTTP and saves it to a triple store
- * using SPARQL UPDATE query. Responds to the sender with extracted URIs from
- * the linked data URI.
+ * Actor requests linked data URI using HTTP and passes it to the
+ * {@link SaveDatasetActor} that saves it to a triple store using SPARQL UPDATE
+ * query. Responds to the sender with extracted URIs from the linked data URI,
+ * the {@link SaveDatasetActor} reports the URI as done once it is saved.
  * <p>
  * This class uses property paths to extract URIs from linked data resources.
  * These property paths are executed relative to base URIs. Therefore there are
  * two types of property paths. Base property path extract URIs that are taken
  * as new base URIs. Non-base property paths extract URIs that keep the current
- * base URI.
+ * base URI. The property paths are evaluated on the requested resource only,
+ * without waiting for the triple store. Therefore paths that span several
+ * resources do not match, each hop has to be crawled as a base URI.
  * <p>
  * User: hfriedrich Date: 07.04.2015
  */
@@ -62,8 +67,15 @@ public class WorkerCrawlerActor extends UntypedActor {
     @Autowired
     private CrawlSparqlService sparqlService;
     @Autowired
+    private CrawlFrontierService frontier;
+    @Autowired
     private CrawlConfig config;
     private ActorRef pubSubMediator;
+    private ActorRef saveDatasetWorker;
+
+    public WorkerCrawlerActor(ActorRef saveDatasetWorker) {
+        this.saveDatasetWorker = saveDatasetWorker;
+    }
 
     @Override
     public void preStart() {
@@ -113,9 +125,12 @@ public class WorkerCrawlerActor extends UntypedActor {
             if (ds == null) {
                 // use ETag/If-None-Match Headers to make the process more efficient
                 HttpHeaders httpHeaders = new HttpHeaders();
-                if (uriMsg.getResourceETagHeaderValues() != null && !uriMsg.getResourceETagHeaderValues().isEmpty()) {
-                    String ifNoneMatchHeaderValue = StringUtils
-                                    .collectionToDelimitedString(uriMsg.getResourceETagHeaderValues(), ", ");
+                Collection<String> ifNoneMatchETags = uriMsg.getResourceETagHeaderValues();
+                if (ifNoneMatchETags == null) {
+                    ifNoneMatchETags = frontier.retrieveResourceETags(uriMsg.getUri());
+                }
+                if (ifNoneMatchETags != null && !ifNoneMatchETags.isEmpty()) {
+                    String ifNoneMatchHeaderValue = StringUtils.collectionToDelimitedString(ifNoneMatchETags, ", ");
                     httpHeaders.add("If-None-Match", ifNoneMatchHeaderValue);
                 }
                 DatasetResponseWithStatusCodeAndHeaders datasetWithHeaders = linkedDataSource
@@ -139,32 +154,35 @@ public class WorkerCrawlerActor extends UntypedActor {
                 }
             }
             lock = ds == null ? null : ds.getLock();
-            lock.enterCriticalSection(true);
-            // Save dataset to triple store
-            sparqlService.updateNamedGraphsOfDataset(ds);
+            lock.enterCriticalSection(Lock.READ);
             String wonNodeUri = extractWonNodeUri(ds, uriMsg.getUri());
             if (wonNodeUri == null) {
                 wonNodeUri = uriMsg.getWonNodeUri();
             }
-            // do nothing more here if the STATUS of the message was SAVE
+            // only save the dataset to the triple store if the STATUS of the message was
+            // SAVE
             if (uriMsg.getStatus().equals(CrawlUriMessage.STATUS.SAVE)) {
+                saveDatasetWorker.tell(new SaveDatasetMessage(uriMsg, ds), getSelf());
                 log.debug("processed crawl uri event {} with status 'SAVE'", uriMsg);
                 return;
             }
             // extract URIs from current resource and send extracted URI messages back to
             // sender
             log.debug("Extract URIs from message {}", uriMsg);
-            Set<CrawlUriMessage> newCrawlMessages = sparqlService.extractCrawlUriMessages(uriMsg.getBaseUri(),
+            Set<CrawlUriMessage> newCrawlMessages = sparqlService.extractCrawlUriMessages(ds, uriMsg.getBaseUri(),
                             wonNodeUri);
             for (CrawlUriMessage newMsg : newCrawlMessages) {
                 getSender().tell(newMsg, getSelf());
             }
-            // signal sender that this URI is processed and save meta data about crawling
-            // the URI.
+            // save the dataset to the triple store. The save worker signals the sender
+            // that this URI is processed (and the meta data about crawling the URI is
+            // saved) only after the dataset has been saved, otherwise the ETags would
+            // prevent saving the resource when it is crawled again.
             // This needs to be done after all extracted URI messages have been sent to
             // guarantee consistency
             // in case of failure
-            sendDoneUriMessage(uriMsg, wonNodeUri, etags);
+            saveDatasetWorker.tell(new SaveDatasetMessage(uriMsg, ds, createDoneUriMessage(uriMsg, wonNodeUri, etags)),
+                            getSelf());
             // if this URI/dataset was an atom then send an event to the distributed event
             // bu
             if (AtomModelWrapper.isAAtom(ds)) {
@@ -219,6 +237,11 @@ public class WorkerCrawlerActor extends UntypedActor {
     }
 
     private void sendDoneUriMessage(CrawlUriMessage sourceUriMessage, String wonNodeUri, Collection<String> etags) {
+        getSender().tell(createDoneUriMessage(sourceUriMessage, wonNodeUri, etags), getSelf());
+    }
+
+    private CrawlUriMessage createDoneUriMessage(CrawlUriMessage sourceUriMessage, String wonNodeUri,
+                    Collection<String> etags) {
         long crawlDate = System.currentTimeMillis();
         CrawlUriMessage uriDoneMsg = new CrawlUriMessage(sourceUriMessage.getUri(), sourceUriMessage.getBaseUri(),
                         wonNodeUri, CrawlUriMessage.STATUS.DONE, crawlDate, etags);
@@ -228,7 +251,7 @@ public class WorkerCrawlerActor extends UntypedActor {
         String responseETags = etags != null ? String.join(", ", etags) : "<None>";
         log.debug("Crawling done for URI {} with ETag Header Values {} (If-None-Match request value: {})",
                         uriDoneMsg.getUri(), responseETags, ifNoneMatch);
-        getSender().tell(uriDoneMsg, getSelf());
+        return uriDoneMsg;
     }
 
     public void setSparqlService(final CrawlSparqlService sparqlService) {
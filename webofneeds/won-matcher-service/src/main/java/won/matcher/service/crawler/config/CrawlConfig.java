@@ -28,8 +28,16 @@ public class CrawlConfig {
     private long metaDataUpdateMaxDuration;
     @Value("${crawler.metaDataUpdate.maxBulkSize}")
     private long metaDataUpdateMaxBulkSize;
+    @Value("${crawler.datasetUpdate.maxDuration:1000}")
+    private long datasetUpdateMaxDuration;
+    @Value("${crawler.datasetUpdate.maxBulkSize:20}")
+    private int datasetUpdateMaxBulkSize;
+    @Value("${crawler.frontier.location:crawl-frontier/frontier}")
+    private String frontierLocation;
     @Value("${crawler.recrawl.interval.minutes}")
     private long recrawlIntervalMinutes;
+    @Value("${crawler.maxMatcherBacklog:1000}")
+    private int maxMatcherBacklog;
 
     public List<String> getCrawlBasePropertyPaths() {
         return crawlBasePropertyPaths;
@@ -58,4 +66,20 @@ public class CrawlConfig {
     public long getMetaDataUpdateMaxBulkSize() {
         return metaDataUpdateMaxBulkSize;
     }
+
+    public FiniteDuration getDatasetUpdateMaxDuration() {
+        return Duration.create(datasetUpdateMaxDuration, TimeUnit.MILLISECONDS);
+    }
+
+    public int getDatasetUpdateMaxBulkSize() {
+        return datasetUpdateMaxBulkSize;
+    }
+
+    public String getFrontierLocation() {
+        return frontierLocation;
+    }
+
+    public int getMaxMatcherBacklog() {
+        return maxMatcherBacklog;
+    }
 }
@@ -0,0 +1,43 @@
+package won.matcher.service.crawler.msg;
+
+import org.apache.jena.query.Dataset;
+
+/**
+ * Message to save the dataset of a crawled resource in the triple store. Only
+ * sent between actors of the same actor system, the dataset is not
+ * serializable. The optional done message is sent to the master after the
+ * dataset has been saved, so that the uri is only marked as crawled (and its
+ * ETags stored) once the resource is in the triple store.
+ */
+public class SaveDatasetMessage {
+    private CrawlUriMessage crawlUriMessage;
+    private Dataset dataset;
+    private CrawlUriMessage doneMessage;
+
+    public SaveDatasetMessage(final CrawlUriMessage crawlUriMessage, final Dataset dataset) {
+        this(crawlUriMessage, dataset, null);
+    }
+
+    public SaveDatasetMessage(final CrawlUriMessage crawlUriMessage, final Dataset dataset,
+                    final CrawlUriMessage doneMessage) {
+        this.crawlUriMessage = crawlUriMessage;
+        this.dataset = dataset;
+        this.doneMessage = doneMessage;
+    }
+
+    public CrawlUriMessage getCrawlUriMessage() {
+        return crawlUriMessage;
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @return message with status DONE to send after the dataset has been saved,
+     * or null if nothing has to be reported
+     */
+    public CrawlUriMessage getDoneMessage() {
+        return doneMessage;
+    }
+}
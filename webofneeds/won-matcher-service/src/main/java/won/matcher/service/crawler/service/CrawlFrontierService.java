@@ -0,0 +1,413 @@
+package won.matcher.service.crawler.service;
+
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import won.matcher.service.crawler.config.CrawlConfig;
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.protocol.model.AtomState;
+
+/**
+ * Keeps the meta data about the crawling process (status, crawl date, base uri,
+ * won node uri and ETags of every crawled uri) in an embedded HSQLDB database,
+ * so that the crawl state does not have to be written to the triple store. The
+ * table is keyed by uri and indexed by status, it is used to resume crawling
+ * after a restart and for conditional requests when crawling uris again. The
+ * state of crawled atoms is kept too, to load the active atoms in a range of
+ * crawl dates.
+ * <p>
+ * On the first start the crawl meta data and the atom states saved in the
+ * triple store by earlier versions are imported. The import is recorded in the
+ * database once it succeeded, otherwise it is retried on the next start.
+ */
+@Component
+public class CrawlFrontierService {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String ETAG_SEPARATOR = "\n";
+    private static final String SELECT_COLUMNS = "SELECT uri, base_uri, won_node_uri, status, crawl_date, etags FROM crawl_frontier ";
+    // number of uris to look up the atom state for in one query during the import
+    private static final int IMPORT_ATOM_STATE_BATCH_SIZE = 500;
+    @Autowired
+    private CrawlConfig config;
+    @Autowired
+    private CrawlSparqlService sparqlService;
+    private Connection connection;
+
+    @PostConstruct
+    private void init() throws SQLException {
+        File location = new File(config.getFrontierLocation());
+        if (location.getParentFile() != null) {
+            location.getParentFile().mkdirs();
+        }
+        open("jdbc:hsqldb:file:" + location.getPath());
+    }
+
+    /**
+     * Open the database, create the tables if they do not exist yet and import the
+     * crawl meta data of earlier versions if that has not been done yet.
+     *
+     * @param jdbcUrl url of the HSQLDB database
+     */
+    void open(String jdbcUrl) throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, "SA", "");
+        connection.setAutoCommit(false);
+        createTables();
+        logger.info("Opened crawl frontier {} with {} uris", jdbcUrl, count());
+        if (!isImported()) {
+            importCrawlingMetadata();
+        }
+    }
+
+    @PreDestroy
+    private synchronized void shutdown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Update the meta data about the crawling process of a message.
+     *
+     * @param msg message that describe crawling meta data to update
+     */
+    public void updateCrawlingMetadata(CrawlUriMessage msg) {
+        bulkUpdateCrawlingMetadata(Arrays.asList(msg));
+    }
+
+    /**
+     * Bulk update of several meta data messages about the crawling process in a
+     * single transaction.
+     *
+     * @param msgs multiple messages that describe crawling meta data to update
+     */
+    public synchronized void bulkUpdateCrawlingMetadata(Collection<CrawlUriMessage> msgs) {
+        String sql = "MERGE INTO crawl_frontier f USING (VALUES(CAST(? AS VARCHAR(2048)), CAST(? AS VARCHAR(2048)), "
+                        + "CAST(? AS VARCHAR(2048)), CAST(? AS VARCHAR(16)), CAST(? AS BIGINT), CAST(? AS VARCHAR(8192)))) "
+                        + "AS v(uri, base_uri, won_node_uri, status, crawl_date, etags) ON f.uri = v.uri "
+                        + "WHEN MATCHED THEN UPDATE SET f.base_uri = v.base_uri, f.won_node_uri = v.won_node_uri, "
+                        + "f.status = v.status, f.crawl_date = v.crawl_date, f.etags = v.etags "
+                        + "WHEN NOT MATCHED THEN INSERT (uri, base_uri, won_node_uri, status, crawl_date, etags) "
+                        + "VALUES (v.uri, v.base_uri, v.won_node_uri, v.status, v.crawl_date, v.etags)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (CrawlUriMessage msg : msgs) {
+                statement.setString(1, msg.getUri());
+                statement.setString(2, msg.getBaseUri());
+                statement.setString(3, msg.getWonNodeUri());
+                statement.setString(4, msg.getStatus().toString());
+                statement.setLong(5, msg.getCrawlDate());
+                if (msg.getResourceETagHeaderValues() != null && !msg.getResourceETagHeaderValues().isEmpty()) {
+                    statement.setString(6, String.join(ETAG_SEPARATOR, msg.getResourceETagHeaderValues()));
+                } else {
+                    statement.setNull(6, Types.VARCHAR);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not update crawl meta data of " + msgs.size() + " uris", e);
+        }
+    }
+
+    /**
+     * Save the state of crawled atoms.
+     *
+     * @param atomStates state of the atoms by atom uri
+     */
+    public synchronized void updateAtomStates(Map<String, AtomState> atomStates) {
+        String sql = "MERGE INTO crawl_frontier f USING (VALUES(CAST(? AS VARCHAR(2048)), CAST(? AS VARCHAR(16)))) "
+                        + "AS v(uri, atom_state) ON f.uri = v.uri "
+                        + "WHEN MATCHED THEN UPDATE SET f.atom_state = v.atom_state "
+                        + "WHEN NOT MATCHED THEN INSERT (uri, atom_state) VALUES (v.uri, v.atom_state)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Map.Entry<String, AtomState> atomState : atomStates.entrySet()) {
+                statement.setString(1, atomState.getKey());
+                statement.setString(2, atomState.getValue().toString());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not update state of " + atomStates.size() + " atoms", e);
+        }
+    }
+
+    /**
+     * Gets all messages saved of a certain status (e.g. FAILED) and puts them in
+     * the STATUS PROCESS to be able to execute the crawling again.
+     *
+     * @param status
+     * @return
+     */
+    public synchronized Set<CrawlUriMessage> retrieveMessagesForCrawling(CrawlUriMessage.STATUS status) {
+        Set<CrawlUriMessage> msgs = new LinkedHashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_COLUMNS + "WHERE status = ?")) {
+            statement.setString(1, status.toString());
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    msgs.add(new CrawlUriMessage(results.getString("uri"), results.getString("base_uri"),
+                                    results.getString("won_node_uri"), CrawlUriMessage.STATUS.PROCESS,
+                                    System.currentTimeMillis(), toETags(results.getString("etags"))));
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not retrieve crawl uris with status " + status, e);
+        }
+        return msgs;
+    }
+
+    /**
+     * Retrieve the last known ETag values of an uri, so that they can be used to
+     * make crawling more efficient.
+     *
+     * @param uri
+     * @return ETag values or null if there are none
+     */
+    public synchronized Set<String> retrieveResourceETags(String uri) {
+        try (PreparedStatement statement = connection
+                        .prepareStatement("SELECT etags FROM crawl_frontier WHERE uri = ?")) {
+            statement.setString(1, uri);
+            Set<String> etags = null;
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next()) {
+                    etags = toETags(results.getString("etags"));
+                }
+            }
+            connection.commit();
+            return etags;
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not retrieve ETags of " + uri, e);
+        }
+    }
+
+    /**
+     * Retrieve the crawling status of an uri.
+     *
+     * @param uri
+     * @return status or null if the uri has not been crawled
+     */
+    public synchronized CrawlUriMessage.STATUS retrieveStatus(String uri) {
+        try (PreparedStatement statement = connection
+                        .prepareStatement("SELECT status FROM crawl_frontier WHERE uri = ?")) {
+            statement.setString(1, uri);
+            CrawlUriMessage.STATUS status = null;
+            try (ResultSet results = statement.executeQuery()) {
+                if (results.next() && results.getString("status") != null) {
+                    status = CrawlUriMessage.STATUS.valueOf(results.getString("status"));
+                }
+            }
+            connection.commit();
+            return status;
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not retrieve crawl status of " + uri, e);
+        }
+    }
+
+    /**
+     * Retrieve the active atoms that were crawled or saved in a certain date range.
+     *
+     * @param fromDate inclusive start of the crawl date range
+     * @param toDate exclusive end of the crawl date range
+     * @param offset
+     * @param limit
+     * @param sortAscending sort by crawl date ascending or descending
+     * @return messages with uri, won node uri and crawl date of the atoms
+     */
+    public synchronized List<CrawlUriMessage> retrieveActiveAtoms(long fromDate, long toDate, int offset, int limit,
+                    boolean sortAscending) {
+        List<CrawlUriMessage> msgs = new ArrayList<>();
+        if (limit <= 0) {
+            return msgs;
+        }
+        String sql = SELECT_COLUMNS
+                        + "WHERE atom_state = ? AND status IN (?, ?) AND crawl_date >= ? AND crawl_date < ? "
+                        + "ORDER BY crawl_date " + (sortAscending ? "ASC" : "DESC") + " LIMIT ? OFFSET ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, AtomState.ACTIVE.toString());
+            statement.setString(2, CrawlUriMessage.STATUS.SAVE.toString());
+            statement.setString(3, CrawlUriMessage.STATUS.DONE.toString());
+            statement.setLong(4, fromDate);
+            statement.setLong(5, toDate);
+            statement.setInt(6, limit);
+            statement.setInt(7, offset);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    msgs.add(toMessage(results));
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not retrieve active atoms", e);
+        }
+        return msgs;
+    }
+
+    private void createTables() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (!tableExists(statement, "CRAWL_FRONTIER")) {
+                statement.execute("CREATE CACHED TABLE crawl_frontier (uri VARCHAR(2048) PRIMARY KEY, "
+                                + "base_uri VARCHAR(2048), won_node_uri VARCHAR(2048), status VARCHAR(16), "
+                                + "crawl_date BIGINT, etags VARCHAR(8192), atom_state VARCHAR(16))");
+                statement.execute("CREATE INDEX crawl_frontier_status ON crawl_frontier (status)");
+                statement.execute(
+                                "CREATE INDEX crawl_frontier_atom_state ON crawl_frontier (atom_state, crawl_date)");
+            }
+            if (!tableExists(statement, "CRAWL_FRONTIER_IMPORT")) {
+                statement.execute("CREATE TABLE crawl_frontier_import (import_date BIGINT)");
+            }
+            connection.commit();
+        }
+    }
+
+    private boolean tableExists(Statement statement, String tableName) throws SQLException {
+        try (ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                        + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = '" + tableName + "'")) {
+            results.next();
+            return results.getInt(1) > 0;
+        }
+    }
+
+    private synchronized boolean isImported() throws SQLException {
+        try (Statement statement = connection.createStatement();
+                        ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM crawl_frontier_import")) {
+            results.next();
+            boolean imported = results.getInt(1) > 0;
+            connection.commit();
+            return imported;
+        }
+    }
+
+    private synchronized long count() throws SQLException {
+        try (Statement statement = connection.createStatement();
+                        ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM crawl_frontier")) {
+            results.next();
+            long count = results.getLong(1);
+            connection.commit();
+            return count;
+        }
+    }
+
+    private void importCrawlingMetadata() {
+        try {
+            Collection<CrawlUriMessage> msgs = sparqlService.retrieveCrawlingMetadata();
+            List<String> uris = new ArrayList<>(msgs.size());
+            for (CrawlUriMessage msg : msgs) {
+                uris.add(msg.getUri());
+            }
+            Map<String, AtomState> atomStates = new HashMap<>();
+            for (int i = 0; i < uris.size(); i += IMPORT_ATOM_STATE_BATCH_SIZE) {
+                atomStates.putAll(sparqlService.retrieveAtomStates(
+                                uris.subList(i, Math.min(uris.size(), i + IMPORT_ATOM_STATE_BATCH_SIZE))));
+            }
+            saveImportedCrawlingMetadata(msgs, atomStates);
+            logger.info("Imported crawl meta data of {} uris and the state of {} atoms from the sparql endpoint",
+                            msgs.size(), atomStates.size());
+        } catch (Exception e) {
+            logger.warn("Could not import crawl meta data from the sparql endpoint, retry on next start: {}",
+                            e.getMessage());
+        }
+    }
+
+    /**
+     * Save the imported crawl meta data and atom states and record the import in a
+     * single transaction. Uris that are already in the frontier keep their crawl
+     * meta data, only a missing atom state is filled in.
+     */
+    private synchronized void saveImportedCrawlingMetadata(Collection<CrawlUriMessage> msgs,
+                    Map<String, AtomState> atomStates) {
+        String sql = "MERGE INTO crawl_frontier f USING (VALUES(CAST(? AS VARCHAR(2048)), CAST(? AS VARCHAR(2048)), "
+                        + "CAST(? AS VARCHAR(2048)), CAST(? AS VARCHAR(16)), CAST(? AS BIGINT), CAST(? AS VARCHAR(8192)), "
+                        + "CAST(? AS VARCHAR(16)))) "
+                        + "AS v(uri, base_uri, won_node_uri, status, crawl_date, etags, atom_state) ON f.uri = v.uri "
+                        + "WHEN MATCHED THEN UPDATE SET f.atom_state = COALESCE(f.atom_state, v.atom_state) "
+                        + "WHEN NOT MATCHED THEN INSERT (uri, base_uri, won_node_uri, status, crawl_date, etags, "
+                        + "atom_state) VALUES (v.uri, v.base_uri, v.won_node_uri, v.status, v.crawl_date, v.etags, "
+                        + "v.atom_state)";
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+                        PreparedStatement importStatement = connection
+                                        .prepareStatement("INSERT INTO crawl_frontier_import (import_date) VALUES (?)")) {
+            for (CrawlUriMessage msg : msgs) {
+                statement.setString(1, msg.getUri());
+                statement.setString(2, msg.getBaseUri());
+                statement.setString(3, msg.getWonNodeUri());
+                statement.setString(4, msg.getStatus().toString());
+                statement.setLong(5, msg.getCrawlDate());
+                if (msg.getResourceETagHeaderValues() != null && !msg.getResourceETagHeaderValues().isEmpty()) {
+                    statement.setString(6, String.join(ETAG_SEPARATOR, msg.getResourceETagHeaderValues()));
+                } else {
+                    statement.setNull(6, Types.VARCHAR);
+                }
+                AtomState atomState = atomStates.get(msg.getUri());
+                if (atomState != null) {
+                    statement.setString(7, atomState.toString());
+                } else {
+                    statement.setNull(7, Types.VARCHAR);
+                }
+                statement.addBatch();
+            }
+            if (!msgs.isEmpty()) {
+                statement.executeBatch();
+            }
+            importStatement.setLong(1, System.currentTimeMillis());
+            importStatement.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Could not import crawl meta data of " + msgs.size() + " uris", e);
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("Could not roll back crawl frontier transaction", e);
+        }
+    }
+
+    private CrawlUriMessage toMessage(ResultSet results) throws SQLException {
+        return new CrawlUriMessage(results.getString("uri"), results.getString("base_uri"),
+                        results.getString("won_node_uri"), CrawlUriMessage.STATUS.valueOf(results.getString("status")),
+                        results.getLong("crawl_date"), toETags(results.getString("etags")));
+    }
+
+    private Set<String> toETags(String etags) {
+        if (etags == null || etags.isEmpty()) {
+            return null;
+        }
+        return new HashSet<>(Arrays.asList(etags.split(ETAG_SEPARATOR)));
+    }
+}
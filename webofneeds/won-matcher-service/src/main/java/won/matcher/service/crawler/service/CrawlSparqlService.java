@@ -1,6 +1,7 @@
 package won.matcher.service.crawler.service;
 
 import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
 import org.slf4j.Logger;
@@ -15,10 +16,13 @@ import won.matcher.service.common.event.Cause;
 import won.matcher.service.common.service.sparql.SparqlService;
 import won.matcher.service.crawler.config.CrawlConfig;
 import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.protocol.model.AtomState;
 import won.protocol.util.AtomModelWrapper;
+import won.protocol.util.RdfUtils;
 
 import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
+import java.net.URI;
 import java.util.*;
 
 /**
@@ -39,69 +43,6 @@ public class CrawlSparqlService extends SparqlService {
     @Autowired
     private CrawlConfig config;
 
-    /**
-     * Update the message meta data about the crawling process using a separate
-     * graph.
-     * 
-     * @param msg message that describe crawling meta data to update
-     */
-    public void updateCrawlingMetadata(CrawlUriMessage msg) {
-        executeUpdateQuery(createUpdateCrawlingMetadataQuery(msg));
-    }
-
-    /**
-     * Bulk update of several meta data messages about the crawling process using a
-     * separate graph.
-     * 
-     * @param msgs multiple messages that describe crawling meta data to update
-     */
-    public void bulkUpdateCrawlingMetadata(Collection<CrawlUriMessage> msgs) {
-        StringBuilder builder = new StringBuilder();
-        for (CrawlUriMessage msg : msgs) {
-            builder.append(createUpdateCrawlingMetadataQuery(msg));
-        }
-        // execute the bulk query
-        executeUpdateQuery(builder.toString());
-    }
-
-    private String createUpdateCrawlingMetadataQuery(CrawlUriMessage msg) {
-        // delete the old entry
-        StringBuilder builder = new StringBuilder();
-        builder.append("DELETE WHERE { GRAPH won:crawlMetadata { ?msgUri ?y ?z}};\n");
-        // insert new entry
-        builder.append("\nINSERT DATA { GRAPH won:crawlMetadata {\n");
-        builder.append("?msgUri won:crawlDate ?crawlDate.\n");
-        builder.append("?msgUri won:crawlStatus ?crawlStatus.\n");
-        builder.append("?msgUri won:crawlBaseUri ?crawlBaseUri.\n");
-        if (msg.getWonNodeUri() != null) {
-            builder.append("?msgUri won:wonNodeUri ?wonNodeUri.\n");
-        }
-        if (msg.getResourceETagHeaderValues() != null && !msg.getResourceETagHeaderValues().isEmpty()) {
-            for (int i = 0; i < msg.getResourceETagHeaderValues().size(); i++) {
-                builder.append("?msgUri won:resourceETagValue ? .\n");
-            }
-        }
-        builder.append("}};\n");
-        ParameterizedSparqlString pss = new ParameterizedSparqlString();
-        pss.setCommandText(builder.toString());
-        pss.setNsPrefix("won", "https://w3id.org/won/core#");
-        pss.setIri("msgUri", msg.getUri());
-        pss.setLiteral("crawlDate", msg.getCrawlDate());
-        pss.setLiteral("crawlStatus", msg.getStatus().toString());
-        pss.setIri("crawlBaseUri", msg.getBaseUri());
-        if (msg.getWonNodeUri() != null) {
-            pss.setIri("wonNodeUri", msg.getWonNodeUri());
-        }
-        if (msg.getResourceETagHeaderValues() != null && !msg.getResourceETagHeaderValues().isEmpty()) {
-            int i = 0;
-            for (String etagValue : msg.getResourceETagHeaderValues()) {
-                pss.setLiteral(i, etagValue);
-                i++;
-            }
-        }
-        return pss.toString();
-    }
-
     private Set<String> commaConcatenatedStringToSet(String contatenatedString) {
         if (contatenatedString == null || contatenatedString.isEmpty()) {
             return null;
@@ -114,23 +55,23 @@ public class CrawlSparqlService extends SparqlService {
     }
 
     /**
-     * Gets all messages saved in the db of a certain status (e.g. FAILED) and puts
-     * them in the STATUS PROCESS to be able to execute the crawling again.
+     * Gets the meta data about the crawling process that was saved in the graph
+     * won:crawlMetadata by earlier versions, to import it into the
+     * {@link CrawlFrontierService}.
      *
-     * @param status
-     * @return
+     * @return messages with the saved status, crawl date and ETags of each uri
      */
-    public Set<CrawlUriMessage> retrieveMessagesForCrawling(CrawlUriMessage.STATUS status) {
+    public Set<CrawlUriMessage> retrieveCrawlingMetadata() {
         Set<CrawlUriMessage> msgs = new LinkedHashSet<>();
-        String queryString = "SELECT ?uri ?base ?wonNode (group_concat(distinct ?etag;separator=\""
+        String queryString = "SELECT ?uri ?base ?wonNode ?status ?date (group_concat(distinct ?etag;separator=\""
                         + HTTP_HEADER_SEPARATOR + "\") as ?etags)" + " WHERE { GRAPH won:crawlMetadata {\n"
-                        + " ?uri ?p ?status.\n" + " ?uri won:crawlBaseUri ?base.\n"
-                        + " OPTIONAL { ?uri won:wonNodeUri ?wonNode }\n"
-                        + " OPTIONAL { ?uri won:resourceETagValue ?etag }}}\n" + " GROUP BY ?uri ?base ?wonNode\n";
+                        + " ?uri won:crawlStatus ?status.\n" + " ?uri won:crawlDate ?date.\n"
+                        + " ?uri won:crawlBaseUri ?base.\n" + " OPTIONAL { ?uri won:wonNodeUri ?wonNode }\n"
+                        + " OPTIONAL { ?uri won:resourceETagValue ?etag }}}\n"
+                        + " GROUP BY ?uri ?base ?wonNode ?status ?date\n";
         ParameterizedSparqlString pps = new ParameterizedSparqlString();
         pps.setNsPrefix("won", "https://w3id.org/won/core#");
         pps.setCommandText(queryString);
-        pps.setLiteral("status", status.toString());
         logger.debug("Query SPARQL Endpoint: {}", sparqlEndpoint);
         logger.debug("Execute query: {}", pps.toString());
         try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
@@ -139,7 +80,8 @@ public class CrawlSparqlService extends SparqlService {
                 QuerySolution qs = results.nextSolution();
                 String uri = qs.get("uri").asResource().getURI();
                 String baseUri = qs.get("base").asResource().getURI();
-                CrawlUriMessage msg = null;
+                CrawlUriMessage.STATUS status = CrawlUriMessage.STATUS.valueOf(qs.getLiteral("status").getString());
+                long crawlDate = qs.getLiteral("date").getLong();
                 String wonNode = null;
                 Set<String> etags = null;
                 if (qs.get("wonNode") != null) {
@@ -149,102 +91,116 @@ public class CrawlSparqlService extends SparqlService {
                     String etagsString = qs.get("etags").asLiteral().getString();
                     etags = commaConcatenatedStringToSet(etagsString);
                 }
-                msg = new CrawlUriMessage(uri, baseUri, wonNode, CrawlUriMessage.STATUS.PROCESS,
-                                System.currentTimeMillis(), etags);
-                logger.debug("Created message: {}", msg);
-                msgs.add(msg);
+                msgs.add(new CrawlUriMessage(uri, baseUri, wonNode, status, crawlDate, etags));
             }
             return msgs;
         }
     }
 
     /**
-     * Extract linked URIs of resource URI and create new CrawlUriMessages out of it
-     * for crawling. Uses base and non-base property paths for the extraction of
-     * uris and creation of new crawling messages.
+     * Gets the state of the atoms among several uris from the rdf store, to import
+     * it into the {@link CrawlFrontierService} together with the crawl meta data.
      *
+     * @param uris uris to retrieve the atom state for
+     * @return atom state by uri, uris that are not atoms are missing
+     */
+    public Map<String, AtomState> retrieveAtomStates(Collection<String> uris) {
+        Map<String, AtomState> atomStates = new HashMap<>();
+        if (uris.isEmpty()) {
+            return atomStates;
+        }
+        StringBuilder builder = new StringBuilder("SELECT ?uri ?state WHERE {\n VALUES ?uri {");
+        for (int i = 0; i < uris.size(); i++) {
+            builder.append(" ?");
+        }
+        builder.append(" }\n GRAPH ?g { ?uri won:atomState ?state. }}\n");
+        ParameterizedSparqlString pps = new ParameterizedSparqlString();
+        pps.setNsPrefix("won", "https://w3id.org/won/core#");
+        pps.setCommandText(builder.toString());
+        int i = 0;
+        for (String uri : uris) {
+            pps.setIri(i++, uri);
+        }
+        logger.debug("Query SPARQL Endpoint: {}", sparqlEndpoint);
+        logger.debug("Execute query: {}", pps.toString());
+        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
+            ResultSet results = qexec.execSelect();
+            while (results.hasNext()) {
+                QuerySolution qs = results.nextSolution();
+                if (qs.get("state").isURIResource()) {
+                    AtomState state = AtomState.fromURI(URI.create(qs.getResource("state").getURI()));
+                    if (state != null) {
+                        atomStates.put(qs.getResource("uri").getURI(), state);
+                    }
+                }
+            }
+            return atomStates;
+        }
+    }
+
+    /**
+     * Extract linked URIs of a crawled resource and create new CrawlUriMessages out
+     * of it for crawling. Uses base and non-base property paths for the extraction
+     * of uris and creation of new crawling messages. The property paths are
+     * evaluated locally on the dataset of the crawled resource.
+     *
+     * @param ds dataset of the current processed resource uri message
      * @param baseUri base uri of the current processed resource uri message
      * @param wonNodeUri won node rui of the current processed resource uri message
      * @return set of extracted CrawlUriMessages
      */
-    public Set<CrawlUriMessage> extractCrawlUriMessages(String baseUri, String wonNodeUri) {
-        Set<CrawlUriMessage> newCrawlMessages = new HashSet<CrawlUriMessage>();
+    public Set<CrawlUriMessage> extractCrawlUriMessages(Dataset ds, String baseUri, String wonNodeUri) {
+        Model model = RdfUtils.mergeAllDataToSingleModel(ds);
+        // maps the extracted uris to their base uris
+        Map<String, String> extractedUris = new HashMap<>();
         // extract uris from non-base property path
         for (String prop : config.getCrawlNonBasePropertyPaths()) {
-            Set<CrawlUriMessage> msgs = extractCrawlUriMessagesForPropertyPath(baseUri, wonNodeUri, prop, false);
-            if (msgs != null) {
-                newCrawlMessages.addAll(msgs);
+            for (String uri : extractUrisForPropertyPath(model, baseUri, prop)) {
+                extractedUris.put(uri, baseUri);
             }
         }
         // extract uris from base property paths
         for (String prop : config.getCrawlBasePropertyPaths()) {
-            Set<CrawlUriMessage> msgs = extractCrawlUriMessagesForPropertyPath(baseUri, wonNodeUri, prop, true);
-            if (msgs != null) {
-                newCrawlMessages.addAll(msgs);
+            for (String uri : extractUrisForPropertyPath(model, baseUri, prop)) {
+                extractedUris.put(uri, uri);
             }
         }
+        Set<CrawlUriMessage> newCrawlMessages = new HashSet<>();
+        long crawlDate = System.currentTimeMillis();
+        for (Map.Entry<String, String> extractedUri : extractedUris.entrySet()) {
+            logger.debug("Extracted URI: {}", extractedUri.getKey());
+            newCrawlMessages.add(new CrawlUriMessage(extractedUri.getKey(), extractedUri.getValue(), wonNodeUri,
+                            CrawlUriMessage.STATUS.PROCESS, crawlDate, null));
+        }
         return newCrawlMessages;
     }
 
     /**
-     * Extract linked URIs of resource URI and create new CrawlUriMessages for a
-     * certain property path and a base Uri. Also extract ETag values if they are
-     * available for certain uri resources so that they can be used to make crawling
-     * more efficient. Use specified property paths to construct the query.
+     * Extract linked URIs of a crawled resource for a certain property path and a
+     * base Uri.
      *
+     * @param model all data of the crawled resource
      * @param baseUri base uri of the current processed resource uri message
-     * @param wonNodeUri won node rui of the current processed resource uri message
      * @param propertyPath property path used to extract new uris in conjunction
      * with base uri
-     * @param baseProperty base uri used to extract new uris in conjunction property
-     * path
-     * @return set of CrawlUriMessages extracted using a certain base uri and
-     * property path
+     * @return set of uris extracted using a certain base uri and property path
      */
-    private Set<CrawlUriMessage> extractCrawlUriMessagesForPropertyPath(String baseUri, String wonNodeUri,
-                    String propertyPath, boolean baseProperty) {
+    private Set<String> extractUrisForPropertyPath(Model model, String baseUri, String propertyPath) {
+        Set<String> uris = new HashSet<>();
         if (propertyPath.trim().length() == 0) {
-            return null;
+            return uris;
         }
-        // select URIs specified by property paths that have not already been crawled
-        Set<CrawlUriMessage> newCrawlMessages = new HashSet<CrawlUriMessage>();
-        long crawlDate = System.currentTimeMillis();
         // we have to query the baseUri with and without trailing slahes cause we don't
-        // know how the RDF data
-        // is described in detail. Usually the "atom" prefix ends with a trailing
-        // "slash" but we don't assume
-        // here that is always the case, so we query both variants: with and without
-        // trailing slashes.
-        // Check the atom list with its atom: rdfs:member entries for example
-        String queryString = "SELECT ?uri (group_concat(distinct ?etag;separator=\"" + HTTP_HEADER_SEPARATOR
-                        + "\") as ?etags) WHERE {\n" + "{ ?baseUriWithTrailingSlash " + propertyPath + " ?uri. } \n" + // propertyPath
-                                                                                                                       // has
-                                                                                                                       // to
-                                                                                                                       // be
-                                                                                                                       // appended
-                                                                                                                       // manually
-                                                                                                                       // because
-                                                                                                                       // it
-                                                                                                                       // contains
-                                                                                                                       // ">"
-                                                                                                                       // character
-                                                                                                                       // and
-                                                                                                                       // ParameterizedSparqlString
-                                                                                                                       // cause
-                                                                                                                       // of
-                                                                                                                       // injection
-                                                                                                                       // risk
-                        "UNION { ?baseUriWithoutTrailingSlash " + propertyPath + " ?uri. } \n" + // propertyPath has to
-                                                                                                 // be appended
-                                                                                                 // manually because it
-                                                                                                 // contains ">"
-                                                                                                 // character and
-                                                                                                 // ParameterizedSparqlString
-                                                                                                 // cause of
-                                                                                                 // injection risk
-                        " OPTIONAL {?uri won:resourceETagValue ?etag. }}\n" + " GROUP BY ?uri\n";
+        // know how the RDF data is described in detail. Usually the "atom" prefix ends
+        // with a trailing "slash" but we don't assume here that is always the case, so
+        // we query both variants: with and without trailing slashes.
+        // Check the atom list with its atom: rdfs:member entries for example.
+        // propertyPath has to be appended manually because it contains ">" character
+        // and ParameterizedSparqlString cause of injection risk
+        String queryString = "SELECT DISTINCT ?uri WHERE {\n" + "{ ?baseUriWithTrailingSlash " + propertyPath
+                        + " ?uri. } \n" + "UNION { ?baseUriWithoutTrailingSlash " + propertyPath + " ?uri. } \n"
+                        + " FILTER isIRI(?uri) }\n";
         ParameterizedSparqlString pps = new ParameterizedSparqlString();
-        pps.setNsPrefix("won", "https://w3id.org/won/core#");
         pps.setCommandText(queryString);
         baseUri = baseUri.trim();
         if (baseUri.endsWith("/")) {
@@ -252,133 +208,90 @@ public class CrawlSparqlService extends SparqlService {
         }
         pps.setIri("baseUriWithoutTrailingSlash", baseUri);
         pps.setIri("baseUriWithTrailingSlash", baseUri + "/");
-        logger.debug("Query SPARQL Endpoint: {}", sparqlEndpoint);
-        logger.debug("Execute query: {}", pps.toString());
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
+        logger.debug("Execute query on crawled resource: {}", pps.toString());
+        try (QueryExecution qexec = QueryExecutionFactory.create(pps.asQuery(), model)) {
             ResultSet results = qexec.execSelect();
             while (results.hasNext()) {
-                QuerySolution qs = results.nextSolution();
-                String extractedUri = qs.get("uri").asResource().getURI();
-                Set<String> etags = null;
-                if (qs.get("etags") != null) {
-                    String etagsString = qs.get("etags").asLiteral().getString();
-                    etags = commaConcatenatedStringToSet(etagsString);
-                }
-                CrawlUriMessage newUriMsg = null;
-                logger.debug("Extracted URI: {}", extractedUri);
-                if (baseProperty) {
-                    newUriMsg = new CrawlUriMessage(extractedUri, extractedUri, wonNodeUri,
-                                    CrawlUriMessage.STATUS.PROCESS, crawlDate, etags);
-                } else {
-                    newUriMsg = new CrawlUriMessage(extractedUri, baseUri, wonNodeUri, CrawlUriMessage.STATUS.PROCESS,
-                                    crawlDate, etags);
-                }
-                newCrawlMessages.add(newUriMsg);
+                uris.add(results.nextSolution().getResource("uri").getURI());
             }
-            return newCrawlMessages;
         }
+        return uris;
     }
 
     /**
      * To start crawling (http modification query) from a certain point in time,
-     * take last modification date from an atom known in the database that is in
-     * status 'DONE' which means it has been crawled.
+     * take the last modification dates from the atoms known in the database. The
+     * caller checks which of these atoms have been crawled.
      *
      * @param wonNodeUri won node uri for which atom modification dates should be
      * retrieved
-     * @return modification date to start crawling from or null if none exists
+     * @param limit maximum number of atoms
+     * @return modification dates by atom uri, latest modification date first
      */
-    public String retrieveAtomModificationDateForCrawling(String wonNodeUri) {
-        String queryString = "SELECT ?modificationDate WHERE {\n" + " ?atomUri a won:Atom.\n"
-                        + " ?atomUri won:wonNode ?wonNodeUri. \n" + " ?atomUri dcterms:modified ?modificationDate. \n"
-                        + " ?atomUri won:crawlStatus 'DONE'. \n" + "} ORDER BY DESC(?modificationDate) LIMIT 1\n";
-        ParameterizedSparqlString pps = new ParameterizedSparqlString();
-        pps.setNsPrefix("won", "https://w3id.org/won/core#");
-        pps.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
-        pps.setCommandText(queryString);
-        pps.setIri("wonNodeUri", wonNodeUri);
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
-            ResultSet results = qexec.execSelect();
-            String modificationDate = null;
-            if (results.hasNext()) {
-                QuerySolution qs = results.nextSolution();
-                modificationDate = qs.get("modificationDate").asLiteral().getString();
-            }
-            return modificationDate;
-        }
+    public LinkedHashMap<String, String> retrieveAtomModificationDates(String wonNodeUri, int limit) {
+        String queryString = "SELECT ?uri ?modificationDate WHERE {\n" + " ?uri a won:Atom.\n"
+                        + " ?uri won:wonNode ?wonNodeUri. \n" + " ?uri dcterms:modified ?modificationDate. \n"
+                        + "} ORDER BY DESC(?modificationDate) LIMIT ?limit\n";
+        return retrieveModificationDates(queryString, wonNodeUri, limit);
     }
 
     /**
      * To start crawling (http modification query) from a certain point in time,
-     * take last modification date from a connection known in the database that is
-     * in status 'DONE' which means it has been crawled.
+     * take the last modification dates from the connections known in the database.
+     * The caller checks which of these connections have been crawled.
      *
      * @param wonNodeUri won node uri for which connection modification dates should
      * be retrieved
-     * @return modification date to start crawling from or null if none exists
+     * @param limit maximum number of connections
+     * @return modification dates by connection uri, latest modification date first
      */
-    public String retrieveConnectionModificationDateForCrawling(String wonNodeUri) {
-        String queryString = "SELECT ?modificationDate WHERE {\n" + " ?connectionUri a won:Connection.\n"
-                        + " ?connectionUri won:wonNode ?wonNodeUri. \n"
-                        + " ?connectionUri dcterms:modified ?modificationDate. \n"
-                        + " ?connectionUri won:crawlStatus 'DONE'. \n" + "} ORDER BY DESC(?modificationDate) LIMIT 1\n";
+    public LinkedHashMap<String, String> retrieveConnectionModificationDates(String wonNodeUri, int limit) {
+        String queryString = "SELECT ?uri ?modificationDate WHERE {\n" + " ?uri a won:Connection.\n"
+                        + " ?uri won:wonNode ?wonNodeUri. \n" + " ?uri dcterms:modified ?modificationDate. \n"
+                        + "} ORDER BY DESC(?modificationDate) LIMIT ?limit\n";
+        return retrieveModificationDates(queryString, wonNodeUri, limit);
+    }
+
+    private LinkedHashMap<String, String> retrieveModificationDates(String queryString, String wonNodeUri,
+                    int limit) {
         ParameterizedSparqlString pps = new ParameterizedSparqlString();
         pps.setNsPrefix("won", "https://w3id.org/won/core#");
         pps.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
         pps.setCommandText(queryString);
         pps.setIri("wonNodeUri", wonNodeUri);
+        pps.setLiteral("limit", limit);
+        LinkedHashMap<String, String> modificationDates = new LinkedHashMap<>();
         try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
             ResultSet results = qexec.execSelect();
-            String modificationDate = null;
-            if (results.hasNext()) {
+            while (results.hasNext()) {
                 QuerySolution qs = results.nextSolution();
-                modificationDate = qs.get("modificationDate").asLiteral().getString();
+                modificationDates.putIfAbsent(qs.get("uri").asResource().getURI(),
+                                qs.get("modificationDate").asLiteral().getString());
             }
-            return modificationDate;
+            return modificationDates;
         }
     }
 
-    public BulkAtomEvent retrieveActiveAtomEvents(long fromDate, long toDate, int offset, int limit,
-                    boolean sortAscending) {
-        // query template to retrieve all alctive cralwed/saved atoms in a certain date
-        // range
-        String orderClause = sortAscending ? "ORDER BY ?date\n" : "ORDER BY DESC(?date)\n";
-        logger.debug("bulk load atom data from sparql endpoint in date range: [{},{}]", fromDate, toDate);
-        String queryTemplate = "SELECT ?atomUri ?wonNodeUri ?date WHERE {  \n" + "  ?atomUri a won:Atom. \n"
-                        + "  ?atomUri won:crawlDate ?date.  \n" + "  ?atomUri won:atomState won:Active. \n"
-                        + "  ?atomUri won:wonNode ?wonNodeUri. \n"
-                        + "  {?atomUri won:crawlStatus 'SAVE'.} UNION {?atomUri won:crawlStatus 'DONE'.}\n"
-                        + "  FILTER (?date >= ?fromDate && ?date < ?toDate ) \n" + "} " + orderClause
-                        + " OFFSET ?offset\n" + " LIMIT ?limit";
-        ParameterizedSparqlString pps = new ParameterizedSparqlString();
-        pps.setNsPrefix("won", "https://w3id.org/won/core#");
-        pps.setCommandText(queryTemplate);
-        pps.setLiteral("fromDate", fromDate);
-        pps.setLiteral("toDate", toDate);
-        pps.setLiteral("offset", offset);
-        pps.setLiteral("limit", limit);
-        logger.debug("Query SPARQL Endpoint: {}", sparqlEndpoint);
-        logger.debug("Execute query: {}", pps.toString());
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(sparqlEndpoint, pps.asQuery())) {
-            ResultSet results = qexec.execSelect();
-            // load all the atoms into one bulk atom event
-            BulkAtomEvent bulkAtomEvent = new BulkAtomEvent();
-            while (results.hasNext()) {
-                QuerySolution qs = results.nextSolution();
-                String atomUri = qs.get("atomUri").asResource().getURI();
-                String wonNodeUri = qs.get("wonNodeUri").asResource().getURI();
-                long crawlDate = qs.getLiteral("date").getLong();
-                Dataset ds = retrieveAtomDataset(atomUri);
-                if (AtomModelWrapper.isAAtom(ds)) {
-                    StringWriter sw = new StringWriter();
-                    RDFDataMgr.write(sw, ds, RDFFormat.TRIG.getLang());
-                    AtomEvent atomEvent = new AtomEvent(atomUri, wonNodeUri, AtomEvent.TYPE.ACTIVE, crawlDate,
-                                    sw.toString(), RDFFormat.TRIG.getLang(), Cause.CRAWLED);
-                    bulkAtomEvent.addAtomEvent(atomEvent);
-                }
+    /**
+     * Load the datasets of crawled or saved atoms from the rdf store.
+     *
+     * @param atoms messages with uri, won node uri and crawl date of the atoms
+     * @return atom events of the atoms found in the rdf store
+     */
+    public BulkAtomEvent retrieveAtomEvents(Collection<CrawlUriMessage> atoms) {
+        // load all the atoms into one bulk atom event
+        BulkAtomEvent bulkAtomEvent = new BulkAtomEvent();
+        for (CrawlUriMessage atom : atoms) {
+            Dataset ds = retrieveAtomDataset(atom.getUri());
+            if (AtomModelWrapper.isAAtom(ds)) {
+                StringWriter sw = new StringWriter();
+                RDFDataMgr.write(sw, ds, RDFFormat.TRIG.getLang());
+                AtomEvent atomEvent = new AtomEvent(atom.getUri(), atom.getWonNodeUri(), AtomEvent.TYPE.ACTIVE,
+                                atom.getCrawlDate(), sw.toString(), RDFFormat.TRIG.getLang(), Cause.CRAWLED);
+                bulkAtomEvent.addAtomEvent(atomEvent);
             }
-            logger.debug("number of atom events created: " + bulkAtomEvent.getAtomEvents().size());
-            return bulkAtomEvent;
         }
+        logger.debug("number of atom events created: " + bulkAtomEvent.getAtomEvents().size());
+        return bulkAtomEvent;
     }
 }
@@ -205,30 +205,29 @@ public class WonNodeControllerActor extends UntypedActor {
         }
         // send back hints to won nodes
         if (message instanceof HintEvent) {
-            processHint((HintEvent) message);
+            processHints(Collections.singletonList((HintEvent) message));
             return;
         } else if (message instanceof BulkHintEvent) {
             BulkHintEvent bulkHintEvent = (BulkHintEvent) message;
+            List<HintEvent> hints = new ArrayList<>();
             for (HintEvent hint : bulkHintEvent.getHintEvents()) {
-                expandToSocketHintsIfAppropriate(hint)
-                                .forEach(h -> processHint(h));
+                hints.addAll(expandToSocketHintsIfAppropriate(hint));
             }
+            processHints(hints);
             return;
         }
         unhandled(message);
     }
 
-    private void processHint(HintEvent hint) {
-        // hint duplicate filter
-        if (hintDatabase.mightHintSaved(hint)) {
-            log.debug("Hint " + hint + " is filtered out by duplicate filter!");
-            hintDatabase.saveHint(hint);
-            return;
+    private void processHints(List<HintEvent> hints) {
+        // hint duplicate filter: save the new hints and send them to the won node
+        // controller which sends them to the responsible won nodes
+        List<HintEvent> newHints = hintDatabase.saveNewHints(hints);
+        if (newHints.size() < hints.size()) {
+            log.debug("{} of {} hints are filtered out by duplicate filter!", hints.size() - newHints.size(),
+                            hints.size());
         }
-        // save the hint and send it to the won node controller which sends it to the
-        // responsible won node
-        hintDatabase.saveHint(hint);
-        sendHint(hint);
+        newHints.forEach(this::sendHint);
     }
 
     /**
@@ -23,6 +23,12 @@ public class WonNodeControllerConfig {
     private List<String> skipWonNodes;
     @Value("${wonNodeController.wonNode.lifeCheckDuration}")
     private long lifeCheckDuration;
+    @Value("${wonNodeController.hints.cacheSize:100000}")
+    private int hintCacheSize;
+    @Value("${wonNodeController.hints.timeToLiveDays:90}")
+    private int hintTimeToLiveDays;
+    @Value("${wonNodeController.hints.saveInterval:1000}")
+    private long hintSaveInterval;
 
     public FiniteDuration getLifeCheckDuration() {
         return Duration.create(lifeCheckDuration, TimeUnit.MILLISECONDS);
@@ -35,4 +41,16 @@ public class WonNodeControllerConfig {
     public List<String> getCrawlWonNodes() {
         return crawlWonNodes;
     }
+
+    public int getHintCacheSize() {
+        return hintCacheSize;
+    }
+
+    public int getHintTimeToLiveDays() {
+        return hintTimeToLiveDays;
+    }
+
+    public long getHintSaveInterval() {
+        return hintSaveInterval;
+    }
 }
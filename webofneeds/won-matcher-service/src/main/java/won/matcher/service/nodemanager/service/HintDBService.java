@@ -1,38 +1,244 @@
 package won.matcher.service.nodemanager.service;
 
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.javasimon.SimonManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import com.google.common.base.Charsets;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 
 import won.matcher.service.common.event.HintEvent;
+import won.matcher.service.common.service.sparql.SparqlService;
+import won.matcher.service.nodemanager.config.WonNodeControllerConfig;
 
 /**
- * Created by hfriedrich on 06.07.2016. Currently the hint "database" is just
- * implemented as an in memory bloom filter so that (best guess) duplicate
- * checks are possible to avoid sending duplicate hints. In a future version
- * this might be changed to a persistent hint database.
+ * Created by hfriedrich on 06.07.2016. Keeps track of the hints sent, so that
+ * duplicate hints can be filtered out. The hints are saved in the graph
+ * won:hintMetadata of the sparql endpoint, so they survive restarts and are
+ * shared by all matcher service instances using the same endpoint. Each hint is
+ * identified by a hash of its identifying string and saved with its date, hints
+ * older than the configured time to live are deleted periodically.
+ * <p>
+ * Recently saved or checked hints are kept in a local cache of bounded size,
+ * the other hints are looked up in bulk. New hints are written to the sparql
+ * endpoint in bulk after a short delay, hints that could not be written are
+ * kept and written with the next bulk. If the sparql endpoint stays
+ * unavailable, at most as many hints as the local cache holds are kept, the
+ * oldest ones are dropped and counted in the simon
+ * {@link #DROPPED_HINTS_COUNTER}.
  */
 @Component
 @Scope("singleton")
-public class HintDBService {
-    private BloomFilter savedHints;
+public class HintDBService extends SparqlService {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String HINT_URI_PREFIX = "urn:won:hint:";
+    private static final int HINT_LOOKUP_BATCH_SIZE = 500;
+    public static final String DROPPED_HINTS_COUNTER = "HintDBService.droppedHints";
+    @Autowired
+    private WonNodeControllerConfig config;
+    private Cache<String, Boolean> savedHints;
+    private List<String> unsavedHintUris = new ArrayList<>();
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public HintDBService(@Value("${uri.sparql.endpoint}") final String sparqlEndpoint) {
+        super(sparqlEndpoint);
+    }
+
+    @PostConstruct
+    private void init() {
+        savedHints = CacheBuilder.newBuilder().maximumSize(config.getHintCacheSize())
+                        .expireAfterWrite(config.getHintTimeToLiveDays(), TimeUnit.DAYS).build();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleWithFixedDelay(this::saveUnsavedHints, config.getHintSaveInterval(),
+                        config.getHintSaveInterval(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::deleteExpiredHints, 0, 1, TimeUnit.DAYS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdown();
+        saveUnsavedHints();
+    }
+
+    /**
+     * Filters out the hints that were saved before and saves the others. Hints
+     * that are not in the local cache are looked up in the sparql endpoint with
+     * one query per {@value #HINT_LOOKUP_BATCH_SIZE} hints. If the lookup fails,
+     * the hints are treated as new.
+     *
+     * @param hints hints to check and save
+     * @return the hints that were not saved before, in the order given
+     */
+    public List<HintEvent> saveNewHints(List<HintEvent> hints) {
+        List<String> hintUris = new ArrayList<>(hints.size());
+        List<String> uncachedHintUris = new ArrayList<>();
+        for (HintEvent hint : hints) {
+            String hintUri = getHintUri(hint);
+            hintUris.add(hintUri);
+            if (savedHints.getIfPresent(hintUri) == null) {
+                uncachedHintUris.add(hintUri);
+            }
+        }
+        for (int i = 0; i < uncachedHintUris.size(); i += HINT_LOOKUP_BATCH_SIZE) {
+            List<String> batch = uncachedHintUris.subList(i,
+                            Math.min(uncachedHintUris.size(), i + HINT_LOOKUP_BATCH_SIZE));
+            try {
+                for (String savedHintUri : retrieveSavedHintUris(batch)) {
+                    savedHints.put(savedHintUri, Boolean.TRUE);
+                }
+            } catch (Exception e) {
+                logger.warn("Could not check {} hints in sparql endpoint: {}", batch.size(), e.getMessage());
+            }
+        }
+        // hints are marked as saved one by one, so that duplicates within the
+        // given hints are filtered out too
+        List<HintEvent> newHints = new ArrayList<>();
+        List<String> newHintUris = new ArrayList<>();
+        for (int i = 0; i < hints.size(); i++) {
+            String hintUri = hintUris.get(i);
+            if (savedHints.getIfPresent(hintUri) == null) {
+                savedHints.put(hintUri, Boolean.TRUE);
+                newHints.add(hints.get(i));
+                newHintUris.add(hintUri);
+            }
+        }
+        if (!newHintUris.isEmpty()) {
+            synchronized (this) {
+                unsavedHintUris.addAll(newHintUris);
+            }
+        }
+        return newHints;
+    }
+
+    /**
+     * Looks up which of the hints are saved in the sparql endpoint.
+     *
+     * @param hintUris uris of the hints to look up
+     * @return uris of the saved hints
+     */
+    private Set<String> retrieveSavedHintUris(List<String> hintUris) {
+        StringBuilder builder = new StringBuilder("SELECT DISTINCT ?hintUri WHERE {\n VALUES ?hintUri {");
+        for (int i = 0; i < hintUris.size(); i++) {
+            builder.append(" ?");
+        }
+        builder.append(" }\n GRAPH won:hintMetadata { ?hintUri won:hintDate ?date } }");
+        ParameterizedSparqlString pps = new ParameterizedSparqlString();
+        pps.setCommandText(builder.toString());
+        pps.setNsPrefix("won", "https://w3id.org/won/core#");
+        for (int i = 0; i < hintUris.size(); i++) {
+            pps.setIri(i, hintUris.get(i));
+        }
+        Set<String> savedHintUris = new HashSet<>();
+        try (QueryExecution qexec = createQueryExecution(pps.asQuery())) {
+            ResultSet results = qexec.execSelect();
+            while (results.hasNext()) {
+                savedHintUris.add(results.nextSolution().getResource("hintUri").getURI());
+            }
+        }
+        return savedHintUris;
+    }
+
+    /**
+     * Creates the execution of a query against the sparql endpoint.
+     */
+    protected QueryExecution createQueryExecution(Query query) {
+        return QueryExecutionFactory.sparqlService(sparqlEndpoint, query);
+    }
 
-    public HintDBService() {
-        savedHints = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), 100000000, 0.0001);
+    /**
+     * Saves the hints collected since the last call in one bulk update. If the
+     * update fails, the hints are kept to be saved with the next call.
+     */
+    void saveUnsavedHints() {
+        List<String> hintUris;
+        synchronized (this) {
+            if (unsavedHintUris.isEmpty()) {
+                return;
+            }
+            hintUris = unsavedHintUris;
+            unsavedHintUris = new ArrayList<>();
+        }
+        StringBuilder builder = new StringBuilder("INSERT DATA { GRAPH won:hintMetadata {\n");
+        for (int i = 0; i < hintUris.size(); i++) {
+            builder.append("? won:hintDate ?date.\n");
+        }
+        builder.append("}}");
+        ParameterizedSparqlString pps = new ParameterizedSparqlString();
+        pps.setCommandText(builder.toString());
+        pps.setNsPrefix("won", "https://w3id.org/won/core#");
+        for (int i = 0; i < hintUris.size(); i++) {
+            pps.setIri(i, hintUris.get(i));
+        }
+        pps.setLiteral("date", Calendar.getInstance());
+        try {
+            executeUpdateQuery(pps.toString());
+            logger.debug("Saved {} hints in sparql endpoint {}", hintUris.size(), sparqlEndpoint);
+        } catch (Exception e) {
+            logger.warn("Could not save {} hints in sparql endpoint, retrying later: {}", hintUris.size(),
+                            e.getMessage());
+            // the hints are in the local cache already, so they would never be queued again
+            requeue(hintUris);
+        }
     }
 
-    public void saveHint(HintEvent hint) {
-        savedHints.put(getHintIdentificationString(hint));
+    /**
+     * Puts the hints of a failed update in front of the hints added since. Hints
+     * beyond the size of the local cache would not be recognized as duplicates
+     * anyway, so the oldest of them are dropped.
+     */
+    private synchronized void requeue(List<String> hintUris) {
+        hintUris.addAll(unsavedHintUris);
+        int maxUnsaved = config.getHintCacheSize();
+        if (hintUris.size() > maxUnsaved) {
+            int dropped = hintUris.size() - maxUnsaved;
+            logger.warn("Dropping {} hints that could not be saved in sparql endpoint {}", dropped, sparqlEndpoint);
+            SimonManager.getCounter(DROPPED_HINTS_COUNTER).increase(dropped);
+            hintUris = new ArrayList<>(hintUris.subList(dropped, hintUris.size()));
+        }
+        unsavedHintUris = hintUris;
     }
 
-    public boolean mightHintSaved(HintEvent hint) {
-        return savedHints.mightContain(getHintIdentificationString(hint));
+    private void deleteExpiredHints() {
+        Calendar expiryDate = Calendar.getInstance();
+        expiryDate.add(Calendar.DAY_OF_MONTH, -config.getHintTimeToLiveDays());
+        ParameterizedSparqlString pps = new ParameterizedSparqlString();
+        pps.setCommandText("DELETE { GRAPH won:hintMetadata { ?hintUri won:hintDate ?date } }\n"
+                        + "WHERE { GRAPH won:hintMetadata { ?hintUri won:hintDate ?date. FILTER (?date < ?expiryDate) } }");
+        pps.setNsPrefix("won", "https://w3id.org/won/core#");
+        pps.setLiteral("expiryDate", expiryDate);
+        try {
+            executeUpdateQuery(pps.toString());
+        } catch (Exception e) {
+            logger.warn("Could not delete expired hints in sparql endpoint {}: {}", sparqlEndpoint, e.getMessage());
+        }
     }
 
-    private String getHintIdentificationString(HintEvent hint) {
-        return hint.getIdentifyingString();
+    private String getHintUri(HintEvent hint) {
+        return HINT_URI_PREFIX + Hashing.sha256().hashString(hint.getIdentifyingString(), Charsets.UTF_8).toString();
     }
 }
@@ -21,7 +21,9 @@ import won.matcher.service.common.event.BulkAtomEvent;
 import won.matcher.service.common.event.BulkHintEvent;
 import won.matcher.service.common.event.Cause;
 import won.matcher.service.common.event.HintEvent;
+import won.matcher.service.common.event.MatcherBacklogEvent;
 import won.matcher.service.common.event.SocketHintEvent;
+import won.matcher.service.common.mailbox.MatcherBacklogMonitor;
 import won.matcher.service.rematch.config.RematchConfig;
 import won.matcher.service.rematch.service.RematchSparqlService;
 import won.protocol.util.linkeddata.LinkedDataSource;
@@ -62,6 +64,7 @@ public class RematchActor extends UntypedActor {
     RematchConfig config;
     @Autowired
     LinkedDataSource linkedDataSource;
+    private MatcherBacklogMonitor matcherBacklogMonitor = new MatcherBacklogMonitor();
 
     public void setConfig(RematchConfig config) {
         this.config = config;
@@ -81,6 +84,8 @@ public class RematchActor extends UntypedActor {
         pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(AtomEvent.class.getName(), getSelf()), getSelf());
         pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(BulkAtomEvent.class.getName(), getSelf()),
                         getSelf());
+        pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(MatcherBacklogEvent.class.getName(), getSelf()),
+                        getSelf());
         log.debug("RematchActor startup complete");
     }
 
@@ -98,6 +103,10 @@ public class RematchActor extends UntypedActor {
         } else if (msg instanceof BulkAtomEvent) {
             handleBulkAtomEvent((BulkAtomEvent) msg);
             return;
+        } else if (msg instanceof MatcherBacklogEvent) {
+            log.debug("Matcher {} reported backlog {}", getSender(), msg);
+            matcherBacklogMonitor.update(getSender(), (MatcherBacklogEvent) msg);
+            return;
         } else if (msg.equals(REMATCH_TICK)) {
             rematch();
             return;
@@ -107,6 +116,12 @@ public class RematchActor extends UntypedActor {
     }
 
     private void rematch() {
+        // don't add to the backlog of matchers that are still busy with earlier atoms
+        int matcherBacklog = matcherBacklogMonitor.getMaxPendingAtomEvents();
+        if (matcherBacklog > config.getMaxMatcherBacklog()) {
+            log.info("Skip rematching since a matcher still has {} atom events to process", matcherBacklog);
+            return;
+        }
         BulkAtomEvent rematchEvent = rematchSparqlService.findAtomsForRematching();
         if (!rematchEvent.getAtomEvents().isEmpty()) {
             pubSubMediator.tell(new DistributedPubSubMediator.Publish(rematchEvent.getClass().getName(), rematchEvent),
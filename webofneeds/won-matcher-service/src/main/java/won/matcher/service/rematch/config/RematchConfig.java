@@ -14,6 +14,8 @@ import scala.concurrent.duration.FiniteDuration;
 public class RematchConfig {
     @Value("${rematcher.rematchInterval}")
     long rematchInterval;
+    @Value("${rematcher.maxMatcherBacklog:1000}")
+    int maxMatcherBacklog;
 
     public RematchConfig() {
     }
@@ -21,4 +23,8 @@ public class RematchConfig {
     public FiniteDuration getRematchInterval() {
         return Duration.create(rematchInterval, TimeUnit.MILLISECONDS);
     }
+
+    public int getMaxMatcherBacklog() {
+        return maxMatcherBacklog;
+    }
 }
@@ -0,0 +1,157 @@
+package won.matcher.service.common.mailbox;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.jena.riot.Lang;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import won.matcher.service.common.event.AtomEvent;
+import won.matcher.service.common.event.BulkAtomEvent;
+import won.matcher.service.common.event.Cause;
+
+public class AtomEventBacklogTest {
+    private static final long TIMEOUT = 1000;
+    private AtomicLong now;
+    private AtomEventBacklog backlog;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong(0);
+        backlog = new AtomEventBacklog(2, 2, TIMEOUT, now::get);
+    }
+
+    private static AtomEvent atomEvent(String name, Cause cause) {
+        return new AtomEvent("https://localhost:8443/won/resource/atom/" + name, "https://localhost:8443/won/resource",
+                        AtomEvent.TYPE.ACTIVE, 0, "", Lang.TRIG, cause);
+    }
+
+    private static List<String> names(Collection<AtomEvent> atomEvents) {
+        return atomEvents.stream().map(e -> e.getUri().substring(e.getUri().lastIndexOf('/') + 1))
+                        .collect(Collectors.toList());
+    }
+
+    private static List<String> names(BulkAtomEvent chunk) {
+        return names(chunk.getAtomEvents());
+    }
+
+    @Test
+    public void isBackfill() {
+        Assert.assertTrue(AtomEventBacklog.isBackfill(atomEvent("a", Cause.CRAWLED)));
+        Assert.assertTrue(AtomEventBacklog.isBackfill(atomEvent("a", Cause.SCHEDULED_FOR_REMATCH)));
+        Assert.assertFalse(AtomEventBacklog.isBackfill(atomEvent("a", Cause.PUSHED)));
+        Assert.assertFalse(AtomEventBacklog.isBackfill(atomEvent("a", Cause.MATCHED)));
+    }
+
+    @Test
+    public void chunksAreOrderedByPriorityOfCause() {
+        backlog = new AtomEventBacklog(10, 1, TIMEOUT, now::get);
+        backlog.add(atomEvent("crawled1", Cause.CRAWLED));
+        backlog.add(atomEvent("rematch1", Cause.SCHEDULED_FOR_REMATCH));
+        backlog.add(atomEvent("crawled2", Cause.CRAWLED));
+        backlog.add(atomEvent("rematch2", Cause.SCHEDULED_FOR_REMATCH));
+        List<BulkAtomEvent> chunks = backlog.nextChunks();
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertEquals(Arrays.asList("rematch1", "rematch2", "crawled1", "crawled2"), names(chunks.get(0)));
+    }
+
+    @Test
+    public void atomEventsAreSplitIntoChunks() {
+        BulkAtomEvent bulk = new BulkAtomEvent();
+        for (int i = 0; i < 3; i++) {
+            bulk.addAtomEvent(atomEvent("crawled" + i, Cause.CRAWLED));
+        }
+        backlog.addAll(bulk);
+        List<BulkAtomEvent> chunks = backlog.nextChunks();
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals(Arrays.asList("crawled0", "crawled1"), names(chunks.get(0)));
+        Assert.assertEquals(Arrays.asList("crawled2"), names(chunks.get(1)));
+        Assert.assertNotEquals(chunks.get(0).getChunkId(), chunks.get(1).getChunkId());
+    }
+
+    @Test
+    public void atMostMaxChunksAreInProcess() {
+        for (int i = 0; i < 10; i++) {
+            backlog.add(atomEvent("crawled" + i, Cause.CRAWLED));
+        }
+        List<BulkAtomEvent> chunks = backlog.nextChunks();
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals(2, backlog.getChunksInProcess());
+        Assert.assertTrue(backlog.nextChunks().isEmpty());
+        Assert.assertTrue(backlog.chunkProcessed(chunks.get(0).getChunkId()));
+        List<BulkAtomEvent> next = backlog.nextChunks();
+        Assert.assertEquals(1, next.size());
+        Assert.assertEquals(Arrays.asList("crawled4", "crawled5"), names(next.get(0)));
+        Assert.assertEquals(2, backlog.getChunksInProcess());
+    }
+
+    @Test
+    public void countsFollowProcessing() {
+        Assert.assertTrue(backlog.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            backlog.add(atomEvent("crawled" + i, Cause.CRAWLED));
+        }
+        Assert.assertEquals(5, backlog.getPendingCount());
+        List<BulkAtomEvent> chunks = backlog.nextChunks();
+        // events being processed are still pending
+        Assert.assertEquals(5, backlog.getPendingCount());
+        Assert.assertEquals(0, backlog.getProcessedCount());
+        backlog.chunkProcessed(chunks.get(0).getChunkId());
+        Assert.assertEquals(3, backlog.getPendingCount());
+        Assert.assertEquals(2, backlog.getProcessedCount());
+        backlog.chunkProcessed(chunks.get(1).getChunkId());
+        chunks = backlog.nextChunks();
+        Assert.assertEquals(1, chunks.size());
+        backlog.chunkProcessed(chunks.get(0).getChunkId());
+        Assert.assertEquals(0, backlog.getPendingCount());
+        Assert.assertEquals(5, backlog.getProcessedCount());
+        Assert.assertTrue(backlog.isEmpty());
+    }
+
+    @Test
+    public void unknownOrRepeatedReportIsIgnored() {
+        backlog.add(atomEvent("crawled", Cause.CRAWLED));
+        BulkAtomEvent chunk = backlog.nextChunks().get(0);
+        Assert.assertFalse(backlog.chunkProcessed(chunk.getChunkId() + 1));
+        Assert.assertTrue(backlog.chunkProcessed(chunk.getChunkId()));
+        Assert.assertFalse(backlog.chunkProcessed(chunk.getChunkId()));
+        Assert.assertEquals(1, backlog.getProcessedCount());
+        Assert.assertEquals(0, backlog.getPendingCount());
+    }
+
+    @Test
+    public void timedOutChunkIsQueuedAgain() {
+        backlog.add(atomEvent("crawled1", Cause.CRAWLED));
+        backlog.add(atomEvent("crawled2", Cause.CRAWLED));
+        backlog.add(atomEvent("crawled3", Cause.CRAWLED));
+        List<BulkAtomEvent> chunks = backlog.nextChunks();
+        now.set(TIMEOUT - 1);
+        Assert.assertEquals(0, backlog.expireChunks());
+        backlog.chunkProcessed(chunks.get(1).getChunkId());
+        now.set(TIMEOUT);
+        Assert.assertEquals(1, backlog.expireChunks());
+        Assert.assertEquals(0, backlog.getChunksInProcess());
+        Assert.assertEquals(2, backlog.getPendingCount());
+        Assert.assertEquals(1, backlog.getProcessedCount());
+        // queued again in front of events added later, in the original order
+        backlog.add(atomEvent("crawled4", Cause.CRAWLED));
+        List<BulkAtomEvent> retried = backlog.nextChunks();
+        Assert.assertEquals(2, retried.size());
+        Assert.assertEquals(Arrays.asList("crawled1", "crawled2"), names(retried.get(0)));
+        Assert.assertEquals(Arrays.asList("crawled4"), names(retried.get(1)));
+        // a late report for the expired chunk does not release the new chunks
+        Assert.assertFalse(backlog.chunkProcessed(chunks.get(0).getChunkId()));
+        Assert.assertEquals(2, backlog.getChunksInProcess());
+        Assert.assertEquals(3, backlog.getPendingCount());
+        for (BulkAtomEvent chunk : retried) {
+            Assert.assertTrue(backlog.chunkProcessed(chunk.getChunkId()));
+        }
+        Assert.assertEquals(4, backlog.getProcessedCount());
+        Assert.assertTrue(backlog.isEmpty());
+    }
+}
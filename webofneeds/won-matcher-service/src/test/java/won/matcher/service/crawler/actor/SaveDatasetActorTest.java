@@ -0,0 +1,194 @@
+package won.matcher.service.crawler.actor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.japi.Creator;
+import akka.testkit.JavaTestKit;
+import akka.testkit.TestProbe;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+import won.matcher.service.crawler.config.CrawlConfig;
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.matcher.service.crawler.msg.SaveDatasetMessage;
+import won.matcher.service.crawler.service.CrawlFrontierService;
+import won.matcher.service.crawler.service.CrawlSparqlService;
+
+public class SaveDatasetActorTest {
+    private static final String BASE_URI = "https://localhost:8443/won/resource/atom";
+    private static final String WON_NODE = "https://localhost:8443/won/resource";
+    private static final FiniteDuration NO_MESSAGE_DURATION = Duration.create(300, TimeUnit.MILLISECONDS);
+    private ActorSystem system;
+    private TestProbe master;
+    private RecordingSparqlService endpoint;
+    private ActorRef saveDatasetWorker;
+
+    @Before
+    public void setUp() {
+        system = ActorSystem.create("SaveDatasetActorTest");
+        master = new TestProbe(system);
+        endpoint = new RecordingSparqlService();
+        CrawlConfig config = new CrawlConfig();
+        ReflectionTestUtils.setField(config, "datasetUpdateMaxBulkSize", 2);
+        ReflectionTestUtils.setField(config, "datasetUpdateMaxDuration", 60000L);
+        Props saveProps = Props.create(SaveDatasetActor.class,
+                        new SaveDatasetActorCreator(config, endpoint, new CrawlFrontierService()));
+        saveDatasetWorker = system.actorOf(Props.create(ForwardingParent.class, saveProps, master.ref()));
+    }
+
+    @After
+    public void tearDown() {
+        JavaTestKit.shutdownActorSystem(system);
+    }
+
+    @Test
+    public void testDoneIsReportedAfterBulkUpdate() {
+        SaveDatasetMessage first = createSaveMessage("1", true);
+        SaveDatasetMessage second = createSaveMessage("2", true);
+        saveDatasetWorker.tell(first, ActorRef.noSender());
+        // the bulk is not full yet, so nothing is saved and nothing is done
+        master.expectNoMsg(NO_MESSAGE_DURATION);
+        Assert.assertTrue(endpoint.updates.isEmpty());
+        saveDatasetWorker.tell(second, ActorRef.noSender());
+        Assert.assertEquals(first.getDoneMessage(), master.expectMsgClass(CrawlUriMessage.class));
+        Assert.assertEquals(second.getDoneMessage(), master.expectMsgClass(CrawlUriMessage.class));
+        Assert.assertEquals(1, endpoint.updates.size());
+        Assert.assertEquals(2, endpoint.updates.get(0).size());
+    }
+
+    @Test
+    public void testTickSavesIncompleteBulk() {
+        SaveDatasetMessage msg = createSaveMessage("1", true);
+        saveDatasetWorker.tell(msg, ActorRef.noSender());
+        saveDatasetWorker.tell("tick", ActorRef.noSender());
+        Assert.assertEquals(msg.getDoneMessage(), master.expectMsgClass(CrawlUriMessage.class));
+        Assert.assertEquals(1, endpoint.updates.size());
+    }
+
+    @Test
+    public void testNothingIsReportedForSavedResources() {
+        saveDatasetWorker.tell(createSaveMessage("1", false), ActorRef.noSender());
+        saveDatasetWorker.tell("tick", ActorRef.noSender());
+        master.expectNoMsg(NO_MESSAGE_DURATION);
+        Assert.assertEquals(1, endpoint.updates.size());
+    }
+
+    @Test
+    public void testFailedBulkUpdateReportsFailedInsteadOfDone() {
+        endpoint.fail = true;
+        SaveDatasetMessage first = createSaveMessage("1", true);
+        SaveDatasetMessage second = createSaveMessage("2", true);
+        saveDatasetWorker.tell(first, ActorRef.noSender());
+        saveDatasetWorker.tell(second, ActorRef.noSender());
+        CrawlUriMessage failed = master.expectMsgClass(CrawlUriMessage.class);
+        Assert.assertEquals(CrawlUriMessage.STATUS.FAILED, failed.getStatus());
+        Assert.assertEquals(first.getCrawlUriMessage().getUri(), failed.getUri());
+        Assert.assertNull(failed.getResourceETagHeaderValues());
+        failed = master.expectMsgClass(CrawlUriMessage.class);
+        Assert.assertEquals(CrawlUriMessage.STATUS.FAILED, failed.getStatus());
+        Assert.assertEquals(second.getCrawlUriMessage().getUri(), failed.getUri());
+        master.expectNoMsg(NO_MESSAGE_DURATION);
+    }
+
+    private SaveDatasetMessage createSaveMessage(String id, boolean crawled) {
+        String uri = BASE_URI + "/" + id;
+        CrawlUriMessage.STATUS status = crawled ? CrawlUriMessage.STATUS.PROCESS : CrawlUriMessage.STATUS.SAVE;
+        CrawlUriMessage uriMsg = new CrawlUriMessage(uri, BASE_URI, WON_NODE, status, System.currentTimeMillis(),
+                        null);
+        Dataset ds = DatasetFactory.createGeneral();
+        Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(uri), model.createProperty("https://w3id.org/won/core#wonNode"),
+                        model.createResource(WON_NODE));
+        ds.addNamedModel(uri + "#data", model);
+        CrawlUriMessage doneMsg = null;
+        if (crawled) {
+            List<String> etags = new ArrayList<>();
+            etags.add("\"etag-" + id + "\"");
+            doneMsg = new CrawlUriMessage(uri, BASE_URI, WON_NODE, CrawlUriMessage.STATUS.DONE,
+                            System.currentTimeMillis(), etags);
+        }
+        return new SaveDatasetMessage(uriMsg, ds, doneMsg);
+    }
+
+    /**
+     * Records the bulk updates instead of sending them to a sparql endpoint.
+     */
+    private static class RecordingSparqlService extends CrawlSparqlService {
+        private final List<Collection<Dataset>> updates = new CopyOnWriteArrayList<>();
+        private volatile boolean fail = false;
+
+        public RecordingSparqlService() {
+            super("http://localhost/sparql");
+        }
+
+        @Override
+        public void bulkUpdateNamedGraphsOfDatasets(Collection<Dataset> datasets) {
+            if (fail) {
+                throw new IllegalStateException("sparql endpoint not available");
+            }
+            updates.add(new ArrayList<>(datasets));
+        }
+    }
+
+    private static class SaveDatasetActorCreator implements Creator<SaveDatasetActor> {
+        private final CrawlConfig config;
+        private final CrawlSparqlService endpoint;
+        private final CrawlFrontierService frontier;
+
+        public SaveDatasetActorCreator(CrawlConfig config, CrawlSparqlService endpoint,
+                        CrawlFrontierService frontier) {
+            this.config = config;
+            this.endpoint = endpoint;
+            this.frontier = frontier;
+        }
+
+        @Override
+        public SaveDatasetActor create() {
+            SaveDatasetActor actor = new SaveDatasetActor();
+            ReflectionTestUtils.setField(actor, "config", config);
+            ReflectionTestUtils.setField(actor, "endpoint", endpoint);
+            ReflectionTestUtils.setField(actor, "frontier", frontier);
+            return actor;
+        }
+    }
+
+    /**
+     * Plays the role of the {@link MasterCrawlerActor}: forwards messages to the
+     * save actor and the messages of the save actor to the test probe.
+     */
+    public static class ForwardingParent extends UntypedActor {
+        private final ActorRef child;
+        private final ActorRef probe;
+
+        public ForwardingParent(Props childProps, ActorRef probe) {
+            this.child = getContext().actorOf(childProps, "SaveDatasetWorker");
+            this.probe = probe;
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (child.equals(getSender())) {
+                probe.tell(message, getSelf());
+            } else {
+                child.forward(message, getContext());
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package won.matcher.service.crawler.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+import won.protocol.model.AtomState;
+
+public class CrawlFrontierServiceTest {
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+    private static final String WON_NODE = "https://localhost:8443/won/resource";
+    private static final String ATOM_LIST = WON_NODE + "/atom";
+    private String jdbcUrl;
+    private List<CrawlFrontierService> frontiers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        jdbcUrl = "jdbc:hsqldb:mem:crawlFrontierTest" + databaseCounter.incrementAndGet();
+    }
+
+    @After
+    public void tearDown() {
+        if (!frontiers.isEmpty()) {
+            ReflectionTestUtils.invokeMethod(frontiers.get(0), "shutdown");
+        }
+    }
+
+    @Test
+    public void testUpsertAndStatusScan() throws Exception {
+        CrawlFrontierService frontier = openFrontier(new StubSparqlService());
+        frontier.bulkUpdateCrawlingMetadata(Arrays.asList(message("1", CrawlUriMessage.STATUS.PROCESS, 100),
+                        message("2", CrawlUriMessage.STATUS.PROCESS, 100)));
+        frontier.updateCrawlingMetadata(message("1", CrawlUriMessage.STATUS.DONE, 200, "\"a\"", "\"b\""));
+        Assert.assertEquals(CrawlUriMessage.STATUS.DONE, frontier.retrieveStatus(uri("1")));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("\"a\"", "\"b\"")),
+                        frontier.retrieveResourceETags(uri("1")));
+        Assert.assertNull(frontier.retrieveResourceETags(uri("2")));
+        Assert.assertNull(frontier.retrieveStatus(uri("3")));
+        Set<CrawlUriMessage> process = frontier.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.PROCESS);
+        Assert.assertEquals(1, process.size());
+        CrawlUriMessage msg = process.iterator().next();
+        Assert.assertEquals(uri("2"), msg.getUri());
+        Assert.assertEquals(ATOM_LIST, msg.getBaseUri());
+        Assert.assertEquals(WON_NODE, msg.getWonNodeUri());
+        Assert.assertEquals(CrawlUriMessage.STATUS.PROCESS, msg.getStatus());
+        // uris that are retrieved for crawling again are put in status PROCESS
+        Set<CrawlUriMessage> done = frontier.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.DONE);
+        Assert.assertEquals(1, done.size());
+        Assert.assertEquals(CrawlUriMessage.STATUS.PROCESS, done.iterator().next().getStatus());
+        Assert.assertTrue(frontier.retrieveMessagesForCrawling(CrawlUriMessage.STATUS.FAILED).isEmpty());
+    }
+
+    @Test
+    public void testAtomStateUpsertKeepsCrawlMetadata() throws Exception {
+        CrawlFrontierService frontier = openFrontier(new StubSparqlService());
+        frontier.updateCrawlingMetadata(message("1", CrawlUriMessage.STATUS.DONE, 100, "\"a\""));
+        Map<String, AtomState> atomStates = new HashMap<>();
+        atomStates.put(uri("1"), AtomState.ACTIVE);
+        // the state of saved atoms can arrive before their crawl meta data
+        atomStates.put(uri("2"), AtomState.ACTIVE);
+        frontier.updateAtomStates(atomStates);
+        Assert.assertEquals(CrawlUriMessage.STATUS.DONE, frontier.retrieveStatus(uri("1")));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("\"a\"")), frontier.retrieveResourceETags(uri("1")));
+        Assert.assertEquals(Arrays.asList(uri("1")), uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, true)));
+        frontier.updateCrawlingMetadata(message("2", CrawlUriMessage.STATUS.SAVE, 200));
+        Assert.assertEquals(Arrays.asList(uri("1"), uri("2")),
+                        uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, true)));
+    }
+
+    @Test
+    public void testRetrieveActiveAtoms() throws Exception {
+        CrawlFrontierService frontier = openFrontier(new StubSparqlService());
+        frontier.bulkUpdateCrawlingMetadata(Arrays.asList(message("1", CrawlUriMessage.STATUS.DONE, 100),
+                        message("2", CrawlUriMessage.STATUS.DONE, 200), message("3", CrawlUriMessage.STATUS.DONE, 300),
+                        message("4", CrawlUriMessage.STATUS.PROCESS, 400),
+                        message("5", CrawlUriMessage.STATUS.SAVE, 250), message("6", CrawlUriMessage.STATUS.DONE, 260)));
+        Map<String, AtomState> atomStates = new HashMap<>();
+        atomStates.put(uri("1"), AtomState.ACTIVE);
+        atomStates.put(uri("2"), AtomState.ACTIVE);
+        atomStates.put(uri("3"), AtomState.INACTIVE);
+        atomStates.put(uri("4"), AtomState.ACTIVE);
+        atomStates.put(uri("5"), AtomState.ACTIVE);
+        frontier.updateAtomStates(atomStates);
+        // inactive atoms, atoms in process and uris without atom state are skipped
+        Assert.assertEquals(Arrays.asList(uri("1"), uri("2"), uri("5")),
+                        uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, true)));
+        Assert.assertEquals(Arrays.asList(uri("5"), uri("2"), uri("1")),
+                        uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, false)));
+        // from date is inclusive, to date exclusive
+        Assert.assertEquals(Arrays.asList(uri("2")), uris(frontier.retrieveActiveAtoms(200, 250, 0, 10, true)));
+        Assert.assertEquals(Arrays.asList(uri("2"), uri("5")),
+                        uris(frontier.retrieveActiveAtoms(0, 1000, 1, 10, true)));
+        Assert.assertEquals(Arrays.asList(uri("1")), uris(frontier.retrieveActiveAtoms(0, 1000, 0, 1, true)));
+        Assert.assertTrue(frontier.retrieveActiveAtoms(0, 1000, 0, 0, true).isEmpty());
+        CrawlUriMessage atom = frontier.retrieveActiveAtoms(0, 150, 0, 10, true).get(0);
+        Assert.assertEquals(WON_NODE, atom.getWonNodeUri());
+        Assert.assertEquals(100, atom.getCrawlDate());
+    }
+
+    @Test
+    public void testImportFillsAtomStates() throws Exception {
+        StubSparqlService sparqlService = new StubSparqlService();
+        sparqlService.crawlingMetadata.add(message("1", CrawlUriMessage.STATUS.DONE, 100, "\"a\""));
+        sparqlService.crawlingMetadata.add(message("1/c", CrawlUriMessage.STATUS.DONE, 100));
+        sparqlService.atomStates.put(uri("1"), AtomState.ACTIVE);
+        CrawlFrontierService frontier = openFrontier(sparqlService);
+        Assert.assertEquals(1, sparqlService.imports.get());
+        Assert.assertEquals(CrawlUriMessage.STATUS.DONE, frontier.retrieveStatus(uri("1/c")));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("\"a\"")), frontier.retrieveResourceETags(uri("1")));
+        Assert.assertEquals(Arrays.asList(uri("1")), uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, true)));
+        // the import is recorded and not repeated
+        openFrontier(sparqlService);
+        Assert.assertEquals(1, sparqlService.imports.get());
+    }
+
+    @Test
+    public void testFailedImportIsRetried() throws Exception {
+        StubSparqlService sparqlService = new StubSparqlService();
+        sparqlService.crawlingMetadata.add(message("1", CrawlUriMessage.STATUS.PROCESS, 100));
+        sparqlService.crawlingMetadata.add(message("2", CrawlUriMessage.STATUS.DONE, 100));
+        sparqlService.atomStates.put(uri("1"), AtomState.ACTIVE);
+        sparqlService.atomStates.put(uri("2"), AtomState.ACTIVE);
+        sparqlService.fail = true;
+        CrawlFrontierService frontier = openFrontier(sparqlService);
+        Assert.assertNull(frontier.retrieveStatus(uri("2")));
+        // crawling meta data that is saved in the meantime is kept by the import
+        frontier.updateCrawlingMetadata(message("1", CrawlUriMessage.STATUS.DONE, 500, "\"b\""));
+        sparqlService.fail = false;
+        openFrontier(sparqlService);
+        Assert.assertEquals(2, sparqlService.imports.get());
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("\"b\"")), frontier.retrieveResourceETags(uri("1")));
+        Assert.assertEquals(Arrays.asList(uri("2"), uri("1")),
+                        uris(frontier.retrieveActiveAtoms(0, 1000, 0, 10, true)));
+        openFrontier(sparqlService);
+        Assert.assertEquals(2, sparqlService.imports.get());
+    }
+
+    private CrawlFrontierService openFrontier(CrawlSparqlService sparqlService) throws Exception {
+        CrawlFrontierService frontier = new CrawlFrontierService();
+        ReflectionTestUtils.setField(frontier, "sparqlService", sparqlService);
+        frontier.open(jdbcUrl);
+        frontiers.add(frontier);
+        return frontier;
+    }
+
+    private static String uri(String id) {
+        return ATOM_LIST + "/" + id;
+    }
+
+    private static CrawlUriMessage message(String id, CrawlUriMessage.STATUS status, long crawlDate,
+                    String... etags) {
+        return new CrawlUriMessage(uri(id), ATOM_LIST, WON_NODE, status, crawlDate,
+                        etags.length > 0 ? Arrays.asList(etags) : null);
+    }
+
+    private static List<String> uris(List<CrawlUriMessage> msgs) {
+        List<String> uris = new ArrayList<>();
+        for (CrawlUriMessage msg : msgs) {
+            uris.add(msg.getUri());
+        }
+        return uris;
+    }
+
+    /**
+     * Serves the crawl meta data of earlier versions without a sparql endpoint.
+     */
+    private static class StubSparqlService extends CrawlSparqlService {
+        private final Set<CrawlUriMessage> crawlingMetadata = new LinkedHashSet<>();
+        private final Map<String, AtomState> atomStates = new HashMap<>();
+        private final AtomicInteger imports = new AtomicInteger();
+        private boolean fail = false;
+
+        public StubSparqlService() {
+            super("http://localhost/sparql");
+        }
+
+        @Override
+        public Set<CrawlUriMessage> retrieveCrawlingMetadata() {
+            imports.incrementAndGet();
+            if (fail) {
+                throw new IllegalStateException("sparql endpoint not available");
+            }
+            return crawlingMetadata;
+        }
+
+        @Override
+        public Map<String, AtomState> retrieveAtomStates(Collection<String> uris) {
+            Map<String, AtomState> states = new HashMap<>();
+            for (String uri : uris) {
+                if (atomStates.containsKey(uri)) {
+                    states.put(uri, atomStates.get(uri));
+                }
+            }
+            return states;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package won.matcher.service.crawler.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import won.matcher.service.crawler.config.CrawlConfig;
+import won.matcher.service.crawler.msg.CrawlUriMessage;
+
+public class CrawlSparqlServiceTest {
+    private static final String WON = "https://w3id.org/won/core#";
+    private static final String RDFS_MEMBER = "http://www.w3.org/2000/01/rdf-schema#member";
+    private static final String WON_NODE = "https://localhost:8443/won/resource";
+    private static final String ATOM = "https://localhost:8443/won/resource/atom/1";
+    private static final String CONNECTIONS = ATOM + "/c";
+    private static final String CONNECTION = ATOM + "/c/1";
+    private static final String MESSAGE = "https://localhost:8443/won/resource/event/1";
+    private CrawlSparqlService sparqlService;
+
+    @Before
+    public void setUp() {
+        CrawlConfig config = new CrawlConfig();
+        ReflectionTestUtils.setField(config, "crawlBasePropertyPaths",
+                        Arrays.asList("(<" + RDFS_MEMBER + ">|<" + WON + "connections>)", " "));
+        ReflectionTestUtils.setField(config, "crawlNonBasePropertyPaths",
+                        Arrays.asList("<" + WON + "connections>/<" + RDFS_MEMBER + ">/<" + WON + "messageContainer>"));
+        sparqlService = new CrawlSparqlService("http://localhost/sparql");
+        ReflectionTestUtils.setField(sparqlService, "config", config);
+    }
+
+    @Test
+    public void testBasePropertyPathsUseExtractedUriAsBase() {
+        Dataset ds = createDataset(ATOM);
+        ds.getNamedModel(ATOM + "#data").add(resource(ATOM), property(WON + "connections"), resource(CONNECTIONS));
+        Map<String, CrawlUriMessage> msgs = byUri(sparqlService.extractCrawlUriMessages(ds, ATOM, WON_NODE));
+        Assert.assertEquals(1, msgs.size());
+        CrawlUriMessage msg = msgs.get(CONNECTIONS);
+        Assert.assertEquals(CONNECTIONS, msg.getBaseUri());
+        Assert.assertEquals(WON_NODE, msg.getWonNodeUri());
+        Assert.assertEquals(CrawlUriMessage.STATUS.PROCESS, msg.getStatus());
+        Assert.assertNull(msg.getResourceETagHeaderValues());
+    }
+
+    @Test
+    public void testNonBasePropertyPathsKeepBaseUri() {
+        Dataset ds = createDataset(ATOM);
+        Model model = ds.getNamedModel(ATOM + "#data");
+        model.add(resource(ATOM), property(WON + "connections"), resource(CONNECTIONS));
+        model.add(resource(CONNECTIONS), property(RDFS_MEMBER), resource(CONNECTION));
+        model.add(resource(CONNECTION), property(WON + "messageContainer"), resource(MESSAGE));
+        Map<String, CrawlUriMessage> msgs = byUri(sparqlService.extractCrawlUriMessages(ds, ATOM, WON_NODE));
+        Assert.assertEquals(ATOM, msgs.get(MESSAGE).getBaseUri());
+        Assert.assertEquals(CONNECTIONS, msgs.get(CONNECTIONS).getBaseUri());
+    }
+
+    @Test
+    public void testPropertyPathsOnlySeeTheFetchedResource() {
+        // the connection container is described in another resource, so the
+        // non-base path from the atom does not match anymore
+        Dataset ds = createDataset(ATOM);
+        ds.getNamedModel(ATOM + "#data").add(resource(ATOM), property(WON + "connections"), resource(CONNECTIONS));
+        Map<String, CrawlUriMessage> msgs = byUri(sparqlService.extractCrawlUriMessages(ds, ATOM, WON_NODE));
+        Assert.assertFalse(msgs.containsKey(MESSAGE));
+        Assert.assertFalse(msgs.containsKey(CONNECTION));
+    }
+
+    @Test
+    public void testBaseUriWithAndWithoutTrailingSlash() {
+        Dataset ds = createDataset(CONNECTIONS);
+        Model model = ds.getNamedModel(CONNECTIONS + "#data");
+        model.add(resource(CONNECTIONS + "/"), property(RDFS_MEMBER), resource(CONNECTION));
+        model.add(resource(CONNECTIONS + "/"), property(RDFS_MEMBER), model.createLiteral("not an uri"));
+        Map<String, CrawlUriMessage> msgs = byUri(sparqlService.extractCrawlUriMessages(ds, CONNECTIONS, WON_NODE));
+        Assert.assertEquals(1, msgs.size());
+        Assert.assertEquals(CONNECTION, msgs.get(CONNECTION).getBaseUri());
+        msgs = byUri(sparqlService.extractCrawlUriMessages(ds, CONNECTIONS + "/", WON_NODE));
+        Assert.assertEquals(1, msgs.size());
+    }
+
+    private Dataset createDataset(String uri) {
+        Dataset ds = DatasetFactory.createGeneral();
+        ds.addNamedModel(uri + "#data", ModelFactory.createDefaultModel());
+        return ds;
+    }
+
+    private static Resource resource(String uri) {
+        return ModelFactory.createDefaultModel().createResource(uri);
+    }
+
+    private static Property property(String uri) {
+        return ModelFactory.createDefaultModel().createProperty(uri);
+    }
+
+    private static Map<String, CrawlUriMessage> byUri(Set<CrawlUriMessage> msgs) {
+        Map<String, CrawlUriMessage> byUri = new HashMap<>();
+        for (CrawlUriMessage msg : msgs) {
+            byUri.put(msg.getUri(), msg);
+        }
+        return byUri;
+    }
+}
@@ -0,0 +1,190 @@
+package won.matcher.service.nodemanager.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.update.UpdateAction;
+import org.javasimon.SimonManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import won.matcher.service.common.event.AtomHintEvent;
+import won.matcher.service.common.event.Cause;
+import won.matcher.service.common.event.HintEvent;
+import won.matcher.service.nodemanager.config.WonNodeControllerConfig;
+import won.protocol.util.RdfUtils;
+
+public class HintDBServiceTest {
+    private static final String WON_NODE = "https://localhost:8443/won/resource";
+    private static final String HINT_GRAPH = "https://w3id.org/won/core#hintMetadata";
+    private Dataset dataset;
+    private List<LocalHintDBService> services = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        dataset = DatasetFactory.createGeneral();
+    }
+
+    @After
+    public void tearDown() {
+        for (LocalHintDBService service : services) {
+            service.failUpdates = false;
+            ReflectionTestUtils.invokeMethod(service, "shutdown");
+        }
+    }
+
+    @Test
+    public void testNewHintsAreSavedAndDuplicatesFilteredOut() {
+        LocalHintDBService service = createService();
+        HintEvent first = hint("1", "2");
+        HintEvent second = hint("1", "3");
+        Assert.assertEquals(Arrays.asList(first, second),
+                        service.saveNewHints(Arrays.asList(first, second, hint("1", "2"))));
+        Assert.assertEquals(Collections.emptyList(), service.saveNewHints(Arrays.asList(hint("1", "2"))));
+        Assert.assertEquals(0, savedHintCount());
+        service.saveUnsavedHints();
+        Assert.assertEquals(2, savedHintCount());
+        Assert.assertEquals(1, service.updates.get());
+    }
+
+    @Test
+    public void testSavedHintsAreLookedUpInOneQuery() {
+        LocalHintDBService otherService = createService();
+        otherService.saveNewHints(Arrays.asList(hint("1", "2"), hint("1", "3")));
+        otherService.saveUnsavedHints();
+        // a service with an empty local cache, e.g. after a restart
+        LocalHintDBService service = createService();
+        HintEvent newHint = hint("1", "4");
+        Assert.assertEquals(Arrays.asList(newHint),
+                        service.saveNewHints(Arrays.asList(hint("1", "2"), newHint, hint("1", "3"))));
+        Assert.assertEquals(1, service.queries.get());
+        // the hints found in the sparql endpoint are in the local cache now
+        Assert.assertEquals(Collections.emptyList(),
+                        service.saveNewHints(Arrays.asList(hint("1", "2"), hint("1", "3"), newHint)));
+        Assert.assertEquals(1, service.queries.get());
+    }
+
+    @Test
+    public void testFailedLookupTreatsHintsAsNew() {
+        LocalHintDBService service = createService();
+        service.failQueries = true;
+        HintEvent hint = hint("1", "2");
+        Assert.assertEquals(Arrays.asList(hint), service.saveNewHints(Arrays.asList(hint)));
+    }
+
+    @Test
+    public void testFailedSaveIsRetried() {
+        LocalHintDBService service = createService();
+        service.failUpdates = true;
+        service.saveNewHints(Arrays.asList(hint("1", "2")));
+        service.saveUnsavedHints();
+        Assert.assertEquals(0, savedHintCount());
+        service.saveNewHints(Arrays.asList(hint("1", "3")));
+        service.failUpdates = false;
+        service.saveUnsavedHints();
+        Assert.assertEquals(2, savedHintCount());
+        Assert.assertEquals(1, service.updates.get());
+    }
+
+    @Test
+    public void testOldestHintsAreDroppedIfSaveKeepsFailing() {
+        LocalHintDBService service = createService(2);
+        service.failUpdates = true;
+        // the counter is shared by all instances, compare with the value before
+        long dropped = SimonManager.getCounter(HintDBService.DROPPED_HINTS_COUNTER).getCounter();
+        service.saveNewHints(Arrays.asList(hint("1", "2"), hint("1", "3")));
+        service.saveUnsavedHints();
+        service.saveNewHints(Arrays.asList(hint("1", "4")));
+        service.saveUnsavedHints();
+        Assert.assertEquals(1, SimonManager.getCounter(HintDBService.DROPPED_HINTS_COUNTER).getCounter() - dropped);
+        service.failUpdates = false;
+        service.saveUnsavedHints();
+        Assert.assertEquals(2, savedHintCount());
+        // the dropped hint is the oldest one
+        HintEvent oldestHint = hint("1", "2");
+        Assert.assertEquals(Arrays.asList(oldestHint),
+                        createService().saveNewHints(Arrays.asList(oldestHint, hint("1", "3"), hint("1", "4"))));
+    }
+
+    private LocalHintDBService createService() {
+        return createService(1000);
+    }
+
+    private LocalHintDBService createService(int hintCacheSize) {
+        WonNodeControllerConfig config = new WonNodeControllerConfig();
+        ReflectionTestUtils.setField(config, "hintCacheSize", hintCacheSize);
+        ReflectionTestUtils.setField(config, "hintTimeToLiveDays", 90);
+        // hints are saved by the test, not by the scheduled task
+        ReflectionTestUtils.setField(config, "hintSaveInterval", 3600000L);
+        LocalHintDBService service = new LocalHintDBService(dataset);
+        ReflectionTestUtils.setField(service, "config", config);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        services.add(service);
+        return service;
+    }
+
+    private long savedHintCount() {
+        synchronized (dataset) {
+            return dataset.containsNamedModel(HINT_GRAPH) ? dataset.getNamedModel(HINT_GRAPH).size() : 0;
+        }
+    }
+
+    private static HintEvent hint(String recipient, String target) {
+        return new AtomHintEvent(WON_NODE + "/atom/" + recipient, WON_NODE, WON_NODE + "/atom/" + target, WON_NODE,
+                        "https://localhost:8443/matcher", 0.5, Cause.MATCHED);
+    }
+
+    /**
+     * Executes the queries and updates on a local dataset instead of a sparql
+     * endpoint.
+     */
+    private static class LocalHintDBService extends HintDBService {
+        private final Dataset dataset;
+        private final AtomicInteger queries = new AtomicInteger();
+        private final AtomicInteger updates = new AtomicInteger();
+        private volatile boolean failQueries = false;
+        private volatile boolean failUpdates = false;
+
+        public LocalHintDBService(Dataset dataset) {
+            super("http://localhost/sparql");
+            this.dataset = dataset;
+        }
+
+        @Override
+        protected QueryExecution createQueryExecution(Query query) {
+            if (failQueries) {
+                throw new IllegalStateException("sparql endpoint not available");
+            }
+            queries.incrementAndGet();
+            synchronized (dataset) {
+                // query a copy, the dataset is not locked while the results are read
+                return QueryExecutionFactory.create(query, RdfUtils.cloneDataset(dataset));
+            }
+        }
+
+        @Override
+        public void executeUpdateQuery(String updateQuery) {
+            if (failUpdates) {
+                throw new IllegalStateException("sparql endpoint not available");
+            }
+            synchronized (dataset) {
+                // deleting expired hints runs in the background, it is not counted
+                if (updateQuery.contains("INSERT DATA")) {
+                    updates.incrementAndGet();
+                }
+                UpdateAction.parseExecute(updateQuery, dataset);
+            }
+        }
+    }
+}
@@ -2,9 +2,12 @@ package won.matcher.solr.actor;
 
 import java.io.IOException;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.apache.jena.query.Dataset;
 import org.apache.solr.client.solrj.SolrServerException;
@@ -26,9 +29,11 @@ import scala.concurrent.duration.Duration;
 import won.matcher.service.common.event.BulkHintEvent;
 import won.matcher.service.common.event.BulkAtomEvent;
 import won.matcher.service.common.event.AtomEvent;
+import won.matcher.service.common.event.AtomEventsProcessedEvent;
 import won.matcher.solr.config.SolrMatcherConfig;
 import won.matcher.solr.hints.HintBuilder;
 import won.matcher.solr.index.AtomIndexer;
+import won.matcher.solr.query.AtomQuery;
 import won.matcher.solr.query.DefaultMatcherQueryExecuter;
 import won.matcher.solr.query.SolrMatcherQueryExecutor;
 import won.matcher.solr.query.TestMatcherQueryExecutor;
@@ -40,7 +45,7 @@ import won.matcher.solr.query.factory.MatchingContextQueryFactory;
 import won.matcher.solr.query.factory.AtomStateQueryFactory;
 import won.matcher.solr.query.factory.WhatsAroundQueryFactory;
 import won.matcher.solr.query.factory.WhatsNewQueryFactory;
-import won.protocol.util.AtomModelWrapper;
+import won.protocol.util.DefaultAtomModelWrapper;
 import won.protocol.vocabulary.WON;
 import won.protocol.vocabulary.WONMATCH;
 
@@ -82,11 +87,7 @@ public class SolrMatcherActor extends UntypedActor {
                 }
             } else if (o instanceof BulkAtomEvent) {
                 eventTypeForLogging = "BulkAtomEvent";
-                log.info("received bulk atom event, processing {} atom events ...",
-                                ((BulkAtomEvent) o).getAtomEvents().size());
-                for (AtomEvent event : ((BulkAtomEvent) o).getAtomEvents()) {
-                    processActiveAtomEvent(event);
-                }
+                processBulkAtomEvent((BulkAtomEvent) o);
             } else {
                 eventTypeForLogging = "unhandled";
                 unhandled(o);
@@ -98,6 +99,31 @@ public class SolrMatcherActor extends UntypedActor {
         }
     }
 
+    /**
+     * Processes the atom events of the bulk one after the other and reports to the
+     * sender when done, even if some of them failed.
+     */
+    protected void processBulkAtomEvent(BulkAtomEvent bulkAtomEvent) {
+        log.info("received bulk atom event, processing {} atom events ...", bulkAtomEvent.getAtomEvents().size());
+        for (AtomEvent atomEvent : bulkAtomEvent.getAtomEvents()) {
+            try {
+                if (atomEvent.getEventType().equals(AtomEvent.TYPE.ACTIVE)) {
+                    processActiveAtomEvent(atomEvent);
+                } else if (atomEvent.getEventType().equals(AtomEvent.TYPE.INACTIVE)) {
+                    processInactiveAtomEvent(atomEvent);
+                }
+            } catch (Exception e) {
+                log.info(String.format(
+                                "Caught exception when processing AtomEvent %s of bulk. More info on loglevel 'debug'",
+                                atomEvent.getUri()));
+                log.debug("caught exception", e);
+            }
+        }
+        getSender().tell(
+                        new AtomEventsProcessedEvent(bulkAtomEvent.getChunkId(), bulkAtomEvent.getAtomEvents().size()),
+                        getSelf());
+    }
+
     protected void processInactiveAtomEvent(AtomEvent atomEvent) throws IOException, JsonLdError {
         log.info("Add inactive atom event content {} to solr index", atomEvent);
         atomIndexer.index(atomEvent.deserializeAtomDataset());
@@ -108,8 +134,11 @@ public class SolrMatcherActor extends UntypedActor {
         // check if the atom has doNotMatch flag, then do not use it for querying or
         // indexing
         Dataset dataset = atomEvent.deserializeAtomDataset();
-        AtomModelWrapper atomModelWrapper = new AtomModelWrapper(dataset);
-        if (atomModelWrapper.flag(WONMATCH.NoHintForMe) && atomModelWrapper.flag(WONMATCH.NoHintForCounterpart)) {
+        // the wrapper and the flags are shared by all queries for this atom
+        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(dataset);
+        boolean noHintForMe = atomModelWrapper.flag(WONMATCH.NoHintForMe);
+        boolean noHintForCounterpart = atomModelWrapper.flag(WONMATCH.NoHintForCounterpart);
+        if (noHintForMe && noHintForCounterpart) {
             log.info("Discarding received atom due to flags match:NoHintForMe and match:NoHintForCounterpart: {}",
                             atomEvent);
             return;
@@ -121,148 +150,118 @@ public class SolrMatcherActor extends UntypedActor {
         }
         // check if atom is usedForTesting only
         boolean usedForTesting = atomModelWrapper.flag(WONMATCH.UsedForTesting);
+        boolean whatsAround = atomModelWrapper.flag(WONMATCH.WhatsAround);
+        boolean whatsNew = atomModelWrapper.flag(WONMATCH.WhatsNew);
         SolrMatcherQueryExecutor queryExecutor = (usedForTesting ? testQueryExecuter : defaultQueryExecuter);
         // create another query depending if the current atom is "WhatsAround" or a
         // default atom
         String queryString = null;
-        if (atomModelWrapper.flag(WONMATCH.WhatsAround)) {
+        String whatsAroundQueryString = null;
+        if (whatsAround) {
             // WhatsAround doesnt match on terms only other atoms in close location are
             // boosted
-            WhatsAroundQueryFactory qf = new WhatsAroundQueryFactory(dataset);
-            queryString = qf.createQuery();
-        } else if (atomModelWrapper.flag(WONMATCH.WhatsNew)) {
-            WhatsNewQueryFactory qf = new WhatsNewQueryFactory(dataset);
-            queryString = qf.createQuery();
+            whatsAroundQueryString = new WhatsAroundQueryFactory(atomModelWrapper).createQuery();
+            queryString = whatsAroundQueryString;
+        } else if (whatsNew) {
+            queryString = new WhatsNewQueryFactory(atomModelWrapper).createQuery();
         } else {
             // default query matches content terms (of fields title, description and tags)
             // with different weights
             // and gives an additional multiplicative boost for geographically closer atoms
-            DefaultAtomQueryFactory qf = new DefaultAtomQueryFactory(dataset);
-            queryString = qf.createQuery();
+            queryString = new DefaultAtomQueryFactory(atomModelWrapper).createQuery();
         }
         // add filters to the query: default filters are
         // - atom status active
         // - creation date overlap 1 month
         // - OR-filtering for matching contexts if any were specified
+        List<String> defaultFilterQueries = new LinkedList<>();
+        defaultFilterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
+        defaultFilterQueries.add(new CreationDateQueryFactory(atomModelWrapper, 1, ChronoUnit.MONTHS).createQuery());
+        Collection<String> matchingContexts = atomModelWrapper.getMatchingContexts();
+        if (matchingContexts != null && matchingContexts.size() > 0) {
+            defaultFilterQueries.add(new MatchingContextQueryFactory(matchingContexts).createQuery());
+        }
         // now create three slightly different queries for different lists of atoms:
         // 1) atoms without NoHintForCounterpart => hints for current atom
         // 2) atoms without NoHintForSelf, excluding WhatsAround atoms => hints for
         // atoms in index that are not WhatsAround
         // 3) atoms without NoHintForSelf that are only WhatsAround atoms => hints for
         // atoms in index that are WhatsAround
-        // to achieve this use a different filters for these queries
-        // case 1) atoms without NoHintForCounterpart => hints for current atom
-        List<String> filterQueries = new LinkedList<>();
-        filterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
-        filterQueries.add(new CreationDateQueryFactory(dataset, 1, ChronoUnit.MONTHS).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_COUNTERPART)).createQuery());
-        if (atomModelWrapper.getMatchingContexts() != null && atomModelWrapper.getMatchingContexts().size() > 0) {
-            filterQueries.add(new MatchingContextQueryFactory(atomModelWrapper.getMatchingContexts()).createQuery());
-        }
-        if (!atomModelWrapper.flag(WONMATCH.NoHintForMe)) {
-            // execute the query
-            log.info("query Solr endpoint {} for atom {} and atom list 1 (without NoHintForCounterpart)",
-                            config.getSolrEndpointUri(usedForTesting), atomEvent.getUri());
-            SolrDocumentList docs = queryExecutor.executeAtomQuery(queryString, config.getMaxHints(), null,
-                            filterQueries.toArray(new String[filterQueries.size()]));
-            if (docs != null) {
-                // perform knee detection depending on current atom is WhatsAround/WhatsNew or
-                // not)
-                boolean kneeDetection = atomModelWrapper.flag(WONMATCH.WhatsNew)
-                                || atomModelWrapper.flag(WONMATCH.WhatsAround)
-                                                ? false
-                                                : true;
-                // generate hints for current atom (only generate hints for current atom,
-                // suppress hints for matched atoms,
-                BulkHintEvent events = hintBuilder.generateHintsFromSearchResult(docs, atomEvent, atomModelWrapper,
-                                false, true, kneeDetection);
-                log.info("Create {} hints for atom {} and atom list 1 (without NoHintForCounterpart)",
-                                events.getHintEvents().size(), atomEvent);
-                // publish hints to current atom
-                if (events.getHintEvents().size() != 0) {
-                    getSender().tell(events, getSelf());
-                }
-            } else {
-                log.warning("No results found for atom list 1 (without NoHintForCounterpart) query of atom ",
-                                atomEvent);
-            }
-        }
-        // case 2) atoms without NoHintForSelf, excluding WhatsAround atoms => hints for
-        // atoms in index that are not WhatsAround
-        filterQueries = new LinkedList<>();
-        filterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
-        filterQueries.add(new CreationDateQueryFactory(dataset, 1, ChronoUnit.MONTHS).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_AROUND)).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_NEW)).createQuery());
-        if (atomModelWrapper.getMatchingContexts() != null && atomModelWrapper.getMatchingContexts().size() > 0) {
-            filterQueries.add(new MatchingContextQueryFactory(atomModelWrapper.getMatchingContexts()).createQuery());
-        }
-        if (!atomModelWrapper.flag(WONMATCH.NoHintForCounterpart)) {
-            // execute the query
-            log.info("query Solr endpoint {} for atom {} and atom list 2 (without NoHintForSelf, excluding WhatsAround atoms)",
-                            config.getSolrEndpointUri(usedForTesting), atomEvent.getUri());
-            SolrDocumentList docs = queryExecutor.executeAtomQuery(queryString, config.getMaxHintsForCounterparts(),
-                            null, filterQueries.toArray(new String[filterQueries.size()]));
-            if (docs != null) {
-                // generate hints for matched atoms (suppress hints for current atom, only
-                // generate hints for matched atoms, perform knee detection)
-                BulkHintEvent events = hintBuilder.generateHintsFromSearchResult(docs, atomEvent, atomModelWrapper,
-                                true, false, true);
-                log.info("Create {} hints for atom {} and atom list 2 (without NoHintForSelf, excluding WhatsAround atoms)",
-                                events.getHintEvents().size(), atomEvent);
-                // publish hints to current atom
-                if (events.getHintEvents().size() != 0) {
-                    getSender().tell(events, getSelf());
-                }
-            } else {
-                log.warning("No results found for atom list 2 (without NoHintForSelf, excluding WhatsAround atoms) query of atom ",
-                                atomEvent);
-            }
-        }
-        // case 3) atoms without NoHintForSelf that are only WhatsAround atoms => hints
-        // for atoms in index that are WhatsAround
-        filterQueries = new LinkedList<>();
-        filterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
-        filterQueries.add(new CreationDateQueryFactory(dataset, 1, ChronoUnit.MONTHS).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)).createQuery());
-        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.OR,
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_AROUND),
-                        new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_NEW)).createQuery());
-        if (atomModelWrapper.getMatchingContexts() != null && atomModelWrapper.getMatchingContexts().size() > 0) {
-            filterQueries.add(new MatchingContextQueryFactory(atomModelWrapper.getMatchingContexts()).createQuery());
+        // to achieve this use a different filters for these queries. The queries are
+        // executed concurrently, the hints are generated in the order of the lists.
+        List<AtomList> atomLists = new ArrayList<>(3);
+        if (!noHintForMe) {
+            // case 1) atoms without NoHintForCounterpart => hints for current atom
+            List<String> filterQueries = new LinkedList<>(defaultFilterQueries);
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_COUNTERPART)).createQuery());
+            // generate hints for current atom (only generate hints for current atom,
+            // suppress hints for matched atoms, perform knee detection depending on
+            // current atom is WhatsAround/WhatsNew or not)
+            atomLists.add(new AtomList("atom list 1 (without NoHintForCounterpart)",
+                            new AtomQuery(queryString, config.getMaxHints(),
+                                            filterQueries.toArray(new String[filterQueries.size()])),
+                            false, true, !(whatsNew || whatsAround)));
         }
-        if (!atomModelWrapper.flag(WONMATCH.NoHintForCounterpart)) {
+        if (!noHintForCounterpart) {
+            // case 2) atoms without NoHintForSelf, excluding WhatsAround atoms => hints for
+            // atoms in index that are not WhatsAround
+            List<String> filterQueries = new LinkedList<>(defaultFilterQueries);
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)).createQuery());
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_AROUND)).createQuery());
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_NEW)).createQuery());
+            // generate hints for matched atoms (suppress hints for current atom, only
+            // generate hints for matched atoms, perform knee detection)
+            atomLists.add(new AtomList("atom list 2 (without NoHintForSelf, excluding WhatsAround atoms)",
+                            new AtomQuery(queryString, config.getMaxHintsForCounterparts(),
+                                            filterQueries.toArray(new String[filterQueries.size()])),
+                            true, false, true));
+            // case 3) atoms without NoHintForSelf that are only WhatsAround atoms => hints
+            // for atoms in index that are WhatsAround
+            filterQueries = new LinkedList<>(defaultFilterQueries);
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)).createQuery());
+            filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.OR,
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_AROUND),
+                            new HasFlagQueryFactory(HasFlagQueryFactory.FLAGS.WHATS_NEW)).createQuery());
             // hints for WhatsAround Atoms should not have the keywords from title,
             // description, tags etc.
             // this can prevent to actually find WhatsAround atoms.
             // Instead create a WhatsAround query (query without keywords, just location) to
             // find other WhatsAround atoms
-            queryString = (new WhatsAroundQueryFactory(dataset)).createQuery();
-            // execute the query
-            log.info("query Solr endpoint {} for atom {} and atom list 3 (without NoHintForSelf that are only WhatsAround atoms)",
-                            config.getSolrEndpointUri(usedForTesting), atomEvent.getUri());
-            SolrDocumentList docs = queryExecutor.executeAtomQuery(queryString, config.getMaxHintsForCounterparts(),
-                            null, filterQueries.toArray(new String[filterQueries.size()]));
+            if (whatsAroundQueryString == null) {
+                whatsAroundQueryString = new WhatsAroundQueryFactory(atomModelWrapper).createQuery();
+            }
+            // generate hints for matched atoms (suppress hints for current atom, only
+            // generate hints for matched atoms, do not perform knee detection)
+            atomLists.add(new AtomList("atom list 3 (without NoHintForSelf that are only WhatsAround atoms)",
+                            new AtomQuery(whatsAroundQueryString, config.getMaxHintsForCounterparts(),
+                                            filterQueries.toArray(new String[filterQueries.size()])),
+                            true, false, false));
+        }
+        // execute the queries
+        log.info("query Solr endpoint {} for atom {} and {} atom lists", config.getSolrEndpointUri(usedForTesting),
+                        atomEvent.getUri(), atomLists.size());
+        List<SolrDocumentList> results = queryExecutor.executeAtomQueries(
+                        atomLists.stream().map(atomList -> atomList.query).collect(Collectors.toList()));
+        for (int i = 0; i < results.size(); i++) {
+            SolrDocumentList docs = results.get(i);
+            AtomList atomList = atomLists.get(i);
             if (docs != null) {
-                // generate hints for matched atoms (suppress hints for current atom, only
-                // generate hints for matched atoms, do not perform knee detection)
                 BulkHintEvent events = hintBuilder.generateHintsFromSearchResult(docs, atomEvent, atomModelWrapper,
-                                true, false, false);
-                log.info("Create {} hints for atom {} and atom list 3 (without NoHintForSelf that are only WhatsAround atoms)",
-                                events.getHintEvents().size(), atomEvent);
-                // publish hints to current atom
+                                atomList.suppressHintForAtom, atomList.suppressHintForMatchedAtoms,
+                                atomList.kneeDetection);
+                log.info("Create {} hints for atom {} and {}", events.getHintEvents().size(), atomEvent,
+                                atomList.name);
+                // publish hints
                 if (events.getHintEvents().size() != 0) {
                     getSender().tell(events, getSelf());
                 }
             } else {
-                log.warning("No results found for atom list 3 (without NoHintForSelf that are only WhatsAround atoms) query of atom ",
-                                atomEvent);
+                log.warning("No results found for {} query of atom {}", atomList.name, atomEvent);
             }
         }
         // index atom
@@ -283,4 +282,25 @@ public class SolrMatcherActor extends UntypedActor {
                         });
         return supervisorStrategy;
     }
+
+    /**
+     * One of the lists of atoms queried for an atom, along with the options for
+     * generating hints from the results.
+     */
+    private static class AtomList {
+        private final String name;
+        private final AtomQuery query;
+        private final boolean suppressHintForAtom;
+        private final boolean suppressHintForMatchedAtoms;
+        private final boolean kneeDetection;
+
+        public AtomList(String name, AtomQuery query, boolean suppressHintForAtom,
+                        boolean suppressHintForMatchedAtoms, boolean kneeDetection) {
+            this.name = name;
+            this.query = query;
+            this.suppressHintForAtom = suppressHintForAtom;
+            this.suppressHintForMatchedAtoms = suppressHintForMatchedAtoms;
+            this.kneeDetection = kneeDetection;
+        }
+    }
 }
@@ -24,8 +24,22 @@ public class SolrMatcherConfig {
     private int maxHints;
     @Value("${matcher.solr.query.maxHintsForCounterparts}")
     private int maxHintsForCounterparts;
+    @Value("${matcher.solr.query.threads:4}")
+    private int queryThreads;
+    @Value("${matcher.solr.bulk.chunkSize:10}")
+    private int bulkChunkSize;
+    @Value("${matcher.solr.bulk.parallelism:2}")
+    private int bulkParallelism;
+    @Value("${matcher.solr.bulk.chunkTimeout:600000}")
+    private long bulkChunkTimeout;
     @Value("${matcher.solr.index.commit}")
     private boolean commitIndexedAtomImmediately;
+    @Value("${matcher.solr.index.batchSize:100}")
+    private int indexBatchSize;
+    @Value("${matcher.solr.index.batchDelay:1000}")
+    private long indexBatchDelay;
+    @Value("${matcher.solr.index.commitWithin:5000}")
+    private int indexCommitWithin;
     @Value("${matcher.solr.query.score.threshold}")
     private float scoreThreshold;
     @Value("${matcher.solr.query.cutAfterIthElbowInScore}")
@@ -49,10 +63,38 @@ public class SolrMatcherConfig {
         return maxHintsForCounterparts;
     }
 
+    public int getQueryThreads() {
+        return queryThreads;
+    }
+
+    public int getBulkChunkSize() {
+        return bulkChunkSize;
+    }
+
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+
+    public long getBulkChunkTimeout() {
+        return bulkChunkTimeout;
+    }
+
     public boolean isCommitIndexedAtomImmediately() {
         return commitIndexedAtomImmediately;
     }
 
+    public int getIndexBatchSize() {
+        return indexBatchSize;
+    }
+
+    public long getIndexBatchDelay() {
+        return indexBatchDelay;
+    }
+
+    public int getIndexCommitWithin() {
+        return indexCommitWithin;
+    }
+
     public String getSolrServerPublicUri() {
         return solrServerPublicUri;
     }
@@ -1,53 +1,86 @@
 package won.matcher.solr.index;
 
-import com.github.jsonldjava.core.JsonLdError;
-import com.github.jsonldjava.core.JsonLdOptions;
-import com.github.jsonldjava.core.JsonLdProcessor;
-import com.github.jsonldjava.utils.JsonUtils;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.HttpClientErrorException;
-import won.matcher.service.common.service.http.HttpService;
 import won.matcher.solr.config.SolrMatcherConfig;
-import won.protocol.model.Coordinate;
 import won.protocol.util.AtomModelWrapper;
-import won.protocol.util.DefaultAtomModelWrapper;
-import won.protocol.vocabulary.WON;
 import won.protocol.vocabulary.WONMATCH;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by hfriedrich on 03.08.2016.
+ * <p>
+ * Adds atoms to the Solr index. The documents are collected and sent in
+ * batches, when a batch is full or at the latest after the configured delay,
+ * and are committed by Solr within the configured time (commitWithin). The
+ * number of indexed atoms and the time needed for each batch are recorded in
+ * the simons {@link #INDEXED_ATOMS_COUNTER} and {@link #INDEX_BATCH_STOPWATCH}.
+ * A batch that could not be sent is queued again and retried with the next
+ * one; if Solr stays unavailable, at most {@link #MAX_PENDING_BATCHES} batches
+ * are kept and the oldest documents are dropped.
  */
 @Component
-@Scope("prototype")
 public class AtomIndexer {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     public static final String SOLR_IS_LOCATION_COORDINATES_FIELD = "is_atom_location";
     public static final String SOLR_SEEKS_LOCATION_COORDINATES_FIELD = "seeks_atom_location";
     public static final String SOLR_SEEKS_SEEKS_LOCATION_COORDINATES_FIELD = "seeksSeeks_atom_location";
+    public static final String INDEXED_ATOMS_COUNTER = "AtomIndexer.indexedAtoms";
+    public static final String INDEX_BATCH_STOPWATCH = "AtomIndexer.indexBatch";
+    public static final String DROPPED_ATOMS_COUNTER = "AtomIndexer.droppedAtoms";
+    private static final int MAX_PENDING_BATCHES = 10;
     // SPARQL query to contruct an atom object out of the dataset, use all graphs
     // that reference "won:Atom"
     private static final String ATOM_INDEX_QUERY = "prefix won: <https://w3id.org/won/core#> construct { ?a ?b ?c .} where { "
                     + "GRAPH ?graph { ?atom a won:Atom. ?a ?b ?c. } }";
     @Autowired
     private SolrMatcherConfig config;
-    @Autowired
-    private HttpService httpService;
+    private DocumentBatch defaultBatch;
+    private DocumentBatch testBatch;
+    private ScheduledExecutorService flushExecutor;
+
+    @PostConstruct
+    private void init() {
+        defaultBatch = new DocumentBatch(new HttpSolrClient.Builder(config.getSolrEndpointUri(false)).build());
+        testBatch = new DocumentBatch(new HttpSolrClient.Builder(config.getSolrEndpointUri(true)).build());
+        flushExecutor = Executors.newSingleThreadScheduledExecutor();
+        // an exception escaping the task would cancel all further flushes
+        flushExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                logger.warn("Error flushing solr index batches", e);
+            }
+        }, config.getIndexBatchDelay(), config.getIndexBatchDelay(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
 
-    public void index(Dataset dataset) throws IOException, JsonLdError {
+    public void index(Dataset dataset) throws IOException {
         // serialize the atom Dataset to jsonld
         Query query = QueryFactory.create(ATOM_INDEX_QUERY);
         try (QueryExecution qexec = QueryExecutionFactory.create(query, dataset)) {
@@ -62,55 +95,108 @@ public class AtomIndexer {
         }
     }
 
-    public void indexAtomModel(Model atomModel, String id, boolean useTestCore) throws IOException, JsonLdError {
-        // create the json from rdf model
-        StringWriter sw = new StringWriter();
-        RDFDataMgr.write(sw, atomModel, Lang.JSONLD);
-        String jsonld = sw.toString();
-        Object jsonObject = JsonUtils.fromString(jsonld);
-        Object frame = JsonUtils.fromString(" {\"@type\": \"" + WON.Atom + "\"} ");
-        JsonLdOptions options = new JsonLdOptions();
-        Map<String, Object> framed = JsonLdProcessor.frame(jsonObject, frame, options);
-        // add the uri of the atom as id field to avoid multiple adding of atoms but
-        // instead allow updates
-        framed.put("id", id);
-        // add latitude and longitude values in one field for Solr spatial queries
-        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomModel, null);
-        Resource atomContentNode = atomModelWrapper.getAtomContentNode();
-        Coordinate atomCoordinate = atomModelWrapper.getLocationCoordinate(atomContentNode);
-        if (atomCoordinate != null) {
-            framed.put(SOLR_IS_LOCATION_COORDINATES_FIELD, String.valueOf(atomCoordinate.getLatitude()) + ","
-                            + String.valueOf(atomCoordinate.getLongitude()));
+    /**
+     * Adds the atom to the batch of documents to be indexed. If the atoms should be
+     * committed immediately, the batch is sent and committed right away.
+     */
+    public void indexAtomModel(Model atomModel, String id, boolean useTestCore) throws IOException {
+        SolrInputDocument document = AtomSolrDocumentFactory.createDocument(atomModel, id);
+        logger.debug("Add atom {} to solr index batch: {}", id, document);
+        DocumentBatch batch = useTestCore ? testBatch : defaultBatch;
+        batch.add(document);
+        if (config.isCommitIndexedAtomImmediately()) {
+            batch.flush();
+            batch.commit();
+        }
+    }
+
+    /**
+     * Sends all documents that have not been sent yet.
+     */
+    public void flush() {
+        defaultBatch.flush();
+        testBatch.flush();
+    }
+
+    /**
+     * The documents not yet sent to one Solr core.
+     */
+    private class DocumentBatch {
+        private final SolrClient solrClient;
+        private List<SolrInputDocument> documents = new ArrayList<>();
+
+        public DocumentBatch(SolrClient solrClient) {
+            this.solrClient = solrClient;
         }
-        for (Resource contentNode : atomModelWrapper.getSeeksNodes()) {
-            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
-            if (coordinate != null) {
-                framed.put(SOLR_SEEKS_LOCATION_COORDINATES_FIELD, String.valueOf(coordinate.getLatitude()) + ","
-                                + String.valueOf(coordinate.getLongitude()));
+
+        public void add(SolrInputDocument document) {
+            List<SolrInputDocument> fullBatch = null;
+            synchronized (this) {
+                documents.add(document);
+                if (documents.size() >= config.getIndexBatchSize()) {
+                    fullBatch = documents;
+                    documents = new ArrayList<>();
+                }
+            }
+            if (fullBatch != null) {
+                send(fullBatch);
             }
         }
-        for (Resource contentNode : atomModelWrapper.getSeeksSeeksNodes()) {
-            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
-            if (coordinate != null) {
-                framed.put(SOLR_SEEKS_SEEKS_LOCATION_COORDINATES_FIELD, String.valueOf(coordinate.getLatitude()) + ","
-                                + String.valueOf(coordinate.getLongitude()));
+
+        public void flush() {
+            List<SolrInputDocument> batch;
+            synchronized (this) {
+                if (documents.isEmpty()) {
+                    return;
+                }
+                batch = documents;
+                documents = new ArrayList<>();
             }
+            send(batch);
         }
-        // write the final json string
-        sw = new StringWriter();
-        JsonUtils.writePrettyPrint(sw, framed);
-        String atomJson = sw.toString();
-        // post the atom to the solr index
-        String indexUri = config.getSolrEndpointUri(useTestCore);
-        indexUri += "update/json/docs";
-        if (config.isCommitIndexedAtomImmediately()) {
-            indexUri += "?commit=" + config.isCommitIndexedAtomImmediately();
+
+        public void commit() {
+            try {
+                solrClient.commit();
+            } catch (IOException | SolrServerException | SolrException e) {
+                logger.info("Error committing solr index: {}", e.getMessage());
+            }
+        }
+
+        private void send(List<SolrInputDocument> batch) {
+            Split split = SimonManager.getStopwatch(INDEX_BATCH_STOPWATCH).start();
+            try {
+                solrClient.add(batch, config.getIndexCommitWithin());
+                long millis = TimeUnit.NANOSECONDS.toMillis(split.stop().runningFor());
+                SimonManager.getCounter(INDEXED_ATOMS_COUNTER).increase(batch.size());
+                logger.info("Indexed {} atoms in {} ms ({} atoms/s)", new Object[] { batch.size(), millis,
+                                millis > 0 ? batch.size() * 1000 / millis : batch.size() * 1000 });
+            } catch (Exception e) {
+                logger.warn("Error indexing {} atoms with solr, queueing them again: {}", batch.size(),
+                                e.getMessage());
+                logger.debug("Error indexing atoms", e);
+                requeue(batch);
+            } finally {
+                split.stop();
+            }
         }
-        logger.debug("Post atom to solr index. \n Solr URI: {} \n Atom (JSON): {}", indexUri, atomJson);
-        try {
-            httpService.postJsonRequest(indexUri, atomJson);
-        } catch (HttpClientErrorException e) {
-            logger.info("Error indexing atom with solr. \n Solr URI: {} \n Atom (JSON): {}", indexUri, atomJson);
+
+        /**
+         * Puts the documents of a failed batch in front of the documents added since,
+         * so later updates of the same atom are still sent after them.
+         */
+        private synchronized void requeue(List<SolrInputDocument> batch) {
+            List<SolrInputDocument> pending = new ArrayList<>(batch.size() + documents.size());
+            pending.addAll(batch);
+            pending.addAll(documents);
+            int maxPending = MAX_PENDING_BATCHES * config.getIndexBatchSize();
+            if (pending.size() > maxPending) {
+                int dropped = pending.size() - maxPending;
+                logger.warn("Dropping {} atoms that could not be indexed with solr", dropped);
+                SimonManager.getCounter(DROPPED_ATOMS_COUNTER).increase(dropped);
+                pending = new ArrayList<>(pending.subList(dropped, pending.size()));
+            }
+            documents = pending;
         }
     }
 }
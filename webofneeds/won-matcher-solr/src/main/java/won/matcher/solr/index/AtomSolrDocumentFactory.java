@@ -0,0 +1,146 @@
+package won.matcher.solr.index;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.solr.common.SolrInputDocument;
+
+import won.protocol.model.Coordinate;
+import won.protocol.util.DefaultAtomModelWrapper;
+import won.protocol.vocabulary.WON;
+
+/**
+ * Creates the Solr document of an atom directly from its (normalized) model.
+ * <p>
+ * The field names are the same as those Solr generates when the atom is posted
+ * to <code>update/json/docs</code> as JSON-LD framed by type won:Atom: the
+ * nested properties of the atom are flattened into fields named by their path
+ * starting at <code>@graph</code>, joined by '.', with all characters other
+ * than word characters, '-' and '.' replaced by '_'. Node IRIs end up in
+ * <code>._id</code> fields (blank node labels are left out, they carry no
+ * information), node types in <code>._type</code> fields, strings and native
+ * JSON values (booleans, integers, doubles) in the property field itself and
+ * other literals in <code>._value</code> fields along with their
+ * <code>._type</code> or <code>._language</code>.
+ */
+public class AtomSolrDocumentFactory {
+    private static final String ROOT_FIELD = "_graph";
+
+    public static SolrInputDocument createDocument(Model atomModel, String id) {
+        SolrInputDocument document = new SolrInputDocument();
+        // add the uri of the atom as id field to avoid multiple adding of atoms but
+        // instead allow updates
+        document.setField("id", id);
+        Set<Resource> path = new HashSet<>();
+        atomModel.listSubjectsWithProperty(RDF.type, WON.Atom)
+                        .forEachRemaining(atom -> addNode(document, ROOT_FIELD, atom, path));
+        // add latitude and longitude values in one field for Solr spatial queries
+        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomModel, null);
+        Coordinate atomCoordinate = atomModelWrapper.getLocationCoordinate(atomModelWrapper.getAtomContentNode());
+        if (atomCoordinate != null) {
+            document.setField(AtomIndexer.SOLR_IS_LOCATION_COORDINATES_FIELD, toFieldValue(atomCoordinate));
+        }
+        for (Resource contentNode : atomModelWrapper.getSeeksNodes()) {
+            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
+            if (coordinate != null) {
+                document.setField(AtomIndexer.SOLR_SEEKS_LOCATION_COORDINATES_FIELD, toFieldValue(coordinate));
+            }
+        }
+        for (Resource contentNode : atomModelWrapper.getSeeksSeeksNodes()) {
+            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
+            if (coordinate != null) {
+                document.setField(AtomIndexer.SOLR_SEEKS_SEEKS_LOCATION_COORDINATES_FIELD, toFieldValue(coordinate));
+            }
+        }
+        return document;
+    }
+
+    private static void addNode(SolrInputDocument document, String field, Resource node, Set<Resource> path) {
+        if (node.isURIResource()) {
+            document.addField(field + "._id", node.getURI());
+        }
+        path.add(node);
+        StmtIterator it = node.listProperties();
+        try {
+            while (it.hasNext()) {
+                Statement stmt = it.next();
+                RDFNode object = stmt.getObject();
+                if (stmt.getPredicate().equals(RDF.type) && object.isURIResource()) {
+                    document.addField(field + "._type", object.asResource().getURI());
+                    continue;
+                }
+                String propertyField = field + "." + toFieldName(stmt.getPredicate().getURI());
+                if (object.isLiteral()) {
+                    addLiteral(document, propertyField, object.asLiteral());
+                } else {
+                    Resource resource = object.asResource();
+                    if (path.contains(resource) || !resource.listProperties().hasNext()) {
+                        // only referenced, not embedded
+                        if (resource.isURIResource()) {
+                            document.addField(propertyField + "._id", resource.getURI());
+                        }
+                    } else {
+                        addNode(document, propertyField, resource, path);
+                    }
+                }
+            }
+        } finally {
+            it.close();
+        }
+        path.remove(node);
+    }
+
+    private static void addLiteral(SolrInputDocument document, String field, Literal literal) {
+        String language = literal.getLanguage();
+        String datatype = literal.getDatatypeURI();
+        if (language != null && !language.isEmpty()) {
+            document.addField(field + "._language", language);
+            document.addField(field + "._value", literal.getLexicalForm());
+        } else if (datatype == null || XSDDatatype.XSDstring.getURI().equals(datatype)) {
+            document.addField(field, literal.getLexicalForm());
+        } else if (isNative(literal)) {
+            document.addField(field, literal.getValue());
+        } else {
+            document.addField(field + "._type", datatype);
+            document.addField(field + "._value", literal.getLexicalForm());
+        }
+    }
+
+    /**
+     * Indicates if JSON-LD represents the literal as a native JSON value.
+     */
+    private static boolean isNative(Literal literal) {
+        String datatype = literal.getDatatypeURI();
+        try {
+            if (XSDDatatype.XSDboolean.getURI().equals(datatype)) {
+                return "true".equals(literal.getLexicalForm()) || "false".equals(literal.getLexicalForm());
+            }
+            if (XSDDatatype.XSDinteger.getURI().equals(datatype)) {
+                return literal.getLexicalForm().matches("^[+-]?[0-9]+$");
+            }
+            if (XSDDatatype.XSDdouble.getURI().equals(datatype)) {
+                Double.parseDouble(literal.getLexicalForm());
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return false;
+    }
+
+    private static String toFieldName(String uri) {
+        return uri.replaceAll("[^\\w\\-\\.]", "_");
+    }
+
+    private static String toFieldValue(Coordinate coordinate) {
+        return String.valueOf(coordinate.getLatitude()) + "," + String.valueOf(coordinate.getLongitude());
+    }
+}
@@ -0,0 +1,37 @@
+package won.matcher.solr.query;
+
+import java.util.Arrays;
+
+/**
+ * One Solr query for matching an atom: the query string, the maximum number of
+ * results and the filter queries.
+ */
+public class AtomQuery {
+    private final String queryString;
+    private final int maxHints;
+    private final String[] filterQueries;
+
+    public AtomQuery(String queryString, int maxHints, String... filterQueries) {
+        this.queryString = queryString;
+        this.maxHints = maxHints;
+        this.filterQueries = filterQueries;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public int getMaxHints() {
+        return maxHints;
+    }
+
+    public String[] getFilterQueries() {
+        return filterQueries;
+    }
+
+    @Override
+    public String toString() {
+        return "AtomQuery [queryString=" + queryString + ", maxHints=" + maxHints + ", filterQueries="
+                        + Arrays.toString(filterQueries) + "]";
+    }
+}
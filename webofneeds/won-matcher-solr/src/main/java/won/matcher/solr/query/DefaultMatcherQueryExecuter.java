@@ -17,8 +17,15 @@ import won.matcher.solr.hints.HintBuilder;
 import won.matcher.solr.query.factory.MatchingContextQueryFactory;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by hfriedrich on 12.08.2016.
@@ -29,10 +36,57 @@ public class DefaultMatcherQueryExecuter implements SolrMatcherQueryExecutor {
     @Autowired
     SolrMatcherConfig config;
     SolrClient solrClient;
+    ExecutorService queryExecutorService;
 
     @PostConstruct
     private void init() {
         solrClient = new HttpSolrClient.Builder(config.getSolrEndpointUri(false)).build();
+        queryExecutorService = Executors.newFixedThreadPool(config.getQueryThreads());
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        queryExecutorService.shutdown();
+    }
+
+    @Override
+    public List<SolrDocumentList> executeAtomQueries(List<AtomQuery> queries)
+                    throws IOException, SolrServerException {
+        List<SolrDocumentList> results = new ArrayList<>(queries.size());
+        if (queries.size() == 1) {
+            AtomQuery query = queries.get(0);
+            results.add(executeAtomQuery(query.getQueryString(), query.getMaxHints(), null,
+                            query.getFilterQueries()));
+            return results;
+        }
+        List<Future<SolrDocumentList>> futures = new ArrayList<>(queries.size());
+        for (AtomQuery query : queries) {
+            futures.add(queryExecutorService.submit(() -> executeAtomQuery(query.getQueryString(),
+                            query.getMaxHints(), null, query.getFilterQueries())));
+        }
+        try {
+            for (Future<SolrDocumentList> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for query results", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SolrServerException) {
+                throw (SolrServerException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SolrServerException(cause);
+        }
+        return results;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package won.matcher.solr.query;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrDocumentList;
@@ -12,4 +13,12 @@ import org.apache.solr.common.params.SolrParams;
 public interface SolrMatcherQueryExecutor {
     SolrDocumentList executeAtomQuery(String queryString, int maxHints, SolrParams params, String... filterQueries)
                     throws IOException, SolrServerException;
+
+    /**
+     * Executes several queries concurrently.
+     *
+     * @return the results in the order of the queries, null for a query that did
+     * not return results
+     */
+    List<SolrDocumentList> executeAtomQueries(List<AtomQuery> queries) throws IOException, SolrServerException;
 }
@@ -54,10 +54,18 @@ public class BasicAtomQueryFactory extends AtomDatasetQueryFactory {
     protected DefaultAtomModelWrapper atomModelWrapper;
 
     public BasicAtomQueryFactory(final Dataset atom) {
-        super(atom);
+        this(new DefaultAtomModelWrapper(atom));
+    }
+
+    /**
+     * Creates the query factory for an already wrapped atom, so that several
+     * queries for the same atom can share the wrapper.
+     */
+    public BasicAtomQueryFactory(final DefaultAtomModelWrapper atomModelWrapper) {
+        super(atomModelWrapper.getDataset());
         contentFactories = new ArrayList<>();
         locationFactories = new ArrayList<>();
-        atomModelWrapper = new DefaultAtomModelWrapper(atom);
+        this.atomModelWrapper = atomModelWrapper;
     }
 
     public void addTermsToTitleQuery(String terms, MatcherAtomContentPropertyType fieldType, double boost) {
@@ -17,8 +17,11 @@ public class CreationDateQueryFactory extends AtomDatasetQueryFactory {
     private ZonedDateTime endDate;
 
     public CreationDateQueryFactory(Dataset atomDataset, long timeWindow, TemporalUnit unit) {
-        super(atomDataset);
-        AtomModelWrapper atomModelWrapper = new AtomModelWrapper(atomDataset);
+        this(new AtomModelWrapper(atomDataset), timeWindow, unit);
+    }
+
+    public CreationDateQueryFactory(AtomModelWrapper atomModelWrapper, long timeWindow, TemporalUnit unit) {
+        super(atomModelWrapper.getDataset());
         ZonedDateTime creationDate = atomModelWrapper.getCreationDate();
         startDate = creationDate.plus(timeWindow, ChronoUnit.MINUTES);
         startDate = creationDate.minus(timeWindow, unit);
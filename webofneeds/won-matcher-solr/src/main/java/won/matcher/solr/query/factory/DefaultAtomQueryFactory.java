@@ -6,13 +6,18 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Resource;
 
 import won.matcher.solr.utils.MatcherAtomContentPropertyType;
+import won.protocol.util.DefaultAtomModelWrapper;
 
 /**
  * Created by hfriedrich on 03.08.2016.
  */
 public class DefaultAtomQueryFactory extends BasicAtomQueryFactory {
     public DefaultAtomQueryFactory(final Dataset atom) {
-        super(atom);
+        this(new DefaultAtomModelWrapper(atom));
+    }
+
+    public DefaultAtomQueryFactory(final DefaultAtomModelWrapper atomModelWrapper) {
+        super(atomModelWrapper);
         // add "is" terms/location to "seeks" part of the query and vice versa
         // add "seeks" terms to the "seeks/seeks" part of the query and vice versa
         Resource atomContentNode = atomModelWrapper.getAtomContentNode();
@@ -4,6 +4,7 @@ import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Resource;
 
 import won.matcher.solr.utils.MatcherAtomContentPropertyType;
+import won.protocol.util.DefaultAtomModelWrapper;
 
 /**
  * Created by hfriedrich on 29.08.2017.
@@ -13,7 +14,11 @@ public class WhatsAroundQueryFactory extends BasicAtomQueryFactory {
     private static final String ATOM_TYPE_DUMMY_FIELD_CONTENT = "http\\://purl.org/webofneeds/model#Atom";
 
     public WhatsAroundQueryFactory(Dataset atom) {
-        super(atom);
+        this(new DefaultAtomModelWrapper(atom));
+    }
+
+    public WhatsAroundQueryFactory(DefaultAtomModelWrapper atomModelWrapper) {
+        super(atomModelWrapper);
         // add "is" terms/location to "seeks" part of the query and vice versa
         // add "seeks" terms to the "seeks/seeks" part of the query and vice versa
         Resource atomContentNode = atomModelWrapper.getAtomContentNode();
@@ -2,6 +2,8 @@ package won.matcher.solr.query.factory;
 
 import org.apache.jena.query.Dataset;
 
+import won.protocol.util.DefaultAtomModelWrapper;
+
 /**
  * Created by hfriedrich on 29.08.2017.
  */
@@ -10,7 +12,11 @@ public class WhatsNewQueryFactory extends BasicAtomQueryFactory {
     private static final String ATOM_TYPE_DUMMY_FIELD_CONTENT = "http\\://purl.org/webofneeds/model#Atom";
 
     public WhatsNewQueryFactory(Dataset atom) {
-        super(atom);
+        this(new DefaultAtomModelWrapper(atom));
+    }
+
+    public WhatsNewQueryFactory(DefaultAtomModelWrapper atomModelWrapper) {
+        super(atomModelWrapper);
         // TODO: Implement a time based matcher/filter/queryfactory
         // add "is" terms/location to "seeks" part of the query and vice versa
         // add "seeks" terms to the "seeks/seeks" part of the query and vice versa
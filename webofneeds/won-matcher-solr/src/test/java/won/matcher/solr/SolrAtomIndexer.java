@@ -45,6 +45,7 @@ public class SolrAtomIndexer {
             }
             atomModel = new AtomModelWrapper(atomProducer.create()).copyAtomModel(AtomGraphType.ATOM);
         }
+        indexer.flush();
         System.out.println("Indexed " + atoms + " atoms.");
         System.exit(0);
     }
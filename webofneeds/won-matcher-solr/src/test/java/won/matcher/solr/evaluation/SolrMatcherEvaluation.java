@@ -127,6 +127,7 @@ public class SolrMatcherEvaluation {
         for (Dataset atom : atomFileDatasetMap.values()) {
             atomIndexer.indexAtomModel(atom.getDefaultModel(), createAtomId(DatasetFactory.create(atom)), true);
         }
+        atomIndexer.flush();
     }
 
     public void buildConnectionTensor() throws IOException {
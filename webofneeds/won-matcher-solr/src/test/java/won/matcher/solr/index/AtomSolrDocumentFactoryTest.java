@@ -0,0 +1,175 @@
+package won.matcher.solr.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jsonldjava.core.JsonLdError;
+import com.github.jsonldjava.core.JsonLdOptions;
+import com.github.jsonldjava.core.JsonLdProcessor;
+import com.github.jsonldjava.utils.JsonUtils;
+
+import won.protocol.model.Coordinate;
+import won.protocol.util.AtomModelWrapper;
+import won.protocol.util.DefaultAtomModelWrapper;
+import won.protocol.vocabulary.WON;
+
+/**
+ * Checks that the documents built by {@link AtomSolrDocumentFactory} have the
+ * same fields and values as the ones Solr created from the atoms posted as
+ * framed JSON-LD to <code>update/json/docs</code>, which the existing queries
+ * rely on.
+ */
+public class AtomSolrDocumentFactoryTest {
+    private static final String ATOM_INDEX_QUERY = "prefix won: <https://w3id.org/won/core#> construct { ?a ?b ?c .} where { "
+                    + "GRAPH ?graph { ?atom a won:Atom. ?a ?b ?c. } }";
+
+    private static Model loadNormalizedAtomModel(String resource) throws IOException {
+        Dataset dataset = DatasetFactory.createGeneral();
+        try (InputStream in = AtomSolrDocumentFactoryTest.class.getResourceAsStream(resource)) {
+            RDFDataMgr.read(dataset, in, Lang.TRIG);
+        }
+        try (QueryExecution qexec = QueryExecutionFactory.create(ATOM_INDEX_QUERY, dataset)) {
+            return new AtomModelWrapper(qexec.execConstruct(), null).normalizeAtomModel();
+        }
+    }
+
+    private static String getAtomUri(Model atomModel) {
+        return atomModel.listSubjectsWithProperty(RDF.type, WON.Atom).next().getURI();
+    }
+
+    /**
+     * The fields Solr used to create: the atom framed as JSON-LD, flattened to
+     * fields named by their path ($FQN:/**), with the field names mutated like the
+     * FieldNameMutatingUpdateProcessorFactory in the core's solrconfig.xml does.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> fieldsFromFramedJsonLd(Model atomModel, String id)
+                    throws IOException, JsonLdError {
+        StringWriter sw = new StringWriter();
+        RDFDataMgr.write(sw, atomModel, Lang.JSONLD);
+        Object frame = JsonUtils.fromString(" {\"@type\": \"" + WON.Atom + "\"} ");
+        Map<String, Object> framed = JsonLdProcessor.frame(JsonUtils.fromString(sw.toString()), frame,
+                        new JsonLdOptions());
+        // the context is not part of the atom
+        framed.remove("@context");
+        framed.put("id", id);
+        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomModel, null);
+        Coordinate atomCoordinate = atomModelWrapper.getLocationCoordinate(atomModelWrapper.getAtomContentNode());
+        if (atomCoordinate != null) {
+            framed.put(AtomIndexer.SOLR_IS_LOCATION_COORDINATES_FIELD, String.valueOf(atomCoordinate.getLatitude())
+                            + "," + String.valueOf(atomCoordinate.getLongitude()));
+        }
+        for (Resource contentNode : atomModelWrapper.getSeeksNodes()) {
+            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
+            if (coordinate != null) {
+                framed.put(AtomIndexer.SOLR_SEEKS_LOCATION_COORDINATES_FIELD, String.valueOf(coordinate.getLatitude())
+                                + "," + String.valueOf(coordinate.getLongitude()));
+            }
+        }
+        for (Resource contentNode : atomModelWrapper.getSeeksSeeksNodes()) {
+            Coordinate coordinate = atomModelWrapper.getLocationCoordinate(contentNode);
+            if (coordinate != null) {
+                framed.put(AtomIndexer.SOLR_SEEKS_SEEKS_LOCATION_COORDINATES_FIELD,
+                                String.valueOf(coordinate.getLatitude()) + ","
+                                                + String.valueOf(coordinate.getLongitude()));
+            }
+        }
+        Map<String, List<String>> fields = new TreeMap<>();
+        flatten(fields, null, framed);
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(Map<String, List<String>> fields, String path, Object value) {
+        if (value instanceof Map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                String key = entry.getKey().replaceAll("[^\\w\\-\\.]", "_");
+                flatten(fields, path == null ? key : path + "." + key, entry.getValue());
+            }
+        } else if (value instanceof List) {
+            for (Object element : (List<Object>) value) {
+                flatten(fields, path, element);
+            }
+        } else if (!(path.endsWith("._id") && value.toString().startsWith("_:"))) {
+            // blank node labels are left out by the factory
+            fields.computeIfAbsent(path, p -> new ArrayList<>()).add(toComparableValue(value));
+        }
+    }
+
+    private static Map<String, List<String>> fieldsOf(SolrInputDocument document) {
+        Map<String, List<String>> fields = new TreeMap<>();
+        for (SolrInputField field : document) {
+            for (Object value : field.getValues()) {
+                fields.computeIfAbsent(field.getName(), p -> new ArrayList<>()).add(toComparableValue(value));
+            }
+        }
+        return fields;
+    }
+
+    private static String toComparableValue(Object value) {
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
+    private static void sortValues(Map<String, List<String>> fields) {
+        fields.values().forEach(Collections::sort);
+    }
+
+    private void assertSameFieldsAsFramedJsonLd(String resource) throws IOException, JsonLdError {
+        Model atomModel = loadNormalizedAtomModel(resource);
+        String id = getAtomUri(atomModel);
+        Map<String, List<String>> expected = fieldsFromFramedJsonLd(atomModel, id);
+        Map<String, List<String>> actual = fieldsOf(AtomSolrDocumentFactory.createDocument(atomModel, id));
+        sortValues(expected);
+        sortValues(actual);
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void atom1HasSameFieldsAsFramedJsonLd() throws IOException, JsonLdError {
+        assertSameFieldsAsFramedJsonLd("/atommodel/atom1.trig");
+    }
+
+    @Test
+    public void atom2HasSameFieldsAsFramedJsonLd() throws IOException, JsonLdError {
+        assertSameFieldsAsFramedJsonLd("/atommodel/atom2.trig");
+    }
+
+    @Test
+    public void containsFieldsUsedByQueries() throws IOException {
+        Model atomModel = loadNormalizedAtomModel("/atommodel/atom1.trig");
+        String id = getAtomUri(atomModel);
+        SolrInputDocument document = AtomSolrDocumentFactory.createDocument(atomModel, id);
+        Assert.assertEquals(id, document.getFieldValue("id"));
+        Assert.assertEquals("Offering tennis lessons",
+                        document.getFieldValue("_graph.http___purl.org_dc_elements_1.1_title"));
+        Assert.assertEquals(WON.ATOM_STATE_ACTIVE.getURI(),
+                        document.getFieldValue("_graph.https___w3id.org_won_core_atomState._id"));
+        Assert.assertEquals(String.valueOf(48.225073f) + "," + String.valueOf(16.358398f),
+                        document.getFieldValue(AtomIndexer.SOLR_IS_LOCATION_COORDINATES_FIELD));
+    }
+}
@@ -0,0 +1,164 @@
+package won.matcher.solr.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.SolrParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import won.matcher.solr.query.factory.AtomStateQueryFactory;
+import won.matcher.solr.query.factory.BooleanQueryFactory;
+import won.matcher.solr.query.factory.CreationDateQueryFactory;
+import won.matcher.solr.query.factory.DefaultAtomQueryFactory;
+import won.matcher.solr.query.factory.HasFlagQueryFactory;
+import won.matcher.solr.query.factory.WhatsAroundQueryFactory;
+import won.protocol.util.AtomModelWrapper;
+import won.protocol.util.DefaultAtomModelWrapper;
+import won.protocol.vocabulary.WONMATCH;
+
+/**
+ * Measures the latency of matching one atom in the Solr matcher: building the
+ * queries for the three atom lists and executing them. Compares the previous
+ * approach (re-creating the query factories for each list and sending the
+ * requests one after the other) with the current one (one atom wrapper per
+ * atom, concurrent requests). The Solr server is simulated by an executor that
+ * waits for the specified round trip time, so the benchmark needs no running
+ * Solr instance. Run the main method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolrMatcherQueryBenchmark {
+    @Param({ "0", "5", "20" })
+    public long solrLatencyMillis;
+    private Dataset dataset;
+    private DefaultMatcherQueryExecuter queryExecutor;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SolrMatcherQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        dataset = DatasetFactory.createGeneral();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("atommodel/atom1.trig")) {
+            RDFDataMgr.read(dataset, in, Lang.TRIG);
+        }
+        queryExecutor = new SimulatedQueryExecutor(solrLatencyMillis);
+        queryExecutor.queryExecutorService = Executors.newFixedThreadPool(4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queryExecutor.queryExecutorService.shutdown();
+    }
+
+    @Benchmark
+    public List<SolrDocumentList> matchAtom() throws IOException, SolrServerException {
+        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(dataset);
+        atomModelWrapper.flag(WONMATCH.NoHintForMe);
+        atomModelWrapper.flag(WONMATCH.NoHintForCounterpart);
+        atomModelWrapper.flag(WONMATCH.WhatsAround);
+        atomModelWrapper.flag(WONMATCH.WhatsNew);
+        String queryString = new DefaultAtomQueryFactory(atomModelWrapper).createQuery();
+        String whatsAroundQueryString = new WhatsAroundQueryFactory(atomModelWrapper).createQuery();
+        List<String> defaultFilterQueries = new LinkedList<>();
+        defaultFilterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
+        defaultFilterQueries.add(new CreationDateQueryFactory(atomModelWrapper, 1, ChronoUnit.MONTHS).createQuery());
+        List<AtomQuery> queries = new ArrayList<>(3);
+        queries.add(new AtomQuery(queryString, 20,
+                        filters(defaultFilterQueries, HasFlagQueryFactory.FLAGS.NO_HINT_FOR_COUNTERPART)));
+        queries.add(new AtomQuery(queryString, 50,
+                        filters(defaultFilterQueries, HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)));
+        queries.add(new AtomQuery(whatsAroundQueryString, 50,
+                        filters(defaultFilterQueries, HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)));
+        return queryExecutor.executeAtomQueries(queries);
+    }
+
+    @Benchmark
+    public List<SolrDocumentList> legacyMatchAtom() throws IOException, SolrServerException {
+        AtomModelWrapper atomModelWrapper = new AtomModelWrapper(dataset);
+        atomModelWrapper.flag(WONMATCH.NoHintForMe);
+        atomModelWrapper.flag(WONMATCH.NoHintForCounterpart);
+        atomModelWrapper.flag(WONMATCH.WhatsAround);
+        atomModelWrapper.flag(WONMATCH.WhatsNew);
+        String queryString = new DefaultAtomQueryFactory(dataset).createQuery();
+        List<SolrDocumentList> results = new ArrayList<>(3);
+        results.add(queryExecutor.executeAtomQuery(queryString, 20, null,
+                        filters(legacyDefaultFilterQueries(), HasFlagQueryFactory.FLAGS.NO_HINT_FOR_COUNTERPART)));
+        results.add(queryExecutor.executeAtomQuery(queryString, 50, null,
+                        filters(legacyDefaultFilterQueries(), HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)));
+        queryString = new WhatsAroundQueryFactory(dataset).createQuery();
+        results.add(queryExecutor.executeAtomQuery(queryString, 50, null,
+                        filters(legacyDefaultFilterQueries(), HasFlagQueryFactory.FLAGS.NO_HINT_FOR_ME)));
+        return results;
+    }
+
+    private List<String> legacyDefaultFilterQueries() {
+        List<String> filterQueries = new LinkedList<>();
+        filterQueries.add(new AtomStateQueryFactory(dataset).createQuery());
+        filterQueries.add(new CreationDateQueryFactory(dataset, 1, ChronoUnit.MONTHS).createQuery());
+        return filterQueries;
+    }
+
+    private static String[] filters(List<String> defaultFilterQueries, HasFlagQueryFactory.FLAGS excludedFlag) {
+        List<String> filterQueries = new LinkedList<>(defaultFilterQueries);
+        filterQueries.add(new BooleanQueryFactory(BooleanQueryFactory.BooleanOperator.NOT,
+                        new HasFlagQueryFactory(excludedFlag)).createQuery());
+        return filterQueries.toArray(new String[filterQueries.size()]);
+    }
+
+    /**
+     * Answers each query with an empty result after the specified time.
+     */
+    private static class SimulatedQueryExecutor extends DefaultMatcherQueryExecuter {
+        private final long latencyMillis;
+
+        public SimulatedQueryExecutor(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public SolrDocumentList executeAtomQuery(String queryString, int maxHints, SolrParams params,
+                        String... filterQueries) throws IOException {
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            return new SolrDocumentList();
+        }
+    }
+}
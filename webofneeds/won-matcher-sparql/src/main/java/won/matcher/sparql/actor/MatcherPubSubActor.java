@@ -30,6 +30,9 @@ import won.matcher.service.common.event.BulkAtomEvent;
 import won.matcher.service.common.event.HintEvent;
 import won.matcher.service.common.event.LoadAtomEvent;
 import won.matcher.service.common.event.AtomEvent;
+import won.matcher.service.common.event.AtomEventsProcessedEvent;
+import won.matcher.service.common.event.MatcherBacklogEvent;
+import won.matcher.service.common.mailbox.AtomEventBacklog;
 import won.matcher.service.common.spring.SpringExtension;
 import won.matcher.sparql.config.SparqlMatcherConfig;
 
@@ -38,7 +41,10 @@ import won.matcher.sparql.config.SparqlMatcherConfig;
  * the PubSub Topic to receive atom events from the matching service and
  * forwards them to the actual matcher implementation (e.g. SolrMatcherActor)
  * for hint generation. Then gets back the hints from the matcher implementation
- * and publishes them to the PubSub Topic of hints.
+ * and publishes them to the PubSub Topic of hints. Atom events received in bulk
+ * or generated by crawling and rematching are queued in an
+ * {@link AtomEventBacklog} and forwarded in chunks, so that they can't delay
+ * the atom events pushed by won nodes.
  */
 @Component
 @Scope("prototype")
@@ -54,6 +60,7 @@ public class MatcherPubSubActor extends UntypedActor {
     private boolean atomsUpdateRequestReceived = false;
     private Properties appStateProps = new Properties();
     private Optional<Cancellable> scheduledTick = Optional.empty();
+    private AtomEventBacklog atomEventBacklog;
 
     @Override
     public void preStart() throws IOException {
@@ -62,6 +69,10 @@ public class MatcherPubSubActor extends UntypedActor {
         pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(AtomEvent.class.getName(), getSelf()), getSelf());
         pubSubMediator.tell(new DistributedPubSubMediator.Subscribe(BulkAtomEvent.class.getName(), getSelf()),
                         getSelf());
+        // atom events received in bulk are passed to the matcher workers in chunks, so
+        // that some workers are always available for atom events pushed by won nodes
+        atomEventBacklog = new AtomEventBacklog(config.getBulkChunkSize(), config.getBulkParallelism(),
+                        config.getBulkChunkTimeout());
         // create the querying and indexing actors that do the actual work
         matcherActor = getContext().actorOf(SpringExtension.SpringExtProvider.get(getContext().system())
                         .fromConfigProps(SparqlMatcherActor.class), "SparqlMatcherPool");
@@ -133,6 +144,12 @@ public class MatcherPubSubActor extends UntypedActor {
     @Override
     public void onReceive(Object o) throws Exception {
         if (o.equals(TICK)) {
+            int expiredChunks = atomEventBacklog.expireChunks();
+            if (expiredChunks > 0) {
+                log.warning("{} chunks of atom events were not processed in time, queue them again", expiredChunks);
+                dispatchBacklog();
+            }
+            publishBacklog();
             if (!atomsUpdateRequestReceived) {
                 // request missing atom events from matching service while this matcher was not
                 // available
@@ -163,7 +180,12 @@ public class MatcherPubSubActor extends UntypedActor {
                     saveLastSeenAtomDate();
                 }
             }
-            matcherActor.tell(atomEvent, getSelf());
+            if (AtomEventBacklog.isBackfill(atomEvent)) {
+                atomEventBacklog.add(atomEvent);
+                dispatchBacklog();
+            } else {
+                matcherActor.tell(atomEvent, getSelf());
+            }
         } else if (o instanceof BulkAtomEvent) {
             // receiving a bulk atom event means this is the answer for the request of atom
             // updates
@@ -178,7 +200,18 @@ public class MatcherPubSubActor extends UntypedActor {
                                     String.valueOf(atomEvent.getCrawlDate()));
                     saveLastSeenAtomDate();
                 }
-                matcherActor.tell(atomEvent, getSelf());
+            }
+            atomEventBacklog.addAll(bulkAtomEvent);
+            dispatchBacklog();
+        } else if (o instanceof AtomEventsProcessedEvent) {
+            AtomEventsProcessedEvent processedEvent = (AtomEventsProcessedEvent) o;
+            if (!atomEventBacklog.chunkProcessed(processedEvent.getChunkId())) {
+                log.info("Ignore late report {}, the chunk has been queued again", processedEvent);
+            }
+            dispatchBacklog();
+            if (atomEventBacklog.isEmpty()) {
+                log.info("Processed all queued atom events");
+                publishBacklog();
             }
         } else if (o instanceof HintEvent) {
             HintEvent hintEvent = (HintEvent) o;
@@ -196,6 +229,24 @@ public class MatcherPubSubActor extends UntypedActor {
         }
     }
 
+    private void dispatchBacklog() {
+        for (BulkAtomEvent chunk : atomEventBacklog.nextChunks()) {
+            matcherActor.tell(chunk, getSelf());
+        }
+    }
+
+    /**
+     * Reports the number of atom events still to be processed, so that crawling and
+     * rematching can wait until the matcher has caught up.
+     */
+    private void publishBacklog() {
+        MatcherBacklogEvent backlogEvent = new MatcherBacklogEvent(atomEventBacklog.getPendingCount(),
+                        atomEventBacklog.getProcessedCount());
+        log.debug("Publish matcher backlog: {}", backlogEvent);
+        pubSubMediator.tell(new DistributedPubSubMediator.Publish(backlogEvent.getClass().getName(), backlogEvent),
+                        getSelf());
+    }
+
     @Override
     public SupervisorStrategy supervisorStrategy() {
         SupervisorStrategy supervisorStrategy = new OneForOneStrategy(0, Duration.Zero(),
@@ -13,6 +13,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -62,6 +63,7 @@ import akka.event.LoggingAdapter;
 import akka.japi.Function;
 import scala.concurrent.duration.Duration;
 import won.matcher.service.common.event.AtomEvent;
+import won.matcher.service.common.event.AtomEventsProcessedEvent;
 import won.matcher.service.common.event.AtomHintEvent;
 import won.matcher.service.common.event.BulkAtomEvent;
 import won.matcher.service.common.event.BulkHintEvent;
@@ -111,11 +113,7 @@ public class SparqlMatcherActor extends UntypedActor {
                 }
             } else if (o instanceof BulkAtomEvent) {
                 eventTypeForLogging = "BulkAtomEvent";
-                log.info("received bulk atom event, processing {} atom events ...",
-                                ((BulkAtomEvent) o).getAtomEvents().size());
-                for (AtomEvent event : ((BulkAtomEvent) o).getAtomEvents()) {
-                    processActiveAtomEvent(event);
-                }
+                processBulkAtomEvent((BulkAtomEvent) o);
             } else {
                 eventTypeForLogging = "unhandled";
                 unhandled(o);
@@ -130,6 +128,31 @@ public class SparqlMatcherActor extends UntypedActor {
         }
     }
 
+    /**
+     * Processes the atom events of the bulk one after the other and reports to the
+     * sender when done, even if some of them failed.
+     */
+    protected void processBulkAtomEvent(BulkAtomEvent bulkAtomEvent) {
+        log.info("received bulk atom event, processing {} atom events ...", bulkAtomEvent.getAtomEvents().size());
+        for (AtomEvent atomEvent : bulkAtomEvent.getAtomEvents()) {
+            try {
+                if (atomEvent.getEventType().equals(AtomEvent.TYPE.ACTIVE)) {
+                    processActiveAtomEvent(atomEvent);
+                } else if (atomEvent.getEventType().equals(AtomEvent.TYPE.INACTIVE)) {
+                    processInactiveAtomEvent(atomEvent);
+                }
+            } catch (Exception e) {
+                log.info(String.format(
+                                "Caught exception when processing AtomEvent %s of bulk. More info on loglevel 'debug'",
+                                atomEvent.getUri()));
+                log.debug("caught exception", e);
+            }
+        }
+        getSender().tell(
+                        new AtomEventsProcessedEvent(bulkAtomEvent.getChunkId(), bulkAtomEvent.getAtomEvents().size()),
+                        getSelf());
+    }
+
     protected void processInactiveAtomEvent(AtomEvent atomEvent) throws IOException, JsonLdError {
         log.info("Received inactive atom.");
     }
@@ -382,25 +405,26 @@ public class SparqlMatcherActor extends UntypedActor {
             }
             return Stream.empty();
         }
-        // load data in parallel
-        return foundUris.parallelStream().map(foundAtomUri -> {
-            try {
-                // download the linked data and return a new AtomModelWrapper
-                Dataset ds = linkedDataSource.getDataForResource(URI.create(foundAtomUri.uri));
-                // make sure we don't accidentally use empty or faulty results
-                if (!AtomModelWrapper.isAAtom(ds)) {
-                    return null;
-                }
-                return new ScoredAtom(new AtomModelWrapper(ds), foundAtomUri.score);
-            } catch (Exception e) {
-                log.info("caught exception trying to load atom URI {} : {} (more on loglevel 'debug')", foundAtomUri,
-                                e.getMessage());
-                if (log.isDebugEnabled()) {
-                    e.printStackTrace();
-                }
-                return null;
-            }
-        }).filter(foundAtom -> foundAtom != null);
+        // load data in parallel: start all requests, then collect the results
+        List<CompletableFuture<ScoredAtom>> foundAtoms = foundUris.stream()
+                        .map(foundAtomUri -> linkedDataSource
+                                        .getDataForResourceAsync(URI.create(foundAtomUri.uri), null)
+                                        .thenApply(ds -> {
+                                            // make sure we don't accidentally use empty or faulty results
+                                            if (!AtomModelWrapper.isAAtom(ds)) {
+                                                return null;
+                                            }
+                                            return new ScoredAtom(new AtomModelWrapper(ds), foundAtomUri.score);
+                                        }).exceptionally(e -> {
+                                            log.info("caught exception trying to load atom URI {} : {} (more on loglevel 'debug')",
+                                                            foundAtomUri, e.getMessage());
+                                            if (log.isDebugEnabled()) {
+                                                e.printStackTrace();
+                                            }
+                                            return null;
+                                        }))
+                        .collect(Collectors.toList());
+        return foundAtoms.stream().map(CompletableFuture::join).filter(foundAtom -> foundAtom != null);
     }
 
     private static Set<String> getMatchingContexts(AtomModelWrapper atom) {
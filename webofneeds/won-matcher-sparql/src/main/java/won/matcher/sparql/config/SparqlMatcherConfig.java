@@ -18,11 +18,29 @@ public class SparqlMatcherConfig {
     private String matcherUri;
     @Value("${matcher.sparql.limitResults}")
     private long limitResults;
+    @Value("${matcher.sparql.bulk.chunkSize:10}")
+    private int bulkChunkSize;
+    @Value("${matcher.sparql.bulk.parallelism:2}")
+    private int bulkParallelism;
+    @Value("${matcher.sparql.bulk.chunkTimeout:600000}")
+    private long bulkChunkTimeout;
 
     public long getLimitResults() {
         return limitResults;
     }
 
+    public int getBulkChunkSize() {
+        return bulkChunkSize;
+    }
+
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+
+    public long getBulkChunkTimeout() {
+        return bulkChunkTimeout;
+    }
+
     public String getSparqlEndpoint() {
         return sparqlEndpoint;
     }
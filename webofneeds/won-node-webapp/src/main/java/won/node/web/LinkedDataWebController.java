@@ -71,6 +71,7 @@ import won.protocol.exception.WonProtocolException;
 import won.protocol.message.WonMessageType;
 import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
+import won.protocol.model.Coordinate;
 import won.protocol.model.DataWithEtag;
 import won.protocol.rest.WonEtagHelper;
 import won.protocol.util.RdfUtils;
@@ -121,6 +122,10 @@ import won.protocol.vocabulary.WONMSG;
 @RequestMapping("/")
 public class LinkedDataWebController implements InitializingBean {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    // max distance in meters used for 'near' requests that do not specify one
+    private static final double DEFAULT_NEAR_MAX_DISTANCE = 5000;
+    // max number of atoms returned for 'near' requests
+    private static final int MAX_NEAR_RESULTS = 500;
     // full prefix of an atom resource
     private String atomResourceURIPrefix;
     // full prefix of a connection resource
@@ -274,6 +279,39 @@ public class LinkedDataWebController implements InitializingBean {
         }
     }
 
+    /**
+     * Shows the atom's message container, or a page of it if paging parameters are
+     * specified.
+     */
+    // webmvc controller method
+    @RequestMapping("${uri.path.page}/atom/{identifier}/msg")
+    public String showAtomEventsPage(
+                    @PathVariable String identifier,
+                    @RequestParam(value = "p", required = false) Integer page,
+                    @RequestParam(value = "resumebefore", required = false) String resumeBefore,
+                    @RequestParam(value = "resumeafter", required = false) String resumeAfter,
+                    @RequestParam(value = "type", required = false) String type,
+                    @RequestParam(value = "deep", required = false, defaultValue = "false") boolean deep, Model model,
+                    HttpServletRequest request,
+                    HttpServletResponse response) {
+        URI atomURI = uriService.createAtomURIForId(identifier);
+        URI eventsURI = uriService.createEventsURIForAtom(atomURI);
+        WonMessageType msgType = getMessageType(type);
+        Dataset rdfDataset;
+        if (page == null && resumeBefore == null && resumeAfter == null) {
+            // all events, does not support type filtering for clients that do not support
+            // paging
+            rdfDataset = linkedDataService.listAtomEventURIs(atomURI, deep);
+        } else {
+            rdfDataset = listAtomEventURIs(atomURI, page, resumeBefore, resumeAfter, null, msgType, deep)
+                            .getContent();
+        }
+        model.addAttribute("rdfDataset", rdfDataset);
+        model.addAttribute("resourceURI", eventsURI.toString());
+        model.addAttribute("dataURI", uriService.toDataURIIfPossible(eventsURI).toString());
+        return "rdfDatasetView";
+    }
+
     /**
      * This request URL should be protected by WebID filter because the result
      * contains events data - which is data with restricted access. See
@@ -309,13 +347,21 @@ public class LinkedDataWebController implements InitializingBean {
                     @RequestParam(value = "createdafter", required = false) String createdAfter,
                     @RequestParam(value = "filterBySocketTypeUri", required = false) String filterBySocketTypeUriString,
                     @RequestParam(value = "filterByAtomTypeUri", required = false) String filterByAtomTypeUriString,
+                    @RequestParam(value = "near", required = false) String near,
+                    @RequestParam(value = "maxDistance", required = false) Double maxDistance,
                     @RequestParam(value = "state", required = false) String state, HttpServletRequest request,
                     Model model, HttpServletResponse response) throws IOException, ParseException {
         Dataset rdfDataset;
         AtomState atomState = getAtomState(state);
         URI filterBySocketTypeUri = getURIOrNull(filterBySocketTypeUriString);
         URI filterByAtomTypeUri = getURIOrNull(filterByAtomTypeUriString);
-        if (page == null && resumeBefore == null && resumeAfter == null && modifiedAfter == null
+        Coordinate nearLocation = getCoordinateOrNull(near);
+        if (nearLocation != null) {
+            // does not support paging: only the newest atoms near the location are
+            // returned
+            rdfDataset = linkedDataService.listAtomURIsNear(nearLocation, getMaxDistance(maxDistance), atomState,
+                            filterBySocketTypeUri, filterByAtomTypeUri, getNearMaxResults(null));
+        } else if (page == null && resumeBefore == null && resumeAfter == null && modifiedAfter == null
                         && createdAfter == null) {
             rdfDataset = linkedDataService.listAtomURIs(atomState, filterBySocketTypeUri, filterByAtomTypeUri);
         } else if (page != null) {
@@ -374,6 +420,8 @@ public class LinkedDataWebController implements InitializingBean {
                     @RequestParam(value = "createdafter", required = false) String createdAfter,
                     @RequestParam(value = "filterBySocketTypeUri", required = false) String filterBySocketTypeUriString,
                     @RequestParam(value = "filterByAtomTypeUri", required = false) String filterByAtomTypeUriString,
+                    @RequestParam(value = "near", required = false) String near, // 'latitude,longitude'
+                    @RequestParam(value = "maxDistance", required = false) Double maxDistance, // in meters
                     @RequestParam(value = "state", required = false) String state) throws IOException, ParseException {
         logger.debug("listAtomURIs() for page " + page + " called");
         Dataset rdfDataset;
@@ -385,7 +433,14 @@ public class LinkedDataWebController implements InitializingBean {
         AtomState atomState = getAtomState(state);
         URI filterBySocketTypeUri = getURIOrNull(filterBySocketTypeUriString);
         URI filterByAtomTypeUri = getURIOrNull(filterByAtomTypeUriString);
-        if (preferedSize == null && modifiedAfter == null && createdAfter == null) {
+        Coordinate nearLocation = getCoordinateOrNull(near);
+        if (nearLocation != null) {
+            // the atoms near the location are looked up in the node's spatial index. Does
+            // not support paging: the result only contains the newest matching atoms, up
+            // to the preferred size
+            rdfDataset = linkedDataService.listAtomURIsNear(nearLocation, getMaxDistance(maxDistance), atomState,
+                            filterBySocketTypeUri, filterByAtomTypeUri, getNearMaxResults(preferedSize));
+        } else if (preferedSize == null && modifiedAfter == null && createdAfter == null) {
             rdfDataset = linkedDataService.listAtomURIs(atomState, filterBySocketTypeUri, filterByAtomTypeUri);
         } else if (page == null && resumeBefore == null && resumeAfter == null && modifiedAfter == null
                         && createdAfter == null) {
@@ -679,6 +734,45 @@ public class LinkedDataWebController implements InitializingBean {
         }
     }
 
+    /**
+     * Parses a location given as 'latitude,longitude'.
+     */
+    static Coordinate getCoordinateOrNull(final String location) {
+        if (location == null) {
+            return null;
+        }
+        String[] parts = location.split(",");
+        try {
+            if (parts.length == 2) {
+                float latitude = Float.parseFloat(parts[0].trim());
+                float longitude = Float.parseFloat(parts[1].trim());
+                if (Math.abs(latitude) <= 90 && Math.abs(longitude) <= 180) {
+                    return new Coordinate(latitude, longitude);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("near must be a location given as 'latitude,longitude'");
+    }
+
+    private static double getMaxDistance(final Double maxDistance) {
+        if (maxDistance == null) {
+            return DEFAULT_NEAR_MAX_DISTANCE;
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maxDistance must not be negative");
+        }
+        return maxDistance;
+    }
+
+    private static int getNearMaxResults(final Integer preferedSize) {
+        if (preferedSize != null && preferedSize > 0 && preferedSize < MAX_NEAR_RESULTS) {
+            return preferedSize;
+        }
+        return MAX_NEAR_RESULTS;
+    }
+
     private static URI getURIOrNull(final String uri) {
         if (uri != null) {
             return URI.create(uri);
@@ -1009,6 +1103,74 @@ public class LinkedDataWebController implements InitializingBean {
         return new ResponseEntity<>(rdfDataset, headers, HttpStatus.OK);
     }
 
+    @RequestMapping(value = "${uri.path.data}/atom/{identifier}/msg", method = RequestMethod.GET, produces = {
+                    "application/ld+json", "application/trig", "application/n-quads" })
+    public ResponseEntity<Dataset> readAtomEvents(HttpServletRequest request,
+                    @PathVariable(value = "identifier") String identifier,
+                    @RequestParam(value = "p", required = false) Integer page,
+                    @RequestParam(value = "resumebefore", required = false) String resumeBefore,
+                    @RequestParam(value = "resumeafter", required = false) String resumeAfter,
+                    @RequestParam(value = "type", required = false) String type,
+                    @RequestParam(value = "deep", required = false, defaultValue = "false") boolean deep) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+        logger.debug("readAtomEvents() called");
+        HttpHeaders headers = new HttpHeaders();
+        Integer preferedSize = getPreferredSize(request);
+        URI atomUri = uriService.createAtomURIForId(identifier);
+        URI atomEventsURI = uriService.createEventsURIForAtom(atomUri);
+        WonMessageType msgType = getMessageType(type);
+        String passableMap = getPassableQueryMap("type", type);
+        Dataset rdfDataset;
+        if (preferedSize == null) {
+            // client doesn't support paging - return all members; does not support type
+            // filtering for clients that do not support paging
+            rdfDataset = linkedDataService.listAtomEventURIs(atomUri, deep);
+        } else {
+            AtomInformationService.PagedResource<Dataset, URI> resource = listAtomEventURIs(atomUri, page,
+                            resumeBefore, resumeAfter, preferedSize, msgType, deep);
+            rdfDataset = resource.getContent();
+            if (page != null && resumeBefore == null && resumeAfter == null) {
+                addPagedResourceInSequenceHeader(headers, atomEventsURI, resource, page, passableMap);
+            } else {
+                addPagedResourceInSequenceHeader(headers, atomEventsURI, resource, passableMap);
+            }
+        }
+        addLocationHeaderIfNecessary(headers, URI.create(request.getRequestURI()),
+                        URI.create(this.atomResourceURIPrefix));
+        addMutableResourceHeaders(headers);
+        addCORSHeader(headers);
+        stopWatch.stop();
+        logger.debug("readAtomEvents took " + stopWatch.getLastTaskTimeMillis() + " millis");
+        return new ResponseEntity<>(rdfDataset, headers, HttpStatus.OK);
+    }
+
+    private AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIs(URI atomUri, Integer page,
+                    String resumeBefore, String resumeAfter, Integer preferedSize, WonMessageType msgType,
+                    boolean deep) {
+        if (resumeBefore != null) {
+            // a page that precedes the item identified by the resumeBefore is requested
+            URI referenceEvent;
+            try {
+                referenceEvent = new URI(resumeBefore);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("resumeBefore must be a full, valid message URI");
+            }
+            return linkedDataService.listAtomEventURIsAfter(atomUri, referenceEvent, preferedSize, msgType, deep);
+        } else if (resumeAfter != null) {
+            // a page that follows the item identified by the resumeAfter is requested
+            URI referenceEvent;
+            try {
+                referenceEvent = new URI(resumeAfter);
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("resumeAfter must be a full, valid message URI");
+            }
+            return linkedDataService.listAtomEventURIsBefore(atomUri, referenceEvent, preferedSize, msgType, deep);
+        }
+        // if page == null -> return page with latest events
+        return linkedDataService.listAtomEventURIs(atomUri, page != null ? page : 1, preferedSize, msgType, deep);
+    }
+
     private WonMessageType getMessageType(final String type) {
         if (type != null) {
             return WonMessageType.valueOf(type);
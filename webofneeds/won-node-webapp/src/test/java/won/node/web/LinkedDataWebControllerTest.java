@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.node.web;
+
+import java.net.URI;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import won.node.service.linkeddata.generate.LinkedDataService;
+import won.node.service.nodeconfig.URIService;
+import won.node.service.persistence.AtomInformationService;
+import won.protocol.model.Coordinate;
+
+public class LinkedDataWebControllerTest {
+    private static final String RESOURCE_URI_PREFIX = "http://example.org/won/resource";
+    private static final URI ATOM_URI = URI.create(RESOURCE_URI_PREFIX + "/atom/atom1");
+    private static final URI ATOM_EVENTS_URI = URI.create(ATOM_URI + "/msg");
+    private LinkedDataService linkedDataService;
+    private LinkedDataWebController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        URIService uriService = new URIService();
+        uriService.setResourceURIPrefix(RESOURCE_URI_PREFIX);
+        uriService.setDataURIPrefix("http://example.org/won/data");
+        uriService.setPageURIPrefix("http://example.org/won/page");
+        uriService.afterPropertiesSet();
+        linkedDataService = Mockito.mock(LinkedDataService.class);
+        controller = new LinkedDataWebController();
+        controller.setUriService(uriService);
+        controller.setLinkedDataService(linkedDataService);
+        controller.setNodeResourceURIPrefix(RESOURCE_URI_PREFIX);
+        controller.afterPropertiesSet();
+    }
+
+    @Test
+    public void unpagedRequestListsAllAtomMessages() {
+        Dataset allMessages = createMessageContainer(3);
+        Mockito.when(linkedDataService.listAtomEventURIs(ATOM_URI, false)).thenReturn(allMessages);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/won/data/atom/atom1/msg");
+        ResponseEntity<Dataset> response = controller.readAtomEvents(request, "atom1", null, null, null, null, false);
+        Assert.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Model container = response.getBody().getNamedModel(ATOM_EVENTS_URI + "#data");
+        Assert.assertEquals(3, container.listStatements(null, RDFS.member, (Resource) null).toList().size());
+        Mockito.verify(linkedDataService, Mockito.never()).listAtomEventURIs(ArgumentMatchers.any(),
+                        ArgumentMatchers.anyInt(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                        ArgumentMatchers.anyBoolean());
+    }
+
+    @Test
+    public void pagedRequestListsPageOfAtomMessages() {
+        Dataset page = createMessageContainer(2);
+        Mockito.when(linkedDataService.listAtomEventURIs(ATOM_URI, 1, 2, null, false))
+                        .thenReturn(new AtomInformationService.PagedResource<>(page, null, null));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/won/data/atom/atom1/msg");
+        request.addHeader("Prefer", "return=representation; max-member-count=\"2\"");
+        ResponseEntity<Dataset> response = controller.readAtomEvents(request, "atom1", null, null, null, null, false);
+        Assert.assertSame(page, response.getBody());
+        Assert.assertTrue(response.getHeaders().get("Link").contains("<" + ATOM_EVENTS_URI + ">; rel=\"canonical\""));
+        Mockito.verify(linkedDataService, Mockito.never()).listAtomEventURIs(ATOM_URI, false);
+    }
+
+    private static Dataset createMessageContainer(int messages) {
+        Dataset dataset = DatasetFactory.createGeneral();
+        Model model = dataset.getNamedModel(ATOM_EVENTS_URI + "#data");
+        Resource container = model.createResource(ATOM_EVENTS_URI.toString());
+        for (int i = 0; i < messages; i++) {
+            container.addProperty(RDFS.member, model.createResource(RESOURCE_URI_PREFIX + "/msg/msg" + i));
+        }
+        return dataset;
+    }
+    @Test
+    public void parsesCoordinate() {
+        Assert.assertEquals(new Coordinate(48.2082f, 16.3738f),
+                        LinkedDataWebController.getCoordinateOrNull("48.2082,16.3738"));
+        Assert.assertEquals(new Coordinate(-33.8688f, 151.2093f),
+                        LinkedDataWebController.getCoordinateOrNull(" -33.8688 , 151.2093 "));
+        Assert.assertEquals(new Coordinate(90, -180), LinkedDataWebController.getCoordinateOrNull("90,-180"));
+    }
+
+    @Test
+    public void missingCoordinateIsNull() {
+        Assert.assertNull(LinkedDataWebController.getCoordinateOrNull(null));
+    }
+
+    @Test
+    public void rejectsInvalidCoordinates() {
+        String[] invalid = { "", "48.2", "48.2,16.3,1", "a,b", "91,0", "-91,0", "0,181", "0,-180.5" };
+        for (String location : invalid) {
+            try {
+                LinkedDataWebController.getCoordinateOrNull(location);
+                Assert.fail("accepted '" + location + "'");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import won.protocol.repository.ConnectionContainerRepository;
 import won.protocol.repository.ConnectionMessageContainerRepository;
 import won.protocol.repository.ConnectionRepository;
 import won.protocol.repository.DatasetHolderRepository;
+import won.protocol.repository.MessageContainerRepository;
 import won.protocol.repository.MessageEventRepository;
 import won.protocol.repository.OwnerApplicationRepository;
 import won.protocol.repository.SocketRepository;
@@ -62,6 +63,8 @@ public abstract class AbstractCamelProcessor implements Processor {
     @Autowired
     protected OwnerApplicationRepository ownerApplicationRepository;
     @Autowired
+    protected MessageContainerRepository messageContainerRepository;
+    @Autowired
     protected MessageEventRepository messageEventRepository;
     @Autowired
     protected WonNodeInformationService wonNodeInformationService;
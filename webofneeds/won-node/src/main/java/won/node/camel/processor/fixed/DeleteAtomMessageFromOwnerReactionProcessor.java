@@ -61,6 +61,7 @@ public class DeleteAtomMessageFromOwnerReactionProcessor extends AbstractCamelPr
                 entityManager.refresh(con);
                 // Delete all connection data
                 messageEventRepository.deleteByParentURI(con.getConnectionURI());
+                messageContainerRepository.resetMessageCounters(con.getConnectionURI());
                 connectionRepository.delete(con);
             }
         } else {
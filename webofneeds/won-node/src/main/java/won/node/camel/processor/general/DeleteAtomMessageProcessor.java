@@ -46,6 +46,8 @@ public class DeleteAtomMessageProcessor extends AbstractCamelProcessor {
                     // TODO: Handle!
                 }
                 messageEventRepository.deleteByParentURI(atom.getAtomURI());
+                messageContainerRepository.resetMessageCounters(atom.getAtomURI());
+                atomService.removeAtomLocation(atom.getAtomURI());
                 atom.resetAllAtomData();
             } else {
                 // First Step: Delete message to set atom in DELETED state and start delete
@@ -2,14 +2,14 @@ package won.node.camel.processor.general;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Expression;
-import org.apache.camel.Processor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.support.AopUtils;
@@ -20,15 +20,23 @@ import org.springframework.context.ApplicationContextAware;
 import won.node.camel.service.WonCamelHelper;
 import won.protocol.exception.WonMessageProcessingException;
 import won.protocol.message.WonMessage;
+import won.protocol.message.WonMessageDirection;
+import won.protocol.message.WonMessageType;
 
 /**
  * Computes a message slip for message processors that are annotated with
  * appropriate marker annotations. The annotation class to look for has to be
  * passed to this slip in the constructor.
+ * <p>
+ * As the set of processors does not change after startup, the slips for all
+ * combinations of message type and direction are computed in
+ * {@link #afterPropertiesSet()}, so computing the slip for a message is a
+ * lookup.
  */
 public class MessageTypeSlipComputer implements InitializingBean, ApplicationContextAware, Expression {
     Logger logger = LoggerFactory.getLogger(this.getClass());
-    HashMap<String, Object> fixedMessageProcessorsMap;
+    // slip by message type and direction, null if no processor matches
+    private Map<WonMessageType, Map<WonMessageDirection, String>> slips;
     private ApplicationContext applicationContext;
     private Class annotationClazz;
     private boolean allowNoMatchingProcessor = false;
@@ -49,91 +57,113 @@ public class MessageTypeSlipComputer implements InitializingBean, ApplicationCon
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        fixedMessageProcessorsMap = (HashMap) applicationContext.getBeansWithAnnotation(this.annotationClazz);
+        Map<String, Object> fixedMessageProcessorsMap = applicationContext.getBeansWithAnnotation(this.annotationClazz);
+        this.slips = computeSlips(fixedMessageProcessorsMap);
+        reportUncoveredCombinations();
     }
 
     @Override
     public <T> T evaluate(final Exchange exchange, final Class<T> type) {
         WonMessage message = WonCamelHelper.getMessageRequired(exchange);
-        String slip = "";
-        // exchange.getIn().setHeader();
-        URI messageType = WonCamelHelper.getMessageTypeRequired(exchange).getURI();
-        URI direction = WonCamelHelper.getDirectionRequired(exchange).getURI();
+        WonMessageType messageType = WonCamelHelper.getMessageTypeRequired(exchange);
+        WonMessageDirection direction = WonCamelHelper.getDirectionRequired(exchange);
         if (logger.isDebugEnabled()) {
             logger.debug("Received {}", message.toShortStringForDebug());
         }
-        try {
-            slip = computeMessageTypeSlip(messageType, direction);
-            if (slip == null || slip.isEmpty()) {
-                return null;
-            }
-        } catch (NoSuchMethodException e) {
-            logger.error(e.getMessage(), e);
-        } catch (InvocationTargetException e) {
-            logger.error(e.getMessage(), e);
-        } catch (IllegalAccessException e) {
-            logger.error(e.getMessage(), e);
-        }
-        return type.cast(slip);
-    }
-
-    private String computeMessageTypeSlip(URI messageType, URI direction)
-                    throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        Iterator iter = fixedMessageProcessorsMap.entrySet().iterator();
-        StringBuilder slipBuilder = new StringBuilder();
-        while (iter.hasNext()) {
-            Map.Entry pair = (Map.Entry) iter.next();
-            Processor wonMessageProcessor = (Processor) pair.getValue();
-            Annotation annotation = AopUtils.getTargetClass(wonMessageProcessor).getAnnotation(annotationClazz);
-            if (matches(annotation, messageType, direction, null)) {
-                slipBuilder.append("bean:").append(pair.getKey().toString()).append("?method=process,");
-            }
-        }
-        String slip = slipBuilder.toString();
-        if (!slip.isEmpty()) {
-            return slip.substring(0, slip.length() - 1); // cut off the trailing comma
+        String slip = slips.get(messageType).get(direction);
+        if (slip != null) {
+            return type.cast(slip);
         }
         if (allowNoMatchingProcessor) {
             return null;
         }
         logger.debug("unexpected combination of messageType {} and direction {} encountered "
-                        + "- this causes an exception,which triggers a FailureResponse", messageType, direction);
+                        + "- this causes an exception,which triggers a FailureResponse", messageType.getURI(),
+                        direction.getURI());
         throw new WonMessageProcessingException(
                         String.format("unexpected combination of messageType %s " + "and direction %s encountered",
-                                        messageType, direction));
+                                        messageType.getURI(), direction.getURI()));
     }
 
-    private boolean matches(Annotation annotation, URI messageType, URI direction, URI socketType)
-                    throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-        if (annotation == null || messageType == null || direction == null)
-            return false;
-        if (!annotationFeatureMatches(annotation, messageType.toString(), "messageType")) {
-            return false;
+    private Map<WonMessageType, Map<WonMessageDirection, String>> computeSlips(Map<String, Object> processors)
+                    throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        Map<WonMessageType, Map<WonMessageDirection, StringBuilder>> slipBuilders = new EnumMap<>(
+                        WonMessageType.class);
+        for (Map.Entry<String, Object> processor : processors.entrySet()) {
+            Annotation annotation = AopUtils.getTargetClass(processor.getValue()).getAnnotation(annotationClazz);
+            if (annotation == null) {
+                continue;
+            }
+            String annotatedMessageType = getAnnotationFeature(annotation, "messageType");
+            String annotatedDirection = getAnnotationFeature(annotation, "direction");
+            for (WonMessageType messageType : WonMessageType.values()) {
+                if (!annotationFeatureMatches(annotatedMessageType, messageType.getURI().toString())) {
+                    continue;
+                }
+                for (WonMessageDirection direction : WonMessageDirection.values()) {
+                    if (!annotationFeatureMatches(annotatedDirection, direction.getURI().toString())) {
+                        continue;
+                    }
+                    StringBuilder slipBuilder = slipBuilders
+                                    .computeIfAbsent(messageType, t -> new EnumMap<>(WonMessageDirection.class))
+                                    .computeIfAbsent(direction, d -> new StringBuilder());
+                    if (slipBuilder.length() > 0) {
+                        slipBuilder.append(",");
+                    }
+                    slipBuilder.append("bean:").append(processor.getKey()).append("?method=process");
+                }
+            }
         }
-        if (!annotationFeatureMatches(annotation, direction.toString(), "direction")) {
-            return false;
+        Map<WonMessageType, Map<WonMessageDirection, String>> computedSlips = new EnumMap<>(WonMessageType.class);
+        for (WonMessageType messageType : WonMessageType.values()) {
+            Map<WonMessageDirection, String> slipsByDirection = new EnumMap<>(WonMessageDirection.class);
+            slipBuilders.getOrDefault(messageType, Collections.emptyMap())
+                            .forEach((direction, slipBuilder) -> slipsByDirection.put(direction,
+                                            slipBuilder.toString()));
+            computedSlips.put(messageType, Collections.unmodifiableMap(slipsByDirection));
         }
-        if (socketType != null && !annotationFeatureMatches(annotation, socketType.toString(), "socketType")) {
-            return false;
+        return Collections.unmodifiableMap(computedSlips);
+    }
+
+    /**
+     * Logs the combinations of message type and direction for which no processor is
+     * found.
+     */
+    private void reportUncoveredCombinations() {
+        List<String> uncovered = new ArrayList<>();
+        slips.forEach((messageType, slipsByDirection) -> {
+            for (WonMessageDirection direction : WonMessageDirection.values()) {
+                if (!slipsByDirection.containsKey(direction)) {
+                    uncovered.add(messageType + "/" + direction);
+                }
+            }
+        });
+        if (uncovered.isEmpty()) {
+            return;
+        }
+        if (allowNoMatchingProcessor) {
+            logger.debug("no @{} for these combinations of message type and direction: {}",
+                            annotationClazz.getSimpleName(), uncovered);
+        } else {
+            logger.info("no @{} for these combinations of message type and direction, such messages will be rejected: {}",
+                            annotationClazz.getSimpleName(), uncovered);
         }
-        return true;
     }
 
     /**
      * An annotation feature matches if it is not specified (default value "ANY") or
      * it is specified and its value is equal to the expected value.
-     * 
-     * @param annotation
+     *
+     * @param annotatedValue
      * @param expected
-     * @param featureName
      * @return
-     * @throws NoSuchMethodException
-     * @throws InvocationTargetException
-     * @throws IllegalAccessException
      */
-    private boolean annotationFeatureMatches(Annotation annotation, String expected, String featureName)
+    private boolean annotationFeatureMatches(String annotatedValue, String expected) {
+        return "ANY".equals(annotatedValue) || expected.equals(annotatedValue);
+    }
+
+    private String getAnnotationFeature(Annotation annotation, String featureName)
                     throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        Object actualValue = annotation.annotationType().getDeclaredMethod(featureName).invoke(annotation);
-        return "ANY".equals(actualValue) || expected.equals(actualValue);
+        return (String) annotation.annotationType().getDeclaredMethod(featureName).invoke(annotation);
     }
 }
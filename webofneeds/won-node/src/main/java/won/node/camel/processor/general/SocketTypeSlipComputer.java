@@ -11,14 +11,20 @@
 package won.node.camel.processor.general;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Expression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.ApplicationContext;
@@ -37,9 +43,17 @@ import won.protocol.message.WonMessageType;
  * processor according to @SocketMessageProcessor
  * and @DefaultSocketMessageProcessor annotations. If the message direction is
  * FROM_SYSTEM, it is interpreted as FROM_OWNER. User: syim Date: 11.03.2015
+ * <p>
+ * The slips for all combinations of message type, direction and annotated
+ * socket type are computed at startup; socket types without a specific
+ * processor fall back to the default processors.
  */
 public class SocketTypeSlipComputer implements InitializingBean, ApplicationContextAware, Expression {
-    private HashMap<String, Object> socketMessageProcessorsMap;
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    // processor name by socket type, message type and direction
+    private Map<URI, Map<WonMessageType, Map<WonMessageDirection, String>>> socketSlips;
+    // processor name by message type and direction for other socket types
+    private Map<WonMessageType, Map<WonMessageDirection, String>> defaultSlips;
     private ApplicationContext applicationContext;
 
     public void setApplicationContext(ApplicationContext applicationContext) {
@@ -48,7 +62,28 @@ public class SocketTypeSlipComputer implements InitializingBean, ApplicationCont
 
     @Override
     public void afterPropertiesSet() throws Exception {
-        socketMessageProcessorsMap = (HashMap) applicationContext.getBeansWithAnnotation(SocketMessageProcessor.class);
+        Map<String, Object> socketMessageProcessorsMap = applicationContext
+                        .getBeansWithAnnotation(SocketMessageProcessor.class);
+        Map<URI, Map<WonMessageType, Map<WonMessageDirection, String>>> computedSocketSlips = new HashMap<>();
+        Map<WonMessageType, Map<WonMessageDirection, String>> computedDefaultSlips = new EnumMap<>(
+                        WonMessageType.class);
+        for (Map.Entry<String, Object> processor : socketMessageProcessorsMap.entrySet()) {
+            Class<?> processorClass = AopUtils.getTargetClass(processor.getValue());
+            SocketMessageProcessor socketAnnotation = processorClass.getAnnotation(SocketMessageProcessor.class);
+            if (socketAnnotation != null) {
+                addSlips(computedSocketSlips.computeIfAbsent(URI.create(socketAnnotation.socketType()),
+                                socketType -> new EnumMap<>(WonMessageType.class)), socketAnnotation,
+                                processor.getKey());
+            }
+            DefaultSocketMessageProcessor defaultAnnotation = processorClass
+                            .getAnnotation(DefaultSocketMessageProcessor.class);
+            if (defaultAnnotation != null) {
+                addSlips(computedDefaultSlips, defaultAnnotation, processor.getKey());
+            }
+        }
+        this.socketSlips = Collections.unmodifiableMap(computedSocketSlips);
+        this.defaultSlips = Collections.unmodifiableMap(computedDefaultSlips);
+        reportUncoveredCombinations();
     }
 
     @Override
@@ -64,36 +99,85 @@ public class SocketTypeSlipComputer implements InitializingBean, ApplicationCont
         }
         assert direction != null : "direction header must not be null";
         URI socketType = WonCamelHelper.getSocketTypeURIRequired(exchange);
-        String slip = "bean:" + computeSocketSlip(messageType.getURI(), socketType, direction.getURI())
-                        + "?method=process";
+        String slip = "bean:" + computeSocketSlip(messageType, socketType, direction) + "?method=process";
         return type.cast(slip);
     }
 
-    private String computeSocketSlip(URI messageType, URI socketType, URI direction) {
+    private String computeSocketSlip(WonMessageType messageType, URI socketType, WonMessageDirection direction) {
         if (socketType != null) {
-            Optional<String> processorName = socketMessageProcessorsMap.entrySet().stream().filter(entry -> {
-                Object socket = entry.getValue();
-                Annotation annotation = AopUtils.getTargetClass(socket).getAnnotation(SocketMessageProcessor.class);
-                return matches(annotation, messageType, direction, socketType);
-            }).findFirst().map(Map.Entry::getKey);
-            if (processorName.isPresent()) {
-                return processorName.get();
+            String processorName = lookup(socketSlips.get(socketType), messageType, direction);
+            if (processorName != null) {
+                return processorName;
             }
         }
-        Optional<String> processorName = socketMessageProcessorsMap.entrySet().stream().filter(entry -> {
-            Object socket = entry.getValue();
-            Annotation annotation = AopUtils.getTargetClass(socket).getAnnotation(DefaultSocketMessageProcessor.class);
-            return matches(annotation, messageType, direction, null);
-        }).findFirst().map(Map.Entry::getKey);
-        if (processorName.isPresent()) {
-            return processorName.get();
+        String processorName = lookup(defaultSlips, messageType, direction);
+        if (processorName != null) {
+            return processorName;
         }
         throw new WonMessageProcessingException(String.format(
                         "unexpected combination of messageType %s, " + "socketType %s and direction %s encountered",
-                        messageType, socketType, direction));
+                        messageType.getURI(), socketType, direction.getURI()));
     }
 
-    private boolean matches(Annotation annotation, URI messageType, URI direction, URI socketType) {
+    private static String lookup(Map<WonMessageType, Map<WonMessageDirection, String>> slips,
+                    WonMessageType messageType, WonMessageDirection direction) {
+        if (slips == null) {
+            return null;
+        }
+        Map<WonMessageDirection, String> slipsByDirection = slips.get(messageType);
+        return slipsByDirection == null ? null : slipsByDirection.get(direction);
+    }
+
+    /**
+     * Registers the processor for all combinations of message type and direction
+     * its annotation matches, unless an earlier processor has been registered for
+     * the combination.
+     */
+    private void addSlips(Map<WonMessageType, Map<WonMessageDirection, String>> slips, Annotation annotation,
+                    String processorName) {
+        for (WonMessageType messageType : WonMessageType.values()) {
+            for (WonMessageDirection direction : WonMessageDirection.values()) {
+                if (matches(annotation, messageType.getURI(), direction.getURI())) {
+                    slips.computeIfAbsent(messageType, t -> new EnumMap<>(WonMessageDirection.class))
+                                    .putIfAbsent(direction, processorName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs the combinations of message type and direction that no default processor
+     * handles, per socket type that has specific processors.
+     */
+    private void reportUncoveredCombinations() {
+        List<String> uncoveredByDefault = new ArrayList<>();
+        Map<URI, List<String>> uncoveredBySocket = new HashMap<>();
+        for (WonMessageType messageType : WonMessageType.values()) {
+            // FROM_SYSTEM is handled as FROM_OWNER
+            for (WonMessageDirection direction : new WonMessageDirection[] { WonMessageDirection.FROM_OWNER,
+                            WonMessageDirection.FROM_EXTERNAL }) {
+                if (lookup(defaultSlips, messageType, direction) != null) {
+                    continue;
+                }
+                String combination = messageType + "/" + direction;
+                uncoveredByDefault.add(combination);
+                socketSlips.forEach((socketType, slips) -> {
+                    if (lookup(slips, messageType, direction) == null) {
+                        uncoveredBySocket.computeIfAbsent(socketType, s -> new ArrayList<>()).add(combination);
+                    }
+                });
+            }
+        }
+        if (!uncoveredByDefault.isEmpty()) {
+            logger.info("no @DefaultSocketMessageProcessor for these combinations of message type and direction: {}",
+                            uncoveredByDefault);
+        }
+        uncoveredBySocket.forEach((socketType, uncovered) -> logger.info(
+                        "no socket message processor for socket type {} and these combinations of message type and direction: {}",
+                        socketType, uncovered));
+    }
+
+    private boolean matches(Annotation annotation, URI messageType, URI direction) {
         if (annotation == null || messageType == null || direction == null)
             return false;
         try {
@@ -101,9 +185,6 @@ public class SocketTypeSlipComputer implements InitializingBean, ApplicationCont
                             || annotationFeatureMismatch(annotation, direction.toString(), "direction")) {
                 return false;
             }
-            if (socketType != null && annotationFeatureMismatch(annotation, socketType.toString(), "socketType")) {
-                return false;
-            }
         } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
             throw new RuntimeException(e);
         }
@@ -13,21 +13,23 @@ package won.node.camel.processor.general;
 import static won.node.camel.service.WonCamelHelper.*;
 
 import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.impl.DefaultExchange;
-import org.apache.jena.riot.Lang;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import won.protocol.jms.AtomProtocolCommunicationService;
 import won.protocol.jms.MessagingService;
+import won.protocol.jms.WonMessageJmsCodec;
 import won.protocol.message.WonMessage;
 import won.protocol.message.WonMessageDirection;
-import won.protocol.message.WonMessageEncoder;
 import won.protocol.service.MessageRoutingInfoService;
 
 /**
@@ -45,6 +47,8 @@ public class ToNodeSender implements Processor {
     private AtomProtocolCommunicationService atomProtocolCommunicationService;
     @Autowired
     private CamelContext camelContext;
+    @Value("${activemq.message.binary:false}")
+    private boolean binaryMessages;
 
     public void process(Exchange exchange) throws Exception {
         logger.debug("processing message for sending to remote node");
@@ -73,12 +77,13 @@ public class ToNodeSender implements Processor {
                         .getEndpoint(recipientNode.get());
         // messageService.sendInOnlyMessage(null, null, wonMessage,
         // wonMessage.getRecipientNodeURI().toString());
-        String msgBody = WonMessageEncoder.encode(msg, Lang.TRIG);
+        Map<String, Object> headers = new HashMap<>();
+        Object msgBody = WonMessageJmsCodec.encode(msg, binaryMessages, headers);
         if (logger.isDebugEnabled()) {
             logger.debug("sending message to node {}: {}", recipientNode,
                             msg.toStringForDebug(true));
         }
-        messagingService.sendInOnlyMessage(null, null, msgBody, ep);
+        messagingService.sendInOnlyMessage(null, headers, msgBody, ep);
         removeMessageToSend(exchange);
     }
 }
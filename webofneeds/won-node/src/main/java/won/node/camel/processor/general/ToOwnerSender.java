@@ -26,6 +26,7 @@ import org.apache.camel.impl.DefaultExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 import won.node.camel.processor.AbstractCamelProcessor;
 import won.node.service.persistence.OwnerManagementService;
@@ -51,6 +52,8 @@ public class ToOwnerSender extends AbstractCamelProcessor {
     private CamelContext camelContext;
     @Autowired
     private MessagingService messagingService;
+    @Value("${activemq.message.binary:false}")
+    private boolean binaryMessages;
 
     @Override
     public void process(Exchange exchange) throws Exception {
@@ -69,7 +72,7 @@ public class ToOwnerSender extends AbstractCamelProcessor {
                             msg.toStringForDebug(true));
         }
         Exchange exchangeToOwners = new DefaultExchange(camelContext);
-        putMessageIntoBody(exchangeToOwners, msg);
+        putMessageIntoBody(exchangeToOwners, msg, binaryMessages);
         exchangeToOwners.getIn().setHeader(WonCamelConstants.OWNER_APPLICATION_IDS_HEADER, queueNames);
         messagingService.send(exchangeToOwners, "direct:sendToOwnerApplications");
         removeMessageToSend(exchange);
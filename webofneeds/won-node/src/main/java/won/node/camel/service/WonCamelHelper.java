@@ -8,13 +8,12 @@ import java.util.function.Supplier;
 import org.apache.camel.Exchange;
 
 import won.node.service.persistence.ConnectionService;
+import won.protocol.jms.WonMessageJmsCodec;
 import won.protocol.message.WonMessage;
 import won.protocol.message.WonMessageDirection;
-import won.protocol.message.WonMessageEncoder;
 import won.protocol.message.WonMessageType;
 import won.protocol.message.processor.camel.WonCamelConstants;
 import won.protocol.model.Connection;
-import won.protocol.util.RdfUtils;
 
 public class WonCamelHelper {
     //// message
@@ -254,18 +253,21 @@ public class WonCamelHelper {
     //// msg from body
     public static Optional<WonMessage> getMessageFromBody(Exchange exchange) {
         Objects.requireNonNull(exchange);
-        String datasetAsString = (String) exchange.getIn().getBody();
-        if (datasetAsString == null || datasetAsString.trim().length() == 0) {
-            return Optional.empty();
-        }
-        return Optional.of(WonMessage.of(RdfUtils.readDatasetFromString(datasetAsString,
-                        WonCamelConstants.RDF_LANGUAGE_FOR_MESSAGE)));
+        return Optional.ofNullable(WonMessageJmsCodec.decodeFromBody(exchange.getIn()));
     }
 
     public static void putMessageIntoBody(Exchange exchange, WonMessage message) {
+        putMessageIntoBody(exchange, message, false);
+    }
+
+    /**
+     * Puts the message into the body, in the binary encoding if <code>binary</code>
+     * is true, otherwise as TriG.
+     */
+    public static void putMessageIntoBody(Exchange exchange, WonMessage message, boolean binary) {
         Objects.requireNonNull(exchange);
         Objects.requireNonNull(message);
-        exchange.getIn().setBody(WonMessageEncoder.encode(message, WonCamelConstants.RDF_LANGUAGE_FOR_MESSAGE));
+        WonMessageJmsCodec.encodeIntoBody(exchange.getIn(), message, binary);
     }
 
     public static WonMessage getMessageFromBodyRequired(Exchange exchange) {
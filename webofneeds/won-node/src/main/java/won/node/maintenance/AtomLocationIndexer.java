@@ -0,0 +1,61 @@
+package won.node.maintenance;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+
+import won.node.service.persistence.AtomService;
+
+/**
+ * Adds the atoms that are not in the spatial index yet (the ones created before
+ * the index was introduced) to the index in the background after startup, in
+ * batches of <code>batchSize</code>, each in its own transaction. New and
+ * modified atoms are indexed when they are stored, so the indexer can be
+ * disabled by setting the batch size to 0 once all atoms have been indexed.
+ */
+public class AtomLocationIndexer implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private TaskScheduler taskScheduler;
+    private int batchSize = 100;
+    @Autowired
+    private AtomService atomService;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.taskScheduler == null)
+            throw new IllegalStateException("taskScheduler must be set");
+        if (batchSize <= 0) {
+            return;
+        }
+        taskScheduler.schedule(this::index, new Date());
+    }
+
+    public void index() {
+        try {
+            int total = 0;
+            int indexed;
+            do {
+                indexed = atomService.indexAtomLocations(batchSize);
+                total += indexed;
+            } while (indexed > 0);
+            if (total > 0) {
+                logger.info("added {} atoms to the location index", total);
+            }
+        } catch (Exception e) {
+            logger.warn("could not add atoms to the location index", e);
+        }
+    }
+
+    public void setTaskScheduler(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,66 @@
+package won.node.maintenance;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Date;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+
+import won.node.service.persistence.MessageService;
+
+/**
+ * Converts the unconfirmed and pendingConfirmations data of message containers
+ * that is still stored in the legacy (java serialization) format in the
+ * background after startup, in batches of <code>batchSize</code>, each in its
+ * own transaction. Legacy data can still be read, and it is converted anyway
+ * when the container is changed, so the conversion can be disabled by setting
+ * the batch size to 0.
+ */
+public class ConfirmationDataConverter implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private TaskScheduler taskScheduler;
+    private int batchSize = 100;
+    @Autowired
+    private MessageService messageService;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.taskScheduler == null)
+            throw new IllegalStateException("taskScheduler must be set");
+        if (batchSize <= 0) {
+            return;
+        }
+        taskScheduler.schedule(this::convert, new Date());
+    }
+
+    public void convert() {
+        try {
+            int batches = 0;
+            // continue after the last container found, so containers that could not
+            // be converted are not found again
+            Optional<Long> lastId = messageService.convertLegacyConfirmationData(Long.MIN_VALUE, batchSize);
+            while (lastId.isPresent()) {
+                batches++;
+                lastId = messageService.convertLegacyConfirmationData(lastId.get(), batchSize);
+            }
+            if (batches > 0) {
+                logger.info("converted confirmation data of message containers to the current format in {} batches",
+                                batches);
+            }
+        } catch (Exception e) {
+            logger.warn("could not convert confirmation data of message containers", e);
+        }
+    }
+
+    public void setTaskScheduler(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
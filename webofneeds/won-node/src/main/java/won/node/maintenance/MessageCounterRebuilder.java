@@ -0,0 +1,55 @@
+package won.node.maintenance;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+
+import won.node.service.persistence.MessageService;
+
+/**
+ * Recomputes the message counters of the message containers (used for the
+ * unread information) from the stored messages once, shortly after startup, if
+ * <code>rebuildOnStartup</code> is set. This is only necessary if the counters
+ * are suspected to be wrong, e.g. after messages were imported or deleted
+ * directly in the database; the counters of existing data are initialized by
+ * the database migration.
+ */
+public class MessageCounterRebuilder implements InitializingBean {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private TaskScheduler taskScheduler;
+    private boolean rebuildOnStartup = false;
+    @Autowired
+    private MessageService messageService;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (this.taskScheduler == null)
+            throw new IllegalStateException("taskScheduler must be set");
+        if (!rebuildOnStartup) {
+            return;
+        }
+        logger.debug("scheduling rebuild of message counters");
+        taskScheduler.schedule(this::rebuild, new Date());
+    }
+
+    public void rebuild() {
+        try {
+            messageService.rebuildMessageCounters();
+        } catch (Exception e) {
+            logger.warn("could not rebuild message counters", e);
+        }
+    }
+
+    public void setTaskScheduler(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+    }
+
+    public void setRebuildOnStartup(boolean rebuildOnStartup) {
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+}
@@ -24,6 +24,7 @@ import won.protocol.exception.NoSuchConnectionException;
 import won.protocol.message.WonMessageType;
 import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
+import won.protocol.model.Coordinate;
 import won.protocol.model.DataWithEtag;
 
 /**
@@ -152,6 +153,23 @@ public interface LinkedDataService {
     Dataset listAtomURIsCreatedAfter(Date createdDate, AtomState atomState, URI filterBySocketTypeUri,
                     URI filterByAtomTypeUri);
 
+    /**
+     * Returns container dataset containing the newest atoms whose location or job
+     * location is within a certain distance of the specified location, newest first
+     *
+     * @param location center of the search area
+     * @param maxDistance maximum distance in meters
+     * @param atomState filter by atomState
+     * @param filterBySocketTypeUri socket type uri that an atom needs to have to be
+     * included
+     * @param filterByAtomTypeUri atom type uri that an atom needs to have to be
+     * included
+     * @param maxResults maximum number of atoms to return
+     * @return
+     */
+    Dataset listAtomURIsNear(Coordinate location, double maxDistance, AtomState atomState,
+                    URI filterBySocketTypeUri, URI filterByAtomTypeUri, int maxResults);
+
     /**
      * Returns the dataset describing the connection between the two specified
      * sockets.
@@ -434,6 +452,59 @@ public interface LinkedDataService {
                     final URI msgURI, Integer preferedSize, WonMessageType msgType, boolean deep)
                     throws NoSuchConnectionException;
 
+    /**
+     * Returns a dataset containing all event uris in the message container of the
+     * specified atom.
+     *
+     * @param atomUri
+     * @param deep - include events dataset
+     * @return
+     */
+    Dataset listAtomEventURIs(final URI atomUri, final boolean deep);
+
+    /**
+     * Returns paged resource containing the event uris in the message container of
+     * the specified atom. If deep is true, the event dataset is added to the
+     * result.
+     *
+     * @param atomUri atom parent of the events
+     * @param pageNum number of the page to be returned
+     * @param preferedSize preferred number of uris per page, null means use default
+     * @param messageType message type, null means all types
+     * @param deep
+     * @return
+     */
+    AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIs(final URI atomUri, final int pageNum,
+                    Integer preferedSize, WonMessageType messageType, boolean deep);
+
+    /**
+     * Returns paged resource containing the event uris in the message container of
+     * the specified atom that were created after the specified event uri.
+     *
+     * @param atomUri atom parent of the events
+     * @param msgURI message to follow (in message creation time)
+     * @param preferedSize preferred number of uris per page, null means use default
+     * @param msgType message type, null means all types
+     * @param deep
+     * @return
+     */
+    AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIsAfter(final URI atomUri, final URI msgURI,
+                    Integer preferedSize, WonMessageType msgType, boolean deep);
+
+    /**
+     * Returns paged resource containing the event uris in the message container of
+     * the specified atom that were created before the specified event uri.
+     *
+     * @param atomUri atom parent of the events
+     * @param msgURI message to precede (in message creation time)
+     * @param preferedSize preferred number of uris per page, null means use default
+     * @param msgType message type, null means all types
+     * @param deep
+     * @return
+     */
+    AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIsBefore(final URI atomUri, final URI msgURI,
+                    Integer preferedSize, WonMessageType msgType, boolean deep);
+
     Dataset getNodeDataset();
 
     /**
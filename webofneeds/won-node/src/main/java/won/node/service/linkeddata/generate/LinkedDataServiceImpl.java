@@ -47,6 +47,10 @@ import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
 import won.cryptography.rdfsign.WonKeysReaderWriter;
 import won.cryptography.service.CryptographyService;
 import won.node.service.nodeconfig.URIService;
@@ -60,6 +64,7 @@ import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
 import won.protocol.model.ConnectionModelMapper;
 import won.protocol.model.ConnectionState;
+import won.protocol.model.Coordinate;
 import won.protocol.model.DataWithEtag;
 import won.protocol.model.DatasetHolder;
 import won.protocol.model.DatasetHolderAggregator;
@@ -107,6 +112,9 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
     @Autowired
     private URIService uriService;
     private AtomModelMapper atomModelMapper = new AtomModelMapper();
+    private static final String ATOM_META_MODEL_CACHE_NAME = "atomMetaModelCache";
+    // atom URI -> metadata graph of the atom's current version
+    private Ehcache atomMetaModelCache;
     private ConnectionModelMapper connectionModelMapper = new ConnectionModelMapper();
     @Autowired
     private CryptographyService cryptographyService;
@@ -138,6 +146,13 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
         this.eventResourceURIPrefix = this.resourceURIPrefix + "/msg";
         logger.info("setting prefixes: atom: {}, connection: {}, event: {}", new Object[] { this.atomResourceURIPrefix,
                         this.connectionResourceURIPrefix, this.eventResourceURIPrefix });
+        CacheManager manager = CacheManager.getInstance();
+        if (manager.cacheExists(ATOM_META_MODEL_CACHE_NAME)) {
+            this.atomMetaModelCache = manager.getEhcache(ATOM_META_MODEL_CACHE_NAME);
+        } else {
+            this.atomMetaModelCache = new Cache(ATOM_META_MODEL_CACHE_NAME, 1000, false, false, 3600, 3600);
+            manager.addCache(atomMetaModelCache);
+        }
     }
 
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
@@ -212,6 +227,30 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
         return getFilteredAtomURIListDataset(model, uris, filterSocketTypeUri, filterAtomTypeUri);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Dataset listAtomURIsNear(Coordinate location, double maxDistance, AtomState atomState,
+                    URI filterSocketTypeUri, URI filterAtomTypeUri, int maxResults) {
+        Model model = ModelFactory.createDefaultModel();
+        setNsPrefixes(model);
+        List<URI> uris = new ArrayList<>();
+        // page through the atoms near the location until enough of them pass the
+        // filters
+        Slice<URI> slice;
+        int page = 1;
+        do {
+            slice = atomInformationService.listPagedAtomURIsNear(location, maxDistance, atomState, page++);
+            Iterator<URI> it = slice.getContent().iterator();
+            while (it.hasNext() && uris.size() < maxResults) {
+                URI atomURI = it.next();
+                if (matchesTypeFilters(atomURI, filterSocketTypeUri, filterAtomTypeUri)) {
+                    uris.add(atomURI);
+                }
+            }
+        } while (slice.hasNext() && uris.size() < maxResults);
+        return getFilteredAtomURIListDataset(model, uris, null, null);
+    }
+
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
     public DataWithEtag<Dataset> getAtomDataset(final URI atomUri, String etag) {
         Instant start = logger.isDebugEnabled() ? Instant.now() : null;
@@ -244,42 +283,81 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
         // load the dataset from storage
         boolean isDeleted = (atom.getState() == AtomState.DELETED);
         Dataset dataset = isDeleted ? DatasetFactory.createGeneral() : atom.getDatatsetHolder().getDataset();
+        String atomMetaInformationURI = uriService.createAtomSysInfoGraphURI(atomUri).toString();
+        Model metaModel = getAtomMetaModel(atom, newEtag, dataset);
+        // add meta model to dataset
+        dataset.addNamedModel(atomMetaInformationURI, metaModel);
+        addBaseUriAndDefaultPrefixes(dataset);
+        if (logger.isDebugEnabled() && start != null) {
+            Instant finish = Instant.now();
+            logger.debug("getAtomDataset({}) took {}ms", atomUri, Duration.between(start, finish).toMillis());
+        }
+        return new DataWithEtag<>(dataset, newEtag, etag, isDeleted);
+    }
+
+    /**
+     * Returns a copy of the metadata graph of the atom. The graph only depends on
+     * the atom entity and the names of its content graphs, which both only change
+     * with the atom's version, so it is cached per atom and version.
+     */
+    private Model getAtomMetaModel(Atom atom, String version, Dataset atomDataset) {
+        URI atomUri = atom.getAtomURI();
+        Element element = atomMetaModelCache.get(atomUri);
+        if (element != null) {
+            CachedAtomMetaModel cached = (CachedAtomMetaModel) element.getObjectValue();
+            if (cached.version.equals(version)) {
+                return copyModel(cached.model);
+            }
+        }
+        Model metaModel = createAtomMetaModel(atom, atomDataset);
+        atomMetaModelCache.put(new Element(atomUri, new CachedAtomMetaModel(version, copyModel(metaModel))));
+        return metaModel;
+    }
+
+    private Model createAtomMetaModel(Atom atom, Dataset atomDataset) {
+        URI atomUri = atom.getAtomURI();
         Model metaModel = atomModelMapper.toModel(atom);
         Resource atomResource = metaModel.getResource(atomUri.toString());
-        String atomMetaInformationURI = uriService.createAtomSysInfoGraphURI(atomUri).toString();
-        Resource atomMetaInformationResource = metaModel.getResource(atomMetaInformationURI);
+        Resource atomMetaInformationResource = metaModel
+                        .getResource(uriService.createAtomSysInfoGraphURI(atomUri).toString());
         // link atomMetaInformationURI to atom via rdfg:subGraphOf
         atomMetaInformationResource.addProperty(RDFG.SUBGRAPH_OF, atomResource);
         // add connections
-        Resource connectionsContainer = metaModel.createResource(atom.getAtomURI().toString() + "/c");
+        Resource connectionsContainer = metaModel
+                        .createResource(uriService.createConnectionsURIForAtom(atomUri).toString());
         metaModel.add(metaModel.createStatement(atomResource, WON.connections, connectionsContainer));
-        // add atom event container
-        Resource atomMessageContainer = metaModel.createResource(atom.getAtomURI().toString() + "#msg",
+        // add atom event container. Its members are served as a paged resource, like
+        // the ones of the connection message containers
+        Resource atomMessageContainer = metaModel.createResource(uriService.createEventsURIForAtom(atomUri).toString(),
                         WON.MessageContainer);
         metaModel.add(metaModel.createStatement(atomResource, WON.messageContainer, atomMessageContainer));
-        // add atom event URIs
-        Collection<MessageEvent> messageEvents = messageEventRepository.findByParentURI(atomUri);
-        for (MessageEvent messageEvent : messageEvents) {
-            metaModel.add(metaModel.createStatement(atomMessageContainer, RDFS.member,
-                            metaModel.getResource(messageEvent.getMessageURI().toString())));
-        }
         // add WON node link
         atomResource.addProperty(WON.wonNode, metaModel.createResource(this.resourceURIPrefix));
         // link all atom graphs taken from the create message to atom uri:
-        Iterator<String> namesIt = dataset.listNames();
+        Iterator<String> namesIt = atomDataset.listNames();
         while (namesIt.hasNext()) {
             String name = namesIt.next();
             Resource atomGraphResource = metaModel.getResource(name);
             atomResource.addProperty(WON.contentGraph, atomGraphResource);
         }
-        // add meta model to dataset
-        dataset.addNamedModel(atomMetaInformationURI, metaModel);
-        addBaseUriAndDefaultPrefixes(dataset);
-        if (logger.isDebugEnabled() && start != null) {
-            Instant finish = Instant.now();
-            logger.debug("getAtomDataset({}) took {}ms", atomUri, Duration.between(start, finish).toMillis());
+        return metaModel;
+    }
+
+    private static Model copyModel(Model model) {
+        Model copy = ModelFactory.createDefaultModel();
+        copy.setNsPrefixes(model.getNsPrefixMap());
+        copy.add(model);
+        return copy;
+    }
+
+    private static class CachedAtomMetaModel {
+        private final String version;
+        private final Model model;
+
+        public CachedAtomMetaModel(String version, Model model) {
+            this.version = version;
+            this.model = model;
         }
-        return new DataWithEtag<>(dataset, newEtag, etag, isDeleted);
     }
 
     @Override
@@ -424,7 +502,7 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
         // load the model from storage
         Model model = connectionModelMapper.toModel(connection);
         Model additionalData = connection.getDatasetHolder() == null ? null
-                        : connection.getDatasetHolder().getDataset().getDefaultModel();
+                        : connection.getDatasetHolder().getDefaultModel();
         setNsPrefixes(model);
         if (additionalData != null) {
             model.add(additionalData);
@@ -441,7 +519,7 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
             messageContainer.addProperty(RDF.type, WON.MessageContainer);
             DatasetHolder datasetHolder = connection.getDatasetHolder();
             if (datasetHolder != null) {
-                addAdditionalData(model, datasetHolder.getDataset().getDefaultModel(), connectionResource);
+                addAdditionalData(model, datasetHolder.getDefaultModel(), connectionResource);
             }
         }
         Dataset connectionDataset = addBaseUriAndDefaultPrefixes(
@@ -648,17 +726,31 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
     @Override
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
     public Dataset listConnectionEventURIs(final URI connectionUri, boolean deep) throws NoSuchConnectionException {
+        Connection connection = atomInformationService.readConnection(connectionUri);
+        return listEventURIs(uriService.createEventsURIForConnection(connection.getConnectionURI()), connectionUri,
+                        deep);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public Dataset listAtomEventURIs(final URI atomUri, boolean deep) {
+        return listEventURIs(uriService.createEventsURIForAtom(atomUri), atomUri, deep);
+    }
+
+    /**
+     * Creates the message container listing all events of the parent (an atom or a
+     * connection).
+     */
+    private Dataset listEventURIs(URI messageContainerUri, URI parentUri, boolean deep) {
         Model model = ModelFactory.createDefaultModel();
         setNsPrefixes(model);
-        Connection connection = atomInformationService.readConnection(connectionUri);
-        Resource messageContainer = model.createResource(connection.getConnectionURI().toString() + "/msg",
-                        WON.MessageContainer);
+        Resource messageContainer = model.createResource(messageContainerUri.toString(), WON.MessageContainer);
         // add the events with the new format (only the URI, no content)
-        List<MessageEvent> connectionEvents = messageEventRepository.findByParentURI(connectionUri);
+        List<MessageEvent> events = messageEventRepository.findByParentURI(parentUri);
         Dataset eventsContainerDataset = newDatasetWithNamedModel(createDataGraphUriFromResource(messageContainer),
                         model);
         addBaseUriAndDefaultPrefixes(eventsContainerDataset);
-        for (MessageEvent event : connectionEvents) {
+        for (MessageEvent event : events) {
             model.add(model.createStatement(messageContainer, RDFS.member,
                             model.getResource(event.getMessageURI().toString())));
             if (deep) {
@@ -702,6 +794,32 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
                         deep);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIs(final URI atomUri, final int pageNum,
+                    Integer preferedSize, WonMessageType msgType, boolean deep) {
+        Slice<MessageEvent> slice = atomInformationService.listAtomEvents(atomUri, pageNum, preferedSize, msgType);
+        return eventsToContainerPage(this.uriService.createEventsURIForAtom(atomUri).toString(), slice, deep);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIsAfter(final URI atomUri,
+                    final URI msgURI, Integer preferedSize, WonMessageType msgType, boolean deep) {
+        Slice<MessageEvent> slice = atomInformationService.listAtomEventsAfter(atomUri, msgURI, preferedSize,
+                        msgType);
+        return eventsToContainerPage(this.uriService.createEventsURIForAtom(atomUri).toString(), slice, deep);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
+    public AtomInformationService.PagedResource<Dataset, URI> listAtomEventURIsBefore(final URI atomUri,
+                    final URI msgURI, Integer preferedSize, WonMessageType msgType, boolean deep) {
+        Slice<MessageEvent> slice = atomInformationService.listAtomEventsBefore(atomUri, msgURI, preferedSize,
+                        msgType);
+        return eventsToContainerPage(this.uriService.createEventsURIForAtom(atomUri).toString(), slice, deep);
+    }
+
     @Override
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
     public DataWithEtag<Dataset> getDatasetForUri(URI datasetUri, String etag) {
@@ -975,12 +1093,7 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
                             model.createResource(atomURI.toString()))));
         } else {
             uris.forEach(atomURI -> {
-                Dataset atomDataset = getAtomDatasetForFilter(atomURI);
-                DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomDataset);
-                if ((filterSocketTypeUri == null ||
-                                atomModelWrapper.getSocketTypeUriMap().containsValue(filterSocketTypeUri)) &&
-                                (filterAtomTypeUri == null ||
-                                                atomModelWrapper.getContentTypes().contains(filterAtomTypeUri))) {
+                if (matchesTypeFilters(atomURI, filterSocketTypeUri, filterAtomTypeUri)) {
                     model.add(model.createStatement(atomListPageResource, RDFS.member,
                                     model.createResource(atomURI.toString())));
                 }
@@ -1013,6 +1126,21 @@ public class LinkedDataServiceImpl implements LinkedDataService, InitializingBea
         return ret;
     }
 
+    private boolean matchesTypeFilters(URI atomURI, URI filterSocketTypeUri, URI filterAtomTypeUri) {
+        if (filterSocketTypeUri == null && filterAtomTypeUri == null) {
+            return true;
+        }
+        Dataset atomDataset = getAtomDatasetForFilter(atomURI);
+        if (atomDataset == null) {
+            return false;
+        }
+        DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomDataset);
+        return (filterSocketTypeUri == null
+                        || atomModelWrapper.getSocketTypeUriMap().containsValue(filterSocketTypeUri))
+                        && (filterAtomTypeUri == null
+                                        || atomModelWrapper.getContentTypes().contains(filterAtomTypeUri));
+    }
+
     @Override
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED, readOnly = true)
     public Dataset getAtomDatasetForFilter(final URI atomUri) {
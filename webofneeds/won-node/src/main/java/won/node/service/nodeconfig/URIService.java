@@ -202,6 +202,10 @@ public class URIService implements InitializingBean {
         return URI.create(connURI.toString() + "/msg");
     }
 
+    public URI createEventsURIForAtom(URI atomURI) {
+        return URI.create(atomURI.toString() + "/msg");
+    }
+
     public URI createEventURIForId(String id) {
         return WonMessageUriHelper.createMessageURIForId(id);
     }
@@ -24,6 +24,7 @@ import won.protocol.message.WonMessageType;
 import won.protocol.model.Atom;
 import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
+import won.protocol.model.Coordinate;
 import won.protocol.model.DataWithEtag;
 import won.protocol.model.MessageEvent;
 
@@ -103,6 +104,20 @@ public interface AtomInformationService {
      */
     Collection<URI> listAtomURIsCreatedAfter(Date createdAfter, AtomState atomState);
 
+    /**
+     * retrieves a page of the atoms whose location or job location is within the
+     * specified distance of a location, newest first. The pages are cut from the
+     * candidates found in the location index, so a page may contain fewer atoms
+     * than the page size even if there are more.
+     *
+     * @param location the center of the search area
+     * @param maxDistance the maximum distance in meters
+     * @param atomState filterBy
+     * @param page the page number (1-based)
+     * @return slice of atoms near the location
+     */
+    Slice<URI> listPagedAtomURIsNear(Coordinate location, double maxDistance, AtomState atomState, int page);
+
     /**
      * Retrieves all connection URIs (regardless of state).
      *
@@ -344,6 +359,19 @@ public interface AtomInformationService {
     Slice<MessageEvent> listConnectionEventsAfter(URI connectionUri, URI msgURI,
                     Integer preferredPageSize, WonMessageType msgType);
 
+    /**
+     * Lists the messages stored in the message container of the atom (i.e. the
+     * messages that are not connection messages), newest first.
+     */
+    Slice<MessageEvent> listAtomEvents(URI atomUri, int page, Integer preferredPageSize,
+                    WonMessageType messageType);
+
+    Slice<MessageEvent> listAtomEventsBefore(URI atomUri, URI msgURI, Integer preferredPageSize,
+                    WonMessageType msgType);
+
+    Slice<MessageEvent> listAtomEventsAfter(URI atomUri, URI msgURI, Integer preferredPageSize,
+                    WonMessageType msgType);
+
     class PagedResource<T, E> {
         private T content;
         private E resumeBefore = null;
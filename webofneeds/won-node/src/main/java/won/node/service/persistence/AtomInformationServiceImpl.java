@@ -13,13 +13,16 @@ package won.node.service.persistence;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 
@@ -29,10 +32,14 @@ import won.protocol.exception.NoSuchConnectionException;
 import won.protocol.exception.NoSuchMessageException;
 import won.protocol.message.WonMessageType;
 import won.protocol.model.Atom;
+import won.protocol.model.AtomLocation;
 import won.protocol.model.AtomState;
+import won.protocol.model.BoundingBox;
 import won.protocol.model.Connection;
+import won.protocol.model.Coordinate;
 import won.protocol.model.DataWithEtag;
 import won.protocol.model.MessageEvent;
+import won.protocol.repository.AtomLocationRepository;
 import won.protocol.repository.AtomRepository;
 import won.protocol.repository.ConnectionRepository;
 import won.protocol.repository.MessageEventRepository;
@@ -46,6 +53,8 @@ public class AtomInformationServiceImpl implements AtomInformationService {
     @Autowired
     private AtomRepository atomRepository;
     @Autowired
+    private AtomLocationRepository atomLocationRepository;
+    @Autowired
     private ConnectionRepository connectionRepository;
     @Autowired
     private MessageEventRepository messageEventRepository;
@@ -108,6 +117,28 @@ public class AtomInformationServiceImpl implements AtomInformationService {
         return atomRepository.getAllAtomURIsCreatedAfter(createdAfter, atomState);
     }
 
+    @Override
+    public Slice<URI> listPagedAtomURIsNear(Coordinate location, double maxDistance, AtomState atomState,
+                    int page) {
+        // first narrow down the candidates to a bounding box of the search circle
+        // using the index, then check the actual distance
+        BoundingBox boundingBox = BoundingBox.around(location, maxDistance);
+        PageRequest pageRequest = new PageRequest(page - 1, pageSize);
+        Slice<AtomLocation> candidates = atomLocationRepository.findInBoundingBox(boundingBox.getMinLatitude(),
+                        boundingBox.getMaxLatitude(), boundingBox.getMinLongitude(), boundingBox.getMaxLongitude(),
+                        atomState, pageRequest);
+        List<URI> atomURIs = candidates.getContent().stream()
+                        .filter(atomLocation -> isWithinDistance(location, atomLocation.getLocation(), maxDistance)
+                                        || isWithinDistance(location, atomLocation.getJobLocation(), maxDistance))
+                        .map(AtomLocation::getAtomURI)
+                        .collect(Collectors.toList());
+        return new SliceImpl<>(atomURIs, pageRequest, candidates.hasNext());
+    }
+
+    private static boolean isWithinDistance(Coordinate location, Coordinate other, double maxDistance) {
+        return other != null && location.distanceTo(other) <= maxDistance;
+    }
+
     @Override
     public Slice<URI> listPagedAtomURIsAfter(URI atomURI, Integer preferedPageSize, AtomState atomState) {
         Atom referenceAtom = atomRepository.findOneByAtomURI(atomURI)
@@ -372,47 +403,80 @@ public class AtomInformationServiceImpl implements AtomInformationService {
     @Override
     public Slice<MessageEvent> listConnectionEvents(URI connectionUri, int page, Integer preferedPageSize,
                     WonMessageType messageType) {
+        return listEvents(connectionUri, page, preferedPageSize, messageType);
+    }
+
+    @Override
+    public Slice<MessageEvent> listConnectionEventsAfter(URI connectionUri, URI msgURI,
+                    Integer preferredPageSize, WonMessageType msgType) {
+        return listEventsAfter(connectionUri, msgURI, preferredPageSize, msgType);
+    }
+
+    @Override
+    public Slice<MessageEvent> listConnectionEventsBefore(final URI connectionUri, final URI msgURI,
+                    final Integer preferredPageSize, final WonMessageType msgType) {
+        return listEventsBefore(connectionUri, msgURI, preferredPageSize, msgType);
+    }
+
+    @Override
+    public Slice<MessageEvent> listAtomEvents(URI atomUri, int page, Integer preferredPageSize,
+                    WonMessageType messageType) {
+        return listEvents(atomUri, page, preferredPageSize, messageType);
+    }
+
+    @Override
+    public Slice<MessageEvent> listAtomEventsAfter(URI atomUri, URI msgURI, Integer preferredPageSize,
+                    WonMessageType msgType) {
+        return listEventsAfter(atomUri, msgURI, preferredPageSize, msgType);
+    }
+
+    @Override
+    public Slice<MessageEvent> listAtomEventsBefore(URI atomUri, URI msgURI, Integer preferredPageSize,
+                    WonMessageType msgType) {
+        return listEventsBefore(atomUri, msgURI, preferredPageSize, msgType);
+    }
+
+    private Slice<MessageEvent> listEvents(URI parentUri, int page, Integer preferedPageSize,
+                    WonMessageType messageType) {
         int pageSize = getPageSize(preferedPageSize);
         int pageNum = page - 1;
         Slice<MessageEvent> slice = null;
         if (messageType == null) {
-            slice = messageEventRepository.findByParentURI(connectionUri,
+            slice = messageEventRepository.findByParentURI(parentUri,
                             new PageRequest(pageNum, pageSize, Sort.Direction.DESC, "creationDate"));
         } else {
-            slice = messageEventRepository.findByParentURIAndType(connectionUri, messageType,
+            slice = messageEventRepository.findByParentURIAndType(parentUri, messageType,
                             new PageRequest(pageNum, pageSize, Sort.Direction.DESC, "creationDate"));
         }
         return slice;
     }
 
-    @Override
-    public Slice<MessageEvent> listConnectionEventsAfter(URI connectionUri, URI msgURI,
+    private Slice<MessageEvent> listEventsAfter(URI parentUri, URI msgURI,
                     Integer preferredPageSize, WonMessageType msgType) {
-        MessageEvent referenceMsg = messageEventRepository.findFirstByMessageURIAndParentURI(msgURI, connectionUri)
+        MessageEvent referenceMsg = messageEventRepository.findFirstByMessageURIAndParentURI(msgURI, parentUri)
                         .orElseThrow(() -> new NoSuchMessageException(msgURI));
         Date referenceDate = referenceMsg.getCreationDate();
         int pageSize = getPageSize(preferredPageSize);
         Slice<MessageEvent> slice = null;
         if (msgType == null) {
-            slice = messageEventRepository.findByParentURIAfter(connectionUri, referenceDate,
+            slice = messageEventRepository.findByParentURIAfter(parentUri, referenceDate,
                             new PageRequest(0, pageSize, Sort.Direction.ASC, "creationDate"));
         } else {
-            slice = messageEventRepository.findByParentURIAndTypeAfter(connectionUri, referenceDate, msgType,
+            slice = messageEventRepository.findByParentURIAndTypeAfter(parentUri, referenceDate, msgType,
                             new PageRequest(0, pageSize, Sort.Direction.ASC, "creationDate"));
         }
         return slice;
     }
 
-    @Override
-    public Slice<MessageEvent> listConnectionEventsBefore(final URI connectionUri, final URI msgURI,
+    private Slice<MessageEvent> listEventsBefore(final URI parentUri, final URI msgURI,
                     final Integer preferredPageSize, final WonMessageType msgType) {
         int pageSize = getPageSize(preferredPageSize);
         Slice<MessageEvent> slice = null;
         if (msgType == null) {
-            slice = messageEventRepository.findByParentURIBeforeFetchDatasetEagerly(connectionUri, msgURI,
+            slice = messageEventRepository.findByParentURIBeforeFetchDatasetEagerly(parentUri, msgURI,
                             new PageRequest(0, pageSize, Sort.Direction.DESC, "creationDate"));
         } else {
-            slice = messageEventRepository.findByParentURIAndTypeBeforeFetchDatasetEagerly(connectionUri, msgURI,
+            slice = messageEventRepository.findByParentURIAndTypeBeforeFetchDatasetEagerly(parentUri, msgURI,
                             msgType, new PageRequest(0, pageSize, Sort.Direction.DESC, "creationDate"));
         }
         return slice;
@@ -22,7 +22,9 @@ import org.javasimon.Stopwatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import won.node.service.nodeconfig.URIService;
 import won.protocol.exception.IllegalAtomContentException;
@@ -38,6 +40,7 @@ import won.protocol.message.WonMessageDirection;
 import won.protocol.message.WonMessageType;
 import won.protocol.message.WonMessageUtils;
 import won.protocol.model.Atom;
+import won.protocol.model.AtomLocation;
 import won.protocol.model.AtomMessageContainer;
 import won.protocol.model.AtomState;
 import won.protocol.model.ConnectionContainer;
@@ -45,6 +48,7 @@ import won.protocol.model.ConnectionState;
 import won.protocol.model.DatasetHolder;
 import won.protocol.model.OwnerApplication;
 import won.protocol.model.Socket;
+import won.protocol.repository.AtomLocationRepository;
 import won.protocol.repository.AtomMessageContainerRepository;
 import won.protocol.repository.AtomRepository;
 import won.protocol.repository.ConnectionContainerRepository;
@@ -52,6 +56,7 @@ import won.protocol.repository.MessageEventRepository;
 import won.protocol.repository.OwnerApplicationRepository;
 import won.protocol.repository.SocketRepository;
 import won.protocol.util.AtomModelWrapper;
+import won.protocol.util.DefaultAtomModelWrapper;
 import won.protocol.util.RdfUtils;
 import won.protocol.vocabulary.WONMSG;
 
@@ -78,6 +83,8 @@ public class AtomService {
     ConnectionService connectionService;
     @Autowired
     EntityManager entityManager;
+    @Autowired
+    AtomLocationRepository atomLocationRepository;
 
     public Optional<Atom> getAtomForUpdate(URI atomURI) {
         Optional<Atom> atom = atomRepository.findOneByAtomURIForUpdate(atomURI);
@@ -208,6 +215,7 @@ public class AtomService {
         atom = atomRepository.save(atom);
         connectionContainerRepository.save(connectionContainer);
         socketEntities.forEach(socket -> socketRepository.save(socket));
+        updateAtomLocation(atomURI, atomModelWrapper.getDataset());
         return atom;
     }
 
@@ -270,9 +278,51 @@ public class AtomService {
         datasetHolder.setDataset(atomContent);
         atom.setDatatsetHolder(datasetHolder);
         atom.setAttachmentDatasetHolders(attachments);
+        updateAtomLocation(atomURI, atomContent);
         return atomRepository.save(atom);
     }
 
+    /**
+     * Updates the spatial index entry of the atom with the location and job
+     * location found in the atom content.
+     */
+    public void updateAtomLocation(URI atomURI, Dataset atomContent) {
+        AtomLocation atomLocation = atomLocationRepository.findOneByAtomURI(atomURI)
+                        .orElseGet(() -> new AtomLocation(atomURI));
+        try {
+            DefaultAtomModelWrapper atomModelWrapper = new DefaultAtomModelWrapper(atomContent);
+            atomLocation.setLocation(atomModelWrapper.getLocationCoordinate());
+            atomLocation.setJobLocation(atomModelWrapper.getJobLocationCoordinate());
+        } catch (Exception e) {
+            // the location is not required, so the atom is stored anyway
+            logger.info("could not extract location of atom {}: {}", atomURI, e.getMessage());
+            atomLocation.setLocation(null);
+            atomLocation.setJobLocation(null);
+        }
+        atomLocationRepository.save(atomLocation);
+    }
+
+    public void removeAtomLocation(URI atomURI) {
+        atomLocationRepository.deleteByAtomURI(atomURI);
+    }
+
+    /**
+     * Adds up to <code>batchSize</code> atoms that are not in the spatial index yet
+     * (i.e., the ones created before the index existed) to the index.
+     *
+     * @return the number of atoms added
+     */
+    @Transactional
+    public int indexAtomLocations(int batchSize) {
+        List<URI> atomURIs = atomLocationRepository.findAtomURIsWithoutLocationEntry(AtomState.DELETED,
+                        new PageRequest(0, batchSize));
+        for (URI atomURI : atomURIs) {
+            Atom atom = getAtomRequired(atomURI);
+            updateAtomLocation(atomURI, atom.getDatatsetHolder().getDataset());
+        }
+        return atomURIs.size();
+    }
+
     private Set<Socket> determineNewSockets(URI atomURI, List<Socket> existingSockets,
                     AtomModelWrapper atomModelWrapper) {
         Collection<String> sockets = atomModelWrapper.getSocketUris();
@@ -3,6 +3,8 @@ package won.node.service.persistence;
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -11,11 +13,23 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.javasimon.callback.Callback;
+import org.javasimon.callback.CompositeFilterCallback;
+import org.javasimon.callback.FilterRule;
+import org.javasimon.callback.quantiles.BucketsType;
+import org.javasimon.callback.quantiles.FixedQuantilesCallback;
+import org.javasimon.callback.quantiles.QuantilesCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StopWatch;
 
 import won.protocol.exception.DuplicateResponseException;
@@ -32,6 +46,8 @@ import won.protocol.model.ConnectionMessageContainer;
 import won.protocol.model.DatasetHolder;
 import won.protocol.model.MessageContainer;
 import won.protocol.model.MessageEvent;
+import won.protocol.model.URICountSetConverter;
+import won.protocol.model.URIMapToURISetConverter;
 import won.protocol.repository.AtomMessageContainerRepository;
 import won.protocol.repository.ConnectionContainerRepository;
 import won.protocol.repository.ConnectionMessageContainerRepository;
@@ -43,6 +59,23 @@ import won.protocol.repository.MessageEventRepository;
 @Component
 public class MessageService {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    /**
+     * Prefix of the stopwatches recording the time needed for the steps of
+     * {@link #saveMessage(WonMessage, URI)}. Besides the usual statistics, they
+     * record a histogram of the durations (from 0.1 millis to 10 seconds, in
+     * exponential buckets), accessible via
+     * {@link QuantilesCallback#sampleBuckets(org.javasimon.Stopwatch)}.
+     */
+    public static final String SAVE_MESSAGE_STOPWATCH_PREFIX = MessageService.class.getName() + ".saveMessage_";
+    private static final String DUPLICATE_RESPONSE_CONSTRAINT = "IDX_ME_UNIQUE_RESPONSE_PER_CONTAINER";
+    static {
+        CompositeFilterCallback histogramCallback = new CompositeFilterCallback();
+        histogramCallback.addRule(FilterRule.Type.MUST, null, SAVE_MESSAGE_STOPWATCH_PREFIX + "*",
+                        Callback.Event.ALL);
+        histogramCallback.addCallback(
+                        new FixedQuantilesCallback(BucketsType.EXPONENTIAL, 100_000L, 10_000_000_000L, 10));
+        SimonManager.callback().addCallback(histogramCallback);
+    }
     @Autowired
     protected ConnectionContainerRepository connectionContainerRepository;
     @Autowired
@@ -149,14 +182,13 @@ public class MessageService {
     private void removeConfirmed(final MessageContainer container, final WonMessage message, final URI parent) {
         // the message might be an external message referencing some of our messages.
         // if that is the case, that transitively confirms their earlier messages
-        StopWatch sw = new StopWatch();
         if (logger.isDebugEnabled()) {
             logger.debug("Checking if message {} confirms any unconfirmed messages in the message container of {}",
                             message.toShortStringForDebug(), parent);
         }
-        sw.start("get previous URIs from message");
+        Split split = startStopwatch("removeConfirmed_getPreviousURIs");
         Set<URI> previous = message.getPreviousMessageURIs().stream().collect(Collectors.toSet());
-        sw.stop();
+        split.stop();
         if (logger.isDebugEnabled()) {
             logger.debug("{} previous messages referenced by external response {} ",
                             previous.size(), message.toShortStringForDebug());
@@ -166,75 +198,67 @@ public class MessageService {
             logger.debug("no previous messages found, not removing any unconfirmed messages");
             return;
         }
-        sw.start("load pending");
+        split = startStopwatch("removeConfirmed_loadPending");
         Map<URI, Set<URI>> pending = container.getPendingConfirmations();
-        sw.stop();
-        sw.start("determine confirmed");
+        split.stop();
+        split = startStopwatch("removeConfirmed_determineConfirmed");
         Set<URI> confirmed = pending
                         .entrySet()
                         .stream()
                         .filter(e -> previous.contains(e.getKey()))
                         .flatMap(e -> e.getValue().stream())
                         .collect(Collectors.toSet());
-        sw.stop();
+        split.stop();
         if (logger.isDebugEnabled()) {
             logger.debug("{} unconfirmed for message container of {}, removing {} transitively confirmed",
                             new Object[] { container.getUnconfirmedCount(), parent, confirmed.size() });
             logger.debug("unconfirmed: {}", container.peekAtUnconfirmed());
             logger.debug("transitively confirmed: {}", confirmed);
         }
-        sw.start("remove unconfirmed");
+        split = startStopwatch("removeConfirmed_removeUnconfirmed");
         container.removeUnconfirmed(confirmed);
-        sw.stop();
-        sw.start("remove pending");
+        split.stop();
+        split = startStopwatch("removeConfirmed_removePending");
         // container.removePendingConfirmations(previous);
         container.removePendingConfirmations(previous);
-        sw.stop();
+        split.stop();
         if (logger.isDebugEnabled()) {
             logger.debug("{} messages left in unconfirmed list of the message container of {}",
                             new Object[] { container.getUnconfirmedCount(), parent });
         }
-        logger.debug("removing confirmed took {} millis", sw.getLastTaskTimeMillis());
-        if (logger.isDebugEnabled()) {
-            logger.debug("Timinig info: \n{}", sw.prettyPrint());
-        }
     }
 
+    /**
+     * Stores all messages of the specified message or delivery chain under the
+     * specified parent. The message container and the existing DatasetHolders are
+     * loaded with one query each for the whole chain, and the new MessageEvents and
+     * DatasetHolders are inserted in one flush, so they can be sent in JDBC
+     * batches. Duplicate responses are detected by the unique index on the
+     * response's container rather than a query per message.
+     * 
+     * @throws DuplicateResponseException if the parent already contains a response
+     * from the same container to the same message
+     */
     public void saveMessage(final WonMessage messageOrDeliveryChain, URI parent) {
-        StopWatch sw = new StopWatch();
-        for (WonMessage wonMessage : messageOrDeliveryChain.getAllMessages()) {
-            logger.debug("STORING {} message {} under parent {}", new Object[] { wonMessage.getMessageType(),
-                            wonMessage.getMessageURI(), parent });
-            sw.start("get message container");
-            MessageContainer container = loadOrCreateMessageContainer(parent, wonMessage.getMessageType());
-            sw.stop();
+        Set<WonMessage> messages = messageOrDeliveryChain.getAllMessages();
+        if (logger.isDebugEnabled()) {
+            messages.forEach(wonMessage -> logger.debug("STORING {} message {} under parent {}",
+                            new Object[] { wonMessage.getMessageType(), wonMessage.getMessageURI(), parent }));
+        }
+        Split split = startStopwatch("getMessageContainer");
+        MessageContainer container = loadOrCreateMessageContainer(parent, getContainerMessageType(messages));
+        split.stop();
+        split = startStopwatch("getDatasetHolderIds");
+        Map<URI, Long> datasetHolderIds = getDatasetHolderIds(messages);
+        split.stop();
+        List<MessageEvent> events = new ArrayList<>(messages.size());
+        for (WonMessage wonMessage : messages) {
             // unconfirmed list:
             // - add any success response message from partner in a connection
             // - add any of our system responses messages if we 're in an atom's message
             // container.
-            if (wonMessage.getMessageTypeRequired().isSuccessResponse()) {
-                sw.start("check for duplicate response");
-                // make sure it's not a duplicate response
-                URI respondingTo = wonMessage.getRespondingToMessageURIRequired();
-                URI responseContainer = wonMessage.getAtomURI();
-                if (responseContainer == null) {
-                    responseContainer = wonMessage.getConnectionURIRequired();
-                }
-                Optional<MessageEvent> duplicate = messageEventRepository
-                                .findOneByParentURIAndRespondingToURIAndResponseContainerURI(parent, respondingTo,
-                                                responseContainer);
-                if (duplicate.isPresent()) {
-                    logger.debug("Detected duplicate response to {} from container {} in container {}: {}",
-                                    new Object[] { respondingTo, responseContainer, parent,
-                                                    wonMessage.toShortStringForDebug() });
-                    throw new DuplicateResponseException(MessageFormat.format(
-                                    "Detected duplicate response to {0} from container {1} in container {2}: {3}",
-                                    respondingTo, responseContainer, parent, wonMessage.toShortStringForDebug()));
-                }
-                sw.stop();
-            }
+            split = startStopwatch("updateUnconfirmed");
             if (isExternalSuccessResponseInConnection(parent, wonMessage)) {
-                sw.start("process external response in connection");
                 if (logger.isDebugEnabled()) {
                     logger.debug("In connection, processing external response {} to {} in container {}", new Object[] {
                                     wonMessage.toShortStringForDebug(), wonMessage.getRespondingToMessageURI(),
@@ -246,9 +270,7 @@ public class MessageService {
                                     wonMessage.getMessageURIRequired(), parent);
                 }
                 addUnconfirmed(container, wonMessage);
-                sw.stop();
             } else if (isOwnSuccessResponseInConnection(parent, wonMessage)) {
-                sw.start("process own response in connection's message container");
                 if (logger.isDebugEnabled()) {
                     logger.debug("In connection, processing own response {} to {} in container {}", new Object[] {
                                     wonMessage.toShortStringForDebug(), wonMessage.getRespondingToMessageURI(),
@@ -263,41 +285,149 @@ public class MessageService {
                                     wonMessage.getMessageURIRequired(),
                                     previous.stream().collect(Collectors.toSet()));
                 }
-                sw.stop();
             } else if (isOwnSuccessResponseInAtom(parent, wonMessage)) {
-                sw.start("process own response in atom's message container");
                 removeConfirmed(container, wonMessage, parent);
                 if (logger.isDebugEnabled()) {
                     logger.debug("Adding as unconfirmed message: {} in container {}",
                                     wonMessage.getMessageURIRequired(), parent);
                 }
                 addUnconfirmed(container, wonMessage);
-                sw.stop();
             }
-            sw.start("create event");
+            split.stop();
+            split = startStopwatch("createEvent");
             MessageEvent event = new MessageEvent(parent, wonMessage, container);
+            if (!wonMessage.getMessageTypeRequired().isResponseMessage()) {
+                // keep the counters used for computing unread information up to date
+                container.countMessage(event.getCreationDate());
+            }
             // a message can be in multiple containers (=parents), such messages share a
             // datasetholder
-            sw.stop();
-            sw.start("get event dataset id (if any)");
-            Optional<Long> datasetHolderId = datasetHolderRepository.findIdByUri(wonMessage.getMessageURIRequired());
-            sw.stop();
-            sw.start("Add dataset to message");
-            if (datasetHolderId.isPresent()) {
-                DatasetHolder datasetHolder = entityManager.getReference(DatasetHolder.class, datasetHolderId.get());
-                event.setDatasetHolder(datasetHolder);
+            Long datasetHolderId = datasetHolderIds.get(wonMessage.getMessageURIRequired());
+            if (datasetHolderId != null) {
+                event.setDatasetHolder(entityManager.getReference(DatasetHolder.class, datasetHolderId));
             } else {
                 event.setDatasetHolder(new DatasetHolder(wonMessage.getMessageURI(),
                                 WonMessageEncoder.encodeAsDataset(wonMessage)));
             }
-            sw.stop();
-            sw.start("store message");
-            event = messageEventRepository.save(event);
-            sw.stop();
+            events.add(event);
+            split.stop();
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug("Timing info:\n{}", sw.prettyPrint());
+        split = startStopwatch("storeMessages");
+        try {
+            messageEventRepository.save(events);
+            // flush now so that the inserts are batched and a duplicate response is
+            // detected here
+            entityManager.flush();
+        } catch (PersistenceException | DataIntegrityViolationException e) {
+            if (isDuplicateResponse(e)) {
+                logger.debug("Detected duplicate response in container {}: {}", parent,
+                                messageOrDeliveryChain.toShortStringForDebug());
+                throw new DuplicateResponseException(MessageFormat.format(
+                                "Detected duplicate response in container {0}: {1}", parent,
+                                messageOrDeliveryChain.toShortStringForDebug()), e);
+            }
+            throw e;
+        } finally {
+            split.stop();
+        }
+    }
+
+    /**
+     * Returns the type of the message that may create the message container, if
+     * there is such a message among the specified ones, otherwise the type of any
+     * message.
+     */
+    private WonMessageType getContainerMessageType(Set<WonMessage> messages) {
+        WonMessageType result = null;
+        for (WonMessage message : messages) {
+            WonMessageType type = message.getMessageTypeRequired();
+            if (WonMessageType.CREATE_ATOM.equals(type) || WonMessageType.CONNECT.equals(type)
+                            || WonMessageType.SOCKET_HINT_MESSAGE.equals(type)) {
+                return type;
+            }
+            if (result == null) {
+                result = type;
+            }
+        }
+        return result;
+    }
+
+    private Map<URI, Long> getDatasetHolderIds(Set<WonMessage> messages) {
+        Set<URI> messageURIs = messages.stream().map(WonMessage::getMessageURIRequired).collect(Collectors.toSet());
+        Map<URI, Long> result = new HashMap<>();
+        for (Object[] row : datasetHolderRepository.findIdsByUris(messageURIs)) {
+            result.put((URI) row[0], (Long) row[1]);
+        }
+        return result;
+    }
+
+    private static boolean isDuplicateResponse(Throwable e) {
+        while (e != null) {
+            if (e instanceof ConstraintViolationException) {
+                return DUPLICATE_RESPONSE_CONSTRAINT
+                                .equalsIgnoreCase(((ConstraintViolationException) e).getConstraintName());
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    private static Split startStopwatch(String step) {
+        return SimonManager.getStopwatch(SAVE_MESSAGE_STOPWATCH_PREFIX + step).start();
+    }
+
+    /**
+     * Recomputes the message counters of all message containers from the stored
+     * messages.
+     *
+     * @return the number of containers updated
+     */
+    @Transactional
+    public int rebuildMessageCounters() {
+        StopWatch sw = new StopWatch();
+        sw.start("rebuild message counters");
+        int updated = messageContainerRepository.rebuildMessageCounters();
+        sw.stop();
+        logger.info("rebuilt message counters of {} message containers in {} millis", updated,
+                        sw.getLastTaskTimeMillis());
+        return updated;
+    }
+
+    /**
+     * Rewrites the unconfirmed and pendingConfirmations data of up to
+     * <code>batchSize</code> message containers with an id greater than
+     * <code>afterId</code> that are still stored in the legacy format. A container
+     * whose data cannot be read is logged and left unchanged.
+     *
+     * @return the id of the last container found, empty if there are none left
+     */
+    @Transactional
+    public Optional<Long> convertLegacyConfirmationData(long afterId, int batchSize) {
+        List<Object[]> rows = messageContainerRepository.findWithLegacyConfirmationFormat(afterId, batchSize);
+        int converted = 0;
+        Long lastId = null;
+        for (Object[] row : rows) {
+            Long id = ((Number) row[0]).longValue();
+            byte[] unconfirmed = (byte[]) row[1];
+            byte[] pending = (byte[]) row[2];
+            lastId = id;
+            byte[] convertedUnconfirmed;
+            byte[] convertedPending;
+            try {
+                convertedUnconfirmed = URICountSetConverter.toCurrentFormat(unconfirmed);
+                convertedPending = URIMapToURISetConverter.toCurrentFormat(pending);
+            } catch (RuntimeException e) {
+                logger.warn("cannot convert confirmation data of message container {}, leaving it unchanged", id, e);
+                continue;
+            }
+            // the update is skipped if the row has been changed concurrently, in which
+            // case it has been written in the current format anyway
+            converted += messageContainerRepository.replaceConfirmationData(id, unconfirmed, pending,
+                            convertedUnconfirmed, convertedPending);
         }
+        logger.debug("converted confirmation data of {} of {} message containers found in the legacy format",
+                        converted, rows.size());
+        return Optional.ofNullable(lastId);
     }
 
     private void addUnconfirmed(MessageContainer container, WonMessage toAdd) {
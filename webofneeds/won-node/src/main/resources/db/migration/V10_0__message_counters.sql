@@ -0,0 +1,22 @@
+-- counters over the messages of each container (excluding responses), maintained when a message is stored
+-- and used for computing unread information without aggregating over message_event
+ALTER TABLE message_container ADD COLUMN message_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE message_container ADD COLUMN oldest_message_date TIMESTAMP DEFAULT NULL;
+ALTER TABLE message_container ADD COLUMN newest_message_date TIMESTAMP DEFAULT NULL;
+
+-- initialize the counters from the existing messages
+UPDATE message_container mc SET
+    message_count = counts.message_count,
+    oldest_message_date = counts.oldest_message_date,
+    newest_message_date = counts.newest_message_date
+FROM (
+    SELECT parenturi, count(*) AS message_count, min(creationdate) AS oldest_message_date,
+        max(creationdate) AS newest_message_date
+    FROM message_event
+    WHERE messagetype NOT IN ('SUCCESS_RESPONSE', 'FAILURE_RESPONSE')
+    GROUP BY parenturi
+) counts
+WHERE mc.parent_uri = counts.parenturi;
+
+-- used for counting the messages after the last seen message of a connection
+CREATE INDEX IDX_ME_PARENT_URI_CREATION_DATE ON message_event (parenturi, creationdate);
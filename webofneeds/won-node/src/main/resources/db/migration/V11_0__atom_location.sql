@@ -0,0 +1,14 @@
+-- spatial index of the atoms' location and job location coordinates, filled when an atom is stored and
+-- in the background for the atoms that existed before (see AtomLocationIndexer)
+CREATE TABLE atom_location (
+    id BIGINT NOT NULL PRIMARY KEY,
+    atomuri VARCHAR(255) NOT NULL,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION,
+    job_latitude DOUBLE PRECISION,
+    job_longitude DOUBLE PRECISION
+);
+
+CREATE UNIQUE INDEX IDX_AL_UNIQUE_ATOM_URI ON atom_location (atomuri);
+CREATE INDEX IDX_AL_LOCATION ON atom_location (latitude, longitude);
+CREATE INDEX IDX_AL_JOB_LOCATION ON atom_location (job_latitude, job_longitude);
@@ -6,7 +6,9 @@ import static org.mockito.Matchers.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -34,6 +36,7 @@ import won.node.service.nodeconfig.URIService;
 import won.node.service.persistence.AtomService;
 import won.node.service.persistence.ConnectionService;
 import won.node.service.persistence.MessageService;
+import won.protocol.exception.DuplicateResponseException;
 import won.protocol.message.WonMessage;
 import won.protocol.message.builder.WonMessageBuilder;
 import won.protocol.message.processor.impl.KeyForNewAtomAddingProcessor;
@@ -43,6 +46,8 @@ import won.protocol.model.Atom;
 import won.protocol.model.AtomMessageContainer;
 import won.protocol.model.AtomState;
 import won.protocol.model.Connection;
+import won.protocol.model.unread.UnreadMessageInfo;
+import won.protocol.model.unread.UnreadMessageInfoForConnection;
 import won.protocol.repository.AtomMessageContainerRepository;
 import won.protocol.repository.AtomRepository;
 import won.protocol.repository.MessageEventRepository;
@@ -301,6 +306,94 @@ public class PersistenceTest {
                         .map(mic -> mic.getMessageURI()).collect(Collectors.toSet());
     }
 
+    @Test(expected = DuplicateResponseException.class)
+    public void test_duplicate_response_is_rejected() throws Exception {
+        Dataset ds = createTestDataset("/won/node/test-messages/create-atom.trig");
+        WonMessage createMsg = prepareFromOwner(WonMessage.of(ds));
+        Atom atom = atomService.createAtom(createMsg);
+        messageService.saveMessage(createMsg, atom.getAtomURI());
+        messageService.saveMessage(prepareFromSystem(WonMessageBuilder
+                        .response()
+                        .respondingToMessageFromOwner(createMsg)
+                        .success()
+                        .build()), atom.getAtomURI());
+        // a second response from the same container to the same message
+        messageService.saveMessage(prepareFromSystem(WonMessageBuilder
+                        .response()
+                        .respondingToMessageFromOwner(createMsg)
+                        .success()
+                        .build()), atom.getAtomURI());
+    }
+
+    @Test
+    public void test_message_counters_match_unread_info() throws Exception {
+        Dataset ds = createTestDataset("/won/node/test-messages/create-atom.trig");
+        WonMessage createMsg = prepareFromOwner(WonMessage.of(ds));
+        Atom atom = atomService.createAtom(createMsg);
+        messageService.saveMessage(createMsg, atom.getAtomURI());
+        ds = createTestDataset("/won/node/test-messages/create-atom2.trig");
+        WonMessage createMsg2 = prepareFromOwner(WonMessage.of(ds));
+        Atom atom2 = atomService.createAtom(createMsg2);
+        messageService.saveMessage(createMsg2, atom2.getAtomURI());
+        URI senderSocket = URI.create(atom.getAtomURI().toString() + "#chatSocket");
+        URI targetSocket = URI.create(atom2.getAtomURI().toString() + "#chatSocket");
+        Mockito.when(socketLookup.getCapacity(any(URI.class))).thenReturn(Optional.of(10));
+        Mockito.when(socketLookup.isCompatible(any(URI.class), any(URI.class))).thenReturn(true);
+        Mockito.when(socketLookup.getCapacityOfType(any(URI.class))).thenReturn(Optional.of(10));
+        Mockito.when(socketLookup.isCompatibleSocketTypes(any(URI.class), any(URI.class))).thenReturn(true);
+        Mockito.when(wonNodeInformationService.generateConnectionURI(any(URI.class)))
+                        .then(invocation -> newConnectionURI(invocation.getArgumentAt(0, URI.class)));
+        WonMessage connectMessage = prepareFromOwner(WonMessageBuilder
+                        .connect()
+                        .sockets().sender(senderSocket).recipient(targetSocket)
+                        .content().text("Hey there!")
+                        .build());
+        Connection con = connectionService.connectFromOwner(connectMessage);
+        messageService.saveMessage(connectMessage, con.getConnectionURI());
+        // responses are not counted
+        messageService.saveMessage(prepareFromSystem(WonMessageBuilder
+                        .response()
+                        .respondingToMessageFromOwner(connectMessage)
+                        .fromConnection(con.getConnectionURI())
+                        .success()
+                        .build()), con.getConnectionURI());
+        Thread.sleep(10);
+        WonMessage textMessage = prepareFromOwner(WonMessageBuilder
+                        .connectionMessage()
+                        .sockets().sender(senderSocket).recipient(targetSocket)
+                        .content().text("Anyone there?")
+                        .build());
+        messageService.saveMessage(textMessage, con.getConnectionURI());
+        // nothing seen yet
+        List<UnreadMessageInfoForConnection> counters = messageEventRepository
+                        .getMessageCountersForAtom(atom.getAtomURI());
+        List<UnreadMessageInfoForConnection> expected = messageEventRepository.getUnreadInfoForAtom(
+                        atom.getAtomURI(), Collections.singleton(URI.create("uri:unknownMessage")));
+        assertEquals(1, counters.size());
+        assertEquals(2, counters.get(0).getUnreadInformation().getCount());
+        assertSameUnreadInfo(expected.get(0).getUnreadInformation(), counters.get(0).getUnreadInformation());
+        // the counters are the same after rebuilding them from the messages
+        messageService.rebuildMessageCounters();
+        counters = messageEventRepository.getMessageCountersForAtom(atom.getAtomURI());
+        assertSameUnreadInfo(expected.get(0).getUnreadInformation(), counters.get(0).getUnreadInformation());
+        // connect message seen
+        expected = messageEventRepository.getUnreadInfoForAtom(atom.getAtomURI(),
+                        Collections.singleton(connectMessage.getMessageURI()));
+        Date lastSeen = (Date) messageEventRepository
+                        .getNewestCreationDatePerParent(Collections.singleton(connectMessage.getMessageURI()))
+                        .get(0)[1];
+        UnreadMessageInfo unread = messageEventRepository.getUnreadInfoForParentAfter(con.getConnectionURI(),
+                        lastSeen);
+        assertEquals(1, unread.getCount());
+        assertSameUnreadInfo(expected.get(0).getUnreadInformation(), unread);
+    }
+
+    private void assertSameUnreadInfo(UnreadMessageInfo expected, UnreadMessageInfo actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getNewestTimestamp().getTime(), actual.getNewestTimestamp().getTime());
+        assertEquals(expected.getOldestTimestamp().getTime(), actual.getOldestTimestamp().getTime());
+    }
+
     private Dataset createTestDataset(String resourceName) throws IOException {
         InputStream is = this.getClass().getResourceAsStream(resourceName);
         Dataset dataset = DatasetFactory.createGeneral();
@@ -0,0 +1,141 @@
+package won.node.camel.processor.general;
+
+import java.net.URI;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.jena.query.DatasetFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+
+import won.node.camel.processor.annotation.DefaultSocketMessageProcessor;
+import won.node.camel.processor.annotation.FixedMessageProcessor;
+import won.node.camel.processor.annotation.SocketMessageProcessor;
+import won.protocol.exception.WonMessageProcessingException;
+import won.protocol.message.WonMessage;
+import won.protocol.message.WonMessageDirection;
+import won.protocol.message.WonMessageType;
+import won.protocol.message.processor.camel.WonCamelConstants;
+import won.protocol.vocabulary.WONMSG;
+import won.protocol.vocabulary.WXCHAT;
+import won.protocol.vocabulary.WXGROUP;
+
+public class SlipComputerTest {
+    private GenericApplicationContext applicationContext;
+
+    @Before
+    public void setUp() {
+        applicationContext = new GenericApplicationContext();
+        applicationContext.registerBeanDefinition("createFromOwner", new RootBeanDefinition(CreateFromOwner.class));
+        applicationContext.registerBeanDefinition("connectionMessage",
+                        new RootBeanDefinition(ConnectionMessage.class));
+        applicationContext.registerBeanDefinition("connectionMessageFromExternal",
+                        new RootBeanDefinition(ConnectionMessageFromExternal.class));
+        applicationContext.registerBeanDefinition("chatSocket", new RootBeanDefinition(ChatSocket.class));
+        applicationContext.registerBeanDefinition("groupSocket", new RootBeanDefinition(GroupSocket.class));
+        applicationContext.refresh();
+    }
+
+    @Test
+    public void testMessageTypeSlips() throws Exception {
+        MessageTypeSlipComputer slipComputer = messageTypeSlipComputer(false);
+        Assert.assertEquals("bean:createFromOwner?method=process", slipComputer.evaluate(
+                        exchange(WonMessageType.CREATE_ATOM, WonMessageDirection.FROM_OWNER, null), String.class));
+        Assert.assertEquals("bean:connectionMessage?method=process",
+                        slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE,
+                                        WonMessageDirection.FROM_OWNER, null), String.class));
+        Assert.assertEquals("bean:connectionMessage?method=process,bean:connectionMessageFromExternal?method=process",
+                        slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE,
+                                        WonMessageDirection.FROM_EXTERNAL, null), String.class));
+    }
+
+    @Test(expected = WonMessageProcessingException.class)
+    public void testMessageTypeSlipWithoutProcessor() throws Exception {
+        messageTypeSlipComputer(false).evaluate(
+                        exchange(WonMessageType.CREATE_ATOM, WonMessageDirection.FROM_EXTERNAL, null), String.class);
+    }
+
+    @Test
+    public void testMessageTypeSlipWithoutProcessorAllowed() throws Exception {
+        Assert.assertNull(messageTypeSlipComputer(true).evaluate(
+                        exchange(WonMessageType.CREATE_ATOM, WonMessageDirection.FROM_EXTERNAL, null), String.class));
+    }
+
+    @Test
+    public void testSocketTypeSlips() throws Exception {
+        SocketTypeSlipComputer slipComputer = new SocketTypeSlipComputer();
+        slipComputer.setApplicationContext(applicationContext);
+        slipComputer.afterPropertiesSet();
+        Assert.assertEquals("bean:groupSocket?method=process",
+                        slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE,
+                                        WonMessageDirection.FROM_OWNER, URI.create(WXGROUP.GroupSocketString)),
+                                        String.class));
+        Assert.assertEquals("bean:chatSocket?method=process",
+                        slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE,
+                                        WonMessageDirection.FROM_SYSTEM, URI.create(WXCHAT.ChatSocketString)),
+                                        String.class));
+        // no specific processor for the socket type: the default is used
+        Assert.assertEquals("bean:chatSocket?method=process",
+                        slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE,
+                                        WonMessageDirection.FROM_OWNER, URI.create("urn:test:otherSocket")),
+                                        String.class));
+        try {
+            slipComputer.evaluate(exchange(WonMessageType.CONNECTION_MESSAGE, WonMessageDirection.FROM_EXTERNAL,
+                            URI.create(WXCHAT.ChatSocketString)), String.class);
+            Assert.fail("expected a WonMessageProcessingException");
+        } catch (WonMessageProcessingException e) {
+            // expected
+        }
+    }
+
+    private MessageTypeSlipComputer messageTypeSlipComputer(boolean allowNoMatchingProcessor) throws Exception {
+        MessageTypeSlipComputer slipComputer = new MessageTypeSlipComputer(FixedMessageProcessor.class.getName(),
+                        allowNoMatchingProcessor);
+        slipComputer.setApplicationContext(applicationContext);
+        slipComputer.afterPropertiesSet();
+        return slipComputer;
+    }
+
+    private Exchange exchange(WonMessageType messageType, WonMessageDirection direction, URI socketType) {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(WonCamelConstants.MESSAGE_HEADER, new WonMessage(DatasetFactory.createGeneral()));
+        exchange.getIn().setHeader(WonCamelConstants.MESSAGE_TYPE_HEADER, messageType.getURI());
+        exchange.getIn().setHeader(WonCamelConstants.DIRECTION_HEADER, direction.getURI());
+        if (socketType != null) {
+            exchange.getIn().setHeader(WonCamelConstants.SOCKET_TYPE_URI_HEADER, socketType);
+        }
+        return exchange;
+    }
+
+    private abstract static class TestProcessor implements Processor {
+        @Override
+        public void process(Exchange exchange) throws Exception {
+        }
+    }
+
+    @FixedMessageProcessor(direction = WONMSG.FromOwnerString, messageType = WONMSG.CreateMessageString)
+    static class CreateFromOwner extends TestProcessor {
+    }
+
+    @FixedMessageProcessor(messageType = WONMSG.ConnectionMessageString)
+    static class ConnectionMessage extends TestProcessor {
+    }
+
+    @FixedMessageProcessor(direction = WONMSG.FromExternalString, messageType = WONMSG.ConnectionMessageString)
+    static class ConnectionMessageFromExternal extends TestProcessor {
+    }
+
+    @DefaultSocketMessageProcessor(direction = WONMSG.FromOwnerString, messageType = WONMSG.ConnectionMessageString)
+    @SocketMessageProcessor(socketType = WXCHAT.ChatSocketString, direction = WONMSG.FromOwnerString, messageType = WONMSG.ConnectionMessageString)
+    static class ChatSocket extends TestProcessor {
+    }
+
+    @SocketMessageProcessor(socketType = WXGROUP.GroupSocketString, direction = WONMSG.FromOwnerString, messageType = WONMSG.ConnectionMessageString)
+    static class GroupSocket extends TestProcessor {
+    }
+}
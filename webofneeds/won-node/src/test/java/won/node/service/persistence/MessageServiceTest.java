@@ -0,0 +1,69 @@
+package won.node.service.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import won.protocol.model.URICountSetConverter;
+import won.protocol.model.URIMapToURISetConverter;
+import won.protocol.repository.MessageContainerRepository;
+
+public class MessageServiceTest {
+    private MessageService messageService;
+    private MessageContainerRepository messageContainerRepository;
+
+    @Before
+    public void setUp() {
+        messageContainerRepository = Mockito.mock(MessageContainerRepository.class);
+        messageService = new MessageService();
+        messageService.messageContainerRepository = messageContainerRepository;
+    }
+
+    @Test
+    public void testCorruptConfirmationDataIsSkipped() {
+        byte[] unconfirmed = serialize(new HashSet<>());
+        byte[] pending = serialize(new HashMap<>());
+        // starts like Java serialization, but cannot be read
+        byte[] corrupt = new byte[] { (byte) 0xAC, (byte) 0xED, 0, 5, 42 };
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 1L, unconfirmed, pending });
+        rows.add(new Object[] { 2L, corrupt, pending });
+        rows.add(new Object[] { 3L, unconfirmed, pending });
+        Mockito.when(messageContainerRepository.findWithLegacyConfirmationFormat(0L, 10)).thenReturn(rows);
+        Mockito.when(messageContainerRepository.replaceConfirmationData(ArgumentMatchers.anyLong(),
+                        ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                        ArgumentMatchers.any())).thenReturn(1);
+        Assert.assertEquals(Optional.of(3L), messageService.convertLegacyConfirmationData(0L, 10));
+        for (long id : new long[] { 1L, 3L }) {
+            Mockito.verify(messageContainerRepository).replaceConfirmationData(id, unconfirmed, pending,
+                            URICountSetConverter.toCurrentFormat(unconfirmed),
+                            URIMapToURISetConverter.toCurrentFormat(pending));
+        }
+        Mockito.verify(messageContainerRepository, Mockito.never()).replaceConfirmationData(
+                        ArgumentMatchers.eq(2L), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                        ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    private static byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(value);
+            oos.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -21,6 +21,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.jena.query.Dataset;
@@ -184,6 +186,10 @@ public class RestAtomController {
         if (filterByAtomTypeUriString != null) {
             filterByAtomTypeUri = URI.create(filterByAtomTypeUriString);
         }
+        if (nearLocation != null) {
+            return getAtomsNear(nodeURI, nearLocation, maxDistance, modifiedAfter, createdAfter, state,
+                            filterBySocketTypeUri, filterByAtomTypeUri, limit);
+        }
         Map<URI, AtomPojo> atomMap = new HashMap<>();
         int lastBatchSize = -1;
         int lastPageSize = -1;
@@ -228,13 +234,9 @@ public class RestAtomController {
                     if (atom.getState() != AtomState.ACTIVE) {
                         continue;
                     }
-                    if (nearLocation == null
-                                    || isNearLocation(nearLocation, atom.getLocation(), maxDistance)
-                                    || isNearLocation(nearLocation, atom.getJobLocation(), maxDistance)) {
-                        atomMap.put(atom.getUri(), atom);
-                        if (limit != null && limit > 0 && atomMap.size() >= limit)
-                            break OUTER; // break fetching if the limit has been reached
-                    }
+                    atomMap.put(atom.getUri(), atom);
+                    if (limit != null && limit > 0 && atomMap.size() >= limit)
+                        break OUTER; // break fetching if the limit has been reached
                 } catch (LinkedDataFetchingException e) {
                     logger.debug("Could not retrieve atom<" + atomUri + "> cause: " + e.getMessage());
                     continue;
@@ -251,6 +253,57 @@ public class RestAtomController {
         return atomMap;
     }
 
+    /**
+     * Fetches the atoms near the location. The node only returns the URIs of the
+     * newest matching atoms, which are then fetched in parallel on the linked data
+     * source's thread pool until <code>limit</code> of them pass the filters.
+     */
+    private Map<URI, AtomPojo> getAtomsNear(URI nodeURI, Coordinate nearLocation, Integer maxDistance,
+                    ZonedDateTime modifiedAfter, ZonedDateTime createdAfter, AtomState state,
+                    URI filterBySocketTypeUri, URI filterByAtomTypeUri, Integer limit) {
+        boolean limited = limit != null && limit > 0;
+        // the node only filters by state and type, ask for more atoms if the other
+        // filters may drop some of them
+        boolean nodeAppliesAllFilters = state == AtomState.ACTIVE && modifiedAfter == null && createdAfter == null;
+        List<URI> atomUris = WonLinkedDataUtils.getNodeAtomUrisNear(nodeURI, nearLocation,
+                        maxDistance != null ? maxDistance : DEFAULT_MAX_DISTANCE, state, filterBySocketTypeUri,
+                        filterByAtomTypeUri, limited && nodeAppliesAllFilters ? limit : FETCH_PAGE_SIZE_NO_LIMIT,
+                        linkedDataSource);
+        Map<URI, AtomPojo> atomMap = new HashMap<>();
+        int next = 0;
+        while (next < atomUris.size() && (!limited || atomMap.size() < limit)) {
+            // fetch as many atoms as are still missing, newest first
+            int batchSize = limited ? limit - atomMap.size() : atomUris.size();
+            List<CompletableFuture<AtomPojo>> batch = atomUris
+                            .subList(next, Math.min(next + batchSize, atomUris.size())).stream()
+                            .map(this::fetchAtomAsync)
+                            .collect(Collectors.toList());
+            next += batch.size();
+            for (CompletableFuture<AtomPojo> future : batch) {
+                AtomPojo atom = future.join();
+                if (atom != null && atom.getState() == AtomState.ACTIVE
+                                && isAfter(atom.getModifiedZonedDateTime(), modifiedAfter)
+                                && isAfter(atom.getCreationZonedDateTime(), createdAfter)) {
+                    atomMap.put(atom.getUri(), atom);
+                }
+            }
+        }
+        return atomMap;
+    }
+
+    private static boolean isAfter(ZonedDateTime date, ZonedDateTime reference) {
+        return reference == null || (date != null && date.isAfter(reference));
+    }
+
+    private CompletableFuture<AtomPojo> fetchAtomAsync(URI atomUri) {
+        return linkedDataSource.getDataForResourceAsync(atomUri, null)
+                        .thenApply(AtomPojo::new)
+                        .exceptionally(e -> {
+                            logger.debug("Could not retrieve atom<" + atomUri + "> cause: " + e.getMessage());
+                            return null;
+                        });
+    }
+
     private int determinePageSize(int loaded, int lastBatchSize, int lastPageSize, int page,
                     int limit) {
         if (limit <= 0) {
@@ -282,35 +335,6 @@ public class RestAtomController {
         return Math.min(Math.max(pageSize, MIN_FETCH_PAGE_SIZE_FILLING_UP), MAX_FETCH_PAGE_SIZE_FILLING_UP);
     }
 
-    /**
-     * Calculated the distance between two coordinates in meters, and returns true
-     * if the distance is below or equal to the maxDistance parameter, if the
-     * parameter is null we use 5000meters as the maxDistance
-     * 
-     * @param nearLocation lat/lng Coordinates of any given location
-     * @param atomLocation lat/lng Coordinates of an atom
-     * @param maxDistance distance in meters
-     * @return true if atomLocation is within the radius of nearLocation and the
-     * maxDistance
-     */
-    private boolean isNearLocation(Coordinate nearLocation, Coordinate atomLocation, Integer maxDistance) {
-        if (atomLocation != null) {
-            if (maxDistance == null) {
-                maxDistance = DEFAULT_MAX_DISTANCE;
-            }
-            double earthRadius = 6371000; // meters
-            double dLat = Math.toRadians(nearLocation.getLatitude() - atomLocation.getLatitude());
-            double dLng = Math.toRadians(nearLocation.getLongitude() - atomLocation.getLongitude());
-            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(atomLocation.getLatitude()))
-                            * Math.cos(Math.toRadians(nearLocation.getLatitude())) * Math.sin(dLng / 2)
-                            * Math.sin(dLng / 2);
-            double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-            double distance = earthRadius * c;
-            return distance <= maxDistance;
-        }
-        return false;
-    }
-
     /**
      * saves draft of a draft
      * 
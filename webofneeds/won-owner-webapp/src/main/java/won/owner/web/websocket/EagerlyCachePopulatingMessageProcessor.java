@@ -5,7 +5,6 @@ import java.net.URI;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +21,6 @@ public class EagerlyCachePopulatingMessageProcessor implements WonMessageProcess
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
     @Autowired
     private LinkedDataSource linkedDataSourceOnBehalfOfAtom;
-    @Autowired
-    private ThreadPoolExecutor parallelRequestsThreadpool;
 
     @Override
     public WonMessage process(WonMessage message) throws WonMessageProcessingException {
@@ -38,8 +35,13 @@ public class EagerlyCachePopulatingMessageProcessor implements WonMessageProcess
             addIfNotNull(toLoad, message.getRespondingToMessageURI());
             List<URI> previous = WonRdfUtils.MessageUtils.getPreviousMessageUrisIncludingRemote(message);
             addIfNotNull(toLoad, previous);
-            parallelRequestsThreadpool.submit(() -> toLoad.parallelStream()
-                            .forEach(uri -> linkedDataSourceOnBehalfOfAtom.getDataForResource(uri, requester)));
+            // requests for the same URI are coalesced by the linkedDataSource, nothing
+            // waits for the results here
+            toLoad.forEach(uri -> linkedDataSourceOnBehalfOfAtom.getDataForResourceAsync(uri, requester)
+                            .exceptionally(e -> {
+                                logger.debug("could not eagerly fetch {} into cache: {}", uri, e.getMessage());
+                                return null;
+                            }));
         }
         return message;
     }
@@ -48,10 +50,6 @@ public class EagerlyCachePopulatingMessageProcessor implements WonMessageProcess
         this.linkedDataSourceOnBehalfOfAtom = linkedDataSourceOnBehalfOfAtom;
     }
 
-    public void setThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor) {
-        this.parallelRequestsThreadpool = threadPoolExecutor;
-    }
-
     private void addIfNotNull(Set<URI> uris, URI uri) {
         if (uri != null) {
             uris.add(uri);
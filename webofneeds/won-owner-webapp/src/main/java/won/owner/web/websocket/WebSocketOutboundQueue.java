@@ -0,0 +1,342 @@
+package won.owner.web.websocket;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.javasimon.Counter;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import won.protocol.message.WonMessage;
+import won.protocol.message.WonMessageEncoder;
+
+/**
+ * Bounded queue of the messages to be sent to the client over one websocket
+ * session. Adding a message never blocks: the messages are written by a task
+ * running on the shared executor, and there is at most one such task per
+ * session. Thus, a slow client only delays its own messages.
+ * <p>
+ * What happens when the queue is full is determined by the
+ * {@link OverflowPolicy}. If sending fails, the session is closed, the queued
+ * messages are reported as undelivered (see {@link OutboundMessage}) and the
+ * failure listener is notified so that the session can be unregistered. The
+ * number of queued messages, the time needed for
+ * sending a message and the number of dropped messages are recorded in the
+ * simons {@link #QUEUED_MESSAGES_COUNTER}, {@link #SEND_STOPWATCH} and
+ * {@link #DROPPED_MESSAGES_COUNTER}.
+ */
+public class WebSocketOutboundQueue {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    public static final String QUEUED_MESSAGES_COUNTER = "WonWebSocketHandler.queuedMessages";
+    public static final String DROPPED_MESSAGES_COUNTER = "WonWebSocketHandler.droppedMessages";
+    public static final String SEND_STOPWATCH = "WonWebSocketHandler.send";
+
+    public enum OverflowPolicy {
+        /**
+         * The new message is discarded.
+         */
+        DROP,
+        /**
+         * The oldest queued message is discarded to make room for the new one, so the
+         * queue always holds the most recent messages. The client catches up on the
+         * discarded ones when it reloads the connection's messages.
+         */
+        COALESCE,
+        /**
+         * The session is closed and all queued messages are discarded. The client is
+         * notified of the new message by push or email instead, and reloads its data
+         * when it reconnects.
+         */
+        CLOSE
+    }
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<WebSocketSession> failureListener;
+    // all fields below are guarded by the queue
+    private final Deque<OutboundMessage> queue = new ArrayDeque<>();
+    private boolean writing = false;
+    private boolean closed = false;
+
+    /**
+     * @param failureListener called with the session if the queue closes it
+     * because sending failed or the queue overflowed
+     */
+    public WebSocketOutboundQueue(WebSocketSession session, Executor executor, int capacity,
+                    OverflowPolicy overflowPolicy, Consumer<WebSocketSession> failureListener) {
+        this.session = session;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Adds the message to the queue, starting the writer task if it is not running.
+     *
+     * @return false if the message will not be delivered because the session is
+     * closed (or has just been closed due to the overflow policy), true otherwise
+     */
+    public boolean offer(OutboundMessage message) {
+        boolean startWriter = false;
+        Deque<OutboundMessage> discarded = null;
+        synchronized (queue) {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                switch (overflowPolicy) {
+                    case DROP:
+                        logger.debug("outbound queue of session {} is full, dropping message", session.getId());
+                        message.discarded();
+                        countDropped(1);
+                        return true;
+                    case COALESCE:
+                        logger.debug("outbound queue of session {} is full, dropping oldest message",
+                                        session.getId());
+                        OutboundMessage oldest = queue.removeFirst();
+                        oldest.discarded();
+                        oldest.undelivered();
+                        countDropped(1);
+                        getQueuedMessagesCounter().decrease();
+                        break;
+                    default:
+                        logger.info("outbound queue of session {} is full, closing the session", session.getId());
+                        closed = true;
+                        discarded = removeQueuedMessages();
+                        countDropped(1);
+                }
+            }
+            if (!closed) {
+                message.addPendingDelivery();
+                queue.addLast(message);
+                getQueuedMessagesCounter().increase();
+                if (!writing) {
+                    writing = true;
+                    startWriter = true;
+                }
+            }
+        }
+        if (discarded != null) {
+            fail(discarded, CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        }
+        if (startWriter) {
+            try {
+                executor.execute(this::writeQueuedMessages);
+            } catch (RejectedExecutionException e) {
+                logger.warn("could not start writing to session {}: {}", session.getId(), e.getMessage());
+                synchronized (queue) {
+                    writing = false;
+                    closed = true;
+                    discarded = removeQueuedMessages();
+                }
+                fail(discarded, CloseStatus.SERVICE_OVERLOAD);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rejects new messages and reports the queued ones as undelivered. Used when
+     * the session has been closed.
+     */
+    public void close() {
+        Deque<OutboundMessage> discarded;
+        synchronized (queue) {
+            closed = true;
+            discarded = removeQueuedMessages();
+        }
+        discarded.forEach(OutboundMessage::undelivered);
+    }
+
+    public boolean isClosed() {
+        synchronized (queue) {
+            return closed;
+        }
+    }
+
+    public int size() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private void writeQueuedMessages() {
+        while (true) {
+            OutboundMessage message;
+            synchronized (queue) {
+                message = queue.pollFirst();
+                if (message == null) {
+                    writing = false;
+                    return;
+                }
+                getQueuedMessagesCounter().decrease();
+            }
+            if (!send(message)) {
+                Deque<OutboundMessage> discarded;
+                synchronized (queue) {
+                    writing = false;
+                    closed = true;
+                    discarded = removeQueuedMessages();
+                }
+                countDropped(1);
+                discarded.addFirst(message);
+                fail(discarded, CloseStatus.SERVER_ERROR);
+                return;
+            }
+            message.delivered();
+        }
+    }
+
+    private boolean send(OutboundMessage message) {
+        if (!session.isOpen()) {
+            logger.debug("session {} is closed, can't send message", session.getId());
+            return false;
+        }
+        Split split = SimonManager.getStopwatch(SEND_STOPWATCH).start();
+        try {
+            TextMessage textMessage = message.getTextMessage();
+            logger.debug("OA Server - sending WebSocket message: {}", textMessage);
+            session.sendMessage(textMessage);
+            return true;
+        } catch (Exception e) {
+            logger.warn("caught exception while trying to send on session " + session.getId(), e);
+            return false;
+        } finally {
+            split.stop();
+        }
+    }
+
+    /**
+     * Takes all messages out of the queue, must be called while holding the lock.
+     */
+    private Deque<OutboundMessage> removeQueuedMessages() {
+        Deque<OutboundMessage> removed = new ArrayDeque<>(queue);
+        if (!queue.isEmpty()) {
+            countDropped(queue.size());
+            getQueuedMessagesCounter().decrease(queue.size());
+            queue.clear();
+        }
+        return removed;
+    }
+
+    /**
+     * Closes the session, reports the messages as undelivered and notifies the
+     * failure listener. Must be called without holding the lock.
+     */
+    private void fail(Deque<OutboundMessage> undelivered, CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            logger.debug("could not close session " + session.getId(), e);
+        }
+        try {
+            failureListener.accept(session);
+        } catch (Exception e) {
+            logger.warn("could not unregister session " + session.getId(), e);
+        }
+        undelivered.forEach(OutboundMessage::undelivered);
+    }
+
+    private static void countDropped(int count) {
+        SimonManager.getCounter(DROPPED_MESSAGES_COUNTER).increase(count);
+    }
+
+    private static Counter getQueuedMessagesCounter() {
+        return SimonManager.getCounter(QUEUED_MESSAGES_COUNTER);
+    }
+
+    /**
+     * A message to be sent to one or more sessions. It is encoded as JSON-LD once,
+     * by the first writer task that sends it, rather than on the thread that
+     * received it from the node.
+     * <p>
+     * The undelivered callback runs once if the message could not be sent over any
+     * of the sessions it was offered to, on the thread that found out about the
+     * last failure. The dispatching thread must call {@link #dispatched()} after
+     * offering the message to all sessions. Messages discarded according to the
+     * overflow policy (DROP, COALESCE) do not count as undelivered.
+     */
+    public static class OutboundMessage {
+        private final WonMessage wonMessage;
+        private final Runnable undeliveredCallback;
+        private volatile TextMessage textMessage;
+        // the dispatching thread holds one until it has offered the message to all
+        // sessions, so that the callback cannot run before
+        private final AtomicInteger pendingDeliveries = new AtomicInteger(1);
+        private final AtomicBoolean handled = new AtomicBoolean(false);
+
+        public OutboundMessage(WonMessage wonMessage, Runnable undeliveredCallback) {
+            this.wonMessage = wonMessage;
+            this.undeliveredCallback = undeliveredCallback;
+        }
+
+        /**
+         * Called by the dispatching thread once the message has been offered to all
+         * sessions.
+         */
+        public void dispatched() {
+            releasePendingDelivery();
+        }
+
+        void addPendingDelivery() {
+            pendingDeliveries.incrementAndGet();
+        }
+
+        void delivered() {
+            handled.set(true);
+            releasePendingDelivery();
+        }
+
+        /**
+         * The message was dropped according to the overflow policy, which does not
+         * count as a failure.
+         */
+        void discarded() {
+            handled.set(true);
+        }
+
+        void undelivered() {
+            releasePendingDelivery();
+        }
+
+        private void releasePendingDelivery() {
+            if (pendingDeliveries.decrementAndGet() == 0 && !handled.getAndSet(true)) {
+                try {
+                    undeliveredCallback.run();
+                } catch (Exception e) {
+                    logger.warn("could not handle undelivered message", e);
+                }
+            }
+        }
+
+        public TextMessage getTextMessage() {
+            TextMessage result = textMessage;
+            if (result == null) {
+                synchronized (this) {
+                    result = textMessage;
+                    if (result == null) {
+                        result = new TextMessage(WonMessageEncoder.encodeAsJsonLd(wonMessage));
+                        textMessage = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -18,12 +18,15 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
-import java.text.MessageFormat;
 import java.time.Duration;
 import java.util.Base64;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.codehaus.jackson.map.ObjectMapper;
@@ -33,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.mail.MailException;
 import org.springframework.security.core.Authentication;
@@ -57,10 +61,11 @@ import won.owner.web.WonOwnerMailSender;
 import won.owner.web.WonOwnerPushSender;
 import won.owner.web.service.ServerSideActionService;
 import won.owner.web.service.UserAtomService;
+import won.owner.web.websocket.WebSocketOutboundQueue.OutboundMessage;
+import won.owner.web.websocket.WebSocketOutboundQueue.OverflowPolicy;
 import won.protocol.message.WonMessage;
 import won.protocol.message.WonMessageDecoder;
 import won.protocol.message.WonMessageDirection;
-import won.protocol.message.WonMessageEncoder;
 import won.protocol.message.WonMessageType;
 import won.protocol.message.processor.WonMessageProcessor;
 import won.protocol.model.ConnectionState;
@@ -102,10 +107,21 @@ public class WonWebSocketHandler extends TextWebSocketHandler
     @Autowired
     private URIService uriService;
     private BatchingConsumer<String, String[]> batchingConsumer = new BatchingConsumer<>();
+    @Value("${websocket.outbound.queue.capacity:100}")
+    private int outboundQueueCapacity = 100;
+    @Value("${websocket.outbound.queue.overflowPolicy:CLOSE}")
+    private OverflowPolicy outboundQueueOverflowPolicy = OverflowPolicy.CLOSE;
+    @Value("${websocket.outbound.threads:16}")
+    private int outboundThreads = 16;
+    // one outbound queue per session (by session id), written by tasks on the
+    // executor
+    private final ConcurrentMap<String, WebSocketOutboundQueue> outboundQueues = new ConcurrentHashMap<>();
+    private ExecutorService outboundExecutor;
 
     @Override
     public void afterPropertiesSet() throws Exception {
         this.ownerApplicationService.setMessageProcessorDelegate(this);
+        this.outboundExecutor = Executors.newFixedThreadPool(outboundThreads);
     }
 
     @Override
@@ -113,6 +129,7 @@ public class WonWebSocketHandler extends TextWebSocketHandler
     public void destroy() throws Exception {
         // send all mails that are being held back for batching
         this.batchingConsumer.consumeAllBatches();
+        this.outboundExecutor.shutdown();
     }
 
     @Override
@@ -132,6 +149,26 @@ public class WonWebSocketHandler extends TextWebSocketHandler
     @Override
     public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) throws Exception {
         super.afterConnectionClosed(session, status);
+        WebSocketOutboundQueue outboundQueue = outboundQueues.remove(session.getId());
+        if (outboundQueue != null) {
+            outboundQueue.close();
+        }
+        removeSessionBindings(session);
+    }
+
+    /**
+     * Called by the outbound queue of a session that it had to close because
+     * sending failed or the queue overflowed.
+     */
+    private void onSessionFailure(final WebSocketSession session) {
+        WebSocketOutboundQueue outboundQueue = outboundQueues.remove(session.getId());
+        if (outboundQueue != null) {
+            outboundQueue.close();
+        }
+        removeSessionBindings(session);
+    }
+
+    private void removeSessionBindings(final WebSocketSession session) {
         User user = getUserForSession(session);
         if (user != null) {
             logger.debug("session closed, removing session bindings to user {}", user.getId());
@@ -271,10 +308,8 @@ public class WonWebSocketHandler extends TextWebSocketHandler
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.READ_COMMITTED)
     public WonMessage process(final WonMessage wonMessage) {
         try {
-            String wonMessageJsonLdString = WonMessageEncoder.encodeAsJsonLd(wonMessage);
             Optional<URI> connectionURI = WonLinkedDataUtils.getConnectionURIForIncomingMessage(wonMessage,
                             linkedDataSource);
-            WebSocketMessage<String> webSocketMessage = new TextMessage(wonMessageJsonLdString);
             URI atomUri = getOwnedAtomURIForMessageFromNode(wonMessage);
             Set<WebSocketSession> webSocketSessions = webSocketSessionService.getWebSocketSessions(atomUri);
             Optional<User> userOpt = webSocketSessions == null ? Optional.empty()
@@ -300,12 +335,10 @@ public class WonWebSocketHandler extends TextWebSocketHandler
             }
             // we can send it - pre-cache the delivery chain:
             eagerlyCachePopulatingProcessor.process(wonMessage);
-            // send to owner webapp
-            int successfullySent = 0;
-            for (WebSocketSession session : webSocketSessions) {
-                successfullySent += sendMessageForSession(wonMessage, webSocketMessage, session, atomUri, user) ? 1 : 0;
-            }
-            if (successfullySent == 0) {
+            // send to owner webapp: the message is queued for each session and encoded
+            // once, when the first session's writer gets to it. If none of the sessions
+            // delivers it, possibly later on a writer thread, it is sent by email.
+            OutboundMessage outboundMessage = new OutboundMessage(wonMessage, () -> {
                 // we did not manage to send the message via the websocket, send it by email.
                 if (logger.isDebugEnabled()) {
                     logger.debug("cannot deliver message {}: none of the associated websocket sessions worked. Trying to send message by webpush and email.",
@@ -316,7 +349,11 @@ public class WonWebSocketHandler extends TextWebSocketHandler
                 // 2. try to push
                 // 3. email only if push was not successful
                 notifyPerEmail(user, atomUri, connectionURI, wonMessage);
+            });
+            for (WebSocketSession session : webSocketSessions) {
+                sendMessageForSession(outboundMessage, session);
             }
+            outboundMessage.dispatched();
             return wonMessage;
         } finally {
             // in any case, let the serversideactionservice do its work, if there is any to
@@ -565,40 +602,33 @@ public class WonWebSocketHandler extends TextWebSocketHandler
     }
 
     /**
-     * Sends the specified message over the socket unless it is a successresponse to
-     * create, deactivate, activate.
-     * 
-     * @param wonMessage
-     * @param webSocketMessage
-     * @param session
-     * @param atomUri
-     * @param user
-     * @return true if a message was sent (or suppressed as planned), false if
-     * something went wrong and the message could not be sent
+     * Queues the specified message for sending over the session. If the session is
+     * closed, or is closed because its queue is full, the message is not queued and
+     * the session does not count as a delivery attempt.
      */
-    private synchronized boolean sendMessageForSession(final WonMessage wonMessage,
-                    final WebSocketMessage<String> webSocketMessage, final WebSocketSession session, URI atomUri,
-                    User user) {
+    private void sendMessageForSession(final OutboundMessage outboundMessage, final WebSocketSession session) {
+        // no queue is created for a closed session, afterConnectionClosed would not
+        // remove it
+        WebSocketOutboundQueue outboundQueue = outboundQueues.computeIfAbsent(session.getId(),
+                        id -> session.isOpen()
+                                        ? new WebSocketOutboundQueue(session, outboundExecutor, outboundQueueCapacity,
+                                                        outboundQueueOverflowPolicy, this::onSessionFailure)
+                                        : null);
+        if (outboundQueue == null) {
+            logger.debug("session {} is closed, can't send message", session.getId());
+            return;
+        }
         if (!session.isOpen()) {
+            // closed after the queue was created, afterConnectionClosed may have run in
+            // between
+            outboundQueues.remove(session.getId(), outboundQueue);
+            outboundQueue.close();
             logger.debug("session {} is closed, can't send message", session.getId());
-            return false;
+            return;
         }
-        try {
-            logger.debug("OA Server - sending WebSocket message: {}", webSocketMessage);
-            session.sendMessage(webSocketMessage);
-        } catch (Exception e) {
-            logger.warn(MessageFormat.format(
-                            "caught exception while trying to send on session {1} for atomUri {2}, " + "user {3}",
-                            session.getId(), atomUri, user == null ? "(null)" : user.getId()), e);
-            if (user != null) {
-                webSocketSessionService.removeMapping(user, session);
-            }
-            if (atomUri != null) {
-                webSocketSessionService.removeMapping(atomUri, session);
-            }
-            return false;
+        if (!outboundQueue.offer(outboundMessage)) {
+            outboundQueues.remove(session.getId(), outboundQueue);
         }
-        return true;
     }
 
     private User getUserForSession(final WebSocketSession session) {
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2012 Research Studios Austria Forschungsges.m.b.H. Licensed under
+ * the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License
+ * at http://www.apache.org/licenses/LICENSE-2.0 Unless required by applicable
+ * law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package won.owner.web.websocket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import won.owner.web.websocket.WebSocketOutboundQueue.OutboundMessage;
+import won.owner.web.websocket.WebSocketOutboundQueue.OverflowPolicy;
+
+public class WebSocketOutboundQueueTest {
+    private TestSession session;
+    // tasks are only run when the test says so, so that messages pile up
+    private Queue<Runnable> tasks;
+    private Executor executor;
+    private List<WebSocketSession> failedSessions;
+
+    @Before
+    public void setUp() {
+        session = new TestSession("s1");
+        tasks = new LinkedList<>();
+        executor = tasks::add;
+        failedSessions = new ArrayList<>();
+    }
+
+    private WebSocketOutboundQueue createQueue(WebSocketSession session, int capacity, OverflowPolicy policy) {
+        return new WebSocketOutboundQueue(session, executor, capacity, policy, failedSessions::add);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    @Test
+    public void sendsMessagesInOrder() {
+        WebSocketOutboundQueue queue = createQueue(session, 10, OverflowPolicy.CLOSE);
+        List<TestMessage> messages = Arrays.asList(new TestMessage("m1"), new TestMessage("m2"),
+                        new TestMessage("m3"));
+        for (TestMessage message : messages) {
+            Assert.assertTrue(queue.offer(message));
+            message.dispatched();
+        }
+        // only one writer task per session
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertEquals(Arrays.asList("m1", "m2", "m3"), session.sent);
+        Assert.assertEquals(0, queue.size());
+        messages.forEach(m -> Assert.assertEquals(0, m.undeliveredCount.get()));
+        // a new writer task is started for the next message
+        Assert.assertTrue(queue.offer(new TestMessage("m4")));
+        Assert.assertEquals(1, tasks.size());
+        runTasks();
+        Assert.assertEquals(Arrays.asList("m1", "m2", "m3", "m4"), session.sent);
+    }
+
+    @Test
+    public void dropPolicyDiscardsNewMessage() {
+        WebSocketOutboundQueue queue = createQueue(session, 2, OverflowPolicy.DROP);
+        TestMessage dropped = new TestMessage("m3");
+        Assert.assertTrue(queue.offer(new TestMessage("m1")));
+        Assert.assertTrue(queue.offer(new TestMessage("m2")));
+        Assert.assertTrue(queue.offer(dropped));
+        dropped.dispatched();
+        runTasks();
+        Assert.assertEquals(Arrays.asList("m1", "m2"), session.sent);
+        Assert.assertTrue(session.isOpen());
+        Assert.assertEquals(0, dropped.undeliveredCount.get());
+    }
+
+    @Test
+    public void coalescePolicyDiscardsOldestMessage() {
+        WebSocketOutboundQueue queue = createQueue(session, 2, OverflowPolicy.COALESCE);
+        TestMessage oldest = new TestMessage("m1");
+        Assert.assertTrue(queue.offer(oldest));
+        oldest.dispatched();
+        Assert.assertTrue(queue.offer(new TestMessage("m2")));
+        Assert.assertTrue(queue.offer(new TestMessage("m3")));
+        Assert.assertEquals(2, queue.size());
+        runTasks();
+        Assert.assertEquals(Arrays.asList("m2", "m3"), session.sent);
+        Assert.assertTrue(session.isOpen());
+        Assert.assertEquals(0, oldest.undeliveredCount.get());
+    }
+
+    @Test
+    public void closePolicyClosesSessionAndReportsMessages() {
+        WebSocketOutboundQueue queue = createQueue(session, 2, OverflowPolicy.CLOSE);
+        List<TestMessage> messages = Arrays.asList(new TestMessage("m1"), new TestMessage("m2"),
+                        new TestMessage("m3"));
+        Assert.assertTrue(queue.offer(messages.get(0)));
+        Assert.assertTrue(queue.offer(messages.get(1)));
+        Assert.assertFalse(queue.offer(messages.get(2)));
+        Assert.assertTrue(queue.isClosed());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.closeStatus);
+        Assert.assertEquals(Collections.singletonList(session), failedSessions);
+        // reported once the dispatcher is done with them
+        messages.forEach(m -> Assert.assertEquals(0, m.undeliveredCount.get()));
+        messages.forEach(TestMessage::dispatched);
+        messages.forEach(m -> Assert.assertEquals(1, m.undeliveredCount.get()));
+        runTasks();
+        Assert.assertTrue(session.sent.isEmpty());
+        Assert.assertFalse(queue.offer(new TestMessage("m4")));
+    }
+
+    @Test
+    public void closeReportsQueuedMessagesAndRejectsNewOnes() {
+        WebSocketOutboundQueue queue = createQueue(session, 10, OverflowPolicy.CLOSE);
+        TestMessage message = new TestMessage("m1");
+        Assert.assertTrue(queue.offer(message));
+        message.dispatched();
+        queue.close();
+        Assert.assertEquals(1, message.undeliveredCount.get());
+        Assert.assertFalse(queue.offer(new TestMessage("m2")));
+        runTasks();
+        Assert.assertTrue(session.sent.isEmpty());
+        // closed by the handler, not because of a failure
+        Assert.assertTrue(failedSessions.isEmpty());
+    }
+
+    @Test
+    public void sendFailureClosesSessionAndReportsMessages() {
+        WebSocketOutboundQueue queue = createQueue(session, 10, OverflowPolicy.CLOSE);
+        session.failOnSend = true;
+        List<TestMessage> messages = Arrays.asList(new TestMessage("m1"), new TestMessage("m2"));
+        for (TestMessage message : messages) {
+            Assert.assertTrue(queue.offer(message));
+            message.dispatched();
+        }
+        runTasks();
+        Assert.assertEquals(CloseStatus.SERVER_ERROR, session.closeStatus);
+        Assert.assertEquals(Collections.singletonList(session), failedSessions);
+        Assert.assertTrue(queue.isClosed());
+        messages.forEach(m -> Assert.assertEquals(1, m.undeliveredCount.get()));
+    }
+
+    @Test
+    public void messageDeliveredOverAnySessionIsNotReported() {
+        TestSession failingSession = new TestSession("s2");
+        failingSession.failOnSend = true;
+        WebSocketOutboundQueue queue = createQueue(session, 10, OverflowPolicy.CLOSE);
+        WebSocketOutboundQueue failingQueue = createQueue(failingSession, 10, OverflowPolicy.CLOSE);
+        TestMessage message = new TestMessage("m1");
+        Assert.assertTrue(failingQueue.offer(message));
+        Assert.assertTrue(queue.offer(message));
+        message.dispatched();
+        runTasks();
+        Assert.assertEquals(Collections.singletonList("m1"), session.sent);
+        Assert.assertEquals(0, message.undeliveredCount.get());
+        Assert.assertEquals(Collections.singletonList(failingSession), failedSessions);
+    }
+
+    @Test
+    public void messageNotQueuedAnywhereIsReportedWhenDispatched() {
+        WebSocketOutboundQueue queue = createQueue(session, 10, OverflowPolicy.CLOSE);
+        queue.close();
+        TestMessage message = new TestMessage("m1");
+        Assert.assertFalse(queue.offer(message));
+        Assert.assertEquals(0, message.undeliveredCount.get());
+        message.dispatched();
+        Assert.assertEquals(1, message.undeliveredCount.get());
+    }
+
+    private static class TestMessage extends OutboundMessage {
+        private final String text;
+        private final AtomicInteger undeliveredCount;
+
+        TestMessage(String text) {
+            this(text, new AtomicInteger());
+        }
+
+        private TestMessage(String text, AtomicInteger undeliveredCount) {
+            super(null, undeliveredCount::incrementAndGet);
+            this.text = text;
+            this.undeliveredCount = undeliveredCount;
+        }
+
+        @Override
+        public TextMessage getTextMessage() {
+            return new TextMessage(text);
+        }
+    }
+
+    private static class TestSession implements WebSocketSession {
+        private final String id;
+        private final List<String> sent = new ArrayList<>();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private boolean failOnSend = false;
+        private CloseStatus closeStatus;
+
+        TestSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (failOnSend) {
+                throw new IOException("connection reset");
+            }
+            sent.add(((TextMessage) message).getPayload());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+    }
+}
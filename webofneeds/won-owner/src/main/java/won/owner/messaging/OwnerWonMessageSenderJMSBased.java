@@ -20,11 +20,12 @@ import org.apache.jena.riot.Lang;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 
 import won.protocol.jms.MessagingService;
+import won.protocol.jms.WonMessageJmsCodec;
 import won.protocol.message.WonMessage;
-import won.protocol.message.WonMessageEncoder;
 import won.protocol.message.WonMessageUtils;
 import won.protocol.message.processor.camel.WonCamelConstants;
 import won.protocol.message.processor.impl.KeyForNewAtomAddingProcessor;
@@ -55,6 +56,8 @@ public class OwnerWonMessageSenderJMSBased implements ApplicationListener<WonNod
     private SignatureAddingWonMessageProcessor signatureAddingProcessor;
     @Autowired
     private KeyForNewAtomAddingProcessor atomKeyGeneratorAndAdder;
+    @Value("${activemq.message.binary:false}")
+    private boolean binaryMessages;
 
     @Override
     public void prepareAndSendMessage(WonMessage message) throws WonMessageSenderException {
@@ -117,8 +120,8 @@ public class OwnerWonMessageSenderJMSBased implements ApplicationListener<WonNod
             Map<String, Object> headerMap = new HashMap<>();
             headerMap.put(WonCamelConstants.OWNER_APPLICATION_ID_HEADER, ownerApplicationId);
             headerMap.put(WonCamelConstants.REMOTE_BROKER_ENDPOINT_HEADER, ep);
-            messagingService.sendInOnlyMessage(null, headerMap, WonMessageEncoder.encode(wonMessage, Lang.TRIG),
-                            startingEndpoint);
+            Object body = WonMessageJmsCodec.encode(wonMessage, binaryMessages, headerMap);
+            messagingService.sendInOnlyMessage(null, headerMap, body, startingEndpoint);
             // camelContext.getShutdownStrategy().setSuppressLoggingOnTimeout(true);
         } catch (Exception e) {
             throw new RuntimeException("could not send message", e);
@@ -13,7 +13,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import won.protocol.agreement.effect.MessageEffect;
 import won.protocol.agreement.effect.MessageEffectsBuilder;
 import won.protocol.agreement.effect.ProposalType;
+import won.protocol.message.WonMessage;
 import won.protocol.message.WonMessageDirection;
 import won.protocol.message.WonMessageType;
 import won.protocol.util.RdfUtils;
@@ -55,6 +56,16 @@ public class AgreementProtocolState {
     private final Set<URI> acceptedCancellationProposalUris = new HashSet<URI>();
     private Map<URI, ConversationMessage> messagesByURI = new HashMap<>();
     private Set<DeliveryChain> deliveryChains = new HashSet<>();
+    // input of the calculation, retained for updates: the conversation including
+    // the graphs removed by the protocols, the messages read from it (not linked)
+    // and the removed graphs
+    private Dataset rawConversation = null;
+    private Map<URI, ConversationMessage> parsedMessages = null;
+    private Set<URI> removedGraphs = new HashSet<>();
+    // number of messages the protocols were evaluated on to obtain this state and
+    // whether these were all messages of the conversation
+    private int evaluatedMessageCount = 0;
+    private boolean fullyCalculated = false;
 
     public static AgreementProtocolState of(URI connectionURI, LinkedDataSource linkedDataSource) {
         Dataset fullConversationDataset = WonLinkedDataUtils.getConversationAndAtomsDataset(connectionURI,
@@ -64,13 +75,153 @@ public class AgreementProtocolState {
 
     public static AgreementProtocolState of(Dataset conversation) {
         AgreementProtocolState instance = new AgreementProtocolState();
-        instance.recalculate(conversation);
+        instance.rawConversation = RdfUtils.cloneDataset(conversation);
+        instance.calculate();
         return instance;
     }
 
     private AgreementProtocolState() {
     }
 
+    /**
+     * Returns the state of the conversation extended by the message, see
+     * {@link #update(Dataset)}.
+     * 
+     * @param wonMessage
+     */
+    public AgreementProtocolState applyMessage(WonMessage wonMessage) {
+        return update(wonMessage.getCompleteDataset());
+    }
+
+    /**
+     * Returns the state of the conversation extended by the specified data (e.g.
+     * new messages and their responses). Named graphs already contained in the
+     * conversation are replaced. The result is the same as calculating the state
+     * from the whole conversation including the delta.
+     * <p>
+     * A state is not changed once it is calculated, so it can be read by several
+     * threads while it is updated. The datasets returned by the getters are shared
+     * with the updated states and must not be modified.
+     * <p>
+     * Only the delta is read. The new messages are attached to the known delivery
+     * chains, e.g. a late response to the message it responds to, and only the
+     * changed delivery chains are evaluated, starting from the results of this
+     * state. If that would change the results for other messages, e.g. because a
+     * message that only now is acknowledged comes before other messages that have
+     * effects, the protocols are evaluated on all messages.
+     * 
+     * @param delta
+     * @return the updated state, or this state if the delta contains no new data
+     */
+    public AgreementProtocolState update(Dataset delta) {
+        Dataset newData = selectNewData(delta, true);
+        if (newData.getDefaultModel().isEmpty() && !newData.listNames().hasNext()) {
+            return this;
+        }
+        Set<String> replacedGraphs = new HashSet<>();
+        newData.listNames().forEachRemaining(graphName -> {
+            if (rawConversation.containsNamedModel(graphName)) {
+                replacedGraphs.add(graphName);
+            }
+        });
+        AgreementProtocolState updated = new AgreementProtocolState();
+        // the graphs are not modified, so they can be shared with this state
+        updated.rawConversation = DatasetFactory.createGeneral();
+        updated.rawConversation.getDefaultModel().add(rawConversation.getDefaultModel())
+                        .add(newData.getDefaultModel());
+        rawConversation.listNames().forEachRemaining(graphName -> updated.rawConversation.addNamedModel(graphName,
+                        rawConversation.getNamedModel(graphName)));
+        newData.listNames().forEachRemaining(graphName -> updated.rawConversation.addNamedModel(graphName,
+                        newData.getNamedModel(graphName)));
+        Map<URI, ConversationMessage> newMessages = ConversationMessagesReader.readConversationMessages(newData);
+        if (newMessages.keySet().stream().noneMatch(parsedMessages::containsKey)
+                        && replacedGraphs.stream().noneMatch(this::containsMessageData)) {
+            // the known messages are not changed by the delta
+            updated.parsedMessages = new HashMap<>(parsedMessages);
+            updated.parsedMessages.putAll(newMessages);
+            if (updated.evaluateNewMessages(this, newMessages.keySet())) {
+                return updated;
+            }
+        }
+        updated.calculate();
+        return updated;
+    }
+
+    /**
+     * Indicates whether the named graph of the conversation contains data about
+     * messages.
+     */
+    private boolean containsMessageData(String graphName) {
+        Dataset graph = DatasetFactory.createGeneral();
+        graph.addNamedModel(graphName, rawConversation.getNamedModel(graphName));
+        return !ConversationMessagesReader.readConversationMessages(graph).isEmpty();
+    }
+
+    /**
+     * Determines the data in the specified conversation dataset that this state
+     * does not contain yet: named graphs that are new or differ from the ones this
+     * state was calculated from and statements of the default graph that are new.
+     * 
+     * @return the new data (possibly empty) or an empty Optional if the specified
+     * dataset is not an extension of the conversation this state was calculated
+     * from
+     */
+    Optional<Dataset> findNewData(Dataset conversationDataset) {
+        if (!conversationDataset.getDefaultModel().containsAll(rawConversation.getDefaultModel())) {
+            return Optional.empty();
+        }
+        Iterator<String> knownGraphNames = rawConversation.listNames();
+        while (knownGraphNames.hasNext()) {
+            if (!conversationDataset.containsNamedModel(knownGraphNames.next())) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(selectNewData(conversationDataset, false));
+    }
+
+    /**
+     * Selects the named graphs that are new or differ from the ones of the raw
+     * conversation and the new statements of the default graph.
+     */
+    private Dataset selectNewData(Dataset dataset, boolean cloneGraphs) {
+        Dataset newData = DatasetFactory.createGeneral();
+        newData.getDefaultModel().add(dataset.getDefaultModel().difference(rawConversation.getDefaultModel()));
+        dataset.listNames().forEachRemaining(graphName -> {
+            Model graph = dataset.getNamedModel(graphName);
+            if (!rawConversation.containsNamedModel(graphName)
+                            || !rawConversation.getNamedModel(graphName).isIsomorphicWith(graph)) {
+                newData.addNamedModel(graphName, cloneGraphs ? RdfUtils.cloneModel(graph) : graph);
+            }
+        });
+        return newData;
+    }
+
+    /**
+     * Returns the number of messages the protocols were evaluated on to obtain this
+     * state: all messages of the conversation or, after an update, possibly only
+     * the messages of the delivery chains changed by the update.
+     */
+    int getEvaluatedMessageCount() {
+        return evaluatedMessageCount;
+    }
+
+    /**
+     * Indicates whether the protocols were evaluated on all messages of the
+     * conversation to obtain this state, rather than on the delivery chains
+     * changed by an update.
+     */
+    boolean isFullyCalculated() {
+        return fullyCalculated;
+    }
+
+    /**
+     * Indicates whether the message is part of the conversation this state was
+     * calculated from.
+     */
+    public boolean containsMessage(URI messageUri) {
+        return messagesByURI.containsKey(messageUri);
+    }
+
     public AgreementProtocolUris getAgreementProtocolUris() {
         AgreementProtocolUris uris = new AgreementProtocolUris();
         uris.addAgreementUris(getAgreementUris());
@@ -112,6 +263,11 @@ public class AgreementProtocolState {
         return uris;
     }
 
+    /**
+     * Returns the conversation without the content graphs removed by the
+     * protocols. Its graphs are shared with updated states and must not be
+     * modified.
+     */
     public Dataset getConversationDataset() {
         return this.conversation;
     }
@@ -137,7 +293,7 @@ public class AgreementProtocolState {
     }
 
     public Model getAgreement(URI agreementURI) {
-        return agreements.getNamedModel(agreementURI.toString());
+        return getNamedModel(agreements, agreementURI);
     }
 
     public boolean isAgreement(URI agreementUri) {
@@ -149,7 +305,7 @@ public class AgreementProtocolState {
     }
 
     public Model getClaim(URI claimURI) {
-        return claims.getNamedModel(claimURI.toString());
+        return getNamedModel(claims, claimURI);
     }
 
     public boolean isClaim(URI claimUri) {
@@ -161,7 +317,7 @@ public class AgreementProtocolState {
     }
 
     public Model getPendingProposal(URI proposalURI) {
-        return pendingProposals.getNamedModel(proposalURI.toString());
+        return getNamedModel(pendingProposals, proposalURI);
     }
 
     public boolean isPendingProposal(URI proposalUri) {
@@ -212,7 +368,7 @@ public class AgreementProtocolState {
     }
 
     public Model getCancelledAgreement(URI cancelledAgreementURI) {
-        return cancelledAgreements.getNamedModel(cancelledAgreementURI.toString());
+        return getNamedModel(cancelledAgreements, cancelledAgreementURI);
     }
 
     public boolean isCancelledAgreement(URI agreementUri) {
@@ -224,7 +380,7 @@ public class AgreementProtocolState {
     }
 
     public Model getRejectedProposal(URI rejectedProposalURI) {
-        return rejected.getNamedModel(rejectedProposalURI.toString());
+        return getNamedModel(rejected, rejectedProposalURI);
     }
 
     public boolean isRejectedProposal(URI rejectedProposalUri) {
@@ -525,24 +681,114 @@ public class AgreementProtocolState {
             return Optional.empty();
         }
         return head.getContentGraphs().stream().flatMap(contentGraphURI -> WonRdfUtils.MessageUtils
-                        .getTextMessages(conversation.getNamedModel(contentGraphURI.toString()), head.getMessageURI())
+                        .getTextMessages(getNamedModel(conversation, contentGraphURI), head.getMessageURI())
                         .stream()).reduce((msg1, msg2) -> msg1 + ", " + msg2);
     }
 
     /**
-     * Calculates all agreements present in the specified conversation dataset.
+     * Returns the named graph or an empty model if the dataset does not contain
+     * it. Unlike <code>Dataset.getNamedModel()</code>, this does not add the graph
+     * to the dataset, which may be read by other threads.
      */
-    private void recalculate(Dataset conversationDataset) {
+    private static Model getNamedModel(Dataset dataset, URI graphURI) {
+        if (!dataset.containsNamedModel(graphURI.toString())) {
+            return ModelFactory.createDefaultModel();
+        }
+        return dataset.getNamedModel(graphURI.toString());
+    }
+
+    /**
+     * Calculates all agreements present in the raw conversation dataset.
+     */
+    private void calculate() {
         if (logger.isDebugEnabled()) {
             logger.debug("starting conversation analysis for high-level protocols");
         }
+        beginResults();
+        rawConversation.begin(ReadWrite.READ);
+        if (parsedMessages == null) {
+            this.parsedMessages = ConversationMessagesReader.readConversationMessages(rawConversation);
+        }
+        Collection<ConversationMessage> messages = linkMessages();
+        // find interleaved delivery chains
+        deliveryChains.stream().forEach(dc -> deliveryChains.stream().forEach(dc2 -> {
+            dc.determineRelationshipWith(dc2);
+        }));
+        // apply acknowledgment protocol to whole conversation first:
+        Set<URI> graphsToRemove = acknowledgedSelection(messages);
+        // on top of this, apply modification and agreement protocol on a per-message
+        // basis, starting with the root(s)
+        // expect proposals and agreements to be empty
+        evaluateMessages(messages, graphsToRemove);
+        this.fullyCalculated = true;
+        selectConversation(graphsToRemove);
+        commitResults();
+        rawConversation.end();
+    }
+
+    /**
+     * Applies the modification and agreement protocols to the messages in temporal
+     * order.
+     */
+    private void evaluateMessages(Collection<ConversationMessage> messages, Set<URI> graphsToRemove) {
+        PriorityQueue<ConversationMessage> currentMessages = new PriorityQueue<ConversationMessage>();
+        currentMessages.addAll(messages);
+        // we need to use a priority queue for the messages, which is
+        // sorted by temporal ordering. Each time we process a message, we
+        // add the subsequent ones to the queue, the retrieve the
+        // oldest from the queue for the next iteration.
+        Set<ConversationMessage> processed = new HashSet<>();
+        List<ConversationMessage> processedInOrder = null;
+        if (logger.isDebugEnabled()) {
+            processedInOrder = new ArrayList<>();
+        }
+        while (!currentMessages.isEmpty()) {
+            ConversationMessage msg = currentMessages.poll();
+            if (processed.contains(msg)) {
+                continue;
+            }
+            processed.add(msg);
+            if (logger.isDebugEnabled() && processedInOrder != null) {
+                processedInOrder.add(msg);
+            }
+            evaluateMessage(msg, graphsToRemove);
+        }
+        this.evaluatedMessageCount = processed.size();
+        if (logger.isDebugEnabled()) {
+            logger.debug("messages in the order they were processed:");
+            if (processedInOrder != null) {
+                processedInOrder.stream().forEach(x -> logger.debug(x.toString()));
+            }
+            logger.debug("finished conversation analysis for high-level protocols");
+        }
+    }
+
+    private void beginResults() {
         pendingProposals.begin(ReadWrite.WRITE);
         agreements.begin(ReadWrite.WRITE);
         cancelledAgreements.begin(ReadWrite.WRITE);
         rejected.begin(ReadWrite.WRITE);
         claims.begin(ReadWrite.WRITE);
-        conversationDataset.begin(ReadWrite.READ);
-        this.messagesByURI = ConversationMessagesReader.readConversationMessages(conversationDataset);
+    }
+
+    private void commitResults() {
+        pendingProposals.commit();
+        agreements.commit();
+        cancelledAgreements.commit();
+        rejected.commit();
+        claims.commit();
+    }
+
+    /**
+     * Links copies of the parsed messages to each other and to their delivery
+     * chains. The copies are kept in messagesByURI.
+     * 
+     * @return the linked messages, without hint messages
+     */
+    private Collection<ConversationMessage> linkMessages() {
+        // work on copies, the analysis modifies the messages
+        this.messagesByURI = new HashMap<>();
+        parsedMessages.forEach((uri, message) -> messagesByURI.put(uri, message.copyUnlinked()));
         Set<ConversationMessage> roots = new HashSet();
         Collection<ConversationMessage> messages = messagesByURI.values();
         Set<DeadReferenceConversationMessage> messagesWithDeadReferences = new HashSet<>();
@@ -550,81 +796,24 @@ public class AgreementProtocolState {
         messages = messages.stream().filter(m -> !m.getMessageType().isHintMessage()).collect(Collectors.toList());
         // iterate over messages and interconnect them
         messages.stream().forEach(message -> {
-            message.getPrevious().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addPreviousRef(other);
-                    other.addPreviousInverseRef(message);
-                } else {
-                    messagesWithDeadReferences
-                                    .add(new DeadReferenceConversationMessage(message, "msg:previousMessage", uri));
-                }
-            });
-            message.getForwarded().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addForwardedRef(other);
-                    other.addForwardedInverseRef(message);
-                } else {
-                    messagesWithDeadReferences
-                                    .add(new DeadReferenceConversationMessage(message, "msg:forwardedMessage", uri));
-                }
-            });
-            message.getAccepts().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addAcceptsRef(other);
-                    other.addAcceptsInverseRef(message);
-                } else {
-                    messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, "agr:accepts", uri));
-                }
-            });
-            message.getProposes().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addProposesRef(other);
-                    other.addProposesInverseRef(message);
-                } else {
-                    messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, "agr:proposes", uri));
-                }
-            });
-            message.getClaims().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addClaimsRef(other);
-                    other.addClaimsInverseRef(message);
-                } else {
-                    messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, "agr:claims", uri));
-                }
-            });
-            message.getRejects().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addRejectsRef(other);
-                    other.addRejectsInverseRef(message);
-                } else {
-                    messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, "agr:rejects", uri));
-                }
-            });
-            message.getProposesToCancel().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addProposesToCancelRef(other);
-                    other.addProposesToCancelInverseRef(message);
-                } else {
-                    messagesWithDeadReferences
-                                    .add(new DeadReferenceConversationMessage(message, "agr:proposesToCancel", uri));
-                }
-            });
-            message.getRetracts().stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
-                ConversationMessage other = messagesByURI.get(uri);
-                if (other != null) {
-                    message.addRetractsRef(other);
-                    other.addRetractsInverseRef(message);
-                } else {
-                    messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, "mod:retracts", uri));
-                }
-            });
+            linkReferences(message, message.getPrevious(), "msg:previousMessage", ConversationMessage::addPreviousRef,
+                            ConversationMessage::addPreviousInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getForwarded(), "msg:forwardedMessage",
+                            ConversationMessage::addForwardedRef, ConversationMessage::addForwardedInverseRef,
+                            messagesWithDeadReferences);
+            linkReferences(message, message.getAccepts(), "agr:accepts", ConversationMessage::addAcceptsRef,
+                            ConversationMessage::addAcceptsInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getProposes(), "agr:proposes", ConversationMessage::addProposesRef,
+                            ConversationMessage::addProposesInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getClaims(), "agr:claims", ConversationMessage::addClaimsRef,
+                            ConversationMessage::addClaimsInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getRejects(), "agr:rejects", ConversationMessage::addRejectsRef,
+                            ConversationMessage::addRejectsInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getProposesToCancel(), "agr:proposesToCancel",
+                            ConversationMessage::addProposesToCancelRef,
+                            ConversationMessage::addProposesToCancelInverseRef, messagesWithDeadReferences);
+            linkReferences(message, message.getRetracts(), "mod:retracts", ConversationMessage::addRetractsRef,
+                            ConversationMessage::addRetractsInverseRef, messagesWithDeadReferences);
             if (message.getRespondingTo() != null && !message.getRespondingTo().equals(message.getMessageURI())) {
                 ConversationMessage other = messagesByURI.get(message.getRespondingTo());
                 if (other != null) {
@@ -693,241 +882,227 @@ public class AgreementProtocolState {
             }
             return m.getDeliveryChain();
         }).collect(Collectors.toSet());
-        // find interleaved delivery chains
-        deliveryChains.stream().forEach(dc -> deliveryChains.stream().forEach(dc2 -> {
-            dc.determineRelationshipWith(dc2);
-        }));
-        // apply acknowledgment protocol to whole conversation first:
-        conversation = acknowledgedSelection(conversationDataset, messages);
-        // on top of this, apply modification and agreement protocol on a per-message
-        // basis, starting with the root(s)
-        // expect proposals and agreements to be empty
-        PriorityQueue<ConversationMessage> currentMessages = new PriorityQueue<ConversationMessage>();
-        currentMessages.addAll(messages);
-        // we need to use a priority queue for the messages, which is
-        // sorted by temporal ordering. Each time we process a message, we
-        // add the subsequent ones to the queue, the retrieve the
-        // oldest from the queue for the next iteration.
-        Set<ConversationMessage> processed = new HashSet<>();
-        List<ConversationMessage> processedInOrder = null;
-        if (logger.isDebugEnabled()) {
-            processedInOrder = new ArrayList<>();
-        }
-        ConversationMessage last = null;
-        while (!currentMessages.isEmpty()) {
-            ConversationMessage msg = currentMessages.poll();
-            if (processed.contains(msg)) {
-                continue;
+        return messages;
+    }
+
+    /**
+     * Links the message to the messages it refers to through one predicate, in both
+     * directions. References to messages that are not part of the conversation are
+     * collected as dead references.
+     */
+    private void linkReferences(ConversationMessage message, Set<URI> references, String predicate,
+                    BiConsumer<ConversationMessage, ConversationMessage> addRef,
+                    BiConsumer<ConversationMessage, ConversationMessage> addInverseRef,
+                    Set<DeadReferenceConversationMessage> messagesWithDeadReferences) {
+        references.stream().filter(uri -> !uri.equals(message.getMessageURI())).forEach(uri -> {
+            ConversationMessage other = messagesByURI.get(uri);
+            if (other != null) {
+                addRef.accept(message, other);
+                addInverseRef.accept(other, message);
+            } else {
+                messagesWithDeadReferences.add(new DeadReferenceConversationMessage(message, predicate, uri));
             }
-            processed.add(msg);
-            MessageEffectsBuilder effectsBuilder = new MessageEffectsBuilder(msg.getMessageURI());
-            if (logger.isDebugEnabled() && processedInOrder != null) {
-                processedInOrder.add(msg);
+        });
+    }
+
+    /**
+     * Applies the modification and agreement protocols to the message.
+     * 
+     * @param msg
+     * @param graphsToRemove content graphs to remove from the conversation,
+     * extended by the graphs the message retracts or rejects
+     */
+    private void evaluateMessage(ConversationMessage msg, Set<URI> graphsToRemove) {
+        MessageEffectsBuilder effectsBuilder = new MessageEffectsBuilder(msg.getMessageURI());
+        if (!msg.isHeadOfDeliveryChain()) {
+            return;
+        }
+        if (!msg.isAgreementProtocolMessage()) {
+            return;
+        }
+        if (msg.isRetractsMessage()) {
+            removeContentGraphs(graphsToRemove, msg);
+            if (logger.isDebugEnabled()) {
+                msg.getRetractsRefs().forEach(other -> {
+                    logger.debug("{} retracts {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            last = msg;
-            if (!msg.isHeadOfDeliveryChain()) {
-                continue;
+            msg.getRetractsRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(other -> msg.isAfter(other)).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} retracts {}: valid, computing effects", msg.getMessageURI(),
+                                                    other.getMessageURI());
+                                }
+                                boolean changedSomething = false;
+                                changedSomething = removeContentGraphs(graphsToRemove, other) || changedSomething;
+                                retractedUris.add(other.getMessageURI());
+                                if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
+                                    changedSomething = retractProposal(other.getMessageURI()) || changedSomething;
+                                }
+                                if (other.isClaimsMessage()) {
+                                    changedSomething = retractClaim(other.getMessageURI()) || changedSomething;
+                                }
+                                if (changedSomething) {
+                                    effectsBuilder.retracts(other.getMessageURI());
+                                }
+                            });
+            if (logger.isDebugEnabled()) {
+                logger.debug("agreement data: {}", agrDataToString());
             }
-            if (!msg.isAgreementProtocolMessage()) {
-                continue;
+        }
+        if (msg.isRejectsMessage()) {
+            removeContentGraphs(graphsToRemove, msg);
+            if (logger.isDebugEnabled()) {
+                msg.getRejectsRefs().forEach(other -> {
+                    logger.debug("{} rejects {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            if (msg.isRetractsMessage()) {
-                removeContentGraphs(conversation, msg);
-                if (logger.isDebugEnabled()) {
-                    msg.getRetractsRefs().forEach(other -> {
-                        logger.debug("{} retracts {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                msg.getRetractsRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(other -> msg.isAfter(other)).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} retracts {}: valid, computing effects", msg.getMessageURI(),
-                                                        other.getMessageURI());
-                                    }
-                                    boolean changedSomething = false;
-                                    changedSomething = removeContentGraphs(conversation, other) || changedSomething;
-                                    retractedUris.add(other.getMessageURI());
-                                    if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
-                                        changedSomething = retractProposal(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (other.isClaimsMessage()) {
-                                        changedSomething = retractClaim(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (changedSomething) {
-                                        effectsBuilder.retracts(other.getMessageURI());
-                                    }
-                                });
-                if (logger.isDebugEnabled()) {
-                    logger.debug("agreement data: {}", agrDataToString());
-                }
+            msg.getRejectsRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.isProposesMessage() || other.isProposesToCancelMessage()
+                                            || other.isClaimsMessage())
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(other -> !other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
+                            .filter(other -> msg.isAfter(other)).filter(other -> {
+                                // check if msg also accepts other - in that case, the message is contradictory
+                                // in itself
+                                // Resolution: neither statement has any effect.
+                                return !msg.accepts(other);
+                            }).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} rejects {}: valid, computing effects", msg.getMessageURI(),
+                                                    other.getMessageURI());
+                                }
+                                boolean changedSomething = false;
+                                if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
+                                    changedSomething = rejectProposal(other.getMessageURI()) || changedSomething;
+                                }
+                                if (other.isClaimsMessage()) {
+                                    changedSomething = rejectClaim(other.getMessageURI()) || changedSomething;
+                                }
+                                if (changedSomething) {
+                                    effectsBuilder.rejects(other.getMessageURI());
+                                }
+                            });
+            if (logger.isDebugEnabled()) {
+                logger.debug("agreement data: {}", agrDataToString());
             }
-            if (msg.isRejectsMessage()) {
-                removeContentGraphs(conversation, msg);
-                if (logger.isDebugEnabled()) {
-                    msg.getRejectsRefs().forEach(other -> {
-                        logger.debug("{} rejects {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                msg.getRejectsRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.isProposesMessage() || other.isProposesToCancelMessage()
-                                                || other.isClaimsMessage())
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(other -> !other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
-                                .filter(other -> msg.isAfter(other)).filter(other -> {
-                                    // check if msg also accepts other - in that case, the message is contradictory
-                                    // in itself
-                                    // Resolution: neither statement has any effect.
-                                    return !msg.accepts(other);
-                                }).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} rejects {}: valid, computing effects", msg.getMessageURI(),
-                                                        other.getMessageURI());
-                                    }
-                                    boolean changedSomething = false;
-                                    if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
-                                        changedSomething = rejectProposal(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (other.isClaimsMessage()) {
-                                        changedSomething = rejectClaim(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (changedSomething) {
-                                        effectsBuilder.rejects(other.getMessageURI());
-                                    }
-                                });
-                if (logger.isDebugEnabled()) {
-                    logger.debug("agreement data: {}", agrDataToString());
-                }
+        }
+        if (msg.isProposesMessage()) {
+            if (logger.isDebugEnabled()) {
+                msg.getProposesRefs().forEach(other -> {
+                    logger.debug("{} proposes {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            if (msg.isProposesMessage()) {
-                if (logger.isDebugEnabled()) {
-                    msg.getProposesRefs().forEach(other -> {
-                        logger.debug("{} proposes {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                Model proposalContent = ModelFactory.createDefaultModel();
-                msg.getProposesRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(other -> msg.isAfter(other)).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} proposes {}: valid, computing effects", msg.getMessageURI(),
-                                                        other.getMessageURI());
-                                    }
-                                    boolean changedSomething = propose(conversationDataset, other.getContentGraphs(),
-                                                    proposalContent);
-                                    if (changedSomething) {
-                                        effectsBuilder.proposes(other.getMessageURI());
-                                    }
-                                });
-                pendingProposals.addNamedModel(msg.getMessageURI().toString(), proposalContent);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("agreement data: {}", agrDataToString());
-                }
+            Model proposalContent = ModelFactory.createDefaultModel();
+            msg.getProposesRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(other -> msg.isAfter(other)).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} proposes {}: valid, computing effects", msg.getMessageURI(),
+                                                    other.getMessageURI());
+                                }
+                                boolean changedSomething = propose(rawConversation, other.getContentGraphs(),
+                                                proposalContent);
+                                if (changedSomething) {
+                                    effectsBuilder.proposes(other.getMessageURI());
+                                }
+                            });
+            pendingProposals.addNamedModel(msg.getMessageURI().toString(), proposalContent);
+            if (logger.isDebugEnabled()) {
+                logger.debug("agreement data: {}", agrDataToString());
             }
-            if (msg.isClaimsMessage()) {
-                if (logger.isDebugEnabled()) {
-                    msg.getClaimsRefs().forEach(other -> {
-                        logger.debug("{} claims {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                Model claimContent = ModelFactory.createDefaultModel();
-                msg.getClaimsRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(other -> msg.isAfter(other)).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} claims {}: valid, computing effects", msg.getMessageURI(),
-                                                        other.getMessageURI());
-                                    }
-                                    boolean changedSomething = claim(conversationDataset, other.getContentGraphs(),
-                                                    claimContent);
-                                    if (changedSomething) {
-                                        effectsBuilder.claims(other.getMessageURI());
-                                    }
-                                });
-                claims.addNamedModel(msg.getMessageURI().toString(), claimContent);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("agreement data: {}", agrDataToString());
-                }
+        }
+        if (msg.isClaimsMessage()) {
+            if (logger.isDebugEnabled()) {
+                msg.getClaimsRefs().forEach(other -> {
+                    logger.debug("{} claims {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            if (msg.isAcceptsMessage()) {
-                if (logger.isDebugEnabled()) {
-                    msg.getAcceptsRefs().forEach(other -> {
-                        logger.debug("{} accepts {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                msg.getAcceptsRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(other -> !other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
-                                .filter(other -> msg.isAfter(other)).filter(other -> {
-                                    // check if msg also accepts other - in that case, the message is contradictory
-                                    // in itself
-                                    // Resolution: neither statement has any effect.
-                                    return !msg.rejects(other);
-                                }).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} accepts {}: valid, computing effects", msg.getMessageURI(),
-                                                        other.getMessageURI());
-                                    }
-                                    boolean changedSomething = false;
-                                    if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
-                                        changedSomething = acceptProposal(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (other.isClaimsMessage()) {
-                                        changedSomething = acceptClaim(other.getMessageURI()) || changedSomething;
-                                    }
-                                    if (changedSomething) {
-                                        effectsBuilder.accepts(other.getMessageURI(), other.getProposesToCancel()
-                                                        .stream().collect(Collectors.toSet()));
-                                    }
-                                });
-                if (logger.isDebugEnabled()) {
-                    logger.debug("agreement data: {}", agrDataToString());
-                }
+            Model claimContent = ModelFactory.createDefaultModel();
+            msg.getClaimsRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(other -> msg.isAfter(other)).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} claims {}: valid, computing effects", msg.getMessageURI(),
+                                                    other.getMessageURI());
+                                }
+                                boolean changedSomething = claim(rawConversation, other.getContentGraphs(),
+                                                claimContent);
+                                if (changedSomething) {
+                                    effectsBuilder.claims(other.getMessageURI());
+                                }
+                            });
+            claims.addNamedModel(msg.getMessageURI().toString(), claimContent);
+            if (logger.isDebugEnabled()) {
+                logger.debug("agreement data: {}", agrDataToString());
             }
-            if (msg.isProposesToCancelMessage()) {
-                if (logger.isDebugEnabled()) {
-                    msg.getProposesToCancelRefs().forEach(other -> {
-                        logger.debug("{} proposesToCancel {}", msg.getMessageURI(), other.getMessageURI());
-                    });
-                }
-                final Model cancellationProposals = pendingProposals.getDefaultModel();
-                msg.getProposesToCancelRefs().stream().filter(other -> msg != other)
-                                .filter(other -> other.isHeadOfDeliveryChain())
-                                .filter(toCancel -> msg.isAfter(toCancel)).forEach(other -> {
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("{} proposesToCancel {}: valid, computing effects",
-                                                        msg.getMessageURI(), other.getMessageURI());
-                                    }
-                                    cancellationProposals.add(new StatementImpl(
-                                                    cancellationProposals.getResource(msg.getMessageURI().toString()),
-                                                    WONAGR.proposesToCancel, cancellationProposals
-                                                                    .getResource(other.getMessageURI().toString())));
-                                    pendingProposals.setDefaultModel(cancellationProposals);
-                                    effectsBuilder.proposesToCancel(other.getMessageURI());
-                                    if (logger.isDebugEnabled()) {
-                                        logger.debug("agreement data: {}", agrDataToString());
-                                    }
-                                });
+        }
+        if (msg.isAcceptsMessage()) {
+            if (logger.isDebugEnabled()) {
+                msg.getAcceptsRefs().forEach(other -> {
+                    logger.debug("{} accepts {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            msg.setEffects(effectsBuilder.build());
-            if (logger.isDebugEnabled() && !msg.getEffects().isEmpty()) {
-                logger.debug("Effects of message {} : {}", msg.getMessageURI(), msg.getEffects());
+            msg.getAcceptsRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(other -> !other.getSenderAtomURI().equals(msg.getSenderAtomURI()))
+                            .filter(other -> msg.isAfter(other)).filter(other -> {
+                                // check if msg also accepts other - in that case, the message is contradictory
+                                // in itself
+                                // Resolution: neither statement has any effect.
+                                return !msg.rejects(other);
+                            }).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} accepts {}: valid, computing effects", msg.getMessageURI(),
+                                                    other.getMessageURI());
+                                }
+                                boolean changedSomething = false;
+                                if (other.isProposesMessage() || other.isProposesToCancelMessage()) {
+                                    changedSomething = acceptProposal(other.getMessageURI()) || changedSomething;
+                                }
+                                if (other.isClaimsMessage()) {
+                                    changedSomething = acceptClaim(other.getMessageURI()) || changedSomething;
+                                }
+                                if (changedSomething) {
+                                    effectsBuilder.accepts(other.getMessageURI(), other.getProposesToCancel()
+                                                    .stream().collect(Collectors.toSet()));
+                                }
+                            });
+            if (logger.isDebugEnabled()) {
+                logger.debug("agreement data: {}", agrDataToString());
             }
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug("messages in the order they were processed:");
-            if (processedInOrder != null) {
-                processedInOrder.stream().forEach(x -> logger.debug(x.toString()));
+        if (msg.isProposesToCancelMessage()) {
+            if (logger.isDebugEnabled()) {
+                msg.getProposesToCancelRefs().forEach(other -> {
+                    logger.debug("{} proposesToCancel {}", msg.getMessageURI(), other.getMessageURI());
+                });
             }
-            logger.debug("finished conversation analysis for high-level protocols");
+            final Model cancellationProposals = pendingProposals.getDefaultModel();
+            msg.getProposesToCancelRefs().stream().filter(other -> msg != other)
+                            .filter(other -> other.isHeadOfDeliveryChain())
+                            .filter(toCancel -> msg.isAfter(toCancel)).forEach(other -> {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("{} proposesToCancel {}: valid, computing effects",
+                                                    msg.getMessageURI(), other.getMessageURI());
+                                }
+                                cancellationProposals.add(new StatementImpl(
+                                                cancellationProposals.getResource(msg.getMessageURI().toString()),
+                                                WONAGR.proposesToCancel, cancellationProposals
+                                                                .getResource(other.getMessageURI().toString())));
+                                pendingProposals.setDefaultModel(cancellationProposals);
+                                effectsBuilder.proposesToCancel(other.getMessageURI());
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug("agreement data: {}", agrDataToString());
+                                }
+                            });
+        }
+        msg.setEffects(effectsBuilder.build());
+        if (logger.isDebugEnabled() && !msg.getEffects().isEmpty()) {
+            logger.debug("Effects of message {} : {}", msg.getMessageURI(), msg.getEffects());
         }
-        pendingProposals.commit();
-        agreements.commit();
-        cancelledAgreements.commit();
-        rejected.commit();
-        claims.commit();
-        conversationDataset.end();
     }
 
     private String agrDataToString() {
@@ -959,15 +1134,156 @@ public class AgreementProtocolState {
         return sb.toString();
     }
 
-    private Dataset acknowledgedSelection(Dataset conversationDataset, Collection<ConversationMessage> messages) {
-        Dataset copy = RdfUtils.cloneDataset(conversationDataset);
+    /**
+     * Evaluates the protocols on the delivery chains that contain new messages
+     * only, taking over the results of the previous state for all other messages.
+     * The new messages may start delivery chains or complete known ones, e.g. the
+     * late response to a known message. This is only possible if the results for
+     * the other messages do not change: the heads of known delivery chains that
+     * are completed had no effects and are not referenced by other messages, no
+     * other delivery chain contains a completed or new chain or is interleaved
+     * with one that is terminated, and the messages of these chains that have
+     * effects come after all other messages that have effects.
+     * 
+     * @param previous the state calculated from the known messages
+     * @param newMessageUris
+     * @return false if the protocols have to be evaluated on all messages
+     */
+    private boolean evaluateNewMessages(AgreementProtocolState previous, Set<URI> newMessageUris) {
+        if (previous.parsedMessages.values().stream().anyMatch(message -> refersToAny(message, newMessageUris))) {
+            // a known message had a dead reference to a new one
+            return false;
+        }
+        rawConversation.begin(ReadWrite.READ);
+        try {
+            Collection<ConversationMessage> messages = linkMessages();
+            Set<DeliveryChain> updatedChains = new HashSet<>();
+            for (ConversationMessage message : messages) {
+                ConversationMessage head = message.getDeliveryChain().getHead();
+                if (head == null) {
+                    return false;
+                }
+                if (newMessageUris.contains(message.getMessageURI())) {
+                    updatedChains.add(message.getDeliveryChain());
+                } else {
+                    ConversationMessage known = previous.messagesByURI.get(message.getMessageURI());
+                    if (known == null || known.getDeliveryChain().getHead() == null
+                                    || !known.getDeliveryChain().getHeadURI().equals(head.getMessageURI())) {
+                        return false;
+                    }
+                }
+            }
+            // known heads of updated chains, e.g. the message a late response belongs to
+            Set<URI> completedHeadURIs = updatedChains.stream().map(DeliveryChain::getHeadURI)
+                            .filter(uri -> !newMessageUris.contains(uri)).collect(Collectors.toSet());
+            if (completedHeadURIs.stream().map(previous.messagesByURI::get).anyMatch(AgreementProtocolState::hasEffects)
+                            || previous.parsedMessages.values().stream()
+                                            .filter(message -> !completedHeadURIs.contains(message.getMessageURI()))
+                                            .anyMatch(message -> refersToAny(message, completedHeadURIs))) {
+                return false;
+            }
+            if (!DeliveryChain.updateRelationships(deliveryChains, updatedChains, previous.deliveryChains)) {
+                return false;
+            }
+            Set<URI> graphsToRemove = acknowledgedSelection(messages);
+            List<ConversationMessage> updatedMessages = updatedChains.stream()
+                            .flatMap(chain -> chain.getMessages().stream()).collect(Collectors.toList());
+            Optional<ConversationMessage> lastOtherMessageWithEffects = messages.stream()
+                            .filter(message -> !updatedChains.contains(message.getDeliveryChain()))
+                            .filter(AgreementProtocolState::hasEffects).max(ConversationMessage::compareTo);
+            Optional<ConversationMessage> firstUpdatedMessageWithEffects = updatedMessages.stream()
+                            .filter(AgreementProtocolState::hasEffects).min(ConversationMessage::compareTo);
+            if (lastOtherMessageWithEffects.isPresent() && firstUpdatedMessageWithEffects.isPresent()
+                            && lastOtherMessageWithEffects.get().compareTo(firstUpdatedMessageWithEffects.get()) >= 0) {
+                return false;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("evaluating high-level protocols on {} messages of {} delivery chains",
+                                updatedMessages.size(), updatedChains.size());
+            }
+            messages.stream().filter(message -> !updatedChains.contains(message.getDeliveryChain()))
+                            .forEach(message -> message.setEffects(
+                                            previous.messagesByURI.get(message.getMessageURI()).getEffects()));
+            // content graphs of completed chains were removed because they were not
+            // acknowledged, they are removed again if they still aren't
+            Set<URI> updatedContentGraphs = updatedMessages.stream()
+                            .flatMap(message -> message.getContentGraphs().stream()).collect(Collectors.toSet());
+            previous.removedGraphs.stream().filter(graph -> !updatedContentGraphs.contains(graph))
+                            .forEach(graphsToRemove::add);
+            beginResults();
+            copyResults(previous.pendingProposals, pendingProposals);
+            copyResults(previous.agreements, agreements);
+            copyResults(previous.cancelledAgreements, cancelledAgreements);
+            copyResults(previous.rejected, rejected);
+            copyResults(previous.claims, claims);
+            retractedUris.addAll(previous.retractedUris);
+            claimedUris.addAll(previous.claimedUris);
+            acceptedCancellationProposalUris.addAll(previous.acceptedCancellationProposalUris);
+            evaluateMessages(updatedMessages, graphsToRemove);
+            selectConversation(graphsToRemove);
+            commitResults();
+            return true;
+        } finally {
+            rawConversation.end();
+        }
+    }
+
+    /**
+     * Indicates whether the message is evaluated by the modification and agreement
+     * protocols, see {@link #evaluateMessage(ConversationMessage, Set)}.
+     */
+    private static boolean hasEffects(ConversationMessage message) {
+        return message.isHeadOfDeliveryChain() && message.isAgreementProtocolMessage();
+    }
+
+    private static boolean refersToAny(ConversationMessage message, Set<URI> messageUris) {
+        return Stream.of(message.getPrevious(), message.getForwarded(), message.getAccepts(), message.getProposes(),
+                        message.getClaims(), message.getRejects(), message.getProposesToCancel(),
+                        message.getRetracts()).flatMap(Set::stream).anyMatch(messageUris::contains)
+                        || messageUris.contains(message.getRespondingTo());
+    }
+
+    /**
+     * Adds the graphs of the source dataset to the (empty) target dataset. The
+     * named graphs are shared, they are not modified by the evaluation; the
+     * default graph (holding the cancellation proposals) is copied.
+     */
+    private static void copyResults(Dataset source, Dataset target) {
+        target.getDefaultModel().add(source.getDefaultModel());
+        source.listNames().forEachRemaining(
+                        graphName -> target.addNamedModel(graphName, source.getNamedModel(graphName)));
+    }
+
+    /**
+     * Makes the conversation dataset contain the graphs of the raw conversation
+     * except for the removed ones. The graphs are shared with the raw conversation.
+     */
+    private void selectConversation(Set<URI> graphsToRemove) {
+        Set<String> removedGraphNames = graphsToRemove.stream().map(URI::toString).collect(Collectors.toSet());
+        conversation = DatasetFactory.createGeneral();
+        conversation.getDefaultModel().add(rawConversation.getDefaultModel());
+        rawConversation.listNames().forEachRemaining(graphName -> {
+            if (!removedGraphNames.contains(graphName)) {
+                conversation.addNamedModel(graphName, rawConversation.getNamedModel(graphName));
+            }
+        });
+        this.removedGraphs = graphsToRemove;
+    }
+
+    /**
+     * Determines the content graphs of messages that are not acknowledged.
+     * 
+     * @return the URIs of the graphs to remove from the conversation
+     */
+    private Set<URI> acknowledgedSelection(Collection<ConversationMessage> messages) {
+        Set<URI> removedGraphs = new HashSet<>();
         messages.stream().forEach(message -> {
             if (message.getMessageType() == null) {
                 return;
             }
             if (message.getDirection() == WonMessageDirection.FROM_SYSTEM && !message.isResponse()) {
                 if (!message.isAcknowledgedLocally()) {
-                    notAcknowledged(copy, message);
+                    notAcknowledged(removedGraphs, message);
                 }
                 return;
             }
@@ -988,14 +1304,14 @@ public class AgreementProtocolState {
                 case ATOM_HINT_MESSAGE:
                 case SOCKET_HINT_MESSAGE:
                     if (!message.isAcknowledgedLocally()) {
-                        notAcknowledged(copy, message);
+                        notAcknowledged(removedGraphs, message);
                     }
                     break;
                 case CONNECT:
                 case CONNECTION_MESSAGE:
                 case CLOSE:
                     if (!message.isAcknowledgedRemotely()) {
-                        notAcknowledged(copy, message);
+                        notAcknowledged(removedGraphs, message);
                     }
                 default:
                     break;
@@ -1019,7 +1335,7 @@ public class AgreementProtocolState {
                 if (logger.isDebugEnabled()) {
                     logger.debug("ignoring delivery chain {} as it contains other chains", msgChain.getHeadURI());
                 }
-                notAcknowledged(copy, message);
+                notAcknowledged(removedGraphs, message);
             } else {
                 msgChain.getInterleavedDeliveryChains().stream().filter(otherChain -> otherChain.isTerminated())
                                 .forEach(otherChain -> {
@@ -1029,35 +1345,32 @@ public class AgreementProtocolState {
                                         logger.debug("ignoring delivery chain {} as it is interleaved with {}",
                                                         message.getMessageURI(), otherChain.getHead().getMessageURI());
                                     }
-                                    notAcknowledged(copy, message);
+                                    notAcknowledged(removedGraphs, message);
                                 });
             }
         });
-        return copy;
+        return removedGraphs;
     }
 
-    private void notAcknowledged(Dataset copy, ConversationMessage message) {
+    private void notAcknowledged(Set<URI> removedGraphs, ConversationMessage message) {
         if (logger.isDebugEnabled()) {
             logger.debug("not acknowledged: " + message.getMessageURI());
         }
         message.removeHighlevelProtocolProperties();
-        removeContentGraphs(copy, message);
+        removeContentGraphs(removedGraphs, message);
     }
 
     /**
-     * @param conversationDataset
+     * Marks the content graphs of the message for removal from the conversation
+     * dataset.
+     * 
+     * @param removedGraphs
      * @param message
      * @return true if the operation had any effect, false otherwise
      */
-    private boolean removeContentGraphs(Dataset conversationDataset, ConversationMessage message) {
-        AtomicBoolean changedSomething = new AtomicBoolean(false);
-        message.getContentGraphs().stream().forEach(uri -> {
-            String uriString = uri.toString();
-            if (conversationDataset.containsNamedModel(uriString))
-                conversationDataset.removeNamedModel(uriString);
-            changedSomething.set(true);
-        });
-        return changedSomething.get();
+    private boolean removeContentGraphs(Set<URI> removedGraphs, ConversationMessage message) {
+        removedGraphs.addAll(message.getContentGraphs());
+        return !message.getContentGraphs().isEmpty();
     }
 
     /**
@@ -1069,6 +1382,10 @@ public class AgreementProtocolState {
     private boolean propose(Dataset conversationDataset, Collection<URI> graphURIs, Model proposal) {
         long initialSize = proposal.size();
         graphURIs.forEach(uri -> {
+            // don't create graphs that are not there
+            if (!conversationDataset.containsNamedModel(uri.toString())) {
+                return;
+            }
             Model graph = conversationDataset.getNamedModel(uri.toString());
             if (graph != null) {
                 proposal.add(RdfUtils.cloneModel(graph));
@@ -1084,6 +1401,10 @@ public class AgreementProtocolState {
     private boolean claim(Dataset conversationDataset, Collection<URI> graphURIs, Model claim) {
         long initialSize = claim.size();
         graphURIs.forEach(uri -> {
+            // don't create graphs that are not there
+            if (!conversationDataset.containsNamedModel(uri.toString())) {
+                return;
+            }
             Model graph = conversationDataset.getNamedModel(uri.toString());
             if (graph != null) {
                 claim.add(RdfUtils.cloneModel(graph));
@@ -0,0 +1,192 @@
+package won.protocol.agreement;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import won.protocol.util.RdfUtils;
+import won.protocol.util.linkeddata.LinkedDataSource;
+import won.protocol.util.linkeddata.WonLinkedDataUtils;
+
+/**
+ * Keeps the <code>AgreementProtocolState</code>s of the most recently analyzed
+ * connections so that new messages can be applied incrementally instead of
+ * analyzing the whole conversation again.
+ * <p>
+ * The states are not changed by updates: an update yields a new state that
+ * replaces the cached one, so a state obtained from the cache can be read while
+ * other threads update the connection.
+ */
+public class AgreementProtocolStateCache {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    // same limit as the crawl of the whole conversation
+    private static final int MAX_REQUESTS = 1000;
+    private final Map<URI, AgreementProtocolState> states;
+
+    /**
+     * @param maxConnections number of connections to keep states for. The least
+     * recently used ones are evicted.
+     */
+    public AgreementProtocolStateCache(final int maxConnections) {
+        this.states = new LinkedHashMap<URI, AgreementProtocolState>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, AgreementProtocolState> eldest) {
+                return size() > maxConnections;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached state of the connection if it already contains the
+     * specified message.
+     */
+    public Optional<AgreementProtocolState> get(URI connectionURI, URI lastMessageURI) {
+        AgreementProtocolState state = getCachedState(connectionURI);
+        if (state != null && state.containsMessage(lastMessageURI)) {
+            return Optional.of(state);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the state of the connection's conversation. If there is no cached
+     * state, the whole conversation is crawled. Otherwise only the connections,
+     * their atoms, the message containers and the messages the cached state does
+     * not contain yet are fetched, and the cached state is updated with them.
+     */
+    public AgreementProtocolState getOrUpdate(URI connectionURI, LinkedDataSource linkedDataSource) {
+        AgreementProtocolState state = getCachedState(connectionURI);
+        if (state == null) {
+            logger.debug("calculating agreement protocol state of connection {}", connectionURI);
+            return publish(connectionURI, null, AgreementProtocolState.of(
+                            WonLinkedDataUtils.getConversationAndAtomsDataset(connectionURI, linkedDataSource)));
+        }
+        Dataset newData = fetchNewData(connectionURI, state, linkedDataSource);
+        logger.debug("updating cached agreement protocol state of connection {}", connectionURI);
+        return publish(connectionURI, state, state.update(newData));
+    }
+
+    /**
+     * Returns the state for the specified conversation of the connection. If there
+     * is a cached state for the connection, it is updated with the data it does not
+     * contain yet. Otherwise (or if the dataset lacks data the cached state
+     * contains) the state is calculated from scratch and cached.
+     */
+    public AgreementProtocolState getOrUpdate(URI connectionURI, Dataset conversationDataset) {
+        AgreementProtocolState state = getCachedState(connectionURI);
+        if (state != null) {
+            Optional<Dataset> newData = state.findNewData(conversationDataset);
+            if (newData.isPresent()) {
+                logger.debug("updating cached agreement protocol state of connection {}", connectionURI);
+                return publish(connectionURI, state, state.update(newData.get()));
+            }
+        }
+        logger.debug("calculating agreement protocol state of connection {}", connectionURI);
+        return publish(connectionURI, state, AgreementProtocolState.of(conversationDataset));
+    }
+
+    public synchronized void invalidate(URI connectionURI) {
+        states.remove(connectionURI);
+    }
+
+    public synchronized void clear() {
+        states.clear();
+    }
+
+    private synchronized AgreementProtocolState getCachedState(URI connectionURI) {
+        return states.get(connectionURI);
+    }
+
+    /**
+     * Caches the new state unless another thread has replaced the state it was
+     * derived from in the meantime.
+     */
+    private synchronized AgreementProtocolState publish(URI connectionURI, AgreementProtocolState previous,
+                    AgreementProtocolState state) {
+        if (states.get(connectionURI) == previous) {
+            states.put(connectionURI, state);
+        }
+        return state;
+    }
+
+    /**
+     * Fetches the data of the conversation that may have changed since the state
+     * was calculated: the connection and the remote connection, their atoms and
+     * the message containers of all of them, as well as the messages not contained
+     * in the state, following their previous messages. Messages are not changed
+     * once they are sent, so the known ones are not fetched again.
+     */
+    private Dataset fetchNewData(URI connectionURI, AgreementProtocolState state,
+                    LinkedDataSource linkedDataSource) {
+        URI requesterWebId = WonLinkedDataUtils.getAtomURIforConnectionURI(connectionURI, linkedDataSource);
+        URI targetConnectionURI = WonLinkedDataUtils.getTargetConnectionURIforConnectionURI(connectionURI,
+                        linkedDataSource);
+        URI targetAtomURI = WonLinkedDataUtils.getTargetAtomURIforConnectionURI(connectionURI, linkedDataSource);
+        Dataset newData = DatasetFactory.createGeneral();
+        List<URI> containers = new ArrayList<>();
+        for (URI connection : Arrays.asList(connectionURI, targetConnectionURI)) {
+            if (connection != null) {
+                RdfUtils.addDatasetToDataset(newData, linkedDataSource.getDataForResource(connection, requesterWebId),
+                                true);
+                containers.add(WonLinkedDataUtils.getMessageContainerURIforConnectionURI(connection,
+                                linkedDataSource));
+            }
+        }
+        for (URI atom : Arrays.asList(requesterWebId, targetAtomURI)) {
+            if (atom != null) {
+                RdfUtils.addDatasetToDataset(newData, linkedDataSource.getDataForResource(atom, requesterWebId), true);
+                containers.add(WonLinkedDataUtils.getMessageContainerURIforAtomURI(atom, linkedDataSource));
+            }
+        }
+        Set<URI> messageUris = new HashSet<>();
+        for (URI container : containers) {
+            if (container == null) {
+                continue;
+            }
+            Dataset containerData = linkedDataSource.getDataForResource(container, requesterWebId);
+            RdfUtils.addDatasetToDataset(newData, containerData, true);
+            RdfUtils.toStatementStream(containerData)
+                            .filter(stmt -> stmt.getSubject().isURIResource()
+                                            && container.toString().equals(stmt.getSubject().getURI())
+                                            && RDFS.member.equals(stmt.getPredicate())
+                                            && stmt.getObject().isURIResource())
+                            .forEach(stmt -> messageUris.add(URI.create(stmt.getObject().asResource().getURI())));
+        }
+        Set<URI> requested = new HashSet<>();
+        Set<URI> toFetch = messageUris.stream().filter(uri -> !state.containsMessage(uri))
+                        .collect(Collectors.toSet());
+        while (!toFetch.isEmpty() && requested.size() < MAX_REQUESTS) {
+            requested.addAll(toFetch);
+            List<CompletableFuture<Dataset>> futures = toFetch.stream()
+                            .map(uri -> linkedDataSource.getDataForResourceAsync(uri, requesterWebId))
+                            .collect(Collectors.toList());
+            Dataset messagesData = DatasetFactory.createGeneral();
+            futures.stream().map(CompletableFuture::join).filter(Objects::nonNull)
+                            .forEach(messageData -> RdfUtils.addDatasetToDataset(messagesData, messageData, true));
+            RdfUtils.addDatasetToDataset(newData, messagesData, true);
+            // follow the previous messages that are not known yet
+            toFetch = ConversationMessagesReader.readConversationMessages(messagesData).values().stream()
+                            .flatMap(message -> message.getPrevious().stream())
+                            .filter(uri -> !state.containsMessage(uri) && !requested.contains(uri))
+                            .limit(MAX_REQUESTS - requested.size()).collect(Collectors.toSet());
+        }
+        logger.debug("fetched {} new messages of connection {}", requested.size(), connectionURI);
+        return newData;
+    }
+}
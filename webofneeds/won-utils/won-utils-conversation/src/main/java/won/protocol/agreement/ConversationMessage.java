@@ -67,6 +67,29 @@ public class ConversationMessage implements Comparable<ConversationMessage> {
         this.messageURI = messageURI;
     }
 
+    /**
+     * Creates a copy that only contains the data read by the
+     * <code>ConversationMessagesReader</code>, i.e. no references to other
+     * messages, no delivery chain and no effects.
+     */
+    ConversationMessage copyUnlinked() {
+        ConversationMessage copy = new ConversationMessage(messageURI);
+        copy.senderAtomURI = senderAtomURI;
+        copy.proposes.addAll(proposes);
+        copy.claims.addAll(claims);
+        copy.rejects.addAll(rejects);
+        copy.accepts.addAll(accepts);
+        copy.retracts.addAll(retracts);
+        copy.proposesToCancel.addAll(proposesToCancel);
+        copy.contentGraphs.addAll(contentGraphs);
+        copy.forwarded.addAll(forwarded);
+        copy.previous.addAll(previous);
+        copy.respondingTo = respondingTo;
+        copy.messageType = messageType;
+        copy.direction = direction;
+        return copy;
+    }
+
     /**
      * Removes all proposes, claims, rejects, accepts, proposesToCancel,
      * contentGraphs
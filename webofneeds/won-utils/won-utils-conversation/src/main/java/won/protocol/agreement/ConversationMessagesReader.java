@@ -28,7 +28,17 @@ public class ConversationMessagesReader {
     static final Map<Property, BiConsumer<Map<URI, ConversationMessage>, Statement>> handlers;
 
     public static Map<URI, ConversationMessage> readConversationMessages(Dataset dataset) {
-        Map<URI, ConversationMessage> messages = new HashMap<>();
+        return readConversationMessages(dataset, new HashMap<>());
+    }
+
+    /**
+     * Reads the messages found in the dataset into the specified map, adding to the
+     * messages already contained in it.
+     *
+     * @return the specified map
+     */
+    public static Map<URI, ConversationMessage> readConversationMessages(Dataset dataset,
+                    Map<URI, ConversationMessage> messages) {
         RdfUtils.toStatementStream(dataset).forEach(stmt -> {
             BiConsumer<Map<URI, ConversationMessage>, Statement> handler = handlers.get(stmt.getPredicate());
             if (logger.isDebugEnabled()) {
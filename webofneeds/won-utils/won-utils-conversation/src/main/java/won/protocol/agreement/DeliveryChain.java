@@ -1,8 +1,12 @@
 package won.protocol.agreement;
 
 import java.net.URI;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Group of messages that represent the delivery of one message, including the
@@ -152,6 +156,63 @@ public class DeliveryChain {
         }
     }
 
+    /**
+     * Determines the relationships of the chains after some of them were updated
+     * with new messages, taking over the relationships of the other chains from an
+     * earlier analysis of the conversation.
+     *
+     * @param chains all chains of this analysis
+     * @param updatedChains the chains that contain new messages
+     * @param earlierChains the chains of the earlier analysis
+     * @return false if the relationships cannot be taken over or an updated chain
+     * affects the acknowledgment of another chain, before or after the update
+     */
+    static boolean updateRelationships(Set<DeliveryChain> chains, Set<DeliveryChain> updatedChains,
+                    Set<DeliveryChain> earlierChains) {
+        Map<URI, DeliveryChain> chainsByHeadURI = new HashMap<>();
+        chains.stream().filter(chain -> !updatedChains.contains(chain))
+                        .forEach(chain -> chainsByHeadURI.put(chain.getHeadURI(), chain));
+        Set<URI> updatedHeadURIs = updatedChains.stream().map(DeliveryChain::getHeadURI).collect(Collectors.toSet());
+        for (DeliveryChain earlier : earlierChains) {
+            if (earlier.getHead() == null) {
+                return false;
+            }
+            if (updatedHeadURIs.contains(earlier.getHeadURI())) {
+                if (earlierChains.stream().anyMatch(earlier::affectsAcknowledgmentOf)) {
+                    return false;
+                }
+                continue;
+            }
+            DeliveryChain chain = chainsByHeadURI.get(earlier.getHeadURI());
+            if (chain == null) {
+                return false;
+            }
+            earlier.interleavedDeliveryChains.stream().map(other -> chainsByHeadURI.get(other.getHeadURI()))
+                            .filter(Objects::nonNull).forEach(chain.interleavedDeliveryChains::add);
+            earlier.containedDeliveryChains.stream().map(other -> chainsByHeadURI.get(other.getHeadURI()))
+                            .filter(Objects::nonNull).forEach(chain.containedDeliveryChains::add);
+        }
+        for (DeliveryChain updatedChain : updatedChains) {
+            for (DeliveryChain chain : chains) {
+                updatedChain.determineRelationshipWith(chain);
+                chain.determineRelationshipWith(updatedChain);
+                if (!updatedChains.contains(chain) && updatedChain.affectsAcknowledgmentOf(chain)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether this chain affects the acknowledgment of the messages in
+     * the other chain: the other chain contains this one or is interleaved with it
+     * while this one is terminated.
+     */
+    private boolean affectsAcknowledgmentOf(DeliveryChain other) {
+        return other != this && (other.contains(this) || other.isInterleavedWith(this) && isTerminated());
+    }
+
     public boolean isInterleavedWith(DeliveryChain other) {
         return this.interleavedDeliveryChains.contains(other);
     }
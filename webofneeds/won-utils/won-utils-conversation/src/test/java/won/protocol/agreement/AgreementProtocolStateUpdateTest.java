@@ -0,0 +1,481 @@
+package won.protocol.agreement;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import won.protocol.message.WonMessageDirection;
+import won.protocol.message.WonMessageType;
+import won.protocol.util.RdfUtils;
+import won.protocol.util.linkeddata.LinkedDataSourceBase;
+import won.protocol.vocabulary.WON;
+import won.protocol.vocabulary.WONAGR;
+import won.protocol.vocabulary.WONCON;
+import won.protocol.vocabulary.WONMOD;
+import won.protocol.vocabulary.WONMSG;
+
+/**
+ * Checks that updating an <code>AgreementProtocolState</code> with parts of a
+ * conversation yields the same state as calculating it from the whole
+ * conversation.
+ */
+public class AgreementProtocolStateUpdateTest {
+    private static final String CONNECTION = "https://localhost:8443/won/resource/connection/c1";
+    private static final String ATOM_A = "https://localhost:8443/won/resource/atom/a";
+    private static final String ATOM_B = "https://localhost:8443/won/resource/atom/b";
+
+    @BeforeClass
+    public static void setLogLevel() {
+        Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+    }
+
+    @Test
+    public void testConversationExercisesAllProtocols() {
+        AgreementProtocolState state = AgreementProtocolState.of(createConversation());
+        Assert.assertEquals(Collections.singleton(messageURI(8)), state.getAgreementUris());
+        Assert.assertEquals(Collections.singleton(messageURI(2)), state.getCancelledAreementUris());
+        Assert.assertEquals(Collections.singleton(messageURI(10)), state.getAcceptedCancellationProposalUris());
+        Assert.assertEquals(Collections.singleton(messageURI(12)), state.getPendingProposalUris());
+        Assert.assertEquals(Collections.singleton(messageURI(6)), state.getRetractedUris());
+        Assert.assertEquals(Collections.singleton(messageURI(4)), state.getRejectedUris());
+        // the last message is not acknowledged by the recipient
+        Assert.assertFalse(state.getConversationDataset().containsNamedModel(messageURI(13) + "#content"));
+    }
+
+    @Test
+    public void testUpdateFromEmptyConversation() {
+        Dataset input = createConversation();
+        AgreementProtocolState actual = AgreementProtocolState.of(DatasetFactory.createGeneral()).update(input);
+        assertSameState("all at once", AgreementProtocolState.of(input), actual, input);
+    }
+
+    @Test
+    public void testUpdateMessageByMessage() {
+        Dataset input = createConversation();
+        List<Dataset> messages = splitByMessage(input);
+        AgreementProtocolState actual = AgreementProtocolState.of(messages.get(0));
+        Dataset received = RdfUtils.cloneDataset(messages.get(0));
+        for (int i = 1; i < messages.size(); i++) {
+            actual = actual.update(messages.get(i));
+            RdfUtils.addDatasetToDataset(received, messages.get(i), true);
+            assertSameState("after " + (i + 1) + " messages", AgreementProtocolState.of(received), actual, received);
+        }
+    }
+
+    @Test
+    public void testUpdateInSteps() {
+        Dataset input = createConversation();
+        AgreementProtocolState expected = AgreementProtocolState.of(input);
+        for (int steps = 2; steps <= 4; steps++) {
+            List<Dataset> parts = join(splitByMessage(input), steps);
+            AgreementProtocolState actual = AgreementProtocolState.of(parts.get(0));
+            for (int i = 1; i < parts.size(); i++) {
+                actual = actual.update(parts.get(i));
+            }
+            assertSameState("in " + steps + " steps", expected, actual, input);
+        }
+    }
+
+    @Test
+    public void testUpdateDoesNotChangeState() {
+        Dataset input = createConversation();
+        List<Dataset> parts = join(splitByMessage(input), 2);
+        AgreementProtocolState state = AgreementProtocolState.of(parts.get(0));
+        AgreementProtocolState updated = state.update(parts.get(1));
+        Assert.assertNotSame(state, updated);
+        assertSameState("original", AgreementProtocolState.of(parts.get(0)), state, parts.get(0));
+        assertSameState("updated", AgreementProtocolState.of(input), updated, input);
+        // nothing new
+        Assert.assertSame(updated, updated.update(parts.get(1)));
+    }
+
+    @Test
+    public void testOnlyNewMessagesAreEvaluated() {
+        List<Dataset> messages = splitByMessageWithResponses(createConversation());
+        Dataset received = DatasetFactory.createGeneral();
+        for (int i = 0; i < 5; i++) {
+            RdfUtils.addDatasetToDataset(received, messages.get(i), true);
+        }
+        AgreementProtocolState state = AgreementProtocolState.of(received);
+        Assert.assertEquals(15, state.getEvaluatedMessageCount());
+        for (int i = 5; i < messages.size(); i++) {
+            state = state.update(messages.get(i));
+            RdfUtils.addDatasetToDataset(received, messages.get(i), true);
+            // the message and its responses, the last message lacks the remote response
+            int expectedCount = i == messages.size() - 1 ? 2 : 3;
+            Assert.assertEquals("message " + i, expectedCount, state.getEvaluatedMessageCount());
+            Assert.assertFalse("message " + i, state.isFullyCalculated());
+            assertSameState("after " + (i + 1) + " messages", AgreementProtocolState.of(received), state, received);
+        }
+    }
+
+    @Test
+    public void testMessageAndResponsesAreAttachedWithoutFullCalculation() {
+        // the message, the own response and the remote response arrive one by one
+        List<Dataset> messages = splitByMessage(createConversation());
+        AgreementProtocolState state = AgreementProtocolState.of(messages.get(0));
+        Dataset received = RdfUtils.cloneDataset(messages.get(0));
+        int fullCalculations = 0;
+        for (int i = 1; i < messages.size(); i++) {
+            state = state.update(messages.get(i));
+            RdfUtils.addDatasetToDataset(received, messages.get(i), true);
+            if (state.isFullyCalculated()) {
+                fullCalculations++;
+            }
+            assertSameState("after " + (i + 1) + " messages", AgreementProtocolState.of(received), state, received);
+        }
+        Assert.assertEquals(0, fullCalculations);
+    }
+
+    @Test
+    public void testLateResponseIsAttachedToItsDeliveryChain() {
+        Dataset input = createConversation();
+        Map<URI, Dataset> messages = splitByMessageURI(input);
+        URI lateResponse = URI.create(messageURI(12) + "-remote");
+        Dataset received = DatasetFactory.createGeneral();
+        messages.entrySet().stream()
+                        .filter(e -> !e.getKey().equals(lateResponse) && e.getKey().compareTo(messageURI(13)) < 0)
+                        .forEach(e -> RdfUtils.addDatasetToDataset(received, e.getValue(), true));
+        AgreementProtocolState state = AgreementProtocolState.of(received);
+        Assert.assertFalse(state.isPendingProposal(messageURI(12)));
+        state = state.update(messages.get(lateResponse));
+        RdfUtils.addDatasetToDataset(received, messages.get(lateResponse), true);
+        // the message and its responses
+        Assert.assertFalse(state.isFullyCalculated());
+        Assert.assertEquals(3, state.getEvaluatedMessageCount());
+        Assert.assertTrue(state.isPendingProposal(messageURI(12)));
+        assertSameState("with late response", AgreementProtocolState.of(received), state, received);
+    }
+
+    @Test
+    public void testLateResponseToReferencedMessageIsEvaluatedWithAllMessages() {
+        ConversationBuilder builder = new ConversationBuilder();
+        String m0 = builder.message(ATOM_A, true, content -> content.text("hello"));
+        String m1 = builder.message(ATOM_B, false, content -> content.agr(WONAGR.proposes, m0));
+        // accepted before the remote response arrives
+        builder.message(ATOM_A, true, content -> content.agr(WONAGR.accepts, m1));
+        AgreementProtocolState state = AgreementProtocolState.of(builder.dataset);
+        URI lateResponse = URI.create(builder.response(m1 + "-remote", m1, ATOM_A,
+                        Collections.singletonList(m1 + "-local")));
+        state = state.update(splitByMessageURI(builder.dataset).get(lateResponse));
+        Assert.assertTrue(state.isFullyCalculated());
+        assertSameState("with late response", AgreementProtocolState.of(builder.dataset), state, builder.dataset);
+    }
+
+    @Test
+    public void testChangedGraphOfSameSizeIsNewData() {
+        Dataset input = createConversation();
+        AgreementProtocolState state = AgreementProtocolState.of(input);
+        Dataset changed = RdfUtils.cloneDataset(input);
+        String contentGraph = messageURI(0) + "#content";
+        Model content = changed.getNamedModel(contentGraph);
+        content.removeAll(null, WONCON.text, null);
+        content.add(content.getResource(messageURI(0).toString()), WONCON.text, "hallo");
+        Assert.assertEquals(input.getNamedModel(contentGraph).size(), content.size());
+        Dataset newData = state.findNewData(changed).get();
+        List<String> newGraphs = new ArrayList<>();
+        newData.listNames().forEachRemaining(newGraphs::add);
+        Assert.assertEquals(Collections.singletonList(contentGraph), newGraphs);
+        AgreementProtocolStateCache cache = new AgreementProtocolStateCache(10);
+        URI connectionURI = URI.create(CONNECTION);
+        cache.getOrUpdate(connectionURI, input);
+        AgreementProtocolState updated = cache.getOrUpdate(connectionURI, changed);
+        Assert.assertEquals(Optional.of("hallo"), updated.getTextMessage(messageURI(0)));
+        Assert.assertEquals(Optional.of("hello"), state.getTextMessage(messageURI(0)));
+        assertSameState("changed", AgreementProtocolState.of(changed), updated, changed);
+    }
+
+    @Test
+    public void testCachePublishesUpdatedState() {
+        URI connectionURI = URI.create(CONNECTION);
+        Dataset input = createConversation();
+        List<Dataset> parts = join(splitByMessage(input), 2);
+        AgreementProtocolStateCache cache = new AgreementProtocolStateCache(10);
+        AgreementProtocolState cached = cache.getOrUpdate(connectionURI, parts.get(0));
+        URI lastMessage = splitByMessageURI(input).keySet().stream().reduce((first, second) -> second).get();
+        Assert.assertFalse(cache.get(connectionURI, lastMessage).isPresent());
+        AgreementProtocolState updated = cache.getOrUpdate(connectionURI, input);
+        Assert.assertNotSame(cached, updated);
+        Assert.assertSame(updated, cache.get(connectionURI, lastMessage).get());
+        assertSameState("cached", AgreementProtocolState.of(input), updated, input);
+        // the state obtained before is not changed
+        Assert.assertFalse(cached.containsMessage(lastMessage));
+        assertSameState("previously cached", AgreementProtocolState.of(parts.get(0)), cached, parts.get(0));
+        // nothing new: the state is reused as is
+        Assert.assertSame(updated, cache.getOrUpdate(connectionURI, input));
+        // not an extension of the cached conversation: the state is calculated again
+        Assert.assertNotSame(updated, cache.getOrUpdate(connectionURI, parts.get(0)));
+        cache.invalidate(connectionURI);
+        Assert.assertFalse(cache.get(connectionURI, lastMessage).isPresent());
+    }
+
+    @Test
+    public void testCacheFetchesOnlyNewMessages() {
+        URI connectionURI = URI.create(CONNECTION);
+        URI containerURI = URI.create(CONNECTION + "/msg");
+        Dataset input = createConversation();
+        Map<URI, Dataset> messages = splitByMessageURI(input);
+        // the connection and its message container
+        Dataset connectionData = DatasetFactory.createGeneral();
+        Model connection = ModelFactory.createDefaultModel();
+        Resource connectionResource = connection.createResource(CONNECTION);
+        connection.add(connectionResource, WON.sourceAtom, connection.createResource(ATOM_A));
+        connection.add(connectionResource, WON.targetAtom, connection.createResource(ATOM_B));
+        connection.add(connectionResource, WON.messageContainer, connection.createResource(containerURI.toString()));
+        connectionData.addNamedModel(CONNECTION + "#data", connection);
+        Dataset containerData = DatasetFactory.createGeneral();
+        Model container = ModelFactory.createDefaultModel();
+        messages.keySet().forEach(uri -> container.add(container.createResource(containerURI.toString()),
+                        RDFS.member, container.createResource(uri.toString())));
+        containerData.addNamedModel(containerURI + "#data", container);
+        TestingLinkedDataSource linkedDataSource = new TestingLinkedDataSource();
+        linkedDataSource.resources.put(connectionURI, connectionData);
+        linkedDataSource.resources.put(containerURI, containerData);
+        linkedDataSource.resources.putAll(messages);
+        // the cached state knows the first half of the conversation
+        List<URI> messageURIs = new ArrayList<>(messages.keySet());
+        Dataset known = DatasetFactory.createGeneral();
+        messageURIs.subList(0, messageURIs.size() / 2)
+                        .forEach(uri -> RdfUtils.addDatasetToDataset(known, messages.get(uri), true));
+        AgreementProtocolStateCache cache = new AgreementProtocolStateCache(10);
+        cache.getOrUpdate(connectionURI, known);
+        AgreementProtocolState updated = cache.getOrUpdate(connectionURI, linkedDataSource);
+        Set<URI> fetchedMessages = new HashSet<>(linkedDataSource.fetched);
+        fetchedMessages.retainAll(messageURIs);
+        Assert.assertEquals(new HashSet<>(messageURIs.subList(messageURIs.size() / 2, messageURIs.size())),
+                        fetchedMessages);
+        Dataset expected = RdfUtils.cloneDataset(input);
+        RdfUtils.addDatasetToDataset(expected, connectionData, true);
+        RdfUtils.addDatasetToDataset(expected, containerData, true);
+        assertSameState("fetched", AgreementProtocolState.of(expected), updated, input);
+        Assert.assertSame(updated, cache.get(connectionURI, messageURIs.get(messageURIs.size() - 1)).get());
+    }
+
+    private static URI messageURI(int index) {
+        return URI.create(String.format("%s/msg%02d", CONNECTION, index));
+    }
+
+    /**
+     * Creates a conversation between atoms a and b in which each message is
+     * acknowledged by a local and a remote success response, except for the last
+     * one, which lacks the remote response.
+     */
+    private static Dataset createConversation() {
+        ConversationBuilder builder = new ConversationBuilder();
+        String m0 = builder.message(ATOM_A, true, content -> content.text("hello"));
+        String m1 = builder.message(ATOM_B, true, content -> content.text("I offer a ride"));
+        String m2 = builder.message(ATOM_A, true, content -> content.agr(WONAGR.proposes, m1));
+        builder.message(ATOM_B, true, content -> content.agr(WONAGR.accepts, m2));
+        String m4 = builder.message(ATOM_A, true, content -> content.agr(WONAGR.claims, m0));
+        builder.message(ATOM_B, true, content -> content.agr(WONAGR.rejects, m4));
+        String m6 = builder.message(ATOM_A, true, content -> content.text("pick me up at 8"));
+        builder.message(ATOM_A, true, content -> content.agr(WONMOD.retracts, m6));
+        String m8 = builder.message(ATOM_B, true, content -> content.agr(WONAGR.proposes, m1));
+        String m9 = builder.message(ATOM_A, true, content -> content.agr(WONAGR.accepts, m8));
+        String m10 = builder.message(ATOM_B, true, content -> content.agr(WONAGR.proposesToCancel, m2));
+        builder.message(ATOM_A, true, content -> content.agr(WONAGR.accepts, m10));
+        builder.message(ATOM_B, true, content -> content.agr(WONAGR.proposes, m0));
+        builder.message(ATOM_A, false, content -> content.agr(WONAGR.accepts, m9));
+        return builder.dataset;
+    }
+
+    private static void assertSameState(String description, AgreementProtocolState expected,
+                    AgreementProtocolState actual, Dataset input) {
+        assertIsomorphic(description + ": agreements", expected.getAgreements(), actual.getAgreements());
+        assertIsomorphic(description + ": pending proposals", expected.getPendingProposals(),
+                        actual.getPendingProposals());
+        assertIsomorphic(description + ": cancelled agreements", expected.getCancelledAgreements(),
+                        actual.getCancelledAgreements());
+        assertIsomorphic(description + ": rejected proposals", expected.getRejectedProposals(),
+                        actual.getRejectedProposals());
+        assertIsomorphic(description + ": claims", expected.getClaims(), actual.getClaims());
+        assertIsomorphic(description + ": conversation", expected.getConversationDataset(),
+                        actual.getConversationDataset());
+        Assert.assertTrue(description + ": pending cancellations",
+                        expected.getPendingCancellations().isIsomorphicWith(actual.getPendingCancellations()));
+        Assert.assertEquals(description + ": retracted", expected.getRetractedUris(), actual.getRetractedUris());
+        Assert.assertEquals(description + ": accepted cancellations", expected.getAcceptedCancellationProposalUris(),
+                        actual.getAcceptedCancellationProposalUris());
+        Assert.assertEquals(description + ": claimed", expected.getClaimedUris(), actual.getClaimedUris());
+        for (URI messageUri : splitByMessageURI(input).keySet()) {
+            Assert.assertEquals(description + ": effects of " + messageUri, effects(expected, messageUri),
+                            effects(actual, messageUri));
+        }
+    }
+
+    private static void assertIsomorphic(String description, Dataset expected, Dataset actual) {
+        Assert.assertTrue(description, RdfUtils.isIsomorphicWith(expected, actual));
+    }
+
+    private static Set<String> effects(AgreementProtocolState state, URI messageUri) {
+        return state.getEffects(messageUri).stream().map(Object::toString)
+                        .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Groups the named graphs by the message they belong to (the graph name without
+     * fragment), ordered by message URI.
+     */
+    private static Map<URI, Dataset> splitByMessageURI(Dataset input) {
+        Map<URI, Dataset> messages = new TreeMap<>();
+        input.listNames().forEachRemaining(graphName -> {
+            URI graphURI = URI.create(graphName);
+            URI messageURI = URI.create(graphURI.getScheme() + ":" + graphURI.getSchemeSpecificPart());
+            messages.computeIfAbsent(messageURI, uri -> DatasetFactory.createGeneral()).addNamedModel(graphName,
+                            input.getNamedModel(graphName));
+        });
+        return messages;
+    }
+
+    private static List<Dataset> splitByMessage(Dataset input) {
+        return new ArrayList<>(splitByMessageURI(input).values());
+    }
+
+    /**
+     * Groups the named graphs by message, each message together with its
+     * responses.
+     */
+    private static List<Dataset> splitByMessageWithResponses(Dataset input) {
+        Map<String, Dataset> messages = new TreeMap<>();
+        splitByMessageURI(input).forEach((messageURI, dataset) -> RdfUtils.addDatasetToDataset(
+                        messages.computeIfAbsent(messageURI.toString().replaceAll("-(local|remote)$", ""),
+                                        uri -> DatasetFactory.createGeneral()),
+                        dataset, true));
+        return new ArrayList<>(messages.values());
+    }
+
+    private static List<Dataset> join(List<Dataset> messages, int parts) {
+        List<Dataset> joined = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            Dataset part = DatasetFactory.createGeneral();
+            for (int j = i * messages.size() / parts; j < (i + 1) * messages.size() / parts; j++) {
+                RdfUtils.addDatasetToDataset(part, messages.get(j), true);
+            }
+            joined.add(part);
+        }
+        return joined;
+    }
+
+    private static class ConversationBuilder {
+        private final Dataset dataset = DatasetFactory.createGeneral();
+        private final List<String> lastMessages = new ArrayList<>();
+        private int count = 0;
+
+        /**
+         * Adds a connection message, its local success response and, if requested, the
+         * remote success response.
+         * 
+         * @return the message URI
+         */
+        String message(String senderAtom, boolean remotelyAcknowledged, Consumer<Content> contentSetter) {
+            String recipientAtom = ATOM_A.equals(senderAtom) ? ATOM_B : ATOM_A;
+            String messageURI = messageURI(count++).toString();
+            Model envelope = envelope(messageURI, WonMessageType.CONNECTION_MESSAGE, WonMessageDirection.FROM_OWNER,
+                            senderAtom, lastMessages);
+            envelope.add(envelope.createResource(messageURI), WONMSG.content,
+                            envelope.createResource(messageURI + "#content"));
+            Content content = new Content(messageURI);
+            contentSetter.accept(content);
+            dataset.addNamedModel(messageURI + "#content", content.model);
+            List<String> previous = new ArrayList<>(lastMessages);
+            lastMessages.clear();
+            String localResponse = response(messageURI + "-local", messageURI, senderAtom, previous);
+            lastMessages.add(localResponse);
+            if (remotelyAcknowledged) {
+                lastMessages.add(response(messageURI + "-remote", messageURI, recipientAtom,
+                                Collections.singletonList(localResponse)));
+            }
+            return messageURI;
+        }
+
+        private String response(String responseURI, String messageURI, String senderAtom, List<String> previous) {
+            Model envelope = envelope(responseURI, WonMessageType.SUCCESS_RESPONSE, WonMessageDirection.FROM_SYSTEM,
+                            senderAtom, previous);
+            envelope.add(envelope.createResource(responseURI), WONMSG.respondingTo,
+                            envelope.createResource(messageURI));
+            return responseURI;
+        }
+
+        private Model envelope(String messageURI, WonMessageType type, WonMessageDirection direction,
+                        String senderAtom, List<String> previous) {
+            Model envelope = ModelFactory.createDefaultModel();
+            Resource message = envelope.createResource(messageURI);
+            envelope.add(message, RDF.type, envelope.createResource(direction.getURI().toString()));
+            envelope.add(message, WONMSG.messageType, envelope.createResource(type.getURI().toString()));
+            envelope.add(message, WONMSG.senderSocket, envelope.createResource(senderAtom + "#chatSocket"));
+            previous.forEach(uri -> envelope.add(message, WONMSG.previousMessage, envelope.createResource(uri)));
+            dataset.addNamedModel(messageURI + "#envelope", envelope);
+            return envelope;
+        }
+    }
+
+    /**
+     * Serves the resources from a map and records the requested URIs.
+     */
+    private static class TestingLinkedDataSource extends LinkedDataSourceBase {
+        private final Map<URI, Dataset> resources = new HashMap<>();
+        private final List<URI> fetched = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Dataset getDataForResource(URI resource) {
+            fetched.add(resource);
+            Dataset dataset = resources.get(resource);
+            return dataset == null ? DatasetFactory.createGeneral() : RdfUtils.cloneDataset(dataset);
+        }
+
+        @Override
+        public Dataset getDataForResource(URI resource, URI requesterWebID) {
+            return getDataForResource(resource);
+        }
+
+        @Override
+        public CompletableFuture<Dataset> getDataForResourceAsync(URI resourceURI, URI requesterWebID) {
+            return CompletableFuture.completedFuture(getDataForResource(resourceURI));
+        }
+    }
+
+    private static class Content {
+        private final Model model = ModelFactory.createDefaultModel();
+        private final Resource message;
+
+        Content(String messageURI) {
+            this.message = model.createResource(messageURI);
+        }
+
+        void text(String text) {
+            model.add(message, WONCON.text, text);
+        }
+
+        void agr(Property property, String otherMessageURI) {
+            model.add(message, property, model.createResource(otherMessageURI));
+        }
+    }
+}